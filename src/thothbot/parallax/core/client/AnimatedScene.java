@@ -18,11 +18,47 @@
 
 package thothbot.parallax.core.client;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import thothbot.parallax.core.client.context.Canvas3d;
+import thothbot.parallax.core.client.events.HasEventBus;
+import thothbot.parallax.core.client.events.InvalidateEvent;
+import thothbot.parallax.core.client.events.InvalidateHandler;
 import thothbot.parallax.core.client.renderers.WebGLRenderer;
+import thothbot.parallax.core.shared.cameras.Camera;
+import thothbot.parallax.core.shared.core.AbstractGeometry;
+import thothbot.parallax.core.shared.core.GeometryObject;
+import thothbot.parallax.core.shared.core.Object3D;
+import thothbot.parallax.core.shared.materials.Material;
+import thothbot.parallax.core.shared.math.Matrix4;
+import thothbot.parallax.core.shared.math.Quaternion;
+import thothbot.parallax.core.shared.math.Vector3;
 import thothbot.parallax.core.shared.scenes.Scene;
 
 import com.google.gwt.core.client.Duration;
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.event.dom.client.KeyDownEvent;
+import com.google.gwt.event.dom.client.KeyDownHandler;
+import com.google.gwt.event.dom.client.KeyUpEvent;
+import com.google.gwt.event.dom.client.KeyUpHandler;
+import com.google.gwt.event.dom.client.MouseDownEvent;
+import com.google.gwt.event.dom.client.MouseDownHandler;
+import com.google.gwt.event.dom.client.MouseMoveEvent;
+import com.google.gwt.event.dom.client.MouseMoveHandler;
+import com.google.gwt.event.dom.client.MouseUpEvent;
+import com.google.gwt.event.dom.client.MouseUpHandler;
+import com.google.gwt.event.dom.client.MouseWheelEvent;
+import com.google.gwt.event.dom.client.MouseWheelHandler;
+import com.google.gwt.event.dom.client.TouchEndEvent;
+import com.google.gwt.event.dom.client.TouchEndHandler;
+import com.google.gwt.event.dom.client.TouchMoveEvent;
+import com.google.gwt.event.dom.client.TouchMoveHandler;
+import com.google.gwt.event.dom.client.TouchStartEvent;
+import com.google.gwt.event.dom.client.TouchStartHandler;
+import com.google.gwt.event.shared.HandlerRegistration;
+import com.google.gwt.user.client.ui.RootPanel;
 
 /**
  * The class to set up {@link Scene} for the {@link WebGLRenderer} 
@@ -47,10 +83,65 @@ public abstract class AnimatedScene extends Animation
 		public void onUpdate(double duration);
 	}
 
+	/**
+	 * Marks the scene dirty on the user input and the texture loading 
+	 * in the render-on-demand mode.
+	 */
+	private class Invalidator implements MouseDownHandler, MouseUpHandler, MouseMoveHandler, MouseWheelHandler,
+		TouchStartHandler, TouchMoveHandler, TouchEndHandler, KeyDownHandler, KeyUpHandler, InvalidateHandler
+	{
+		@Override
+		public void onMouseDown(MouseDownEvent event) { invalidate(); }
+
+		@Override
+		public void onMouseUp(MouseUpEvent event) { invalidate(); }
+
+		@Override
+		public void onMouseMove(MouseMoveEvent event) { invalidate(); }
+
+		@Override
+		public void onMouseWheel(MouseWheelEvent event) { invalidate(); }
+
+		@Override
+		public void onTouchStart(TouchStartEvent event) { invalidate(); }
+
+		@Override
+		public void onTouchMove(TouchMoveEvent event) { invalidate(); }
+
+		@Override
+		public void onTouchEnd(TouchEndEvent event) { invalidate(); }
+
+		@Override
+		public void onKeyDown(KeyDownEvent event) { invalidate(); }
+
+		@Override
+		public void onKeyUp(KeyUpEvent event) { invalidate(); }
+
+		@Override
+		public void onInvalidate(InvalidateEvent event) { invalidate(); }
+	}
+
 	private RenderingPanel renderingPanel;
 	private Scene scene;
 	private AnimationUpdateHandler animationUpdateHandler;
 
+	// Render-on-demand mode
+	private boolean isRenderOnDemand = false;
+	private boolean isInvalidated = true;
+	private boolean isSkipped = false;
+
+	// Values of the scene state, compared one by one between the frames
+	private double[] state = new double[0];
+	private int stateSize;
+	private int stateLength;
+	private boolean isStateChanged;
+	private List<HandlerRegistration> invalidateHandlers = new ArrayList<HandlerRegistration>();
+
+	// Visibility of the canvas in the render-on-demand mode
+	private JavaScriptObject visibilityObserver;
+	private boolean isDocumentHidden = false;
+	private boolean isIntersecting = true;
+
 	/**
 	 * Gets the main {@link Scene} object.
 	 * 
@@ -76,6 +167,16 @@ public abstract class AnimatedScene extends Animation
 		return this.renderingPanel.getCanvas();
 	}
 
+	/**
+	 * Gets the controller of the drawing buffer resolution.
+	 * 
+	 * @return the {@link DynamicResolution} or null if it is not used.
+	 */
+	public DynamicResolution getDynamicResolution() 
+	{
+		return this.renderingPanel.getDynamicResolution();
+	}
+
 	/**
 	 * Initialize the scene.
 	 * 
@@ -90,14 +191,309 @@ public abstract class AnimatedScene extends Animation
 		this.animationUpdateHandler = animationUpdateHandler;		
 	}
 
+	/**
+	 * Runs the animation. In the render-on-demand mode the input 
+	 * and visibility listeners are added to the current canvas.
+	 */
+	@Override
+	public void run()
+	{
+		super.run();
+
+		if ( this.isRenderOnDemand && this.renderingPanel != null )
+			startRenderOnDemand();
+	}
+
+	/**
+	 * Stops the animation. In the render-on-demand mode the input 
+	 * and visibility listeners are removed, so the stopped scene 
+	 * is not referenced by the page and the event bus.
+	 */
+	@Override
+	public void stop()
+	{
+		super.stop();
+
+		stopRenderOnDemand();
+	}
+
+	public boolean isRenderOnDemand() 
+	{
+		return this.isRenderOnDemand;
+	}
+
+	/**
+	 * Enables or disables the render-on-demand mode. In this mode 
+	 * {@link #onUpdate(double)} is called only if the scene was changed:
+	 * <ul>
+	 * <li>the transform, visibility, material or geometry update flags 
+	 * of the objects in the scene or of the last rendered camera;</li>
+	 * <li>the mouse, touch or keyboard input, which is used by the controls;</li>
+	 * <li>the texture image is loaded, see {@link InvalidateEvent};</li>
+	 * <li>{@link #invalidate()} is called.</li>
+	 * </ul>
+	 * If {@link #onUpdate(double)} changes the scene, the next frame is 
+	 * rendered too, so the animations and the control damping go on 
+	 * until they stop. Other changes, for example uniform values or material 
+	 * colors, should be followed by {@link #invalidate()}.
+	 * <p>
+	 * The animation is also paused while the canvas is hidden or out of the 
+	 * browser viewport.
+	 */
+	public void setRenderOnDemand(boolean isRenderOnDemand) 
+	{
+		if ( this.isRenderOnDemand == isRenderOnDemand )
+			return;
+
+		this.isRenderOnDemand = isRenderOnDemand;
+
+		if ( this.renderingPanel == null || !isRunning() )
+			return;
+
+		if ( isRenderOnDemand )
+			startRenderOnDemand();
+		else
+			stopRenderOnDemand();
+	}
+
+	/**
+	 * Requests the next frame in the render-on-demand mode. The scene 
+	 * state is compared value by value between the frames, so two changes 
+	 * never cancel each other out; only the changes which are not a part 
+	 * of that state (see {@link #setRenderOnDemand(boolean)}) need this call.
+	 */
+	public void invalidate() 
+	{
+		this.isInvalidated = true;
+	}
+
 	protected abstract void onUpdate(double duration);
 	
 	@Override
 	protected void onRefresh(double duration)
 	{
+		if ( this.isRenderOnDemand )
+		{
+			boolean isChanged = updateState();
+
+			if ( !this.isInvalidated && !isChanged )
+			{
+				this.isSkipped = true;
+				return;
+			}
+
+			// The time between the frames was not the frame time
+			if ( this.isSkipped && this.renderingPanel.getDynamicResolution() != null )
+				this.renderingPanel.getDynamicResolution().reset();
+
+			this.isInvalidated = false;
+			this.isSkipped = false;
+		}
+
 		getRenderer().getInfo().getTimer().render = new Duration();
+
+		getRenderer().getInfo().getProfiler().beginFrame();
 		onUpdate(duration);
+		getRenderer().getInfo().getProfiler().endFrame();
 		
 		animationUpdateHandler.onUpdate(duration);
+
+		if ( this.isRenderOnDemand )
+		{
+			// The scene is animated or the textures are still uploading
+			if ( updateState() || getRenderer().getTextureUploadQueue().size() > 0 )
+				this.isInvalidated = true;
+		}
+	}
+
+	private void startRenderOnDemand()
+	{
+		stopRenderOnDemand();
+
+		Invalidator invalidator = new Invalidator();
+		Canvas3d canvas = getCanvas();
+
+		this.invalidateHandlers.add( canvas.addMouseDownHandler( invalidator ) );
+		this.invalidateHandlers.add( canvas.addMouseUpHandler( invalidator ) );
+		this.invalidateHandlers.add( canvas.addMouseMoveHandler( invalidator ) );
+		this.invalidateHandlers.add( canvas.addMouseWheelHandler( invalidator ) );
+		this.invalidateHandlers.add( canvas.addTouchStartHandler( invalidator ) );
+		this.invalidateHandlers.add( canvas.addTouchMoveHandler( invalidator ) );
+		this.invalidateHandlers.add( canvas.addTouchEndHandler( invalidator ) );
+
+		// The controls listen to the keyboard on the whole page
+		this.invalidateHandlers.add( RootPanel.get().addDomHandler( invalidator, KeyDownEvent.getType() ) );
+		this.invalidateHandlers.add( RootPanel.get().addDomHandler( invalidator, KeyUpEvent.getType() ) );
+
+		this.invalidateHandlers.add( HasEventBus.EVENT_BUS.addHandler( InvalidateEvent.TYPE, invalidator ) );
+
+		this.isDocumentHidden = false;
+		this.isIntersecting = true;
+		this.visibilityObserver = observeVisibility( canvas.getElement() );
+
+		invalidate();
+	}
+
+	private void stopRenderOnDemand()
+	{
+		for ( HandlerRegistration registration : this.invalidateHandlers )
+			registration.removeHandler();
+
+		this.invalidateHandlers.clear();
+
+		if ( this.visibilityObserver != null )
+			unobserveVisibility( this.visibilityObserver );
+
+		this.visibilityObserver = null;
+
+		resume();
+	}
+
+	private void setDocumentHidden(boolean isDocumentHidden)
+	{
+		this.isDocumentHidden = isDocumentHidden;
+		updateVisibility();
+	}
+
+	private void setIntersecting(boolean isIntersecting)
+	{
+		this.isIntersecting = isIntersecting;
+		updateVisibility();
+	}
+
+	private void updateVisibility()
+	{
+		if ( this.isDocumentHidden || !this.isIntersecting )
+		{
+			pause();
+		}
+		else if ( isPaused() )
+		{
+			invalidate();
+			resume();
+		}
+	}
+
+	private native JavaScriptObject observeVisibility(Element element) /*-{
+		var self = this;
+
+		var onVisibilityChange = $entry(function() {
+			self.@thothbot.parallax.core.client.AnimatedScene::setDocumentHidden(Z)(!!$doc.hidden);
+		});
+		$doc.addEventListener("visibilitychange", onVisibilityChange, false);
+
+		// The canvas with display: none does not intersect too
+		var observer = null;
+		if ($wnd.IntersectionObserver) {
+			observer = new $wnd.IntersectionObserver($entry(function(entries) {
+				self.@thothbot.parallax.core.client.AnimatedScene::setIntersecting(Z)(entries[entries.length - 1].isIntersecting);
+			}));
+			observer.observe(element);
+		}
+
+		return { onVisibilityChange: onVisibilityChange, observer: observer };
+	}-*/;
+
+	private static native void unobserveVisibility(JavaScriptObject visibilityObserver) /*-{
+		$doc.removeEventListener("visibilitychange", visibilityObserver.onVisibilityChange, false);
+		if (visibilityObserver.observer)
+			visibilityObserver.observer.disconnect();
+	}-*/;
+
+	/*
+	 * Stores the state, which is changed without notification: transforms, 
+	 * visibility and update flags, and compares it with the state stored 
+	 * on the previous call.
+	 * 
+	 * @return true if the state was changed
+	 */
+	private boolean updateState()
+	{
+		this.stateLength = 0;
+		this.isStateChanged = false;
+
+		updateState( getScene() );
+
+		Camera camera = getRenderer().getLastCamera();
+		if ( camera != null )
+		{
+			updateState( camera );
+			updateState( camera.getProjectionMatrix() );
+		}
+
+		// Some objects were added or removed
+		if ( this.stateLength != this.stateSize )
+			this.isStateChanged = true;
+
+		this.stateSize = this.stateLength;
+
+		return this.isStateChanged;
+	}
+
+	private void updateState( Object3D object )
+	{
+		value( object.isVisible() );
+
+		if ( object.isMatrixAutoUpdate() )
+		{
+			Vector3 position = object.getPosition();
+			Quaternion quaternion = object.getQuaternion();
+			Vector3 scale = object.getScale();
+
+			value( position.getX() ); value( position.getY() ); value( position.getZ() );
+			value( quaternion.getX() ); value( quaternion.getY() ); value( quaternion.getZ() ); value( quaternion.getW() );
+			value( scale.getX() ); value( scale.getY() ); value( scale.getZ() );
+		}
+		else
+		{
+			updateState( object.getMatrix() );
+		}
+
+		if ( object instanceof GeometryObject )
+		{
+			Material material = ((GeometryObject)object).getMaterial();
+			AbstractGeometry geometry = ((GeometryObject)object).getGeometry();
+
+			if ( material != null )
+				value( material.isNeedsUpdate() );
+
+			if ( geometry != null )
+			{
+				value( geometry.isVerticesNeedUpdate() ); value( geometry.isElementsNeedUpdate() );
+				value( geometry.isNormalsNeedUpdate() ); value( geometry.isColorsNeedUpdate() );
+				value( geometry.isUvsNeedUpdate() ); value( geometry.isTangentsNeedUpdate() );
+				value( geometry.isMorphTargetsNeedUpdate() ); value( geometry.isLineDistancesNeedUpdate() );
+				value( geometry.isGroupsNeedUpdate() );
+			}
+		}
+
+		for ( Object3D child : object.getChildren() )
+			updateState( child );
+	}
+
+	private void updateState( Matrix4 matrix )
+	{
+		for ( int i = 0; i < 16; i++ )
+			value( matrix.getArray().get( i ) );
+	}
+
+	private void value( boolean value )
+	{
+		value( value ? 1.0 : 0.0 );
+	}
+
+	private void value( double value )
+	{
+		if ( this.stateLength == this.state.length )
+		{
+			double[] state = new double[ Math.max( 64, this.state.length * 2 ) ];
+			System.arraycopy( this.state, 0, state, 0, this.stateLength );
+			this.state = state;
+		}
+
+		if ( this.stateLength >= this.stateSize || this.state[ this.stateLength ] != value )
+			this.isStateChanged = true;
+
+		this.state[ this.stateLength++ ] = value;
 	}
 }
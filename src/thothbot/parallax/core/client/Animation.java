@@ -60,6 +60,11 @@ public abstract class Animation
 	 */
 	private boolean isStoped = false;
 
+	/**
+	 * Is the running animation paused by {@link #pause()}.
+	 */
+	private boolean isPaused = false;
+
 	/**
 	 * The ID of the pending animation request.
 	 */
@@ -121,6 +126,7 @@ public abstract class Animation
 		// Reset the state.
 		this.isStoped = this.isStarted; // Used by onCancel.
 		this.isRunning = false;
+		this.isPaused = false;
 		this.stopTime = Duration.currentTimeMillis();
 
 		// Cancel the animation request.
@@ -157,6 +163,57 @@ public abstract class Animation
 		this.callback.execute(Duration.currentTimeMillis());
 	}
 
+	/**
+	 * Checks if the animation is running, even if it is paused.
+	 */
+	public boolean isRunning()
+	{
+		return this.isRunning;
+	}
+
+	/**
+	 * Checks if the running animation is paused.
+	 */
+	public boolean isPaused()
+	{
+		return this.isPaused;
+	}
+
+	/**
+	 * Pauses the running animation: no more frames are requested until 
+	 * {@link #resume()}. Unlike {@link #stop()}, the {@link #onStop()} 
+	 * is not called. The paused time is not counted in the duration.
+	 */
+	protected void pause()
+	{
+		if (!this.isRunning || this.isPaused) 
+			return;
+
+		this.isPaused = true;
+		this.isStoped = this.isStarted;
+		this.stopTime = Duration.currentTimeMillis();
+
+		if (this.requestHandle != null) 
+		{
+			this.requestHandle.cancel();
+			this.requestHandle = null;
+		}
+	}
+
+	/**
+	 * Resumes the animation paused by {@link #pause()}.
+	 */
+	protected void resume()
+	{
+		if (!this.isPaused) 
+			return;
+
+		this.isPaused = false;
+
+		// Execute the first callback.
+		this.callback.execute(Duration.currentTimeMillis());
+	}
+
 	/**
 	 * Called immediately after the animation is stopped. The default
 	 * implementation of this method calls {@link #onStop()} only if the
@@ -184,11 +241,11 @@ public abstract class Animation
 	 * 
 	 * @param curRunId
 	 *            the current run ID to check
-	 * @return true if running, false if canceled or restarted
+	 * @return true if running, false if canceled, paused or restarted
 	 */
 	private boolean isRunning(int curRunId)
 	{
-		return isRunning && (runId == curRunId);
+		return isRunning && !isPaused && (runId == curRunId);
 	}
 
 	/**
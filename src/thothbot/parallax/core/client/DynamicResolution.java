@@ -0,0 +1,286 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ * 
+ * This file is part of Parallax project.
+ * 
+ * Parallax is free software: you can redistribute it and/or modify it 
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ * 
+ * Parallax is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution 
+ * 3.0 Unported License. for more details.
+ * 
+ * You should have received a copy of the the Creative Commons Attribution 
+ * 3.0 Unported License along with Parallax. 
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+
+package thothbot.parallax.core.client;
+
+import thothbot.parallax.core.client.events.ResolutionScaleEvent;
+
+/**
+ * Controller of the drawing buffer resolution, which keeps the frame time 
+ * within the given bounds on the slow machines.
+ * <p>
+ * The controller watches the smoothed time between the frames. If it is 
+ * above the downscale bound, the resolution scale is decreased by one step; 
+ * if it is below the upscale bound, the scale is increased. The gap between 
+ * the bounds and the cooldown after every change prevent the oscillation.
+ * <p>
+ * On the displays with the vertical sync the time between the frames is 
+ * a multiple of the refresh interval, so the scale which just misses it 
+ * doubles the frame time and is abandoned, while the smaller one is fast 
+ * enough to try it again. The abandoned scale is not tried again during 
+ * the backoff, which is doubled every time the same scale is abandoned 
+ * again.
+ * <p>
+ * The {@link RenderingPanel} renders into the scaled drawing buffer and 
+ * stretches the canvas to the panel size with CSS, so the browser upscales 
+ * the image without an additional full-screen pass. Every change fires 
+ * the {@link ResolutionScaleEvent} and the viewport resize event of the 
+ * renderer, so the postprocessing targets follow the new size.
+ * 
+ * <pre>
+ * {@code
+ * renderingPanel.setDynamicResolution( new DynamicResolution( 0.5, 1.0 ) );
+ * }
+ * </pre>
+ * 
+ * @author thothbot
+ *
+ */
+public class DynamicResolution
+{
+	// The frame time bounds for 60 fps, in milliseconds
+	public static final double DEFAULT_UPSCALE_FRAME_TIME = 17.5;
+	public static final double DEFAULT_DOWNSCALE_FRAME_TIME = 22.0;
+
+	// Longer frames (hidden tab, breakpoints, loading) are not measured
+	private static final double MAX_FRAME_TIME = 250.0;
+
+	private double minScale;
+	private double maxScale;
+	private double step = 0.1;
+
+	private double upscaleFrameTime = DEFAULT_UPSCALE_FRAME_TIME;
+	private double downscaleFrameTime = DEFAULT_DOWNSCALE_FRAME_TIME;
+
+	// Weight of the last frame in the smoothed frame time
+	private double smoothing = 0.1;
+
+	// Frames to wait after the change before the next one
+	private int cooldownFrames = 30;
+
+	// Frames to wait before the abandoned scale is tried again
+	private int backoffFrames = 120;
+	private static final int MAX_BACKOFF_FACTOR = 32;
+
+	private double scale;
+	private double frameTime;
+	private double lastTime = -1;
+	private int cooldown;
+
+	private double abandonedScale = -1;
+	private int backoff;
+	private int backoffCooldown;
+
+	public DynamicResolution() 
+	{
+		this(0.5, 1.0);
+	}
+
+	/**
+	 * @param minScale the minimal scale of the drawing buffer, in (0, 1]
+	 * @param maxScale the maximal scale of the drawing buffer
+	 */
+	public DynamicResolution(double minScale, double maxScale) 
+	{
+		setScaleBounds(minScale, maxScale);
+		this.scale = this.maxScale;
+
+		reset();
+	}
+
+	/**
+	 * Gets the current scale of the drawing buffer relative to the panel size.
+	 */
+	public double getScale() {
+		return this.scale;
+	}
+
+	/**
+	 * Sets the scale, clamped by the bounds. The change is applied 
+	 * by the {@link RenderingPanel} on the next frame.
+	 */
+	public void setScale(double scale) {
+		this.scale = Math.max( this.minScale, Math.min( this.maxScale, scale ) );
+	}
+
+	public double getMinScale() {
+		return this.minScale;
+	}
+
+	public double getMaxScale() {
+		return this.maxScale;
+	}
+
+	public void setScaleBounds(double minScale, double maxScale) 
+	{
+		this.minScale = Math.max( 0.01, minScale );
+		this.maxScale = Math.max( this.minScale, maxScale );
+
+		setScale( this.scale );
+	}
+
+	public double getStep() {
+		return this.step;
+	}
+
+	/**
+	 * Sets the change of the scale on every adjustment. Default: 0.1.
+	 */
+	public void setStep(double step) {
+		this.step = step;
+	}
+
+	public double getUpscaleFrameTime() {
+		return this.upscaleFrameTime;
+	}
+
+	public double getDownscaleFrameTime() {
+		return this.downscaleFrameTime;
+	}
+
+	/**
+	 * Sets the frame time bounds in milliseconds. The scale is increased 
+	 * while the smoothed frame time is below the first bound and decreased 
+	 * while it is above the second one.
+	 */
+	public void setFrameTimeBounds(double upscaleFrameTime, double downscaleFrameTime) 
+	{
+		this.upscaleFrameTime = upscaleFrameTime;
+		this.downscaleFrameTime = Math.max( upscaleFrameTime, downscaleFrameTime );
+	}
+
+	public double getSmoothing() {
+		return this.smoothing;
+	}
+
+	/**
+	 * Sets the weight of the last frame in the smoothed frame time, in (0, 1]. 
+	 * Default: 0.1.
+	 */
+	public void setSmoothing(double smoothing) {
+		this.smoothing = Math.max( 0.001, Math.min( 1.0, smoothing ) );
+	}
+
+	public int getCooldownFrames() {
+		return this.cooldownFrames;
+	}
+
+	/**
+	 * Sets the number of frames to wait after every change. Default: 30.
+	 */
+	public void setCooldownFrames(int cooldownFrames) {
+		this.cooldownFrames = cooldownFrames;
+	}
+
+	public int getBackoffFrames() {
+		return this.backoffFrames;
+	}
+
+	/**
+	 * Sets the number of frames to wait before the scale, which was 
+	 * decreased, is increased to the same value again. It is doubled every 
+	 * time the same scale is abandoned again, up to 32 times. Default: 120.
+	 */
+	public void setBackoffFrames(int backoffFrames) {
+		this.backoffFrames = backoffFrames;
+	}
+
+	/**
+	 * Gets the smoothed frame time in milliseconds.
+	 */
+	public double getFrameTime() {
+		return this.frameTime;
+	}
+
+	/**
+	 * Forgets the measured frame time, for example, after the animation 
+	 * was stopped.
+	 */
+	public void reset() 
+	{
+		this.lastTime = -1;
+		this.frameTime = 0;
+		this.cooldown = this.cooldownFrames;
+	}
+
+	/**
+	 * Measures the frame and adjusts the scale.
+	 * 
+	 * @param time the current time in milliseconds
+	 * 
+	 * @return true if the scale was changed.
+	 */
+	public boolean update(double time) 
+	{
+		double delta = time - this.lastTime;
+		boolean isMeasured = this.lastTime >= 0;
+		this.lastTime = time;
+
+		if ( !isMeasured || delta <= 0 || delta > MAX_FRAME_TIME )
+			return false;
+
+		this.frameTime = ( this.frameTime == 0 ) ? delta 
+				: this.frameTime + ( delta - this.frameTime ) * this.smoothing;
+
+		if ( this.backoffCooldown > 0 )
+			this.backoffCooldown--;
+
+		if ( this.cooldown > 0 )
+		{
+			this.cooldown--;
+			return false;
+		}
+
+		double scale = this.scale;
+
+		if ( this.frameTime > this.downscaleFrameTime )
+		{
+			setScale( scale - this.step );
+
+			if ( this.scale != scale )
+			{
+				this.backoff = isAbandoned( scale ) 
+						? Math.min( this.backoff * 2, this.backoffFrames * MAX_BACKOFF_FACTOR ) 
+						: this.backoffFrames;
+
+				this.abandonedScale = scale;
+				this.backoffCooldown = this.backoff;
+			}
+		}
+		else if ( this.frameTime < this.upscaleFrameTime )
+		{
+			if ( this.backoffCooldown > 0 && scale + this.step > this.abandonedScale - this.step / 2.0 )
+				return false;
+
+			setScale( scale + this.step );
+		}
+
+		if ( this.scale == scale )
+			return false;
+
+		this.cooldown = this.cooldownFrames;
+
+		return true;
+	}
+
+	private boolean isAbandoned(double scale)
+	{
+		return this.abandonedScale >= 0 && Math.abs( scale - this.abandonedScale ) < this.step / 2.0;
+	}
+}
@@ -27,14 +27,18 @@ import thothbot.parallax.core.client.events.AnimationReadyEvent;
 import thothbot.parallax.core.client.events.AnimationReadyHandler;
 import thothbot.parallax.core.client.events.Context3dErrorEvent;
 import thothbot.parallax.core.client.events.Context3dErrorHandler;
+import thothbot.parallax.core.client.events.ResolutionScaleEvent;
+import thothbot.parallax.core.client.events.ResolutionScaleHandler;
 import thothbot.parallax.core.client.events.SceneLoadingEvent;
 import thothbot.parallax.core.client.events.SceneLoadingHandler;
 import thothbot.parallax.core.client.renderers.WebGLRenderer;
 import thothbot.parallax.core.shared.Log;
 
+import com.google.gwt.core.client.Duration;
 import com.google.gwt.core.client.Scheduler;
 import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.Style.Position;
+import com.google.gwt.dom.client.Style.Unit;
 import com.google.gwt.event.shared.EventHandler;
 import com.google.gwt.event.shared.GwtEvent;
 import com.google.gwt.event.shared.HandlerManager;
@@ -77,6 +81,12 @@ public class RenderingPanel extends LayoutPanel implements IsWidget, HasWidgets,
 	
 	private AnimationUpdateHandler animationUpdateHandler;
 
+	private DynamicResolution dynamicResolution;
+
+	// The size of the panel, the drawing buffer can be scaled
+	private int width;
+	private int height;
+
 	/**
 	 * This constructor will create new instance of the widget.
 	 */
@@ -142,6 +152,24 @@ public class RenderingPanel extends LayoutPanel implements IsWidget, HasWidgets,
 		handlerManager.fireEvent(new SceneLoadingEvent());
 	}
 	
+	public DynamicResolution getDynamicResolution() 
+	{
+		return this.dynamicResolution;
+	}
+
+	/**
+	 * Sets the controller of the drawing buffer resolution. 
+	 * The canvas is stretched to the panel size with CSS. 
+	 * Null disables the dynamic resolution.
+	 */
+	public void setDynamicResolution(DynamicResolution dynamicResolution)
+	{
+		this.dynamicResolution = dynamicResolution;
+
+		if(isLoaded)
+			setSize(this.width, this.height);
+	}
+
 	public void setBackground(int color)
 	{
 		setBackground(color, this.clearAlpha);
@@ -233,6 +261,9 @@ public class RenderingPanel extends LayoutPanel implements IsWidget, HasWidgets,
 	{
 		if(getAnimatedScene() != null)
 			getAnimatedScene().stop();
+
+		if(this.dynamicResolution != null)
+			this.dynamicResolution.reset();
 		
 		isLoaded = false;
 		super.onUnload();
@@ -267,6 +298,9 @@ public class RenderingPanel extends LayoutPanel implements IsWidget, HasWidgets,
 					
 					if(animationUpdateHandler != null)
 						animationUpdateHandler.onUpdate(duration);
+
+					if(dynamicResolution != null && dynamicResolution.update(Duration.currentTimeMillis()))
+						setSize(width, height);
 				}
 			});
 
@@ -305,6 +339,10 @@ public class RenderingPanel extends LayoutPanel implements IsWidget, HasWidgets,
 		return addHandler(Context3dErrorEvent.TYPE, handler);
 	}
 
+	public HandlerRegistration addResolutionScaleHandler(ResolutionScaleHandler handler) {
+		return addHandler(ResolutionScaleEvent.TYPE, handler);
+	}
+
 	protected <H extends EventHandler> HandlerRegistration addHandler(GwtEvent.Type<H> type, H handler) 
 	{
 		Log.debug("RenderingPanel: Registered event for class " + handler.getClass().getName());
@@ -315,6 +353,10 @@ public class RenderingPanel extends LayoutPanel implements IsWidget, HasWidgets,
 	 * Resizes the {@link Canvas3d} and {@link WebGLRenderer} viewport 
 	 * to (width, height), and also sets the viewport to fit that size, 
 	 * starting in (0, 0).
+	 * <p>
+	 * If the {@link DynamicResolution} is set, the drawing buffer 
+	 * and the viewport are scaled, and the canvas is stretched to 
+	 * (width, height) with CSS.
 	 * 
 	 * @param width  the new width of the {@link Canvas3d}.
 	 * @param height the new height of the {@link Canvas3d}.
@@ -323,8 +365,23 @@ public class RenderingPanel extends LayoutPanel implements IsWidget, HasWidgets,
 	{
 		Log.debug("RenderingPanel: set size: W=" + width + ", H=" + height); 
 
-		getCanvas().setSize(width, height);
-		getRenderer().setSize(width, height);
+		this.width = width;
+		this.height = height;
+
+		double scale = (this.dynamicResolution != null) ? this.dynamicResolution.getScale() : 1.0;
+		int bufferWidth  = Math.max(1, (int)Math.round(width * scale));
+		int bufferHeight = Math.max(1, (int)Math.round(height * scale));
+
+		getCanvas().getElement().getStyle().setWidth(width, Unit.PX);
+		getCanvas().getElement().getStyle().setHeight(height, Unit.PX);
+
+		boolean isScaled = bufferWidth != getCanvas().getWidth() || bufferHeight != getCanvas().getHeight();
+
+		getCanvas().setSize(bufferWidth, bufferHeight);
+		getRenderer().setSize(bufferWidth, bufferHeight);
+
+		if(this.dynamicResolution != null && isScaled)
+			handlerManager.fireEvent(new ResolutionScaleEvent(scale, bufferWidth, bufferHeight));
 	}
 	
 	private void updateBackground()
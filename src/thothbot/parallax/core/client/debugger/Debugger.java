@@ -39,6 +39,8 @@ public class Debugger extends FlowPanel
 	
 	private Label string1;
 	private Label string2;
+	private Label string3;
+	private Label string4;
 	
 	public Debugger(WebGlRendererInfo info)
 	{
@@ -46,7 +48,7 @@ public class Debugger extends FlowPanel
 		this.setStyleName("debug-panel");
 		this.info = info;
 		
-		this.graph = new VisualGraph();
+		this.graph = new VisualGraph(info.getProfiler());
 		this.add(graph);
 		
 		this.renderingInfo = new FlowPanel();
@@ -55,9 +57,13 @@ public class Debugger extends FlowPanel
 		
 		this.string1 = new Label();
 		this.string2 = new Label();
+		this.string3 = new Label();
+		this.string4 = new Label();
 		
 		this.renderingInfo.add(this.string1);
 		this.renderingInfo.add(this.string2);
+		this.renderingInfo.add(this.string3);
+		this.renderingInfo.add(this.string4);
 	}
 	
 	/**
@@ -79,5 +85,17 @@ public class Debugger extends FlowPanel
 				+", P:" + this.info.getMemory().programs
 				+", T:" + this.info.getMemory().textures
 		);
+
+		this.string3.setText(
+				"UP:" + this.info.getCalls().useProgram
+				+ ", BT:" + this.info.getCalls().bindTexture
+				+ ", BB:" + this.info.getCalls().bindBuffer
+				+ ", U:" + this.info.getCalls().uniform
+		);
+
+		this.string4.setText(
+				"Up:" + Math.round( ( this.info.getCalls().bufferUploadBytes + this.info.getCalls().textureUploadBytes ) / 1024 ) + "KB"
+				+ ", M:" + Math.round( ( this.info.getMemory().geometryBytes + this.info.getMemory().textureBytes ) / 1048576 ) + "MB"
+		);
 	}
 }
@@ -18,6 +18,7 @@
 
 package thothbot.parallax.core.client.debugger;
 
+import thothbot.parallax.core.client.renderers.FrameProfiler;
 import thothbot.parallax.core.resources.CoreResources;
 
 import com.google.gwt.core.client.Duration;
@@ -30,9 +31,17 @@ import com.google.gwt.user.client.ui.FocusWidget;
 public class VisualGraph extends FocusWidget implements MouseDownHandler
 {
 	private final DivElement container;
-	private VisualGraphAbstract visualGraphFps, visualGraphMs;
+	private VisualGraphAbstract visualGraphFps, visualGraphMs, visualGraphPhases;
 	
 	public VisualGraph()
+	{
+		this(null);
+	}
+
+	/**
+	 * @param profiler the profiler to show the frame phases, can be null
+	 */
+	public VisualGraph(FrameProfiler profiler)
 	{
 		container = Document.get().createElement("div").cast();
 		container.setId("graph");
@@ -48,6 +57,13 @@ public class VisualGraph extends FocusWidget implements MouseDownHandler
 		visualGraphMs = new VisualGraphMs();
 		visualGraphMs.hide();
 		container.appendChild(visualGraphMs.getContainer());
+
+		if(profiler != null)
+		{
+			visualGraphPhases = new VisualGraphPhases(profiler);
+			visualGraphPhases.hide();
+			container.appendChild(visualGraphPhases.getContainer());
+		}
 	}
 
 	@Override
@@ -59,9 +75,16 @@ public class VisualGraph extends FocusWidget implements MouseDownHandler
 			visualGraphFps.hide();
 			visualGraphMs.show();
 		}
+		else if(visualGraphMs.isVisible() && visualGraphPhases != null)
+		{
+			visualGraphMs.hide();
+			visualGraphPhases.show();
+		}
 		else
 		{
 			visualGraphMs.hide();
+			if(visualGraphPhases != null)
+				visualGraphPhases.hide();
 			visualGraphFps.show();
 		}
 	}
@@ -71,5 +94,7 @@ public class VisualGraph extends FocusWidget implements MouseDownHandler
 		double time = Duration.currentTimeMillis();
 		visualGraphFps.update(time);
 		visualGraphMs.update(time);
+		if(visualGraphPhases != null)
+			visualGraphPhases.update(time);
 	}
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ * 
+ * This file is part of Parallax project.
+ * 
+ * Parallax is free software: you can redistribute it and/or modify it 
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ * 
+ * Parallax is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution 
+ * 3.0 Unported License. for more details.
+ * 
+ * You should have received a copy of the the Creative Commons Attribution 
+ * 3.0 Unported License along with Parallax. 
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+
+package thothbot.parallax.core.client.debugger;
+
+import thothbot.parallax.core.client.renderers.FrameProfiler;
+
+import com.google.gwt.dom.client.DivElement;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Style.Unit;
+
+/**
+ * Stacked graph of the frame phase times, see {@link FrameProfiler}. 
+ * The top of the bar is the time of the application code.
+ */
+public final class VisualGraphPhases extends VisualGraphAbstract 
+{
+	// Frame time for the full height of the graph
+	private static final double MAX_MS = 50;
+	private static final int HEIGHT = 30;
+
+	private static final String OTHER_COLOR = "#888";
+	private static final String[] COLORS = {
+		"#f80", "#0f0", "#0ff", "#f0f", "#ff0", "#08f", "#f00", "#8f8"
+	};
+
+	private FrameProfiler profiler;
+	private int frames = 0;
+
+	public VisualGraphPhases(FrameProfiler profiler)
+	{
+		super();
+		this.profiler = profiler;
+		this.profiler.setEnabled(true);
+
+		textMin.setInnerText("0");
+		textMax.setInnerText((int)MAX_MS + "");
+	}
+
+	@Override
+	protected String getType() { return "phases"; }
+
+	@Override
+	protected void update(double time) 
+	{
+		if ( profiler.getFrameCount() == 0 )
+			return;
+
+		frames ++;
+
+		int phases = profiler.getPhases().size();
+		double frame = profiler.getFrameTime( 0 );
+
+		Element bar = (Element) graph.appendChild( graph.getFirstChild() );
+
+		// From the top: the empty part, the application code, the phases
+		while ( bar.getChildCount() < phases + 2 ) 
+		{
+			DivElement block = Document.get().createElement("div").cast();
+			int index = bar.getChildCount();
+
+			if ( index > 0 )
+				block.getStyle().setBackgroundColor( index == 1 ? OTHER_COLOR : COLORS[ ( index - 2 ) % COLORS.length ] );
+
+			bar.appendChild( block );
+		}
+
+		int used = 0, maxPhase = -1;
+		double phasesTime = 0;
+
+		for ( int i = 0; i < phases; i ++ ) 
+		{
+			double phase = profiler.getTime( i, 0 );
+			phasesTime += phase;
+			used += setHeight( bar, i + 2, phase, used );
+
+			if ( maxPhase < 0 || phase > profiler.getTime( maxPhase, 0 ) )
+				maxPhase = i;
+		}
+
+		used += setHeight( bar, 1, Math.max( 0, frame - phasesTime ), used );
+		((Element) bar.getChild( 0 )).getStyle().setHeight( HEIGHT - used, Unit.PX );
+
+		text.setInnerText( Math.round( frame ) + " MS" 
+				+ ( maxPhase >= 0 ? " " + profiler.getPhases().get( maxPhase ) : "" ) );
+
+		// Percentiles are not cheap, so the summary is updated rarely
+		if ( frames % 60 == 1 )
+			getContainer().setTitle( profiler.toString() );
+	}
+
+	private int setHeight( Element bar, int index, double ms, int used ) 
+	{
+		int height = Math.min( HEIGHT - used, (int)Math.round( ms / MAX_MS * HEIGHT ) );
+		((Element) bar.getChild( index )).getStyle().setHeight( height, Unit.PX );
+		return height;
+	}
+}
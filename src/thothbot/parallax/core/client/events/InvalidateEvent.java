@@ -0,0 +1,63 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ * 
+ * This file is part of Parallax project.
+ * 
+ * Parallax is free software: you can redistribute it and/or modify it 
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ * 
+ * Parallax is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution 
+ * 3.0 Unported License. for more details.
+ * 
+ * You should have received a copy of the the Creative Commons Attribution 
+ * 3.0 Unported License along with Parallax. 
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+
+package thothbot.parallax.core.client.events;
+
+import thothbot.parallax.core.client.AnimatedScene;
+
+import com.google.gwt.event.shared.GwtEvent;
+
+/**
+ * The event is called on the {@link HasEventBus#EVENT_BUS} when the scene 
+ * should be redrawn because of the change, which can not be found by 
+ * the {@link AnimatedScene} itself, for example a loaded texture image.
+ * 
+ * @author thothbot
+ *
+ */
+public class InvalidateEvent extends GwtEvent<InvalidateHandler>
+{
+	public static Type<InvalidateHandler> TYPE = new Type<InvalidateHandler>();
+
+	private Object object;
+
+    public InvalidateEvent(Object object) 
+    {
+    	this.object = object;
+    }
+
+    /**
+     * Gets the changed object.
+     */
+    public Object getObject() {
+    	return this.object;
+    }
+
+    @Override
+    public Type<InvalidateHandler> getAssociatedType() 
+    {
+        return TYPE;
+    }
+
+    @Override
+    protected void dispatch(InvalidateHandler handler) 
+    {
+        handler.onInvalidate(this);
+    }
+}
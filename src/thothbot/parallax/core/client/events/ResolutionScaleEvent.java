@@ -0,0 +1,82 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ * 
+ * This file is part of Parallax project.
+ * 
+ * Parallax is free software: you can redistribute it and/or modify it 
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ * 
+ * Parallax is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution 
+ * 3.0 Unported License. for more details.
+ * 
+ * You should have received a copy of the the Creative Commons Attribution 
+ * 3.0 Unported License along with Parallax. 
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+
+package thothbot.parallax.core.client.events;
+
+import thothbot.parallax.core.client.DynamicResolution;
+import thothbot.parallax.core.client.RenderingPanel;
+
+import com.google.gwt.event.shared.GwtEvent;
+
+/**
+ * The event is called when the {@link RenderingPanel} changes the size 
+ * of the drawing buffer while the {@link DynamicResolution} is used: 
+ * the resolution scale or the panel size was changed.
+ * 
+ * @author thothbot
+ *
+ */
+public class ResolutionScaleEvent extends GwtEvent<ResolutionScaleHandler>
+{
+	public static Type<ResolutionScaleHandler> TYPE = new Type<ResolutionScaleHandler>();
+
+	private double scale;
+	private int width;
+	private int height;
+
+    public ResolutionScaleEvent(double scale, int width, int height) 
+    {
+    	this.scale = scale;
+    	this.width = width;
+    	this.height = height;
+    }
+
+    /**
+     * Gets the new scale of the drawing buffer relative to the panel size.
+     */
+    public double getScale() {
+    	return this.scale;
+    }
+
+    /**
+     * Gets the new width of the drawing buffer.
+     */
+    public int getWidth() {
+    	return this.width;
+    }
+
+    /**
+     * Gets the new height of the drawing buffer.
+     */
+    public int getHeight() {
+    	return this.height;
+    }
+
+    @Override
+    public Type<ResolutionScaleHandler> getAssociatedType() 
+    {
+        return TYPE;
+    }
+
+    @Override
+    protected void dispatch(ResolutionScaleHandler handler) 
+    {
+        handler.onResolutionScale(this);
+    }
+}
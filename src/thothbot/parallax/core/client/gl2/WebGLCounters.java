@@ -0,0 +1,370 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ *
+ * This file is part of Parallax project.
+ *
+ * Parallax is free software: you can redistribute it and/or modify it
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ *
+ * Parallax is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution
+ * 3.0 Unported License. for more details.
+ *
+ * You should have received a copy of the the Creative Commons Attribution
+ * 3.0 Unported License along with Parallax.
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+
+package thothbot.parallax.core.client.gl2;
+
+import com.google.gwt.core.client.JavaScriptObject;
+
+/**
+ * Counters of the GL calls and of the data uploaded to the GPU for 
+ * the {@link WebGLRenderingContext}.
+ * <p>
+ * Like {@link WebGLState}, the counting layer is installed directly into the 
+ * context: the counted functions are replaced by the wrappers. If the counters 
+ * are installed before the state layer, only the calls which were passed 
+ * to the GL context are counted.
+ * <p>
+ * Besides the per-frame counters, the layer keeps the size of the data stored in 
+ * every buffer and texture, to get the totals of the used GPU memory. 
+ * The texture size is estimated from its format and type.
+ */
+public class WebGLCounters
+{
+	private JavaScriptObject counters;
+
+	/**
+	 * Installs the counting layer into the context. If the layer was already
+	 * installed the existing one is used.
+	 *
+	 * @param gl the {@link WebGLRenderingContext}
+	 */
+	public WebGLCounters(WebGLRenderingContext gl)
+	{
+		this.counters = install(gl);
+	}
+
+	/**
+	 * Gets the number of useProgram() calls since the last {@link #resetCounters()}.
+	 */
+	public native int getUseProgramCalls() /*-{
+		return this.@thothbot.parallax.core.client.gl2.WebGLCounters::counters.useProgram;
+	}-*/;
+
+	/**
+	 * Gets the number of bindTexture() calls since the last {@link #resetCounters()}.
+	 */
+	public native int getBindTextureCalls() /*-{
+		return this.@thothbot.parallax.core.client.gl2.WebGLCounters::counters.bindTexture;
+	}-*/;
+
+	/**
+	 * Gets the number of bindBuffer() calls since the last {@link #resetCounters()}.
+	 */
+	public native int getBindBufferCalls() /*-{
+		return this.@thothbot.parallax.core.client.gl2.WebGLCounters::counters.bindBuffer;
+	}-*/;
+
+	/**
+	 * Gets the number of uniform*() calls since the last {@link #resetCounters()}.
+	 */
+	public native int getUniformCalls() /*-{
+		return this.@thothbot.parallax.core.client.gl2.WebGLCounters::counters.uniform;
+	}-*/;
+
+	/**
+	 * Gets the number of bufferData() and bufferSubData() calls 
+	 * since the last {@link #resetCounters()}.
+	 */
+	public native int getBufferDataCalls() /*-{
+		return this.@thothbot.parallax.core.client.gl2.WebGLCounters::counters.bufferData;
+	}-*/;
+
+	/**
+	 * Gets the number of texImage2D(), texSubImage2D() and compressedTexImage2D() 
+	 * calls since the last {@link #resetCounters()}.
+	 */
+	public native int getTexImageCalls() /*-{
+		return this.@thothbot.parallax.core.client.gl2.WebGLCounters::counters.texImage;
+	}-*/;
+
+	/**
+	 * Gets the number of bytes uploaded to the buffers since the last {@link #resetCounters()}.
+	 */
+	public native double getBufferUploadBytes() /*-{
+		return this.@thothbot.parallax.core.client.gl2.WebGLCounters::counters.bufferUpload;
+	}-*/;
+
+	/**
+	 * Gets the number of bytes uploaded to the textures since the last {@link #resetCounters()}.
+	 */
+	public native double getTextureUploadBytes() /*-{
+		return this.@thothbot.parallax.core.client.gl2.WebGLCounters::counters.textureUpload;
+	}-*/;
+
+	public native void resetCounters() /*-{
+		var counters = this.@thothbot.parallax.core.client.gl2.WebGLCounters::counters;
+		counters.useProgram = 0;
+		counters.bindTexture = 0;
+		counters.bindBuffer = 0;
+		counters.uniform = 0;
+		counters.bufferData = 0;
+		counters.texImage = 0;
+		counters.bufferUpload = 0;
+		counters.textureUpload = 0;
+	}-*/;
+
+	/**
+	 * Gets the total size of the data in all buffers, in bytes.
+	 */
+	public native double getBufferMemory() /*-{
+		return this.@thothbot.parallax.core.client.gl2.WebGLCounters::counters.bufferMemory;
+	}-*/;
+
+	/**
+	 * Gets the total estimated size of all textures, in bytes.
+	 */
+	public native double getTextureMemory() /*-{
+		return this.@thothbot.parallax.core.client.gl2.WebGLCounters::counters.textureMemory;
+	}-*/;
+
+	/**
+	 * Gets the size of the data in the buffer, in bytes.
+	 */
+	public static native double getBufferMemory(WebGLBuffer buffer) /*-{
+		return buffer && buffer.__parallaxBytes || 0;
+	}-*/;
+
+	/**
+	 * Gets the estimated size of the texture with all its levels and faces, in bytes.
+	 */
+	public static native double getTextureMemory(WebGLTexture texture) /*-{
+		return texture && texture.__parallaxBytes || 0;
+	}-*/;
+
+	private static native JavaScriptObject install(WebGLRenderingContext gl) /*-{
+		if (gl.__parallaxCounters)
+			return gl.__parallaxCounters;
+
+		var TEXTURE0 = 0x84C0, TEXTURE_CUBE_MAP = 0x8513, 
+			TEXTURE_CUBE_MAP_POSITIVE_X = 0x8515, TEXTURE_CUBE_MAP_NEGATIVE_Z = 0x851A;
+
+		var counters = {
+			useProgram: 0,
+			bindTexture: 0,
+			bindBuffer: 0,
+			uniform: 0,
+			bufferData: 0,
+			texImage: 0,
+			bufferUpload: 0,
+			textureUpload: 0,
+
+			bufferMemory: 0,
+			textureMemory: 0
+		};
+
+		var count = function(name, counter) {
+			var fn = gl[name];
+			gl[name] = function() {
+				counters[counter]++;
+				return fn.apply(gl, arguments);
+			};
+		};
+
+		count("useProgram", "useProgram");
+
+		var uniforms = [ "uniform1f", "uniform2f", "uniform3f", "uniform4f",
+			"uniform1fv", "uniform2fv", "uniform3fv", "uniform4fv",
+			"uniform1i", "uniform2i", "uniform3i", "uniform4i",
+			"uniform1iv", "uniform2iv", "uniform3iv", "uniform4iv",
+			"uniformMatrix2fv", "uniformMatrix3fv", "uniformMatrix4fv" ];
+
+		for (var i = 0; i < uniforms.length; i++)
+			count(uniforms[i], "uniform");
+
+		// Buffers
+
+		var buffers = {};
+
+		var setBufferMemory = function(buffer, bytes) {
+			if (!buffer) return;
+
+			counters.bufferMemory += bytes - (buffer.__parallaxBytes || 0);
+			buffer.__parallaxBytes = bytes;
+		};
+
+		var bindBuffer = gl.bindBuffer;
+		gl.bindBuffer = function(target, buffer) {
+			counters.bindBuffer++;
+			buffers[target] = buffer;
+			return bindBuffer.apply(gl, arguments);
+		};
+
+		var bufferData = gl.bufferData;
+		gl.bufferData = function(target, data, usage) {
+			var bytes = typeof data === "number" ? data : (data ? data.byteLength : 0);
+
+			counters.bufferData++;
+			if (typeof data !== "number")
+				counters.bufferUpload += bytes;
+
+			setBufferMemory(buffers[target], bytes);
+			return bufferData.apply(gl, arguments);
+		};
+
+		var bufferSubData = gl.bufferSubData;
+		gl.bufferSubData = function(target, offset, data) {
+			counters.bufferData++;
+			counters.bufferUpload += data ? data.byteLength : 0;
+			return bufferSubData.apply(gl, arguments);
+		};
+
+		var deleteBuffer = gl.deleteBuffer;
+		gl.deleteBuffer = function(buffer) {
+			setBufferMemory(buffer, 0);
+			for (var target in buffers)
+				if (buffers[target] === buffer) buffers[target] = null;
+
+			return deleteBuffer.apply(gl, arguments);
+		};
+
+		// Textures
+
+		var unit = TEXTURE0, textures = {};
+
+		var boundTexture = function(target) {
+			if (target >= TEXTURE_CUBE_MAP_POSITIVE_X && target <= TEXTURE_CUBE_MAP_NEGATIVE_Z)
+				target = TEXTURE_CUBE_MAP;
+
+			return textures[unit + "_" + target];
+		};
+
+		var setTextureMemory = function(target, level, bytes) {
+			var texture = boundTexture(target);
+			if (!texture) return;
+
+			var levels = texture.__parallaxLevels || (texture.__parallaxLevels = {});
+			var key = target + "_" + level;
+			var change = bytes - (levels[key] || 0);
+
+			levels[key] = bytes;
+			texture.__parallaxBytes = (texture.__parallaxBytes || 0) + change;
+			counters.textureMemory += change;
+		};
+
+		var pixelBytes = function(format, type) {
+			// RGBA, RGB, LUMINANCE_ALPHA, the others have one channel
+			var channels = format === 0x1908 ? 4 : format === 0x1907 ? 3 : format === 0x190A ? 2 : 1;
+
+			switch (type) {
+				case 0x1406: return channels * 4; // FLOAT
+				case 0x8D61: return channels * 2; // HALF_FLOAT_OES
+				case 0x8363: case 0x8033: case 0x8034: return 2; // packed 16-bit types
+				default: return channels;
+			}
+		};
+
+		var sourceSize = function(source) {
+			if (!source) return 0;
+
+			var width = source.videoWidth || source.naturalWidth || source.width;
+			var height = source.videoHeight || source.naturalHeight || source.height;
+			return width * height;
+		};
+
+		var activeTexture = gl.activeTexture;
+		gl.activeTexture = function(texture) {
+			unit = texture;
+			return activeTexture.apply(gl, arguments);
+		};
+
+		var bindTexture = gl.bindTexture;
+		gl.bindTexture = function(target, texture) {
+			counters.bindTexture++;
+			textures[unit + "_" + target] = texture;
+			return bindTexture.apply(gl, arguments);
+		};
+
+		// texImage2D(target, level, internalformat, width, height, border, format, type, pixels)
+		// texImage2D(target, level, internalformat, format, type, source)
+		var texImage2D = gl.texImage2D;
+		gl.texImage2D = function(target, level) {
+			var a = arguments, bytes, upload;
+
+			if (a.length > 6) {
+				bytes = a[3] * a[4] * pixelBytes(a[6], a[7]);
+				upload = a[8] ? bytes : 0;
+			} else {
+				bytes = upload = sourceSize(a[5]) * pixelBytes(a[3], a[4]);
+			}
+
+			counters.texImage++;
+			counters.textureUpload += upload;
+			setTextureMemory(target, level, bytes);
+			return texImage2D.apply(gl, a);
+		};
+
+		// texSubImage2D(target, level, x, y, width, height, format, type, pixels)
+		// texSubImage2D(target, level, x, y, format, type, source)
+		var texSubImage2D = gl.texSubImage2D;
+		gl.texSubImage2D = function() {
+			var a = arguments;
+
+			counters.texImage++;
+			counters.textureUpload += a.length > 7 
+				? a[4] * a[5] * pixelBytes(a[6], a[7]) 
+				: sourceSize(a[6]) * pixelBytes(a[4], a[5]);
+
+			return texSubImage2D.apply(gl, a);
+		};
+
+		var compressedTexImage2D = gl.compressedTexImage2D;
+		gl.compressedTexImage2D = function(target, level, internalformat, width, height, border, data) {
+			var bytes = data ? data.byteLength : 0;
+
+			counters.texImage++;
+			counters.textureUpload += bytes;
+			setTextureMemory(target, level, bytes);
+			return compressedTexImage2D.apply(gl, arguments);
+		};
+
+		// The mipmap levels take one third of the base level
+		var generateMipmap = gl.generateMipmap;
+		gl.generateMipmap = function(target) {
+			var texture = boundTexture(target);
+
+			if (texture && texture.__parallaxLevels) {
+				var faces = target === TEXTURE_CUBE_MAP ? 6 : 1;
+				for (var face = 0; face < faces; face++) {
+					var faceTarget = faces > 1 ? TEXTURE_CUBE_MAP_POSITIVE_X + face : target;
+					setTextureMemory(faceTarget, "mipmaps", (texture.__parallaxLevels[faceTarget + "_0"] || 0) / 3);
+				}
+			}
+
+			return generateMipmap.apply(gl, arguments);
+		};
+
+		var deleteTexture = gl.deleteTexture;
+		gl.deleteTexture = function(texture) {
+			if (texture && texture.__parallaxBytes) {
+				counters.textureMemory -= texture.__parallaxBytes;
+				texture.__parallaxBytes = 0;
+				texture.__parallaxLevels = {};
+			}
+
+			for (var key in textures)
+				if (textures[key] === texture) textures[key] = null;
+
+			return deleteTexture.apply(gl, arguments);
+		};
+
+		gl.__parallaxCounters = counters;
+
+		return counters;
+	}-*/;
+}
@@ -0,0 +1,390 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ *
+ * This file is part of Parallax project.
+ *
+ * Parallax is free software: you can redistribute it and/or modify it
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ *
+ * Parallax is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution
+ * 3.0 Unported License. for more details.
+ *
+ * You should have received a copy of the the Creative Commons Attribution
+ * 3.0 Unported License along with Parallax.
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+package thothbot.parallax.core.client.gl2;
+
+import com.google.gwt.core.client.JavaScriptObject;
+
+/**
+ * Shadow copy of the GL state for the {@link WebGLRenderingContext}.
+ * <p>
+ * {@link WebGLRenderingContext} is a native object, so the state layer is
+ * installed directly into it: the state-setting functions of the context
+ * are replaced by the wrappers which remember the current
+ * state and drop calls which would not change anything. This way
+ * every caller (renderer, textures, geometries, plugins) goes through the
+ * same cache and it can not get out of sync.
+ * <p>
+ * Tracked state:
+ * <ul>
+ * <li>buffer, framebuffer and renderbuffer bindings;</li>
+ * <li>active texture unit and bound textures per unit and target;</li>
+ * <li>current program;</li>
+ * <li>enabled capabilities;</li>
+ * <li>blend equation and function, depth function and mask,
+ * cull face and front face;</li>
+ * <li>viewport;</li>
+ * <li>vertex attribute arrays and pointers.</li>
+ * </ul>
+ * The state which is not known yet (for example the state set before
+ * the layer was installed) is treated as different from any value.
+ */
+public class WebGLState
+{
+	private WebGLRenderingContext gl;
+	private JavaScriptObject state;
+
+	/**
+	 * Installs the state layer into the context. If the layer was already
+	 * installed the existing one is used.
+	 *
+	 * @param gl the {@link WebGLRenderingContext}
+	 */
+	public WebGLState(WebGLRenderingContext gl)
+	{
+		this.gl = gl;
+		this.state = install(gl);
+	}
+
+	public WebGLRenderingContext getGL()
+	{
+		return this.gl;
+	}
+
+	/**
+	 * Gets how many state-setting calls were passed to the GL context
+	 * since the last {@link #resetCounters()}.
+	 */
+	public native int getIssuedCalls() /*-{
+		return this.@thothbot.parallax.core.client.gl2.WebGLState::state.issued;
+	}-*/;
+
+	/**
+	 * Gets how many state-setting calls were dropped as redundant
+	 * since the last {@link #resetCounters()}.
+	 */
+	public native int getSkippedCalls() /*-{
+		return this.@thothbot.parallax.core.client.gl2.WebGLState::state.skipped;
+	}-*/;
+
+	public native void resetCounters() /*-{
+		var state = this.@thothbot.parallax.core.client.gl2.WebGLState::state;
+		state.issued = 0;
+		state.skipped = 0;
+	}-*/;
+
+	/**
+	 * Gets {@link #setEnabled(boolean)} flag.
+	 */
+	public native boolean isEnabled() /*-{
+		return this.@thothbot.parallax.core.client.gl2.WebGLState::state.enabled;
+	}-*/;
+
+	/**
+	 * Defines whether redundant calls should be dropped.
+	 * When disabled, all calls are passed to the context, but the state
+	 * and the counters are still tracked. Default is true.
+	 */
+	public native void setEnabled(boolean enabled) /*-{
+		this.@thothbot.parallax.core.client.gl2.WebGLState::state.enabled = enabled;
+	}-*/;
+
+	/**
+	 * Forgets all tracked state. Should be called when the context state
+	 * could be changed outside of the layer, for example after the context
+	 * was restored.
+	 */
+	public native void invalidate() /*-{
+		this.@thothbot.parallax.core.client.gl2.WebGLState::state.invalidate();
+	}-*/;
+
+	/**
+	 * Forgets the element array buffer binding and the vertex attributes
+	 * state. Binding a vertex array object switches all of them at once.
+	 */
+	public native void invalidateVertexAttributes() /*-{
+		this.@thothbot.parallax.core.client.gl2.WebGLState::state.invalidateVertexAttributes();
+	}-*/;
+
+	private static native JavaScriptObject install(WebGLRenderingContext gl) /*-{
+		if (gl.__parallaxState)
+			return gl.__parallaxState;
+
+		var ARRAY_BUFFER = 0x8892, ELEMENT_ARRAY_BUFFER = 0x8893;
+
+		var state = {
+			enabled: true,
+			issued: 0,
+			skipped: 0,
+
+			invalidate: function() {
+				this.buffers = {};
+				this.framebuffers = {};
+				this.renderbuffers = {};
+				this.activeTexture = undefined;
+				this.textures = {};
+				this.program = undefined;
+				this.caps = {};
+				this.blend = [];
+				this.depthFunc = undefined;
+				this.depthMask = undefined;
+				this.cullFace = undefined;
+				this.frontFace = undefined;
+				this.viewport = [];
+				this.attribs = {};
+				this.attribsEnabled = {};
+			},
+
+			invalidateVertexAttributes: function() {
+				delete this.buffers[ELEMENT_ARRAY_BUFFER];
+				this.attribs = {};
+				this.attribsEnabled = {};
+			}
+		};
+
+		state.invalidate();
+
+		var skip = function() {
+			if (!state.enabled)
+				return false;
+
+			state.skipped++;
+			return true;
+		};
+
+		var call = function(fn, args) {
+			state.issued++;
+			return fn.apply(gl, args);
+		};
+
+		// Bindings
+
+		var bind = function(name, cacheName) {
+			var fn = gl[name];
+			gl[name] = function(target, object) {
+				var cache = state[cacheName];
+				if (target in cache && cache[target] === object && skip()) return;
+
+				cache[target] = object;
+				call(fn, arguments);
+			};
+		};
+
+		bind("bindBuffer", "buffers");
+		bind("bindFramebuffer", "framebuffers");
+		bind("bindRenderbuffer", "renderbuffers");
+
+		var unbind = function(name, cacheName) {
+			var fn = gl[name];
+			gl[name] = function(object) {
+				var cache = state[cacheName];
+				for (var target in cache)
+					if (cache[target] === object) cache[target] = null;
+
+				return fn.apply(gl, arguments);
+			};
+		};
+
+		unbind("deleteBuffer", "buffers");
+		unbind("deleteFramebuffer", "framebuffers");
+		unbind("deleteRenderbuffer", "renderbuffers");
+
+		// Textures
+
+		var activeTexture = gl.activeTexture;
+		gl.activeTexture = function(unit) {
+			if (state.activeTexture === unit && skip()) return;
+
+			state.activeTexture = unit;
+			call(activeTexture, arguments);
+		};
+
+		var bindTexture = gl.bindTexture;
+		gl.bindTexture = function(target, texture) {
+			if (state.activeTexture === undefined) {
+				call(bindTexture, arguments);
+				return;
+			}
+
+			var unit = state.textures[state.activeTexture];
+			if (!unit)
+				unit = state.textures[state.activeTexture] = {};
+
+			if (target in unit && unit[target] === texture && skip()) return;
+
+			unit[target] = texture;
+			call(bindTexture, arguments);
+		};
+
+		var deleteTexture = gl.deleteTexture;
+		gl.deleteTexture = function(texture) {
+			for (var u in state.textures) {
+				var unit = state.textures[u];
+				for (var target in unit)
+					if (unit[target] === texture) unit[target] = null;
+			}
+
+			return deleteTexture.apply(gl, arguments);
+		};
+
+		// Program
+
+		var useProgram = gl.useProgram;
+		gl.useProgram = function(program) {
+			if (state.program === program && skip()) return;
+
+			state.program = program;
+			call(useProgram, arguments);
+		};
+
+		// Capabilities
+
+		var enable = gl.enable;
+		gl.enable = function(cap) {
+			if (state.caps[cap] === true && skip()) return;
+
+			state.caps[cap] = true;
+			call(enable, arguments);
+		};
+
+		var disable = gl.disable;
+		gl.disable = function(cap) {
+			if (state.caps[cap] === false && skip()) return;
+
+			state.caps[cap] = false;
+			call(disable, arguments);
+		};
+
+		// Blending: [equationRGB, equationAlpha, srcRGB, dstRGB, srcAlpha, dstAlpha]
+
+		var blendState = function(fn, offset, values) {
+			var blend = state.blend, same = true;
+			for (var i = 0; i < values.length; i++)
+				if (blend[offset + i] !== values[i]) same = false;
+
+			if (same && skip()) return;
+
+			for (var i = 0; i < values.length; i++)
+				blend[offset + i] = values[i];
+
+			call(fn, values);
+		};
+
+		var blendEquation = gl.blendEquation;
+		gl.blendEquation = function(mode) {
+			var blend = state.blend;
+			if (blend[0] === mode && blend[1] === mode && skip()) return;
+
+			blend[0] = blend[1] = mode;
+			call(blendEquation, arguments);
+		};
+
+		var blendEquationSeparate = gl.blendEquationSeparate;
+		gl.blendEquationSeparate = function(modeRGB, modeAlpha) {
+			blendState(blendEquationSeparate, 0, arguments);
+		};
+
+		var blendFunc = gl.blendFunc;
+		gl.blendFunc = function(src, dst) {
+			var blend = state.blend;
+			if (blend[2] === src && blend[3] === dst && blend[4] === src && blend[5] === dst && skip()) return;
+
+			blend[2] = blend[4] = src;
+			blend[3] = blend[5] = dst;
+			call(blendFunc, arguments);
+		};
+
+		var blendFuncSeparate = gl.blendFuncSeparate;
+		gl.blendFuncSeparate = function(srcRGB, dstRGB, srcAlpha, dstAlpha) {
+			blendState(blendFuncSeparate, 2, arguments);
+		};
+
+		// Single value state
+
+		var single = function(name) {
+			var fn = gl[name];
+			gl[name] = function(value) {
+				if (state[name] === value && skip()) return;
+
+				state[name] = value;
+				call(fn, arguments);
+			};
+		};
+
+		single("depthFunc");
+		single("depthMask");
+		single("cullFace");
+		single("frontFace");
+
+		// Viewport
+
+		var viewport = gl.viewport;
+		gl.viewport = function(x, y, width, height) {
+			var v = state.viewport;
+			if (v[0] === x && v[1] === y && v[2] === width && v[3] === height && skip()) return;
+
+			v[0] = x; v[1] = y; v[2] = width; v[3] = height;
+			call(viewport, arguments);
+		};
+
+		// Vertex attributes
+
+		var enableVertexAttribArray = gl.enableVertexAttribArray;
+		gl.enableVertexAttribArray = function(index) {
+			if (state.attribsEnabled[index] === true && skip()) return;
+
+			state.attribsEnabled[index] = true;
+			call(enableVertexAttribArray, arguments);
+		};
+
+		var disableVertexAttribArray = gl.disableVertexAttribArray;
+		gl.disableVertexAttribArray = function(index) {
+			if (state.attribsEnabled[index] === false && skip()) return;
+
+			state.attribsEnabled[index] = false;
+			call(disableVertexAttribArray, arguments);
+		};
+
+		var vertexAttribPointer = gl.vertexAttribPointer;
+		gl.vertexAttribPointer = function(index, size, type, normalized, stride, offset) {
+			if (!(ARRAY_BUFFER in state.buffers)) {
+				delete state.attribs[index];
+				call(vertexAttribPointer, arguments);
+				return;
+			}
+
+			var buffer = state.buffers[ARRAY_BUFFER];
+			var a = state.attribs[index];
+
+			if (a && a.buffer === buffer && a.size === size && a.type === type
+					&& a.normalized === normalized && a.stride === stride && a.offset === offset && skip()) return;
+
+			if (!a)
+				a = state.attribs[index] = {};
+
+			a.buffer = buffer; a.size = size; a.type = type;
+			a.normalized = normalized; a.stride = stride; a.offset = offset;
+
+			call(vertexAttribPointer, arguments);
+		};
+
+		gl.__parallaxState = state;
+
+		return state;
+	}-*/;
+}
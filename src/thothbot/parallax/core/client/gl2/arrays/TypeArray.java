@@ -63,7 +63,22 @@ public abstract class TypeArray extends ArrayBufferView {
   public final native int getLength() /*-{
   	return this.length;
   }-*/;
+
+  /**
+   * Gets the size of one element in bytes.
+   */
+  public final native int getBytesPerElement() /*-{
+  	return this.BYTES_PER_ELEMENT;
+  }-*/;
   
+  /**
+   * Gets a new view of the elements from begin (inclusive) to end (exclusive). 
+   * The view shares the {@link ArrayBuffer} with this array, nothing is copied.
+   */
+  public final native TypeArray subarray(int begin, int end) /*-{
+	return this.subarray(begin, end);
+  }-*/;
+
   public final native int reverse() /*-{
 	return this.reverse;
   }-*/;
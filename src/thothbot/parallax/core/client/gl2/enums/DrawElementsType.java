@@ -23,7 +23,8 @@ import thothbot.parallax.core.client.gl2.WebGLConstants;
 public enum DrawElementsType implements GLEnum
 {
 	UNSIGNED_BYTE(WebGLConstants.UNSIGNED_BYTE),
-	UNSIGNED_SHORT(WebGLConstants.UNSIGNED_SHORT);
+	UNSIGNED_SHORT(WebGLConstants.UNSIGNED_SHORT),
+	UNSIGNED_INT(WebGLConstants.UNSIGNED_INT);
 
 	private final int value;
 
@@ -25,7 +25,11 @@ public enum PixelType implements GLEnum
 	UNSIGNED_BYTE(WebGLConstants.UNSIGNED_BYTE),
 	UNSIGNED_SHORT_4_4_4_4(WebGLConstants.UNSIGNED_SHORT_4_4_4_4),
 	UNSIGNED_SHORT_5_5_5_1(WebGLConstants.UNSIGNED_SHORT_5_5_5_1),
-	UNSIGNED_SHORT_5_6_5(WebGLConstants.UNSIGNED_SHORT_5_6_5);
+	UNSIGNED_SHORT_5_6_5(WebGLConstants.UNSIGNED_SHORT_5_6_5),
+	// OES_texture_float
+	FLOAT(WebGLConstants.FLOAT),
+	// OES_texture_half_float
+	HALF_FLOAT_OES(0x8D61);
 
 	private final int value;
 
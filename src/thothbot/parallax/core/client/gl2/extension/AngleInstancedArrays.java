@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ * 
+ * This file is part of Parallax project.
+ * 
+ * Parallax is free software: you can redistribute it and/or modify it 
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ * 
+ * Parallax is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution 
+ * 3.0 Unported License. for more details.
+ * 
+ * You should have received a copy of the the Creative Commons Attribution 
+ * 3.0 Unported License along with Parallax. 
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+package thothbot.parallax.core.client.gl2.extension;
+
+import thothbot.parallax.core.client.gl2.WebGLExtension;
+import thothbot.parallax.core.client.gl2.enums.BeginMode;
+import thothbot.parallax.core.client.gl2.enums.DrawElementsType;
+
+/**
+ * The ANGLE_instanced_arrays extension: draws the same geometry 
+ * many times in one call, some vertex attributes can advance once 
+ * per instance instead of once per vertex.
+ */
+public class AngleInstancedArrays extends WebGLExtension 
+{
+	public static final int VERTEX_ATTRIB_ARRAY_DIVISOR_ANGLE = 0x88FE;
+
+	protected AngleInstancedArrays() {
+
+	}
+
+	/**
+	 * Renders primitives from array data, like drawArrays, 
+	 * for <code>primcount</code> instances.
+	 */
+	public final void drawArraysInstancedANGLE(BeginMode mode, int first, int count, int primcount) {
+		drawArraysInstancedANGLE(mode.getValue(), first, count, primcount);
+	}
+
+	private final native void drawArraysInstancedANGLE(int mode, int first, int count, int primcount) /*-{
+		this.drawArraysInstancedANGLE(mode, first, count, primcount);
+	}-*/;
+
+	/**
+	 * Renders primitives from the bound element array, like drawElements, 
+	 * for <code>primcount</code> instances.
+	 */
+	public final void drawElementsInstancedANGLE(BeginMode mode, int count, DrawElementsType type, int offset, int primcount) {
+		drawElementsInstancedANGLE(mode.getValue(), count, type.getValue(), offset, primcount);
+	}
+
+	private final native void drawElementsInstancedANGLE(int mode, int count, int type, int offset, int primcount) /*-{
+		this.drawElementsInstancedANGLE(mode, count, type, offset, primcount);
+	}-*/;
+
+	/**
+	 * Sets how many instances are drawn before the vertex attribute
+	 * advances. 0 means the attribute advances once per vertex.
+	 */
+	public final native void vertexAttribDivisorANGLE(int index, int divisor) /*-{
+		this.vertexAttribDivisorANGLE(index, divisor);
+	}-*/;
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ * 
+ * This file is part of Parallax project.
+ * 
+ * Parallax is free software: you can redistribute it and/or modify it 
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ * 
+ * Parallax is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution 
+ * 3.0 Unported License. for more details.
+ * 
+ * You should have received a copy of the the Creative Commons Attribution 
+ * 3.0 Unported License along with Parallax. 
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+
+package thothbot.parallax.core.client.gl2.extension;
+
+import thothbot.parallax.core.client.gl2.WebGLExtension;
+
+import com.google.gwt.core.client.JavaScriptObject;
+
+/**
+ * The OES_vertex_array_object extension: vertex array objects keep 
+ * all vertex attribute bindings (enabled arrays, pointers, divisors) and 
+ * the element array buffer binding, so they can be switched with 
+ * one call.
+ */
+public class OESVertexArrayObject extends WebGLExtension 
+{
+	public static final int VERTEX_ARRAY_BINDING_OES = 0x85B5;
+
+	/**
+	 * The vertex array object.
+	 */
+	public static final class WebGLVertexArrayObjectOES extends JavaScriptObject 
+	{
+		protected WebGLVertexArrayObjectOES() {
+
+		}
+	}
+
+	protected OESVertexArrayObject() {
+
+	}
+
+	public final native WebGLVertexArrayObjectOES createVertexArrayOES() /*-{
+		return this.createVertexArrayOES();
+	}-*/;
+
+	public final native void deleteVertexArrayOES(WebGLVertexArrayObjectOES arrayObject) /*-{
+		this.deleteVertexArrayOES(arrayObject);
+	}-*/;
+
+	public final native boolean isVertexArrayOES(WebGLVertexArrayObjectOES arrayObject) /*-{
+		return this.isVertexArrayOES(arrayObject);
+	}-*/;
+
+	/**
+	 * Binds the vertex array object, null binds the default one.
+	 */
+	public final native void bindVertexArrayOES(WebGLVertexArrayObjectOES arrayObject) /*-{
+		this.bindVertexArrayOES(arrayObject);
+	}-*/;
+}
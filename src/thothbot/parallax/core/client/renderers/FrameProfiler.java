@@ -0,0 +1,373 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ * 
+ * This file is part of Parallax project.
+ * 
+ * Parallax is free software: you can redistribute it and/or modify it 
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ * 
+ * Parallax is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution 
+ * 3.0 Unported License. for more details.
+ * 
+ * You should have received a copy of the the Creative Commons Attribution 
+ * 3.0 Unported License along with Parallax. 
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+
+package thothbot.parallax.core.client.renderers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import thothbot.parallax.core.shared.core.FastMap;
+
+import com.google.gwt.core.client.GWT;
+
+/**
+ * Measures how the frame time is spent in the named phases: the renderer 
+ * and plugin phases, postprocessing passes, etc. Used in {@link WebGlRendererInfo}.
+ * <p>
+ * The phase is measured between {@link #begin(String)} and {@link #end()}. 
+ * The phases can be nested; the time of the nested phases is not counted in the 
+ * outer one, so the phase times of the frame can be stacked. The frame is measured 
+ * between {@link #beginFrame()} and {@link #endFrame()}, and the frame time which 
+ * is not spent in any phase is the time of the application code.
+ * <p>
+ * The last {@link #getCapacity()} frames are kept to get the percentiles. 
+ * The profiler is disabled by default.
+ */
+public class FrameProfiler
+{
+	public static final String PHASE_UPDATE_MATRIX_WORLD = "updateMatrixWorld";
+	public static final String PHASE_PROJECT_OBJECT = "projectObject";
+	public static final String PHASE_SORT = "sort";
+	public static final String PHASE_DRAW = "draw";
+	public static final String PHASE_TEXTURE_UPLOAD = "textureUpload";
+
+	/**
+	 * Default number of the kept frames.
+	 */
+	public static final int DEFAULT_CAPACITY = 120;
+
+	private static final int MAX_DEPTH = 16;
+
+	private boolean enabled = false;
+	private int capacity;
+
+	private List<String> phases = new ArrayList<String>();
+	private Map<String, Integer> phaseIds = GWT.isScript() ? 
+			new FastMap<Integer>() : new HashMap<String, Integer>();
+
+	// The last frames in the ring, per phase and the whole frame
+	private List<double[]> history = new ArrayList<double[]>();
+	private double[] frameHistory;
+	private int position = 0;
+	private int frames = 0;
+
+	// Phase times of the current frame
+	private double[] current = new double[ 8 ];
+	private double frameStart = -1;
+
+	// Open phases
+	private int[] stackIds = new int[ MAX_DEPTH ];
+	private double[] stackStart = new double[ MAX_DEPTH ];
+	private double[] stackChildren = new double[ MAX_DEPTH ];
+	private int depth = 0;
+
+	private double[] sorted;
+
+	public FrameProfiler() 
+	{
+		this( DEFAULT_CAPACITY );
+	}
+
+	/**
+	 * @param capacity the number of the kept frames
+	 */
+	public FrameProfiler(int capacity) 
+	{
+		this.capacity = capacity;
+		this.frameHistory = new double[ capacity ];
+		this.sorted = new double[ capacity ];
+	}
+
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	/**
+	 * Enables the measurement. When disabled, the profiler calls do nothing.
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * Gets the names of the phases which were measured.
+	 */
+	public List<String> getPhases() {
+		return Collections.unmodifiableList( this.phases );
+	}
+
+	/**
+	 * Gets the index of the phase in {@link #getPhases()}, or -1.
+	 */
+	public int indexOf(String phase) {
+		Integer id = this.phaseIds.get( phase );
+		return id != null ? id : -1;
+	}
+
+	/**
+	 * Gets the number of the kept frames.
+	 */
+	public int getFrameCount() {
+		return Math.min( this.frames, this.capacity );
+	}
+
+	/**
+	 * Starts the frame.
+	 */
+	public void beginFrame() 
+	{
+		if ( ! this.enabled )
+			return;
+
+		this.frameStart = now();
+		this.depth = 0;
+		Arrays.fill( this.current, 0 );
+	}
+
+	/**
+	 * Finishes the frame and puts its times to the history. 
+	 * The phases which are still open are finished too.
+	 */
+	public void endFrame() 
+	{
+		if ( ! this.enabled || this.frameStart < 0 )
+			return;
+
+		while ( this.depth > 0 )
+			end();
+
+		for ( int i = 0, il = this.phases.size(); i < il; i ++ )
+			this.history.get( i )[ this.position ] = this.current[ i ];
+
+		this.frameHistory[ this.position ] = now() - this.frameStart;
+
+		this.position = ( this.position + 1 ) % this.capacity;
+		this.frames ++;
+		this.frameStart = -1;
+	}
+
+	/**
+	 * Starts the phase. Should be paired with {@link #end()}.
+	 */
+	public void begin(String phase) 
+	{
+		if ( ! this.enabled )
+			return;
+
+		if ( this.depth >= MAX_DEPTH ) 
+		{
+			this.depth ++;
+			return;
+		}
+
+		this.stackIds[ this.depth ] = getPhaseId( phase );
+		this.stackStart[ this.depth ] = now();
+		this.stackChildren[ this.depth ] = 0;
+		this.depth ++;
+	}
+
+	/**
+	 * Finishes the last started phase.
+	 */
+	public void end() 
+	{
+		if ( ! this.enabled || this.depth == 0 )
+			return;
+
+		this.depth --;
+
+		if ( this.depth >= MAX_DEPTH )
+			return;
+
+		double time = now() - this.stackStart[ this.depth ];
+		this.current[ this.stackIds[ this.depth ] ] += time - this.stackChildren[ this.depth ];
+
+		if ( this.depth > 0 )
+			this.stackChildren[ this.depth - 1 ] += time;
+	}
+
+	/**
+	 * Gets the time of the phase in the kept frame, in milliseconds.
+	 * 
+	 * @param phase the index of the phase, see {@link #indexOf(String)}
+	 * @param frame 0 for the last finished frame, 1 for the previous one, etc.
+	 */
+	public double getTime(int phase, int frame) 
+	{
+		return this.history.get( phase )[ getSlot( frame ) ];
+	}
+
+	/**
+	 * Gets the time of the kept frame, in milliseconds.
+	 * 
+	 * @param frame 0 for the last finished frame, 1 for the previous one, etc.
+	 */
+	public double getFrameTime(int frame) 
+	{
+		return this.frameHistory[ getSlot( frame ) ];
+	}
+
+	/**
+	 * Gets the percentile of the phase time over the kept frames.
+	 * 
+	 * @param phase      the index of the phase, see {@link #indexOf(String)}
+	 * @param percentile from 0 to 100, for example 50 for the median
+	 */
+	public double getPercentile(int phase, double percentile) 
+	{
+		return percentile( this.history.get( phase ), percentile );
+	}
+
+	/**
+	 * Gets the percentile of the frame time over the kept frames.
+	 * 
+	 * @param percentile from 0 to 100, for example 50 for the median
+	 */
+	public double getFramePercentile(double percentile) 
+	{
+		return percentile( this.frameHistory, percentile );
+	}
+
+	/**
+	 * Gets the average time of the phase over the kept frames.
+	 */
+	public double getAverage(int phase) 
+	{
+		return average( this.history.get( phase ) );
+	}
+
+	public double getFrameAverage() 
+	{
+		return average( this.frameHistory );
+	}
+
+	/**
+	 * Clears the history and the phases.
+	 */
+	public void reset() 
+	{
+		this.phases.clear();
+		this.phaseIds.clear();
+		this.history.clear();
+		this.position = 0;
+		this.frames = 0;
+		this.frameStart = -1;
+		this.depth = 0;
+	}
+
+	private int getPhaseId(String phase) 
+	{
+		Integer id = this.phaseIds.get( phase );
+
+		if ( id == null ) 
+		{
+			id = this.phases.size();
+			this.phases.add( phase );
+			this.phaseIds.put( phase, id );
+			this.history.add( new double[ this.capacity ] );
+
+			if ( id >= this.current.length ) 
+			{
+				double[] current = new double[ this.current.length * 2 ];
+				System.arraycopy( this.current, 0, current, 0, this.current.length );
+				this.current = current;
+			}
+		}
+
+		return id;
+	}
+
+	private int getSlot(int frame) 
+	{
+		return ( this.position - 1 - frame + this.capacity * 2 ) % this.capacity;
+	}
+
+	private double percentile(double[] values, double percentile) 
+	{
+		int count = getFrameCount();
+
+		if ( count == 0 )
+			return 0;
+
+		for ( int i = 0; i < count; i ++ )
+			this.sorted[ i ] = values[ getSlot( i ) ];
+
+		Arrays.sort( this.sorted, 0, count );
+
+		int index = (int)Math.ceil( percentile / 100.0 * count ) - 1;
+		return this.sorted[ Math.max( 0, Math.min( count - 1, index ) ) ];
+	}
+
+	private double average(double[] values) 
+	{
+		int count = getFrameCount();
+
+		if ( count == 0 )
+			return 0;
+
+		double sum = 0;
+		for ( int i = 0; i < count; i ++ )
+			sum += values[ getSlot( i ) ];
+
+		return sum / count;
+	}
+
+	/**
+	 * Gets the high resolution time, in milliseconds.
+	 */
+	static native double now() /*-{
+		var performance = $wnd.performance;
+		return performance && performance.now ? performance.now() : Date.now();
+	}-*/;
+
+	/**
+	 * Gets the summary of the kept frames: average, median and 
+	 * 95th percentile of every phase and the frame, in milliseconds.
+	 */
+	public String toString() 
+	{
+		StringBuilder result = new StringBuilder();
+		result.append( "frame: " ).append( summary( this.frameHistory ) );
+
+		for ( int i = 0, il = this.phases.size(); i < il; i ++ )
+			result.append( "\n" ).append( this.phases.get( i ) ).append( ": " ).append( summary( this.history.get( i ) ) );
+
+		return result.toString();
+	}
+
+	private String summary(double[] values) 
+	{
+		return "avg " + format( average( values ) ) 
+				+ ", p50 " + format( percentile( values, 50 ) )
+				+ ", p95 " + format( percentile( values, 95 ) );
+	}
+
+	private static String format(double value) 
+	{
+		return String.valueOf( Math.round( value * 100 ) / 100.0 );
+	}
+}
@@ -19,9 +19,7 @@
 package thothbot.parallax.core.client.renderers;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import com.google.gwt.animation.client.AnimationScheduler;
 import com.google.gwt.animation.client.AnimationScheduler.AnimationCallback;
@@ -30,14 +28,13 @@ import com.google.gwt.canvas.client.Canvas;
 import com.google.gwt.canvas.dom.client.CanvasPixelArray;
 import com.google.gwt.canvas.dom.client.Context2d;
 import com.google.gwt.canvas.dom.client.ImageData;
-import com.google.gwt.core.client.GWT;
 import com.google.gwt.user.client.ui.RootPanel;
 
 import thothbot.parallax.core.shared.Log;
 import thothbot.parallax.core.shared.cameras.Camera;
 import thothbot.parallax.core.shared.cameras.PerspectiveCamera;
 import thothbot.parallax.core.shared.core.Face3;
-import thothbot.parallax.core.shared.core.FastMap;
+import thothbot.parallax.core.shared.core.FastIntMap;
 import thothbot.parallax.core.shared.core.Geometry;
 import thothbot.parallax.core.shared.core.GeometryObject;
 import thothbot.parallax.core.shared.core.Object3D;
@@ -102,8 +99,7 @@ public class RaytracingRenderer extends AbstractRenderer
 	
 	AnimationHandle animationHandler;
 	
-	Map<String, ObjectMatrixes> cache = GWT.isScript() ? 
-			new FastMap<ObjectMatrixes>() : new HashMap<String, ObjectMatrixes>();
+	FastIntMap<ObjectMatrixes> cache = new FastIntMap<ObjectMatrixes>();
 			
 			
 	Canvas canvasBlock;
@@ -194,14 +190,14 @@ public class RaytracingRenderer extends AbstractRenderer
 
 				}
 
-				if ( !cache.containsKey( object.getId() + "" ) ) 
+				if ( !cache.containsKey( object.getId() ) ) 
 				{
-					cache.put( object.getId() + "", new ObjectMatrixes());
+					cache.put( object.getId(), new ObjectMatrixes());
 				}
 
 				modelViewMatrix.multiply( camera.getMatrixWorldInverse(), object.getMatrixWorld() );
 
-				ObjectMatrixes _object = cache.get( object.getId() + "" );
+				ObjectMatrixes _object = cache.get( object.getId() );
 				
 				_object.normalMatrix.getNormalMatrix( modelViewMatrix );
 				_object.inverseMatrix.getInverse( object.getMatrixWorld() );
@@ -344,7 +340,7 @@ public class RaytracingRenderer extends AbstractRenderer
 
 		//
 
-		ObjectMatrixes _object = cache.get( object.getId() + "" );
+		ObjectMatrixes _object = cache.get( object.getId() );
 
 		localPoint.copy( point ).apply( _object.inverseMatrix );
 		eyeVector.sub( raycaster.getRay().getOrigin(), point ).normalize();
@@ -0,0 +1,321 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ * 
+ * This file is part of Parallax project.
+ * 
+ * Parallax is free software: you can redistribute it and/or modify it 
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ * 
+ * Parallax is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution 
+ * 3.0 Unported License. for more details.
+ * 
+ * You should have received a copy of the the Creative Commons Attribution 
+ * 3.0 Unported License along with Parallax. 
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+
+package thothbot.parallax.core.client.renderers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import thothbot.parallax.core.client.gl2.WebGLRenderingContext;
+import thothbot.parallax.core.client.gl2.enums.PixelFormat;
+import thothbot.parallax.core.client.gl2.enums.PixelType;
+import thothbot.parallax.core.client.gl2.enums.TextureMagFilter;
+import thothbot.parallax.core.client.gl2.enums.TextureMinFilter;
+import thothbot.parallax.core.client.gl2.enums.TextureWrapMode;
+import thothbot.parallax.core.client.textures.RenderTargetTexture;
+import thothbot.parallax.core.shared.core.FastIntMap;
+import thothbot.parallax.core.shared.core.FastMap;
+import thothbot.parallax.core.shared.math.Mathematics;
+
+import com.google.gwt.core.client.GWT;
+
+/**
+ * Shares the render targets of the passes and plugins. The pass acquires the 
+ * target when it starts to render into it and releases it when its content 
+ * is not needed anymore, so the targets with the same size, format, filters, 
+ * depth and stencil buffers which are not used at the same time share 
+ * one allocation.
+ * <p>
+ * The released targets are kept for reuse; the target which was not acquired 
+ * for {@link #getMaxIdleFrames()} frames is deleted, so the targets of the old 
+ * size are freed after a resize. Used in {@link WebGLRenderer}, which calls 
+ * {@link #update()} once per frame.
+ */
+public class RenderTargetPool
+{
+	/**
+	 * Default number of the frames the released target is kept for reuse.
+	 */
+	public static final int DEFAULT_MAX_IDLE_FRAMES = 60;
+
+	private static class Entry 
+	{
+		RenderTargetTexture target;
+		String key;
+		double bytes;
+		int releasedFrame;
+		boolean live;
+	}
+
+	private WebGLRenderingContext gl;
+
+	private int maxIdleFrames = DEFAULT_MAX_IDLE_FRAMES;
+	private int frame = 0;
+
+	// All the allocated targets, by texture id
+	private FastIntMap<Entry> entries = new FastIntMap<Entry>();
+	// Released targets, by descriptor
+	private Map<String, List<Entry>> free = GWT.isScript() ? 
+			new FastMap<List<Entry>>() : new HashMap<String, List<Entry>>();
+
+	private int liveCount = 0;
+	private double allocatedBytes = 0;
+	private double peakBytes = 0;
+
+	public RenderTargetPool(WebGLRenderingContext gl) 
+	{
+		this.gl = gl;
+	}
+
+	public int getMaxIdleFrames() {
+		return this.maxIdleFrames;
+	}
+
+	/**
+	 * Sets the number of the frames the released target is kept for reuse.
+	 */
+	public RenderTargetPool setMaxIdleFrames(int maxIdleFrames) {
+		this.maxIdleFrames = maxIdleFrames;
+		return this;
+	}
+
+	/**
+	 * Acquires the target with the linear filters, RGB format and 
+	 * the depth buffer.
+	 */
+	public RenderTargetTexture acquire(int width, int height)
+	{
+		return acquire(width, height, PixelFormat.RGB, TextureMinFilter.LINEAR, TextureMagFilter.LINEAR, true, false);
+	}
+
+	/**
+	 * Acquires the target with the format, filters, wrapping, depth and 
+	 * stencil buffers of the template target, and the given size.
+	 */
+	public RenderTargetTexture acquire(int width, int height, RenderTargetTexture template)
+	{
+		return acquire(width, height, 
+				template.getWrapS(), template.getWrapT(), 
+				template.getMagFilter(), template.getMinFilter(), 
+				template.getFormat(), template.getType(), 
+				template.getDepthBuffer(), template.getStencilBuffer());
+	}
+
+	public RenderTargetTexture acquire(int width, int height, PixelFormat format, 
+			TextureMinFilter minFilter, TextureMagFilter magFilter, boolean depthBuffer, boolean stencilBuffer)
+	{
+		return acquire(width, height, 
+				TextureWrapMode.CLAMP_TO_EDGE, TextureWrapMode.CLAMP_TO_EDGE, 
+				magFilter, minFilter, format, PixelType.UNSIGNED_BYTE, depthBuffer, stencilBuffer);
+	}
+
+	public RenderTargetTexture acquire(int width, int height, 
+			TextureWrapMode wrapS,      TextureWrapMode wrapT, 
+			TextureMagFilter magFilter, TextureMinFilter minFilter,
+			PixelFormat format,         PixelType type, 
+			boolean depthBuffer,        boolean stencilBuffer)
+	{
+		String key = width + "x" + height + ":" + wrapS + ":" + wrapT + ":" + magFilter + ":" + minFilter 
+				+ ":" + format + ":" + type + ":" + depthBuffer + ":" + stencilBuffer;
+
+		Entry entry;
+
+		List<Entry> list = this.free.get( key );
+
+		if ( list != null && list.size() > 0 ) 
+		{
+			// the most recently released target is likely still in the cache
+			entry = list.remove( list.size() - 1 );
+		}
+		else 
+		{
+			RenderTargetTexture target = new RenderTargetTexture( width, height, 
+					wrapS, wrapT, magFilter, minFilter, format, type );
+			target.setDepthBuffer( depthBuffer );
+			target.setStencilBuffer( stencilBuffer );
+
+			entry = new Entry();
+			entry.target = target;
+			entry.key = key;
+			entry.bytes = getMemory( target );
+
+			this.entries.put( target.getId(), entry );
+
+			this.allocatedBytes += entry.bytes;
+			this.peakBytes = Math.max( this.peakBytes, this.allocatedBytes );
+		}
+
+		entry.live = true;
+		this.liveCount++;
+
+		return entry.target;
+	}
+
+	/**
+	 * Returns the target to the pool. The content of the target 
+	 * can be overwritten by the next user.
+	 */
+	public void release(RenderTargetTexture target)
+	{
+		Entry entry = this.entries.get( target.getId() );
+
+		if ( entry == null || ! entry.live )
+			return;
+
+		entry.live = false;
+		entry.releasedFrame = this.frame;
+		this.liveCount--;
+
+		List<Entry> list = this.free.get( entry.key );
+		if ( list == null ) 
+		{
+			list = new ArrayList<Entry>();
+			this.free.put( entry.key, list );
+		}
+
+		list.add( entry );
+	}
+
+	/**
+	 * Advances the frame and deletes the targets which were not acquired 
+	 * for {@link #getMaxIdleFrames()} frames.
+	 */
+	public void update()
+	{
+		this.frame++;
+
+		for ( List<Entry> list : this.free.values() ) 
+		{
+			for ( int i = list.size() - 1; i >= 0; i-- ) 
+			{
+				if ( this.frame - list.get( i ).releasedFrame > this.maxIdleFrames )
+					delete( list.remove( i ) );
+			}
+		}
+	}
+
+	/**
+	 * Deletes all the released targets.
+	 */
+	public void clear()
+	{
+		for ( List<Entry> list : this.free.values() ) 
+		{
+			for ( int i = 0, l = list.size(); i < l; i ++ )
+				delete( list.get( i ) );
+
+			list.clear();
+		}
+	}
+
+	/**
+	 * Gets the number of the allocated targets, acquired and released.
+	 */
+	public int getAllocatedCount() {
+		return this.entries.values().size();
+	}
+
+	/**
+	 * Gets the number of the acquired targets.
+	 */
+	public int getLiveCount() {
+		return this.liveCount;
+	}
+
+	/**
+	 * Gets the GPU memory of the allocated targets, in bytes.
+	 */
+	public double getAllocatedBytes() {
+		return this.allocatedBytes;
+	}
+
+	/**
+	 * Gets the highest GPU memory of the allocated targets, in bytes.
+	 */
+	public double getPeakBytes() {
+		return this.peakBytes;
+	}
+
+	public void resetPeak() {
+		this.peakBytes = this.allocatedBytes;
+	}
+
+	private void delete(Entry entry)
+	{
+		entry.target.deallocate( this.gl );
+
+		this.entries.remove( entry.target.getId() );
+		this.allocatedBytes -= entry.bytes;
+	}
+
+	/**
+	 * Estimates the GPU memory of the target: the color texture 
+	 * with the mipmaps and the depth/stencil buffer.
+	 */
+	private static double getMemory(RenderTargetTexture target)
+	{
+		int pixels = target.getWidth() * target.getHeight();
+
+		int channels;
+		if ( target.getFormat() == PixelFormat.RGBA )
+			channels = 4;
+		else if ( target.getFormat() == PixelFormat.RGB )
+			channels = 3;
+		else if ( target.getFormat() == PixelFormat.LUMINANCE_ALPHA )
+			channels = 2;
+		else
+			channels = 1;
+
+		int bytesPerPixel;
+		switch ( target.getType() ) 
+		{
+			case FLOAT:
+				bytesPerPixel = channels * 4;
+				break;
+
+			case HALF_FLOAT_OES:
+				bytesPerPixel = channels * 2;
+				break;
+
+			case UNSIGNED_BYTE:
+				bytesPerPixel = channels;
+				break;
+
+			// the packed 16-bit types
+			default:
+				bytesPerPixel = 2;
+		}
+
+		double bytes = pixels * bytesPerPixel;
+
+		// mipmaps are generated for the power of two targets
+		if ( Mathematics.isPowerOfTwo( target.getWidth() ) && Mathematics.isPowerOfTwo( target.getHeight() ) 
+				&& target.getMinFilter() != TextureMinFilter.NEAREST && target.getMinFilter() != TextureMinFilter.LINEAR )
+			bytes = bytes * 4 / 3;
+
+		if ( target.getDepthBuffer() && target.getStencilBuffer() )
+			bytes += pixels * 4;
+		else if ( target.getDepthBuffer() )
+			bytes += pixels * 2;
+
+		return bytes;
+	}
+}
@@ -240,10 +240,10 @@ public final class ShadowMap extends Plugin
 			
 			if ( light.getShadowMap() == null ) 
 			{
-				RenderTargetTexture map = new RenderTargetTexture(light.getShadowMapWidth(), light.getShadowMapHeight());
-				map.setMinFilter(TextureMinFilter.NEAREST);
-				map.setMagFilter(TextureMagFilter.NEAREST);
-				map.setFormat(PixelFormat.RGBA);
+				// the map is sampled by the scene materials, so it stays acquired
+				RenderTargetTexture map = getRenderer().getRenderTargetPool().acquire( 
+						light.getShadowMapWidth(), light.getShadowMapHeight(), 
+						PixelFormat.RGBA, TextureMinFilter.NEAREST, TextureMagFilter.NEAREST, true, true );
 				light.setShadowMap(map);
 
 				light.setShadowMapSize( new Vector2( light.getShadowMapWidth(), light.getShadowMapHeight() ) );
@@ -329,9 +329,9 @@ public final class ShadowMap extends Plugin
 			
 			// set object matrices & frustum culling
 
-			this._renderList = new ArrayList<WebGLObject>();
+			this._renderList.clear();
 
-			projectObject( getScene(), getScene(), shadowCamera );
+			projectObject( getScene(), getScene(), shadowCamera, Frustum.ALL_PLANES );
 
 
 			// render regular objects
@@ -431,13 +431,21 @@ public final class ShadowMap extends Plugin
 		getRenderer().resetGLState();
 	}
 	
-	private void projectObject( Scene scene, Object3D object, Camera shadowCamera ){
+	private void projectObject( Scene scene, Object3D object, Camera shadowCamera, int planes ){
 
 		if ( object.isVisible() ) {
 
-			List<WebGLObject> webglObjects = getRenderer()._webglObjects.get( object.getId() + "" );
+			if ( planes != 0 && object.getSubtreeBoundingBoxWorld() != null ) {
 
-			if ( webglObjects != null && object.isCastShadow() && (object.isFrustumCulled() == false || getRenderer()._frustum.isIntersectsObject( (GeometryObject) object ) == true) ) {
+				planes = getRenderer()._frustum.intersectsBox( object.getSubtreeBoundingBoxWorld(), planes );
+
+				if ( planes < 0 ) return;
+
+			}
+
+			List<WebGLObject> webglObjects = getRenderer()._webglObjects.get( object.getId() );
+
+			if ( webglObjects != null && object.isCastShadow() && getRenderer().isInFrustum( object, planes ) ) {
 
 				for ( int i = 0, l = webglObjects.size(); i < l; i ++ ) {
 
@@ -452,7 +460,7 @@ public final class ShadowMap extends Plugin
 
 			for ( int i = 0, l = object.getChildren().size(); i < l; i ++ ) {
 
-				projectObject( scene, object.getChildren().get( i ), shadowCamera );
+				projectObject( scene, object.getChildren().get( i ), shadowCamera, planes );
 
 			}
 
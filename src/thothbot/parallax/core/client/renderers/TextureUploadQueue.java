@@ -0,0 +1,144 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ * 
+ * This file is part of Parallax project.
+ * 
+ * Parallax is free software: you can redistribute it and/or modify it 
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ * 
+ * Parallax is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution 
+ * 3.0 Unported License. for more details.
+ * 
+ * You should have received a copy of the the Creative Commons Attribution 
+ * 3.0 Unported License along with Parallax. 
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+
+package thothbot.parallax.core.client.renderers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import thothbot.parallax.core.client.textures.CompressedTexture;
+import thothbot.parallax.core.client.textures.DataTexture;
+import thothbot.parallax.core.client.textures.Texture;
+
+/**
+ * Spreads the first uploads of the textures across the frames. The renderer 
+ * uploads the queued textures at the end of each top-level rendering (not 
+ * the nested renderings of the plugins), until the time budget is spent; 
+ * at least one texture is uploaded each time. 
+ * The texture which is not uploaded yet is replaced by a white placeholder.
+ * <p>
+ * Only the textures of images are deferred, see {@link #isDeferred(Texture)}.
+ * <p>
+ * The textures requested by the rendered objects are uploaded first, in 
+ * the order they were requested, then the textures added with {@link #add(Texture)}. 
+ * The queue is disabled by default, so the textures are uploaded when 
+ * they are bound the first time. Used in {@link WebGLRenderer}.
+ */
+public class TextureUploadQueue
+{
+	private double budget = 0;
+
+	// Textures of the rendered objects
+	private List<Texture> requested = new ArrayList<Texture>();
+	// Textures added ahead of use
+	private List<Texture> pending = new ArrayList<Texture>();
+
+	public boolean isEnabled() {
+		return this.budget > 0;
+	}
+
+	/**
+	 * Gets the time which can be spent on the uploads per frame, in milliseconds.
+	 */
+	public double getBudget() {
+		return this.budget;
+	}
+
+	/**
+	 * Sets the time which can be spent on the uploads per frame, in milliseconds. 
+	 * The zero budget disables the queue.
+	 */
+	public TextureUploadQueue setBudget(double budget) {
+		this.budget = budget;
+		return this;
+	}
+
+	/**
+	 * Checks if the first upload of the texture can be deferred. The data 
+	 * textures (bone matrices, lookup tables) hold the values used in the 
+	 * calculations, so the white placeholder would give wrong results; 
+	 * they are uploaded immediately, as the compressed textures.
+	 */
+	public static boolean isDeferred(Texture texture)
+	{
+		return !( texture instanceof DataTexture ) && !( texture instanceof CompressedTexture );
+	}
+
+	/**
+	 * Adds the texture to upload ahead of use, for example the textures of 
+	 * a loaded model which is not in the scene yet. These textures are 
+	 * uploaded after the textures of the rendered objects.
+	 */
+	public void add(Texture texture) 
+	{
+		if ( ! this.requested.contains( texture ) && ! this.pending.contains( texture ) )
+			this.pending.add( texture );
+	}
+
+	/**
+	 * Adds the texture of the rendered object.
+	 */
+	public void request(Texture texture) 
+	{
+		if ( this.requested.contains( texture ) )
+			return;
+
+		this.pending.remove( texture );
+		this.requested.add( texture );
+	}
+
+	public void remove(Texture texture) 
+	{
+		this.requested.remove( texture );
+		this.pending.remove( texture );
+	}
+
+	public boolean contains(Texture texture) 
+	{
+		return this.requested.contains( texture ) || this.pending.contains( texture );
+	}
+
+	/**
+	 * Gets the number of the textures waiting for upload.
+	 */
+	public int size() {
+		return this.requested.size() + this.pending.size();
+	}
+
+	/**
+	 * Removes and returns the next texture to upload, or null 
+	 * if the queue is empty.
+	 */
+	public Texture poll() 
+	{
+		if ( this.requested.size() > 0 )
+			return this.requested.remove( 0 );
+
+		if ( this.pending.size() > 0 )
+			return this.pending.remove( 0 );
+
+		return null;
+	}
+
+	public void clear() 
+	{
+		this.requested.clear();
+		this.pending.clear();
+	}
+}
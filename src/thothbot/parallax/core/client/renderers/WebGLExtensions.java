@@ -33,7 +33,9 @@ public final class WebGLExtensions {
 		WEBGL_compressed_texture_pvrtc,
 		OES_element_index_uint,
 		EXT_blend_minmax,
-		EXT_frag_depth
+		EXT_frag_depth,
+		ANGLE_instanced_arrays,
+		OES_vertex_array_object
 	};
 
 	public static WebGLExtension get(WebGLRenderingContext gl, Id id) {
@@ -87,6 +89,14 @@ public final class WebGLExtensions {
 			case EXT_frag_depth:
 				extension = gl.getExtension( "EXT_frag_depth" );
 				break;
+
+			case ANGLE_instanced_arrays:
+				extension = gl.getExtension( "ANGLE_instanced_arrays" );
+				break;
+
+			case OES_vertex_array_object:
+				extension = gl.getExtension( "OES_vertex_array_object" );
+				break;
 	
 		}
 		
@@ -22,7 +22,10 @@ import java.util.List;
 
 import thothbot.parallax.core.client.gl2.WebGLBuffer;
 import thothbot.parallax.core.client.gl2.arrays.Float32Array;
+import thothbot.parallax.core.client.gl2.enums.DrawElementsType;
+import thothbot.parallax.core.client.gl2.extension.OESVertexArrayObject.WebGLVertexArrayObjectOES;
 import thothbot.parallax.core.client.shaders.Attribute;
+import thothbot.parallax.core.shared.core.FastIntMap;
 
 public abstract class WebGLGeometry {
 
@@ -47,6 +50,7 @@ public abstract class WebGLGeometry {
 		
 	public WebGLBuffer __webglFaceBuffer;
 	public WebGLBuffer __webglLineBuffer;
+	public DrawElementsType __webglIndexType = DrawElementsType.UNSIGNED_SHORT;
 	
 	public List<WebGLBuffer> __webglMorphTargetsBuffers;
 	
@@ -60,6 +64,11 @@ public abstract class WebGLGeometry {
 	public int __webglFaceCount;
 	
 	public boolean __webglInit;
+
+	// Vertex array objects with the attribute bindings per program, 
+	// see WebGLRenderer
+	public FastIntMap<WebGLVertexArrayObjectOES> __webglVertexArrays;
+	public boolean __webglVertexArraysNeedUpdate;
 		
 	public abstract int getId();
 	
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ *
+ * This file is part of Parallax project.
+ *
+ * Parallax is free software: you can redistribute it and/or modify it
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ *
+ * Parallax is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution
+ * 3.0 Unported License. for more details.
+ *
+ * You should have received a copy of the the Creative Commons Attribution
+ * 3.0 Unported License along with Parallax.
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+package thothbot.parallax.core.client.renderers;
+
+/**
+ * Reusable list of {@link WebGLObject}s queued for rendering.
+ * <p>
+ * The list is cleared between frames instead of being reallocated.
+ * Each entry has a 64-bit sort key, stored as two unsigned 32-bit
+ * halves (GWT emulates <code>long</code>, which is too slow for
+ * per-frame code). The entries are ordered by the key
+ * with the stable LSD radix sort, so sorting is linear and
+ * produces no garbage.
+ */
+public class WebGLRenderList
+{
+	/**
+	 * Resolution of the quantized depth, see {@link #quantizeDepth(double, double, double)}.
+	 */
+	public static final int DEPTH_BITS = 30;
+	public static final int DEPTH_MAX = ( 1 << DEPTH_BITS ) - 1;
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private WebGLObject[] items;
+	private int[] keysHi;
+	private int[] keysLo;
+
+	// Radix sort buffers
+	private WebGLObject[] tmpItems;
+	private int[] tmpKeysHi;
+	private int[] tmpKeysLo;
+	private int[] counts = new int[256];
+
+	private int size;
+
+	public WebGLRenderList()
+	{
+		allocate( INITIAL_CAPACITY );
+	}
+
+	/**
+	 * Removes all objects from the list. Allocated storage is kept
+	 * for the next frame.
+	 */
+	public void clear()
+	{
+		for ( int i = 0; i < this.size; i ++ )
+			this.items[ i ] = null;
+
+		this.size = 0;
+	}
+
+	public int size()
+	{
+		return this.size;
+	}
+
+	public boolean isEmpty()
+	{
+		return this.size == 0;
+	}
+
+	public WebGLObject get( int index )
+	{
+		return this.items[ index ];
+	}
+
+	public void add( WebGLObject object )
+	{
+		if ( this.size == this.items.length )
+			grow( this.size * 2 );
+
+		this.items[ this.size ] = object;
+		this.keysHi[ this.size ] = 0;
+		this.keysLo[ this.size ] = 0;
+		this.size ++;
+	}
+
+	/**
+	 * Sets the sort key of the object at the index. The key is
+	 * compared as unsigned 64-bit value <code>(hi &lt;&lt; 32) | lo</code>.
+	 */
+	public void setKey( int index, int hi, int lo )
+	{
+		this.keysHi[ index ] = hi;
+		this.keysLo[ index ] = lo;
+	}
+
+	/**
+	 * Sorts the list by the keys in ascending order. Objects with
+	 * equal keys keep the order they were added in.
+	 */
+	public void sort()
+	{
+		if ( this.size < 2 )
+			return;
+
+		for ( int pass = 0; pass < 8; pass ++ )
+			radixPass( pass < 4, ( pass & 3 ) * 8 );
+	}
+
+	/**
+	 * Maps the depth value from [min, max] range to
+	 * [0, {@link #DEPTH_MAX}] integer range.
+	 */
+	public static int quantizeDepth( double z, double min, double max )
+	{
+		if ( max <= min )
+			return 0;
+
+		double value = ( z - min ) / ( max - min );
+		if ( value <= 0 ) return 0;
+		if ( value >= 1 ) return DEPTH_MAX;
+
+		return (int) ( value * DEPTH_MAX );
+	}
+
+	private void radixPass( boolean isLow, int shift )
+	{
+		int[] keys = isLow ? this.keysLo : this.keysHi;
+		int[] counts = this.counts;
+
+		for ( int i = 0; i < 256; i ++ )
+			counts[ i ] = 0;
+
+		for ( int i = 0; i < this.size; i ++ )
+			counts[ ( keys[ i ] >>> shift ) & 0xFF ] ++;
+
+		// All objects have the same digit: nothing to reorder
+		if ( counts[ ( keys[ 0 ] >>> shift ) & 0xFF ] == this.size )
+			return;
+
+		int offset = 0;
+		for ( int i = 0; i < 256; i ++ )
+		{
+			int count = counts[ i ];
+			counts[ i ] = offset;
+			offset += count;
+		}
+
+		for ( int i = 0; i < this.size; i ++ )
+		{
+			int j = counts[ ( keys[ i ] >>> shift ) & 0xFF ] ++;
+
+			this.tmpItems[ j ] = this.items[ i ];
+			this.tmpKeysHi[ j ] = this.keysHi[ i ];
+			this.tmpKeysLo[ j ] = this.keysLo[ i ];
+		}
+
+		WebGLObject[] items = this.items;
+		this.items = this.tmpItems;
+		this.tmpItems = items;
+
+		int[] hi = this.keysHi;
+		this.keysHi = this.tmpKeysHi;
+		this.tmpKeysHi = hi;
+
+		int[] lo = this.keysLo;
+		this.keysLo = this.tmpKeysLo;
+		this.tmpKeysLo = lo;
+	}
+
+	private void allocate( int capacity )
+	{
+		this.items = new WebGLObject[ capacity ];
+		this.keysHi = new int[ capacity ];
+		this.keysLo = new int[ capacity ];
+
+		this.tmpItems = new WebGLObject[ capacity ];
+		this.tmpKeysHi = new int[ capacity ];
+		this.tmpKeysLo = new int[ capacity ];
+	}
+
+	private void grow( int capacity )
+	{
+		WebGLObject[] items = this.items;
+		int[] hi = this.keysHi;
+		int[] lo = this.keysLo;
+
+		allocate( capacity );
+
+		for ( int i = 0; i < this.size; i ++ )
+		{
+			this.items[ i ] = items[ i ];
+			this.keysHi[ i ] = hi[ i ];
+			this.keysLo[ i ] = lo[ i ];
+		}
+	}
+}
@@ -28,14 +28,19 @@ import java.util.Map;
 import thothbot.parallax.core.client.context.Canvas3d;
 import thothbot.parallax.core.client.events.HasEventBus;
 import thothbot.parallax.core.client.events.ViewportResizeEvent;
+import thothbot.parallax.core.client.gl2.WebGLBuffer;
 import thothbot.parallax.core.client.gl2.WebGLConstants;
 import thothbot.parallax.core.client.gl2.WebGLExtension;
 import thothbot.parallax.core.client.gl2.WebGLFramebuffer;
 import thothbot.parallax.core.client.gl2.WebGLProgram;
 import thothbot.parallax.core.client.gl2.WebGLRenderingContext;
 import thothbot.parallax.core.client.gl2.WebGLShaderPrecisionFormat;
+import thothbot.parallax.core.client.gl2.WebGLCounters;
+import thothbot.parallax.core.client.gl2.WebGLState;
+import thothbot.parallax.core.client.gl2.WebGLTexture;
 import thothbot.parallax.core.client.gl2.WebGLUniformLocation;
 import thothbot.parallax.core.client.gl2.arrays.Float32Array;
+import thothbot.parallax.core.client.gl2.arrays.Int32Array;
 import thothbot.parallax.core.client.gl2.arrays.Uint8Array;
 import thothbot.parallax.core.client.gl2.enums.BeginMode;
 import thothbot.parallax.core.client.gl2.enums.BlendEquationMode;
@@ -50,16 +55,23 @@ import thothbot.parallax.core.client.gl2.enums.DepthFunction;
 import thothbot.parallax.core.client.gl2.enums.DrawElementsType;
 import thothbot.parallax.core.client.gl2.enums.EnableCap;
 import thothbot.parallax.core.client.gl2.enums.FrontFaceDirection;
+import thothbot.parallax.core.client.gl2.enums.PixelFormat;
 import thothbot.parallax.core.client.gl2.enums.PixelStoreParameter;
+import thothbot.parallax.core.client.gl2.enums.PixelType;
 import thothbot.parallax.core.client.gl2.enums.ShaderPrecisionSpecifiedTypes;
 import thothbot.parallax.core.client.gl2.enums.Shaders;
 import thothbot.parallax.core.client.gl2.enums.TextureMinFilter;
+import thothbot.parallax.core.client.gl2.enums.TextureParameterName;
 import thothbot.parallax.core.client.gl2.enums.TextureTarget;
 import thothbot.parallax.core.client.gl2.enums.TextureUnit;
+import thothbot.parallax.core.client.gl2.extension.AngleInstancedArrays;
 import thothbot.parallax.core.client.gl2.extension.ExtTextureFilterAnisotropic;
+import thothbot.parallax.core.client.gl2.extension.OESVertexArrayObject;
+import thothbot.parallax.core.client.gl2.extension.OESVertexArrayObject.WebGLVertexArrayObjectOES;
 import thothbot.parallax.core.client.gl2.extension.WebGLCompressedTextureS3tc;
 import thothbot.parallax.core.client.renderers.WebGLExtensions.Id;
 import thothbot.parallax.core.client.shaders.Attribute;
+import thothbot.parallax.core.client.shaders.ProgramKey;
 import thothbot.parallax.core.client.shaders.ProgramParameters;
 import thothbot.parallax.core.client.shaders.Shader;
 import thothbot.parallax.core.client.shaders.Uniform;
@@ -78,11 +90,15 @@ import thothbot.parallax.core.shared.core.BufferAttribute;
 import thothbot.parallax.core.shared.core.BufferGeometry;
 import thothbot.parallax.core.shared.core.BufferGeometry.DrawCall;
 import thothbot.parallax.core.shared.core.Face3;
+import thothbot.parallax.core.shared.core.FastIntMap;
 import thothbot.parallax.core.shared.core.FastMap;
 import thothbot.parallax.core.shared.core.Geometry;
 import thothbot.parallax.core.shared.core.GeometryGroup;
 import thothbot.parallax.core.shared.core.GeometryObject;
+import thothbot.parallax.core.shared.core.InstancedBufferAttribute;
+import thothbot.parallax.core.shared.core.InstancedBufferGeometry;
 import thothbot.parallax.core.shared.core.Object3D;
+import thothbot.parallax.core.shared.core.Object3D.Traverse;
 import thothbot.parallax.core.shared.lights.DirectionalLight;
 import thothbot.parallax.core.shared.lights.HemisphereLight;
 import thothbot.parallax.core.shared.lights.Light;
@@ -108,6 +124,7 @@ import thothbot.parallax.core.shared.math.Matrix4;
 import thothbot.parallax.core.shared.math.Vector2;
 import thothbot.parallax.core.shared.math.Vector3;
 import thothbot.parallax.core.shared.math.Vector4;
+import thothbot.parallax.core.shared.objects.InstancedMesh;
 import thothbot.parallax.core.shared.objects.Line;
 import thothbot.parallax.core.shared.objects.Mesh;
 import thothbot.parallax.core.shared.objects.PointCloud;
@@ -115,6 +132,7 @@ import thothbot.parallax.core.shared.objects.SkinnedMesh;
 import thothbot.parallax.core.shared.scenes.AbstractFog;
 import thothbot.parallax.core.shared.scenes.FogExp2;
 import thothbot.parallax.core.shared.scenes.Scene;
+import thothbot.parallax.core.shared.utils.OcclusionBuffer;
 
 import com.google.gwt.canvas.dom.client.Context2d;
 import com.google.gwt.core.client.GWT;
@@ -128,20 +146,48 @@ import com.google.gwt.dom.client.ImageElement;
  */
 public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 {
+	/**
+	 * Order of the opaque objects in the render list.
+	 */
+	public static enum OPAQUE_ORDER
+	{
+		/**
+		 * Objects are sorted front-to-back by depth. Objects 
+		 * at the same depth are grouped by shader program, 
+		 * material and geometry buffer.
+		 */
+		FRONT_TO_BACK,
+		/**
+		 * Objects are grouped by shader program, then by material, 
+		 * then by geometry buffer to minimize GL state changes. 
+		 * Within each group objects are sorted by coarse depth buckets.
+		 */
+		STATE
+	}
+
+	// Number of bits of the depth in the opaque sort key for OPAQUE_ORDER.STATE
+	private static final int STATE_ORDER_DEPTH_BITS = 8;
+
 	// The HTML5 Canvas's 'webgl' context obtained from the canvas where the renderer will draw.
 	private WebGLRenderingContext gl;
 
+	// Drops redundant GL state changes
+	private WebGLState glState;
+	private WebGLCounters glCounters;
+
 	private WebGlRendererInfo info;
 					
 	private List<Light> lights = new ArrayList<Light>();
 	
-	public Map<String, List<WebGLObject>> _webglObjects = GWT.isScript() ? 
-			new FastMap<List<WebGLObject>>() : new HashMap<String, List<WebGLObject>>();	
+	public FastIntMap<List<WebGLObject>> _webglObjects = new FastIntMap<List<WebGLObject>>();
+
+	// Geometry groups of the Geometry, by geometry id
+	private FastIntMap<List<GeometryGroup>> _geometryGroups = new FastIntMap<List<GeometryGroup>>();
 
 	public List<WebGLObject> _webglObjectsImmediate  = new ArrayList<WebGLObject>();
 
-	public List<WebGLObject> opaqueObjects = new ArrayList<WebGLObject>();
-	public List<WebGLObject> transparentObjects = new ArrayList<WebGLObject>();
+	public WebGLRenderList opaqueObjects = new WebGLRenderList();
+	public WebGLRenderList transparentObjects = new WebGLRenderList();
 	
 	public double devicePixelRatio = _devicePixelRatio();	
 	public final native double _devicePixelRatio() /*-{
@@ -161,6 +207,7 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 
 	// scene graph
 	private boolean sortObjects = true;
+	private OPAQUE_ORDER opaqueOrder = OPAQUE_ORDER.FRONT_TO_BACK;
 	
 	// physically based shading
 	private boolean gammaInput = false;
@@ -183,13 +230,28 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 
 	// ---- Internal properties ----------------------------
 	
-	public Map<String, Shader> _programs;
+	public Map<ProgramKey, Shader> _programs;
+
+	// Key of the program used by material, by material id
+	private FastIntMap<ProgramKey> _materialPrograms;
+
+	// Textures used by material, by material id
+	private FastIntMap<List<Texture>> _materialTextures;
+
+	private TextureUploadQueue textureUploadQueue = new TextureUploadQueue();
+	// Depth of the nested render() calls, 0 outside of rendering
+	private int _renderDepth = 0;
+	private RenderTargetPool renderTargetPool;
+	private WebGLTexture _placeholderTexture;
 	
 	private WebGLProgram _currentProgram = null;
 	private WebGLFramebuffer _currentFramebuffer = null;
 	private int _currentMaterialId = -1;
 	private int _currentGeometryGroupHash = -1;
 	private Camera _currentCamera = null;	
+
+	// The camera of the last rendering to the screen
+	private Camera _lastCamera = null;
 	
 	private int _usedTextureUnits = 0;
 	
@@ -223,10 +285,35 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 
 	private Uint8Array _newAttributes = Uint8Array.create( 16 );
 	private Uint8Array _enabledAttributes = Uint8Array.create( 16 );
+	private int[] _attributeDivisors = new int[ 16 ];
+
+	// ANGLE_instanced_arrays, null if not supported
+	private AngleInstancedArrays _instancedArrays;
+
+	// OES_element_index_uint
+	private boolean _supportsElementIndexUint;
+
+	// OES_vertex_array_object, null if not supported
+	private OESVertexArrayObject _vertexArrays;
+	private WebGLVertexArrayObjectOES _currentVertexArray;
+
+	// Geometries having the vertex array objects of the program, by shader id
+	private FastIntMap<List<WebGLGeometry>> _programVertexArrays = new FastIntMap<List<WebGLGeometry>>();
+
+	// Attributes state of the default vertex array, while 
+	// the vertex array object is bound
+	private Uint8Array _defaultNewAttributes;
+	private Uint8Array _defaultEnabledAttributes;
+	private int[] _defaultAttributeDivisors;
 
 	// frustum
 	public Frustum _frustum = new Frustum();
 
+	// occlusion culling, null if disabled
+	private OcclusionBuffer occlusionBuffer;
+	// objects in the frustum in the scene order, projected after the occluders are rasterized
+	private List<GeometryObject> _occlusionCandidates = new ArrayList<GeometryObject>();
+
 	 // camera matrices cache
 
 	public Matrix4 _projScreenMatrix = new Matrix4();
@@ -285,12 +372,17 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 	public WebGLRenderer(WebGLRenderingContext gl, int width, int height)
 	{
 		this.gl = gl;
+		// Counters go under the state layer, to count the calls passed to GL only
+		this.glCounters = new WebGLCounters(gl);
+		this.glState = new WebGLState(gl);
+		this.renderTargetPool = new RenderTargetPool(gl);
 
 		this.setInfo(new WebGlRendererInfo());
 		
 		this._lights           = new RendererLights();
-		this._programs         = GWT.isScript() ? 
-				new FastMap<Shader>() : new HashMap<String, Shader>();
+		this._programs         = new HashMap<ProgramKey, Shader>();
+		this._materialPrograms = new FastIntMap<ProgramKey>();
+		this._materialTextures = new FastIntMap<List<Texture>>();
 			
 		this._maxTextures       = gl.getParameteri(WebGLConstants.MAX_TEXTURE_IMAGE_UNITS);
 		this._maxVertexTextures = gl.getParameteri(WebGLConstants.MAX_VERTEX_TEXTURE_IMAGE_UNITS);
@@ -299,6 +391,17 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 
 		this._supportsVertexTextures = ( this._maxVertexTextures > 0 ); 
 		this._supportsBoneTextures = this._supportsVertexTextures && WebGLExtensions.get(gl, WebGLExtensions.Id.OES_texture_float) != null ;
+		this._instancedArrays = (AngleInstancedArrays) WebGLExtensions.get(gl, WebGLExtensions.Id.ANGLE_instanced_arrays);
+		this._vertexArrays = (OESVertexArrayObject) WebGLExtensions.get(gl, WebGLExtensions.Id.OES_vertex_array_object);
+		this._supportsElementIndexUint = WebGLExtensions.get(gl, WebGLExtensions.Id.OES_element_index_uint) != null;
+
+		if ( this._vertexArrays != null ) {
+
+			this._defaultNewAttributes = this._newAttributes;
+			this._defaultEnabledAttributes = this._enabledAttributes;
+			this._defaultAttributeDivisors = this._attributeDivisors;
+
+		}
 		
 		this._vertexShaderPrecisionHighpFloat = gl.getShaderPrecisionFormat( Shaders.VERTEX_SHADER, ShaderPrecisionSpecifiedTypes.HIGH_FLOAT );
 		this._vertexShaderPrecisionMediumpFloat = gl.getShaderPrecisionFormat( Shaders.VERTEX_SHADER, ShaderPrecisionSpecifiedTypes.MEDIUM_FLOAT );
@@ -404,6 +507,25 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 		return WebGLExtensions.get( this.gl, Id.EXT_blend_minmax ) != null;
 	}
 
+	public boolean supportsInstancedArrays() 
+	{
+		return this._instancedArrays != null;
+	}
+
+	public boolean supportsVertexArrayObjects() 
+	{
+		return this._vertexArrays != null;
+	}
+
+	/**
+	 * Checks if Uint32Array can be used for the "index" attribute 
+	 * of {@link BufferGeometry}.
+	 */
+	public boolean supportsElementIndexUint() 
+	{
+		return this._supportsElementIndexUint;
+	}
+
 	public int getMaxAnisotropy() 
 	{
 		WebGLExtension extension = WebGLExtensions.get( this.gl, Id.EXT_texture_filter_anisotropic ); 
@@ -484,6 +606,44 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 		this.sortObjects = isSortObjects;
 	}
 
+	/**
+	 * Gets {@link #setOpaqueOrder(OPAQUE_ORDER)} value.
+	 */
+	public OPAQUE_ORDER getOpaqueOrder() {
+		return opaqueOrder;
+	}
+
+	/**
+	 * Defines how the renderer should order opaque objects 
+	 * when {@link #isSortObjects()} is enabled. 
+	 * Default is {@link OPAQUE_ORDER#FRONT_TO_BACK}.
+	 * 
+	 * @param opaqueOrder the {@link OPAQUE_ORDER} value
+	 */
+	public void setOpaqueOrder(OPAQUE_ORDER opaqueOrder) {
+		this.opaqueOrder = opaqueOrder;
+	}
+
+	/**
+	 * Gets {@link #setOcclusionBuffer(OcclusionBuffer)} value.
+	 */
+	public OcclusionBuffer getOcclusionBuffer() {
+		return occlusionBuffer;
+	}
+
+	/**
+	 * Enables the occlusion culling. Every frame the objects marked with 
+	 * {@link Object3D#setOccluder(boolean)} are rasterized into the buffer, 
+	 * and the other objects passed the frustum culling are skipped 
+	 * if their bounding boxes are hidden behind the occluders.
+	 * Default is null: the occlusion culling is disabled.
+	 * 
+	 * @param occlusionBuffer the buffer or null to disable the occlusion culling
+	 */
+	public void setOcclusionBuffer(OcclusionBuffer occlusionBuffer) {
+		this.occlusionBuffer = occlusionBuffer;
+	}
+
 	/**
 	 * Gets {@link #setAutoUpdateObjects(boolean)} flag.
 	 */
@@ -566,6 +726,17 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 		return this.gl;
 	}
 
+	/**
+	 * Gets the {@link WebGLState} layer which drops redundant GL state 
+	 * changes made through the {@link WebGLRenderingContext}.
+	 * 
+	 * @return the {@link WebGLState} instance
+	 */
+	public WebGLState getGLState()
+	{
+		return this.glState;
+	}
+
 	private void setDefaultGLState() 
 	{
 		getGL().clearColor( 0.0, 0.0, 0.0, 1.0 );
@@ -703,6 +874,8 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 	
 	public void resetGLState() 
 	{
+		unbindVertexArray();
+
 		_currentProgram = null;
 		_currentCamera = null;
 
@@ -717,6 +890,162 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 		_lightsNeedUpdate = true;
 	}
 	
+	/**
+	 * Binds the vertex array object cached for the geometry and the program, 
+	 * creating it if needed. The new object is empty: the attributes should 
+	 * be set up while it is bound, then they are kept in it.
+	 * 
+	 * @param variant the variant of the element buffer, 1 for the wireframe
+	 * @return true if the vertex array object was created and should be set up
+	 */
+	private boolean bindVertexArray( WebGLGeometry geometry, Shader program, int variant ) {
+
+		int key = program.getId() * 2 + variant;
+
+		if ( geometry.__webglVertexArrays == null ) {
+
+			geometry.__webglVertexArrays = new FastIntMap<WebGLVertexArrayObjectOES>();
+
+		} else if ( geometry.__webglVertexArraysNeedUpdate ) {
+
+			deleteVertexArrays( geometry );
+
+		}
+
+		geometry.__webglVertexArraysNeedUpdate = false;
+
+		WebGLVertexArrayObjectOES vertexArray = geometry.__webglVertexArrays.get( key );
+		boolean isNew = vertexArray == null;
+
+		if ( isNew ) {
+
+			vertexArray = this._vertexArrays.createVertexArrayOES();
+			geometry.__webglVertexArrays.put( key, vertexArray );
+
+			List<WebGLGeometry> geometries = this._programVertexArrays.get( program.getId() );
+			if ( geometries == null ) {
+
+				geometries = new ArrayList<WebGLGeometry>();
+				this._programVertexArrays.put( program.getId(), geometries );
+
+			}
+
+			if ( ! geometries.contains( geometry ) )
+				geometries.add( geometry );
+
+		}
+
+		if ( this._currentVertexArray == null ) {
+
+			// Fresh state to track the attributes of the vertex array objects
+			this._newAttributes = Uint8Array.create( this._defaultNewAttributes.getLength() );
+			this._enabledAttributes = Uint8Array.create( this._defaultEnabledAttributes.getLength() );
+			this._attributeDivisors = new int[ this._defaultAttributeDivisors.length ];
+
+		}
+
+		if ( vertexArray != this._currentVertexArray ) {
+
+			this._vertexArrays.bindVertexArrayOES( vertexArray );
+			this._currentVertexArray = vertexArray;
+			this.glState.invalidateVertexAttributes();
+
+		}
+
+		// New object has all attributes disabled. For the cached one nothing 
+		// is going to be changed, so the tracked state does not matter.
+		for ( int i = 0, l = this._enabledAttributes.getLength(); i < l; i ++ ) {
+
+			this._newAttributes.set( i, 0 );
+			this._enabledAttributes.set( i, 0 );
+			this._attributeDivisors[ i ] = 0;
+
+		}
+
+		return isNew;
+
+	}
+
+	/**
+	 * Binds the default vertex array back. Should be called before the attributes
+	 * or the element array buffer are changed without the vertex array object.
+	 */
+	private void unbindVertexArray() {
+
+		if ( this._currentVertexArray == null ) 
+			return;
+
+		this._vertexArrays.bindVertexArrayOES( null );
+		this._currentVertexArray = null;
+		this.glState.invalidateVertexAttributes();
+
+		this._newAttributes = this._defaultNewAttributes;
+		this._enabledAttributes = this._defaultEnabledAttributes;
+		this._attributeDivisors = this._defaultAttributeDivisors;
+
+		// The default vertex array state is still known, but its 
+		// attributes could belong to another geometry
+		this._currentGeometryGroupHash = -1;
+
+	}
+
+	/**
+	 * Deletes the vertex array objects of the geometry.
+	 */
+	public void deleteVertexArrays( WebGLGeometry geometry ) {
+
+		if ( geometry.__webglVertexArrays == null )
+			return;
+
+		List<WebGLVertexArrayObjectOES> vertexArrays = geometry.__webglVertexArrays.values();
+
+		for ( int i = 0; i < vertexArrays.size(); i ++ ) {
+
+			if ( vertexArrays.get( i ) == this._currentVertexArray )
+				unbindVertexArray();
+
+			this._vertexArrays.deleteVertexArrayOES( vertexArrays.get( i ) );
+
+		}
+
+		geometry.__webglVertexArrays.clear();
+
+		List<List<WebGLGeometry>> programs = this._programVertexArrays.values();
+		for ( int i = 0; i < programs.size(); i ++ )
+			programs.get( i ).remove( geometry );
+
+	}
+
+	/**
+	 * Deletes the vertex array objects created for the program.
+	 */
+	private void deleteVertexArrays( Shader program ) {
+
+		List<WebGLGeometry> geometries = this._programVertexArrays.remove( program.getId() );
+
+		if ( geometries == null )
+			return;
+
+		for ( int i = 0; i < geometries.size(); i ++ ) {
+
+			for ( int variant = 0; variant < 2; variant ++ ) {
+
+				WebGLVertexArrayObjectOES vertexArray = geometries.get( i ).__webglVertexArrays.remove( program.getId() * 2 + variant );
+
+				if ( vertexArray == null )
+					continue;
+
+				if ( vertexArray == this._currentVertexArray )
+					unbindVertexArray();
+
+				this._vertexArrays.deleteVertexArrayOES( vertexArray );
+
+			}
+
+		}
+
+	}
+
 	private void initAttributes() {
 
 		for ( int i = 0, l = _newAttributes.getLength(); i < l; i ++ ) {
@@ -729,6 +1058,16 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 
 	private void enableAttribute( Integer attribute ) {
 
+		enableAttribute( attribute, 0 );
+
+	}
+
+	/**
+	 * @param divisor how many instances use the same attribute value, 
+	 * 		0 for per-vertex attributes
+	 */
+	private void enableAttribute( int attribute, int divisor ) {
+
 		_newAttributes.set( attribute,  1);
 
 		if ( _enabledAttributes.get( attribute ) == 0 ) {
@@ -738,6 +1077,13 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 
 		}
 
+		if ( _attributeDivisors[ attribute ] != divisor ) {
+
+			_instancedArrays.vertexAttribDivisorANGLE( attribute, divisor );
+			_attributeDivisors[ attribute ] = divisor;
+
+		}
+
 	}
 
 	private void  disableUnusedAttributes() {
@@ -763,21 +1109,21 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 	{
 
 		// set base
-		Map<String, Integer> attributes = material.getShader().getAttributesLocations();
-		Map<String, Uniform> uniforms = material.getShader().getUniforms();
+		Shader shader = material.getShader();
+		int position = shader.getAttributeLocation(Shader.ATTRIBUTE_POSITION);
 
-		if ( object.morphTargetBase != - 1 && attributes.get("position") >= 0) 
+		if ( object.morphTargetBase != - 1 && position >= 0) 
 		{
 			getGL().bindBuffer( BufferTarget.ARRAY_BUFFER, geometrybuffer.__webglMorphTargetsBuffers.get( object.morphTargetBase ) );
-			enableAttribute( attributes.get("position") );
-			getGL().vertexAttribPointer( attributes.get("position"), 3, DataType.FLOAT, false, 0, 0 );
+			enableAttribute( position );
+			getGL().vertexAttribPointer( position, 3, DataType.FLOAT, false, 0, 0 );
 
 		} 
-		else if ( attributes.get("position") >= 0 ) 
+		else if ( position >= 0 ) 
 		{
 			getGL().bindBuffer( BufferTarget.ARRAY_BUFFER, geometrybuffer.__webglVertexBuffer );
-			enableAttribute( attributes.get("position") );
-			getGL().vertexAttribPointer( attributes.get("position"), 3, DataType.FLOAT, false, 0, 0 );
+			enableAttribute( position );
+			getGL().vertexAttribPointer( position, 3, DataType.FLOAT, false, 0, 0 );
 		}
 
 		if ( object.morphTargetForcedOrder.size() > 0 ) 
@@ -792,19 +1138,21 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 					&& m < ((HasSkinning)material).getNumSupportedMorphTargets() 
 					&& m < order.size() 
 			) {
-				if ( attributes.get("morphTarget" + m )  >= 0 ) 
+				int morphTarget = shader.getMorphTargetLocation( m );
+				if ( morphTarget >= 0 ) 
 				{
 					gl.bindBuffer( BufferTarget.ARRAY_BUFFER, geometrybuffer.__webglMorphTargetsBuffers.get( order.get( m ) ) );
-					enableAttribute( attributes.get("morphTarget" + m ) );
-					gl.vertexAttribPointer( attributes.get("morphTarget" + m) , 3, DataType.FLOAT, false, 0, 0 );
+					enableAttribute( morphTarget );
+					gl.vertexAttribPointer( morphTarget, 3, DataType.FLOAT, false, 0, 0 );
 					
 				}
 
-				if (  attributes.get("morphNormal" + m )  >= 0 && material instanceof HasSkinning && ((HasSkinning)material).isMorphNormals()) 
+				int morphNormal = shader.getMorphNormalLocation( m );
+				if ( morphNormal >= 0 && material instanceof HasSkinning && ((HasSkinning)material).isMorphNormals()) 
 				{
 					gl.bindBuffer( BufferTarget.ARRAY_BUFFER, geometrybuffer.__webglMorphNormalsBuffers.get( order.get( m ) ) );
-					enableAttribute( attributes.get("morphNormal" + m ));
-					gl.vertexAttribPointer( attributes.get("morphNormal" + m ), 3, DataType.FLOAT, false, 0, 0 );
+					enableAttribute( morphNormal );
+					gl.vertexAttribPointer( morphNormal, 3, DataType.FLOAT, false, 0, 0 );
 				}
 
 				object.__webglMorphTargetInfluences.set( m , influences.get( order.get( m ) ));
@@ -866,19 +1214,21 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 				{
 					influenceIndex = activeInfluenceIndices.get( m )[ 1 ].intValue();
 
-					if ( attributes.get( "morphTarget" + m ) >= 0 ) {
+					int morphTarget = shader.getMorphTargetLocation( m );
+					if ( morphTarget >= 0 ) {
 
 						gl.bindBuffer( BufferTarget.ARRAY_BUFFER, geometrybuffer.__webglMorphTargetsBuffers.get( influenceIndex ) );
-						enableAttribute( attributes.get( "morphTarget" + m ) );
-						gl.vertexAttribPointer( attributes.get( "morphTarget" + m ), 3, DataType.FLOAT, false, 0, 0 );
+						enableAttribute( morphTarget );
+						gl.vertexAttribPointer( morphTarget, 3, DataType.FLOAT, false, 0, 0 );
 
 					}
 
-					if ( attributes.get( "morphNormal" + m ) >= 0 && ((HasSkinning)material).isMorphNormals() ) {
+					int morphNormal = shader.getMorphNormalLocation( m );
+					if ( morphNormal >= 0 && ((HasSkinning)material).isMorphNormals() ) {
 
 						gl.bindBuffer( BufferTarget.ARRAY_BUFFER, geometrybuffer.__webglMorphNormalsBuffers.get( influenceIndex ) );
-						enableAttribute( attributes.get( "morphNormal" + m ) );
-						gl.vertexAttribPointer( attributes.get( "morphNormal" + m ), 3, DataType.FLOAT, false, 0, 0 );
+						enableAttribute( morphNormal );
+						gl.vertexAttribPointer( morphNormal, 3, DataType.FLOAT, false, 0, 0 );
 
 					}
 
@@ -905,10 +1255,11 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 		}
 
 		// load updated influences uniform
-		if( uniforms.get("morphTargetInfluences").getLocation() != null ) 
+		WebGLUniformLocation morphTargetInfluences = shader.getUniformLocation(Shader.UNIFORM_MORPH_TARGET_INFLUENCES);
+		if( morphTargetInfluences != null ) 
 		{
 			Float32Array vals = object.__webglMorphTargetInfluences;
-			getGL().uniform1fv( uniforms.get("morphTargetInfluences").getLocation(), vals );
+			getGL().uniform1fv( morphTargetInfluences, vals );
 		}
 	}
 	
@@ -1014,25 +1365,42 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 
 		Map<String, BufferAttribute> geometryAttributes = geometry.getAttributes();
 
-		Map<String, Integer> programAttributes = program.getAttributesLocations();
+		String[] programAttributeNames = program.getActiveAttributeNames();
+		int[] programAttributes = program.getActiveAttributeLocations();
 
-		for ( String key: programAttributes.keySet()) {
+		for ( int i = 0; i < programAttributes.length; i++ ) {
 
-			 Integer programAttribute = programAttributes.get(key);
+			int programAttribute = programAttributes[ i ];
 		
 			if ( programAttribute >= 0 ) {
 
-				BufferAttribute geometryAttribute = geometryAttributes.get( key );
+				BufferAttribute geometryAttribute = geometryAttributes.get( programAttributeNames[ i ] );
 
 				if ( geometryAttribute != null ) {
 
 					int size = geometryAttribute.getItemSize();
 
+					// Interleaved attributes share the buffer: the same binding, 
+					// the stride of the whole item and own offset in it
+					int stride = geometryAttribute.getStride();
+					int offset = geometryAttribute.getOffset();
+
 					gl.bindBuffer( BufferTarget.ARRAY_BUFFER, geometryAttribute.getBuffer() );
 
-					enableAttribute( programAttribute );
+					if ( geometryAttribute instanceof InstancedBufferAttribute && this._instancedArrays != null ) {
+
+						// per-instance data does not depend on the draw call offset
+						enableAttribute( programAttribute, ((InstancedBufferAttribute)geometryAttribute).getMeshPerAttribute() );
+
+						gl.vertexAttribPointer( programAttribute, size, DataType.FLOAT, false, stride * 4, offset * 4 );
 
-					gl.vertexAttribPointer( programAttribute, size, DataType.FLOAT, false, 0, startIndex * size * 4 ); // 4 bytes per Float32
+					} else {
+
+						enableAttribute( programAttribute );
+
+						gl.vertexAttribPointer( programAttribute, size, DataType.FLOAT, false, stride * 4, ( startIndex * stride + offset ) * 4 ); // 4 bytes per Float32
+
+					}
 
 				}
 //				else if ( material.defaultAttributeValues != null ) {
@@ -1058,6 +1426,39 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 	}
 
 	
+	/**
+	 * Sets the constant values of the attributes which have no arrays in the geometry. 
+	 * The constant values are a part of the global state, not of the vertex array object.
+	 */
+	private void setDefaultAttributeValues( Shader program, Geometry geometry ) {
+
+		if ( program.getAttributeLocation(Shader.ATTRIBUTE_COLOR) >= 0 
+				&& geometry.getColors().size() == 0 && geometry.getFaces().size() == 0 ) {
+
+			double defaultAttributeValues[] = new double[] {1.0,1.0,1.0};
+
+			getGL().vertexAttrib3fv( program.getAttributeLocation(Shader.ATTRIBUTE_COLOR), defaultAttributeValues );
+
+		}
+
+		if ( program.getAttributeLocation(Shader.ATTRIBUTE_UV) >= 0 && geometry.getFaceVertexUvs().get( 0 ) == null ) {
+
+			double defaultAttributeValues[] = new double[] {0.0,0.0};
+
+			getGL().vertexAttrib2fv( program.getAttributeLocation(Shader.ATTRIBUTE_UV), defaultAttributeValues );
+
+		}
+
+		if ( program.getAttributeLocation(Shader.ATTRIBUTE_UV2) >= 0 && geometry.getFaceVertexUvs().get( 1 ) == null ) {
+
+			double defaultAttributeValues[] = new double[] {0.0,0.0};
+
+			getGL().vertexAttrib2fv( program.getAttributeLocation(Shader.ATTRIBUTE_UV2), defaultAttributeValues );
+
+		}
+
+	}
+
 	//camera, lights, fog, material, geometry, object
 	public void renderBufferDirect( Camera camera, List<Light> lights, AbstractFog fog, Material material, BufferGeometry geometry, GeometryObject object ) 
 	{
@@ -1066,17 +1467,29 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 
 		Shader program = setProgram( camera, lights, fog, material, object );
 
-		Map<String, Integer> attributes = material.getShader().getAttributesLocations();
-		
 		boolean updateBuffers = false;
 		int wireframeBit = material instanceof HasWireframe && ((HasWireframe)material).isWireframe() ? 1 : 0;
 
 		int geometryGroupHash = ( geometry.getId() * 0xffffff ) + ( material.getShader().getId() * 2 ) + wireframeBit;
 
+		// Draw calls with offsets set the attributes up for every offset
+		boolean isVertexArray = this._vertexArrays != null && geometry.getDrawcalls().size() == 0;
+
+		if ( isVertexArray ) {
+
+			updateBuffers = bindVertexArray( geometry, program, wireframeBit );
+
+		} else {
+
+			unbindVertexArray();
+
+		}
+
 		if ( geometryGroupHash != this._currentGeometryGroupHash ) 
 		{
 			this._currentGeometryGroupHash = geometryGroupHash;
-			updateBuffers = true;
+			updateBuffers = updateBuffers || !isVertexArray;
+			this.info.getRender().buffers ++;
 		}
 		
 		if ( updateBuffers ) {
@@ -1092,13 +1505,16 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 		if ( object instanceof Mesh ) 
 		{
 			BeginMode mode = material instanceof HasWireframe && ((HasWireframe)material).isWireframe() ? BeginMode.LINES : BeginMode.TRIANGLES;
+
+			boolean isInstanced = geometry instanceof InstancedBufferGeometry && this._instancedArrays != null;
+			int instances = isInstanced ? ((InstancedBufferGeometry)geometry).getMaxInstancedCount() : 1;
 			
 			BufferAttribute index = geometry.getAttribute("index");
 
 			if(index != null)
 			{
-				DrawElementsType type = DrawElementsType.UNSIGNED_SHORT;
-				int size = 2;
+				int size = index.getArray().getBytesPerElement();
+				DrawElementsType type = size == 4 ? DrawElementsType.UNSIGNED_INT : DrawElementsType.UNSIGNED_SHORT;
 
 				List<BufferGeometry.DrawCall> offsets = geometry.getDrawcalls();
 
@@ -1112,11 +1528,14 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 
 					}
 
-					getGL().drawElements( mode, index.getArray().getLength(), type, 0 );
+					if ( isInstanced )
+						this._instancedArrays.drawElementsInstancedANGLE( mode, index.getArray().getLength(), type, 0, instances );
+					else
+						getGL().drawElements( mode, index.getArray().getLength(), type, 0 );
 
 					this.info.getRender().calls ++;
-					this.info.getRender().vertices += index.getArray().getLength(); // not really true, here vertices can be shared
-					this.info.getRender().faces += index.getArray().getLength() / 3;
+					this.info.getRender().vertices += index.getArray().getLength() * instances; // not really true, here vertices can be shared
+					this.info.getRender().faces += index.getArray().getLength() / 3 * instances;
 
 				} else {
 					// if there is more than 1 chunk
@@ -1137,11 +1556,14 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 
 						}
 
-						gl.drawElements( mode,  offsets.get( i ).count, type, offsets.get( i ).start * size  );
+						if ( isInstanced )
+							this._instancedArrays.drawElementsInstancedANGLE( mode, offsets.get( i ).count, type, offsets.get( i ).start * size, instances );
+						else
+							gl.drawElements( mode,  offsets.get( i ).count, type, offsets.get( i ).start * size  );
 
 						getInfo().getRender().calls ++;
-						getInfo().getRender().vertices += offsets.get( i ).count; // not really true, here vertices can be shared
-						getInfo().getRender().faces += offsets.get( i ).count / 3;
+						getInfo().getRender().vertices += offsets.get( i ).count * instances; // not really true, here vertices can be shared
+						getInfo().getRender().faces += offsets.get( i ).count / 3 * instances;
 					}
 
 				}
@@ -1162,11 +1584,14 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 
 				// render non-indexed triangles
 
-				gl.drawArrays( mode, 0, position.getArray().getLength() / 3 );
+				if ( isInstanced )
+					this._instancedArrays.drawArraysInstancedANGLE( mode, 0, position.getCount(), instances );
+				else
+					gl.drawArrays( mode, 0, position.getCount() );
 
 				this.info.getRender().calls ++;
-				this.info.getRender().vertices += position.getArray().getLength() / 3;
-				this.info.getRender().faces += position.getArray().getLength() / 9;
+				this.info.getRender().vertices += position.getCount() * instances;
+				this.info.getRender().faces += position.getCount() / 3 * instances;
 
 			}
 			
@@ -1185,10 +1610,10 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 
 			// render particles
 
-			gl.drawArrays( BeginMode.POINTS, 0, position.getArray().getLength() / 3 );
+			gl.drawArrays( BeginMode.POINTS, 0, position.getCount() );
 
 			this.info.getRender().calls ++;
-			this.info.getRender().points += position.getArray().getLength() / 3;
+			this.info.getRender().points += position.getCount();
 		} 
 		else if ( object instanceof Line ) 
 		{
@@ -1202,19 +1627,8 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 
 				// indexed lines
 
-//				var type, size;
-
-//				if ( index.array instanceof Uint32Array ) {
-//
-//					type = _gl.UNSIGNED_INT;
-//					size = 4;
-//
-//				} else {
-
-					DrawElementsType type = DrawElementsType.UNSIGNED_SHORT;
-					int size = 2;
-
-//				}
+				int size = index.getArray().getBytesPerElement();
+				DrawElementsType type = size == 4 ? DrawElementsType.UNSIGNED_INT : DrawElementsType.UNSIGNED_SHORT;
 
 				List<DrawCall> drawcalls = geometry.getDrawcalls();
 
@@ -1227,7 +1641,7 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 
 					}
 
-					gl.drawElements( mode, index.getArray().getLength(), type, 0 ); // 2 bytes per Uint16Array
+					gl.drawElements( mode, index.getArray().getLength(), type, 0 );
 
 					this.info.getRender().calls ++;
 					this.info.getRender().vertices += index.getArray().getLength(); // not really true, here vertices can be shared
@@ -1253,7 +1667,7 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 
 						// render indexed lines
 
-						gl.drawElements( mode, drawcalls.get( i ).count, type, drawcalls.get( i ).start * size ); // 2 bytes per Uint16Array
+						gl.drawElements( mode, drawcalls.get( i ).count, type, drawcalls.get( i ).start * size );
 
 						this.info.getRender().calls ++;
 						this.info.getRender().vertices += drawcalls.get( i ).count; // not really true, here vertices can be shared
@@ -1274,10 +1688,10 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 
 				BufferAttribute position = geometry.getAttribute("position");
 
-				gl.drawArrays( mode, 0, position.getArray().getLength() / 3 );
+				gl.drawArrays( mode, 0, position.getCount() );
 
 				this.info.getRender().calls ++;
-				this.info.getRender().points += position.getArray().getLength() / 3;
+				this.info.getRender().points += position.getCount();
 
 			}
 
@@ -1286,15 +1700,14 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 	
 	public List<GeometryGroup> makeGroups( Geometry geometry, boolean usesFaceMaterial ) {
 		
-		long maxVerticesInGroup = WebGLExtensions.get(gl, WebGLExtensions.Id.OES_element_index_uint) != null ? 4294967296L : 65535L;
+		long maxVerticesInGroup = this._supportsElementIndexUint ? 4294967296L : 65535L;
 		
 		int numMorphTargets = geometry.getMorphTargets().size();
 		int numMorphNormals = geometry.getMorphNormals().size();
 
 		String groupHash;
 
-		Map<String, Integer> hash_map = GWT.isScript() ? 
-				new FastMap<Integer>() : new HashMap<String, Integer>(); 
+		FastIntMap<Integer> hash_map = new FastIntMap<Integer>();
 
 		Map<String, GeometryGroup> groups = GWT.isScript() ? 
 				new FastMap<GeometryGroup>() : new HashMap<String, GeometryGroup>();
@@ -1308,7 +1721,7 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 
 			if ( ! hash_map.containsKey(materialIndex) ) {
 
-				hash_map.put(materialIndex.toString(), 0);
+				hash_map.put(materialIndex, 0);
 
 			}
 
@@ -1325,7 +1738,7 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 
 			if ( groups.get( groupHash ).getVertices() + 3 > maxVerticesInGroup ) {
 
-				hash_map.put( materialIndex.toString(), hash_map.get( materialIndex ) + 1 );
+				hash_map.put( materialIndex, hash_map.get( materialIndex ) + 1 );
 				groupHash = materialIndex + "_" + hash_map.get( materialIndex );
 
 				if ( ! groups.containsKey(groupHash) ) {
@@ -1352,17 +1765,17 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 		Material material = object.getMaterial();
 		boolean addBuffers = false;
 
-		if ( GeometryGroup.geometryGroups.get( geometry.getId() + "" ) == null || geometry.isGroupsNeedUpdate() ) {
+		if ( this._geometryGroups.get( geometry.getId() ) == null || geometry.isGroupsNeedUpdate() ) {
 
-			this._webglObjects.put(object.getId() + "", new ArrayList<WebGLObject>());
+			this._webglObjects.put(object.getId(), new ArrayList<WebGLObject>());
 
-			GeometryGroup.geometryGroups.put( geometry.getId() + "", makeGroups( geometry, material instanceof MeshFaceMaterial ));
+			this._geometryGroups.put( geometry.getId(), makeGroups( geometry, material instanceof MeshFaceMaterial ));
 
 			geometry.setGroupsNeedUpdate( false );
 
 		}
 
-		List<GeometryGroup> geometryGroupsList = GeometryGroup.geometryGroups.get( geometry.getId() + "" );
+		List<GeometryGroup> geometryGroupsList = this._geometryGroups.get( geometry.getId() );
 
 		// create separate VBOs per geometry chunk
 
@@ -1415,6 +1828,9 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 
 		}
 
+		if ( object instanceof GeometryObject )
+			acquireResources( (GeometryObject) object );
+
 		AbstractGeometry geometry = object instanceof GeometryObject ? ((GeometryObject)object).getGeometry() : null;
 
 		if ( geometry == null ) {
@@ -1475,7 +1891,7 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 
 				} else if ( geometry instanceof Geometry ) {
 
-					List<GeometryGroup> geometryGroupsList = GeometryGroup.geometryGroups.get( geometry.getId() + "" );
+					List<GeometryGroup> geometryGroupsList = this._geometryGroups.get( geometry.getId() );
 
 					for ( int i = 0,l = geometryGroupsList.size(); i < l; i ++ ) {
 
@@ -1502,10 +1918,10 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 	private void addBuffer( WebGLGeometry buffer, GeometryObject object ) {
 
 		int id = object.getId();
-		List<WebGLObject> list = _webglObjects.get(id + "");
+		List<WebGLObject> list = _webglObjects.get(id);
 		if(list == null) {
 			list = new ArrayList<WebGLObject>();
-			_webglObjects.put(id + "", list);
+			_webglObjects.put(id, list);
 		}
 		
 		WebGLObject webGLObject = new WebGLObject(buffer, object);
@@ -1513,107 +1929,437 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 		list.add(webGLObject);
 	}
 
-	private void projectObject( Object3D scene, Object3D object ) {
+	/**
+	 * Registers the object as the user of its geometry and material. If the 
+	 * geometry or the material of the object was changed, the previous 
+	 * ones are released and the object buffers are added again.
+	 */
+	private void acquireResources( GeometryObject object ) {
 
-		if ( object.isVisible() == false ) return;
+		AbstractGeometry geometry = object.getGeometry();
+		Material material = object.getMaterial();
 
-		if ( object instanceof Scene /*|| object instanceof Group */) {
+		if ( object.__webglGeometry == geometry && object.__webglMaterial == material )
+			return;
 
-			// skip
+		if ( object.__webglActive ) {
 
-		} else {
+			this._webglObjects.remove( object.getId() );
+			object.__webglActive = false;
 
-			if(!(object instanceof Light))
-				initObject( object, scene );
+		}
 
-			if ( object instanceof Light ) {
+		// acquire first, so the shared resources are not released
+		if ( geometry != null )
+			geometry.addUser();
 
-				lights.add( (Light) object );
+		acquireMaterial( material );
 
-			} /*else if ( object instanceof Sprite ) {
+		releaseResources( object );
 
-				sprites.push( object );
+		object.__webglGeometry = geometry;
+		object.__webglMaterial = material;
 
-			} else if ( object instanceof LensFlare ) {
+	}
 
-				lensFlares.push( object );
+	private void acquireMaterial( Material material ) {
 
-			} */else {
+		if ( material == null )
+			return;
 
-				List<WebGLObject> webglObjects = this._webglObjects.get( object.getId() + "" );	
-			
-				if ( webglObjects != null && ( object.isFrustumCulled() == false || _frustum.isIntersectsObject( (GeometryObject) object ) == true ) ) {
+		material.addUser();
 
-					updateObject( (GeometryObject) object, scene );
+		if ( material instanceof MeshFaceMaterial ) {
 
-					for ( int i = 0, l = webglObjects.size(); i < l; i ++ ) {
+			List<Material> materials = ((MeshFaceMaterial)material).getMaterials();
 
-						WebGLObject webglObject = webglObjects.get(i);
+			for ( int i = 0, l = materials.size(); i < l; i ++ )
+				materials.get( i ).addUser();
 
-						webglObject.unrollBufferMaterial(this);
+		}
 
-						webglObject.render = true;
+	}
 
-						if ( this.sortObjects == true ) {
+	/**
+	 * Unregisters the object as the user of its geometry and material. 
+	 * The geometry and the material are deallocated if the object was 
+	 * their last user.
+	 */
+	private void releaseResources( GeometryObject object ) {
 
-							if ( object.getRenderDepth() > 0 ) {
+		AbstractGeometry geometry = object.__webglGeometry;
+		Material material = object.__webglMaterial;
 
-								webglObject.z = object.getRenderDepth();
+		object.__webglGeometry = null;
+		object.__webglMaterial = null;
 
-							} else {
+		if ( geometry != null && geometry.removeUser() == 0 )
+			deallocateGeometry( geometry );
 
-								_vector3.setFromMatrixPosition( object.getMatrixWorld() );
-								_vector3.applyProjection( _projScreenMatrix );
+		releaseMaterial( material );
 
-								webglObject.z = _vector3.getZ();
+	}
 
-							}
+	private void releaseMaterial( Material material ) {
 
-						}
+		if ( material == null )
+			return;
 
-					}
+		if ( material instanceof MeshFaceMaterial ) {
 
-				}
+			List<Material> materials = ((MeshFaceMaterial)material).getMaterials();
 
-			}
+			for ( int i = 0, l = materials.size(); i < l; i ++ )
+				releaseMaterial( materials.get( i ) );
 
 		}
 
-		for ( int i = 0, l = object.getChildren().size(); i < l; i ++ ) {
-
-			projectObject( scene, object.getChildren().get( i ) );
-
-		}
+		if ( material.removeUser() == 0 )
+			deallocateMaterial( material );
 
 	}
-	
-	public Material getBufferMaterial( GeometryObject object, GeometryGroup geometryGroup ) 
-	{
 
-		return object.getMaterial() instanceof MeshFaceMaterial
-			 ? ((MeshFaceMaterial)object.getMaterial()).getMaterials().get( geometryGroup.getMaterialIndex() )
-			 : object.getMaterial();
+	/**
+	 * Deallocates the objects removed from the scene since the last 
+	 * rendering, unless they were added back.
+	 */
+	private void deallocateRemovedObjects( Scene scene ) {
 
-	}
-	
-	public Material getBufferMaterial( GeometryObject object, Geometry geometry ) {
+		List<Object3D> removed = scene.__objectsRemoved;
 
-		return object.getMaterial();
+		for ( int i = 0, l = removed.size(); i < l; i ++ ) {
 
-	}
+			Object3D object = removed.get( i );
 
-	
-	public void updateObject( GeometryObject object, Object3D scene ) 
-	{
-		AbstractGeometry geometry = object.getGeometry();
-		
-		Material material = null;
+			Object3D root = object;
+			while ( root.getParent() != null )
+				root = root.getParent();
 
-		if ( geometry instanceof BufferGeometry ) {
+			if ( root == scene )
+				continue;
 
-			((BufferGeometry)geometry).setDirectBuffers(gl);
+			object.traverse(new Traverse() {
 
-		} else if ( object instanceof Mesh ) {
+				@Override
+				public void callback(Object3D child) {
+					deallocateObject( child );
+				}
+
+			});
+
+		}
+
+		removed.clear();
+
+	}
+
+	/**
+	 * Removes the object from the GL context. The geometry and the material 
+	 * of the object are deallocated if there are no more objects using them. 
+	 * The objects removed from a rendered scene are deallocated automatically, 
+	 * this method is for the objects which are removed from a detached subtree 
+	 * or not rendered anymore. The object is initialized again if it is rendered 
+	 * after that.
+	 */
+	public void deallocateObject( Object3D object ) {
+
+		if ( ! object.__webglInit )
+			return;
+
+		object.__webglInit = false;
+		object.__webglActive = false;
+
+		object._modelViewMatrix = null;
+		object._normalMatrix = null;
+
+		this._webglObjects.remove( object.getId() );
+
+		if ( object instanceof GeometryObject )
+			releaseResources( (GeometryObject) object );
+
+	}
+
+	/**
+	 * Deletes the GL buffers and vertex array objects of the geometry and drops 
+	 * the cached arrays created for the upload. The source data of the geometry 
+	 * is kept, so the geometry is uploaded again if it is rendered after that.
+	 */
+	public void deallocateGeometry( AbstractGeometry geometry ) {
+
+		if ( ! geometry.__webglInit )
+			return;
+
+		geometry.__webglInit = false;
+
+		if ( geometry instanceof BufferGeometry ) {
+
+			for ( BufferAttribute attribute : ((BufferGeometry)geometry).getAttributes().values() ) {
+
+				// interleaved attributes share the buffer
+				if ( attribute.getBuffer() == null )
+					continue;
+
+				gl.deleteBuffer( attribute.getBuffer() );
+				attribute.setBuffer( null );
+				attribute.setNeedsUpdate( true );
+
+			}
+
+			deleteVertexArrays( geometry );
+
+		} else {
+
+			List<GeometryGroup> geometryGroupsList = this._geometryGroups.remove( geometry.getId() );
+
+			if ( geometryGroupsList != null ) {
+
+				for ( int i = 0, l = geometryGroupsList.size(); i < l; i ++ )
+					deleteBuffers( geometryGroupsList.get( i ) );
+
+			}
+
+			// Line and PointCloud buffers
+			deleteBuffers( geometry );
+
+		}
+
+	}
+
+	private void deleteBuffers( WebGLGeometry geometry ) {
+
+		if ( geometry.__webglVertexBuffer != null )
+			this.getInfo().getMemory().geometries --;
+
+		WebGLBuffer[] buffers = {
+			geometry.__webglVertexBuffer, geometry.__webglNormalBuffer, geometry.__webglTangentBuffer,
+			geometry.__webglColorBuffer, geometry.__webglUVBuffer, geometry.__webglUV2Buffer,
+			geometry.__webglLineDistanceBuffer, geometry.__webglSkinIndicesBuffer, geometry.__webglSkinWeightsBuffer,
+			geometry.__webglFaceBuffer, geometry.__webglLineBuffer
+		};
+
+		for ( int i = 0; i < buffers.length; i ++ )
+			if ( buffers[ i ] != null )
+				gl.deleteBuffer( buffers[ i ] );
+
+		geometry.__webglVertexBuffer = null;
+		geometry.__webglNormalBuffer = null;
+		geometry.__webglTangentBuffer = null;
+		geometry.__webglColorBuffer = null;
+		geometry.__webglUVBuffer = null;
+		geometry.__webglUV2Buffer = null;
+		geometry.__webglLineDistanceBuffer = null;
+		geometry.__webglSkinIndicesBuffer = null;
+		geometry.__webglSkinWeightsBuffer = null;
+		geometry.__webglFaceBuffer = null;
+		geometry.__webglLineBuffer = null;
+
+		if ( geometry.__webglMorphTargetsBuffers != null ) {
+
+			for ( int i = 0, l = geometry.__webglMorphTargetsBuffers.size(); i < l; i ++ )
+				gl.deleteBuffer( geometry.__webglMorphTargetsBuffers.get( i ) );
+
+			geometry.__webglMorphTargetsBuffers = null;
+
+		}
+
+		if ( geometry.__webglMorphNormalsBuffers != null ) {
+
+			for ( int i = 0, l = geometry.__webglMorphNormalsBuffers.size(); i < l; i ++ )
+				gl.deleteBuffer( geometry.__webglMorphNormalsBuffers.get( i ) );
+
+			geometry.__webglMorphNormalsBuffers = null;
+
+		}
+
+		// the custom attribute buffers belong to the material
+		geometry.__webglCustomAttributesList = null;
+
+		deleteVertexArrays( geometry );
+
+		geometry.dispose();
+
+	}
+
+	/**
+	 * Walks the scene graph and collects the objects to render. The scene graph 
+	 * is used as the bounding volume hierarchy: the subtree which bounding 
+	 * box is out of the frustum is skipped with one test.
+	 * 
+	 * @param planes the frustum planes the object still needs to be tested against, 
+	 * see {@link Frustum#intersectsBox(thothbot.parallax.core.shared.math.Box3, int)}
+	 */
+	private void projectObject( Object3D scene, Object3D object, int planes ) {
+
+		if ( object.isVisible() == false ) return;
+
+		if ( planes != 0 && object.getSubtreeBoundingBoxWorld() != null ) {
+
+			planes = _frustum.intersectsBox( object.getSubtreeBoundingBoxWorld(), planes );
+
+			if ( planes < 0 ) return;
+
+		}
+
+		if ( object instanceof Scene /*|| object instanceof Group */) {
+
+			// skip
+
+		} else {
+
+			if(!(object instanceof Light))
+				initObject( object, scene );
+
+			if ( object instanceof Light ) {
+
+				lights.add( (Light) object );
+
+			} /*else if ( object instanceof Sprite ) {
+
+				sprites.push( object );
+
+			} else if ( object instanceof LensFlare ) {
+
+				lensFlares.push( object );
+
+			} */else {
+
+				List<WebGLObject> webglObjects = this._webglObjects.get( object.getId() );	
+			
+				if ( webglObjects != null && isInFrustum( object, planes ) ) {
+
+					if ( this.occlusionBuffer != null && object.isOccluder() ) {
+
+						this.occlusionBuffer.rasterizeOccluder( (GeometryObject) object );
+
+					}
+
+					// Occludees are tested after all occluders are rasterized. 
+					// All objects are deferred, so the submission order is not changed.
+					if ( this.occlusionBuffer != null ) {
+
+						_occlusionCandidates.add( (GeometryObject) object );
+
+					} else {
+
+						projectWebGLObjects( scene, (GeometryObject) object, webglObjects );
+
+					}
+
+				}
+
+			}
+
+		}
+
+		for ( int i = 0, l = object.getChildren().size(); i < l; i ++ ) {
+
+			projectObject( scene, object.getChildren().get( i ), planes );
+
+		}
+
+	}
+
+	private void projectWebGLObjects( Object3D scene, GeometryObject object, List<WebGLObject> webglObjects ) {
+
+		updateObject( object, scene );
+
+		for ( int i = 0, l = webglObjects.size(); i < l; i ++ ) {
+
+			WebGLObject webglObject = webglObjects.get(i);
+
+			webglObject.unrollBufferMaterial(this);
+
+			webglObject.render = true;
+
+			if ( this.sortObjects == true ) {
+
+				if ( object.getRenderDepth() > 0 ) {
+
+					webglObject.z = object.getRenderDepth();
+
+				} else {
+
+					_vector3.setFromMatrixPosition( object.getMatrixWorld() );
+					_vector3.applyProjection( _projScreenMatrix );
+
+					webglObject.z = _vector3.getZ();
+
+				}
+
+			}
+
+		}
+
+	}
+
+	/**
+	 * Projects the objects which were not hidden by the occluders 
+	 * rasterized during {@link #projectObject(Object3D, Object3D, int)}, 
+	 * in the order they were found in the scene.
+	 */
+	private void projectOccludedObjects( Object3D scene ) {
+
+		for ( int i = 0, l = _occlusionCandidates.size(); i < l; i ++ ) {
+
+			GeometryObject object = _occlusionCandidates.get( i );
+
+			if ( !object.isOccluder() && object.getBoundingBoxWorld() != null 
+					&& this.occlusionBuffer.isOccluded( object.getBoundingBoxWorld() ) ) {
+
+				this.getInfo().getRender().occluded ++;
+
+			} else {
+
+				projectWebGLObjects( scene, object, this._webglObjects.get( object.getId() ) );
+
+			}
+
+		}
+
+		_occlusionCandidates.clear();
+
+	}
+
+	/**
+	 * Checks if the object itself is in the frustum, when its subtree 
+	 * bounding box has already passed the test against the frustum planes.
+	 */
+	public boolean isInFrustum( Object3D object, int planes ) {
+
+		// Without children the subtree box is the object box
+		if ( planes == 0 || object.getChildren().isEmpty() ) return true;
+
+		return object.getBoundingBoxWorld() == null || _frustum.intersectsBox( object.getBoundingBoxWorld(), planes ) >= 0;
+
+	}
+	
+	public Material getBufferMaterial( GeometryObject object, GeometryGroup geometryGroup ) 
+	{
+
+		return object.getMaterial() instanceof MeshFaceMaterial
+			 ? ((MeshFaceMaterial)object.getMaterial()).getMaterials().get( geometryGroup.getMaterialIndex() )
+			 : object.getMaterial();
+
+	}
+	
+	public Material getBufferMaterial( GeometryObject object, Geometry geometry ) {
+
+		return object.getMaterial();
+
+	}
+
+	
+	public void updateObject( GeometryObject object, Object3D scene ) 
+	{
+		AbstractGeometry geometry = object.getGeometry();
+		
+		Material material = null;
+
+		if ( geometry instanceof BufferGeometry ) {
+
+			((BufferGeometry)geometry).setDirectBuffers(gl);
+
+		} else if ( object instanceof Mesh ) {
 
 			// check all geometry groups
 
@@ -1623,7 +2369,7 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 
 			}
 
-			List<GeometryGroup> geometryGroupsList = GeometryGroup.geometryGroups.get( geometry.getId() + "" );
+			List<GeometryGroup> geometryGroupsList = this._geometryGroups.get( geometry.getId() );
 
 			for ( int i = 0, il = geometryGroupsList.size(); i < il; i ++ ) {
 
@@ -1724,12 +2470,21 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 	 * @param forceClear   optional
 	 */
 	public void render( Scene scene, Camera camera, RenderTargetTexture renderTarget, boolean forceClear ) 
-	{		
+	{
+		this._renderDepth ++;
+
 		// Render basic plugins
 		if(renderPlugins( this.plugins, scene, camera, Plugin.TYPE.BASIC_RENDER ))
+		{
+			endRender();
 			return;
+		}
 		
 		Log.debug("Called render()");
+
+		this.glCounters.resetCounters();
+
+		deallocateRemovedObjects( scene );
 				
 		AbstractFog fog = scene.getFog();
 
@@ -1739,6 +2494,10 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 		this._currentMaterialId = -1;
 		this._lightsNeedUpdate = true;
 		
+		FrameProfiler profiler = this.getInfo().getProfiler();
+
+		profiler.begin( FrameProfiler.PHASE_UPDATE_MATRIX_WORLD );
+
 		if ( this.isAutoUpdateScene() ) 
 		{
 			scene.updateMatrixWorld(false);
@@ -1750,56 +2509,45 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 			camera.updateMatrixWorld(false);
 		}
 
+		profiler.end();
+
 		camera.getMatrixWorldInverse().getInverse( camera.getMatrixWorld() );
 		
 		_projScreenMatrix.multiply( camera.getProjectionMatrix(), camera.getMatrixWorldInverse() );
 		_frustum.setFromMatrix( _projScreenMatrix );
 
-		this.lights = new ArrayList<Light>();
-		this.opaqueObjects = new ArrayList<WebGLObject>();
-		this.transparentObjects = new ArrayList<WebGLObject>();
+		this.lights.clear();
+		this.opaqueObjects.clear();
+		this.transparentObjects.clear();
+
+		if ( this.occlusionBuffer != null ) {
+
+			this.occlusionBuffer.clear();
+			this.occlusionBuffer.setViewProjection( _projScreenMatrix );
+			this.getInfo().getRender().occluded = 0;
+
+		}
+
+		profiler.begin( FrameProfiler.PHASE_PROJECT_OBJECT );
+
+		projectObject( scene, scene, Frustum.ALL_PLANES );
+
+		if ( this.occlusionBuffer != null ) {
+
+			projectOccludedObjects( scene );
 
-		projectObject( scene, scene );
+		}
+
+		profiler.end();
 
 		if ( this.isSortObjects() ) {
-			
-			Collections.sort(opaqueObjects, new Comparator<WebGLObject>() {
 
-				@Override
-				public int compare(WebGLObject a, WebGLObject b) {
-					if ( a.z != b.z ) {
-					
-						return (int)(b.z - a.z);
-		
-					} else {
-		
-						return a.id - b.id;
-		
-					}
-			
-				}
-			});
-			
-			Collections.sort(transparentObjects, new Comparator<WebGLObject>() {
+			profiler.begin( FrameProfiler.PHASE_SORT );
 
-				@Override
-				public int compare(WebGLObject a, WebGLObject b) {
-					if ( a.material.getId() != b.material.getId() ) {
-				
-						return a.material.getId() - b.material.getId();
-		
-					} else if ( a.z != b.z ) {
-		
-						return (int)(a.z - b.z);
-		
-					} else {
-		
-						return a.id - b.id;
-		
-					}
-			
-				}
-			});
+			sortOpaqueObjects( opaqueObjects );
+			sortTransparentObjects( transparentObjects );
+
+			profiler.end();
 
 		}
 
@@ -1810,6 +2558,10 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 		this.getInfo().getRender().vertices = 0;
 		this.getInfo().getRender().faces = 0;
 		this.getInfo().getRender().points = 0;
+		this.getInfo().getRender().programs = 0;
+		this.getInfo().getRender().materials = 0;
+		this.getInfo().getRender().buffers = 0;
+		this.glState.resetCounters();
 
 		setRenderTarget( renderTarget );
 
@@ -1818,6 +2570,8 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 			clear( this.isAutoClearColor(), this.isAutoClearDepth(), this.isAutoClearStencil() );
 		}
 		
+		profiler.begin( FrameProfiler.PHASE_DRAW );
+
 		// set matrices for immediate objects
 
 		for ( int i = 0, il = this._webglObjectsImmediate.size(); i < il; i ++ ) 
@@ -1869,6 +2623,8 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 			renderObjectsImmediate( _webglObjectsImmediate, true, camera, lights, fog, true, material );
 		}
 
+		profiler.end();
+
 		// custom render plugins (post pass)
 		renderPlugins( this.plugins, scene, camera, Plugin.TYPE.POST_RENDER );
 
@@ -1885,8 +2641,35 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 		this.setDepthTest( true );
 		this.setDepthWrite( true );
 
+		// Free the idle render targets once per frame
+		if ( renderTarget == null ) 
+		{
+			this.renderTargetPool.update();
+
+			this._lastCamera = camera;
+		}
+
+		updateCallsInfo();
+
+		endRender();
+
 //		 getGL().finish();
 	}
+
+	/**
+	 * Uploads the queued textures at the end of the top-level rendering, 
+	 * also when it renders to a target only.
+	 */
+	private void endRender()
+	{
+		if ( -- this._renderDepth > 0 )
+			return;
+
+		FrameProfiler profiler = this.getInfo().getProfiler();
+		profiler.begin( FrameProfiler.PHASE_TEXTURE_UPLOAD );
+		uploadTextures();
+		profiler.end();
+	}
 	
 	public void renderObjectsImmediate ( List<WebGLObject> renderList, Boolean isTransparentMaterial, Camera camera,
 				List<Light> lights, AbstractFog fog, boolean useBlending, Material overrideMaterial ) {
@@ -1933,6 +2716,8 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 
 		Shader program = setProgram( camera, lights, fog, material, object );
 
+		unbindVertexArray();
+
 		this._currentGeometryGroupHash = - 1;
 
 		setMaterialFaces( material );
@@ -1950,6 +2735,23 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 
 	}
 
+	private void updateCallsInfo() 
+	{
+		WebGlRendererInfo.WebGLRenderInfoCalls calls = this.getInfo().getCalls();
+
+		calls.useProgram = this.glCounters.getUseProgramCalls();
+		calls.bindTexture = this.glCounters.getBindTextureCalls();
+		calls.bindBuffer = this.glCounters.getBindBufferCalls();
+		calls.uniform = this.glCounters.getUniformCalls();
+		calls.bufferData = this.glCounters.getBufferDataCalls();
+		calls.texImage = this.glCounters.getTexImageCalls();
+		calls.bufferUploadBytes = this.glCounters.getBufferUploadBytes();
+		calls.textureUploadBytes = this.glCounters.getTextureUploadBytes();
+
+		this.getInfo().getMemory().geometryBytes = this.glCounters.getBufferMemory();
+		this.getInfo().getMemory().textureBytes = this.glCounters.getTextureMemory();
+	}
+
 	private boolean renderPlugins( List<Plugin> plugins, Scene scene, Camera camera, Plugin.TYPE type ) 
 	{		
 		if ( plugins.size() == 0 ) 
@@ -1981,44 +2783,126 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 			this._currentGeometryGroupHash = -1;
 			this._currentMaterialId = -1;
 
-			this._lightsNeedUpdate = true;
+			this._lightsNeedUpdate = true;
+
+			this.getInfo().getProfiler().begin( plugin.getClass().getSimpleName() );
+
+			plugin.render( camera, lights, _currentWidth, _currentHeight );
+
+			this.getInfo().getProfiler().end();
+
+			// reset state after plugin (anything could have changed)
+
+			this._currentProgram = null;
+			this._currentCamera = null;
+
+			this._oldBlending = null;
+			this._oldDepthTest = null;
+			this._oldDepthWrite = null;
+			this.cache_oldMaterialSided = null;
+
+			this._currentGeometryGroupHash = -1;
+			this._currentMaterialId = -1;
+
+			this._lightsNeedUpdate = true;
+			
+			plugin.setRendering(false);
+			
+			retval = true;
+		}
+		
+		return retval;
+	}
+
+	/**
+	 * Opaque objects are rendered front-to-back or grouped by 
+	 * the GL state, see {@link OPAQUE_ORDER}.
+	 */
+	private void sortOpaqueObjects( WebGLRenderList renderList )
+	{
+		double minZ = Double.POSITIVE_INFINITY;
+		double maxZ = Double.NEGATIVE_INFINITY;
+
+		for ( int i = 0, il = renderList.size(); i < il; i ++ ) {
+
+			double z = renderList.get( i ).z;
+			if ( z < minZ ) minZ = z;
+			if ( z > maxZ ) maxZ = z;
+
+		}
+
+		for ( int i = 0, il = renderList.size(); i < il; i ++ ) {
+
+			WebGLObject webglObject = renderList.get( i );
+
+			int depth = WebGLRenderList.quantizeDepth( webglObject.z, minZ, maxZ );
+
+			// Unlike the shader id, the program key does not change when the shader is rebuilt
+			ProgramKey programKey = this._materialPrograms.get( webglObject.material.getId() );
+			int program = programKey != null ? programKey.hashCode() : 0;
+
+			if ( this.opaqueOrder == OPAQUE_ORDER.STATE ) {
+
+				// program (12 bits) | material (20 bits) : geometry (24 bits) | depth bucket (8 bits)
+				int bucket = depth >>> ( WebGLRenderList.DEPTH_BITS - STATE_ORDER_DEPTH_BITS );
+
+				renderList.setKey( i, 
+						( ( program & 0xFFF ) << 20 ) | ( webglObject.material.getId() & 0xFFFFF ), 
+						( ( webglObject.buffer.getId() & 0xFFFFFF ) << STATE_ORDER_DEPTH_BITS ) | bucket );
+
+			} else {
+
+				// depth (30 bits) : program (8 bits) | material (12 bits) | geometry (12 bits)
+				renderList.setKey( i, depth, 
+						( ( program & 0xFF ) << 24 ) | ( ( webglObject.material.getId() & 0xFFF ) << 12 ) 
+						| ( webglObject.buffer.getId() & 0xFFF ) );
+
+			}
+
+		}
+
+		renderList.sort();
+	}
+
+	/**
+	 * Transparent objects are grouped by material and rendered back-to-front.
+	 */
+	private void sortTransparentObjects( WebGLRenderList renderList )
+	{
+		double minZ = Double.POSITIVE_INFINITY;
+		double maxZ = Double.NEGATIVE_INFINITY;
+
+		for ( int i = 0, il = renderList.size(); i < il; i ++ ) {
 
-			plugin.render( camera, lights, _currentWidth, _currentHeight );
+			double z = renderList.get( i ).z;
+			if ( z < minZ ) minZ = z;
+			if ( z > maxZ ) maxZ = z;
 
-			// reset state after plugin (anything could have changed)
+		}
 
-			this._currentProgram = null;
-			this._currentCamera = null;
+		for ( int i = 0, il = renderList.size(); i < il; i ++ ) {
 
-			this._oldBlending = null;
-			this._oldDepthTest = null;
-			this._oldDepthWrite = null;
-			this.cache_oldMaterialSided = null;
+			WebGLObject webglObject = renderList.get( i );
 
-			this._currentGeometryGroupHash = -1;
-			this._currentMaterialId = -1;
+			renderList.setKey( i, webglObject.material.getId(), 
+					WebGLRenderList.DEPTH_MAX - WebGLRenderList.quantizeDepth( webglObject.z, minZ, maxZ ) );
 
-			this._lightsNeedUpdate = true;
-			
-			plugin.setRendering(false);
-			
-			retval = true;
 		}
-		
-		return retval;
+
+		renderList.sort();
 	}
 
-	private void renderObjects (List<WebGLObject> renderList, Camera camera, List<Light> lights, AbstractFog fog, boolean useBlending ) 
+	private void renderObjects (WebGLRenderList renderList, Camera camera, List<Light> lights, AbstractFog fog, boolean useBlending ) 
 	{
 		renderObjects ( renderList, camera, lights, fog, useBlending, null);
 	}
 
 	//renderList, camera, lights, fog, useBlending, overrideMaterial
-	private void renderObjects (List<WebGLObject> renderList, Camera camera, List<Light> lights, AbstractFog fog, boolean useBlending, Material overrideMaterial ) 
+	private void renderObjects (WebGLRenderList renderList, Camera camera, List<Light> lights, AbstractFog fog, boolean useBlending, Material overrideMaterial ) 
 	{		
 		Material material = null;
 		
-		for ( int i = renderList.size() - 1; i != - 1; i -- ) {
+		for ( int i = 0, il = renderList.size(); i < il; i ++ ) {
 
 			WebGLObject webglObject = renderList.get( i );
 
@@ -2060,6 +2944,9 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 
 		}
 
+		// Do not let the other code change the bound vertex array object
+		unbindVertexArray();
+
 	}
 	
 	/**
@@ -2074,13 +2961,25 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 
 		Shader program = setProgram( camera, lights, fog, material, object );
 
-		Map<String, Integer> attributes = material.getShader().getAttributesLocations();
-
 		boolean updateBuffers = false;
 		int wireframeBit = material instanceof HasWireframe && ((HasWireframe)material).isWireframe() ? 1 : 0;
 
 		int geometryGroupHash = ( geometry.getId() * 0xffffff ) + ( material.getShader().getId() * 2 ) + wireframeBit;
 
+		// Morph targets are bound per object, by the influences order
+		boolean isVertexArray = this._vertexArrays != null 
+				&& !(material instanceof HasSkinning && ( ((HasSkinning)material).isMorphTargets() || ((HasSkinning)material).isMorphNormals() ) );
+
+		if ( isVertexArray ) {
+
+			updateBuffers = bindVertexArray( geometry, program, wireframeBit );
+
+		} else {
+
+			unbindVertexArray();
+
+		}
+
 //		Log.error("--- renderBuffer() geometryGroupHash=" + geometryGroupHash 
 //				+ ", _currentGeometryGroupHash=" +  this._currentGeometryGroupHash
 //				+ ", program.id=" + program.getId()
@@ -2092,7 +2991,8 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 		if ( geometryGroupHash != this._currentGeometryGroupHash ) 
 		{
 			this._currentGeometryGroupHash = geometryGroupHash;
-			updateBuffers = true;
+			updateBuffers = updateBuffers || !isVertexArray;
+			this.info.getRender().buffers ++;
 		}
 		
 		if ( updateBuffers ) {
@@ -2101,14 +3001,17 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 
 		}
 
+		// Not a part of the vertex array object, so set also for the cached one
+		setDefaultAttributeValues( program, (Geometry)object.getGeometry() );
+
 		// vertices
-		if ( !(material instanceof HasSkinning && ((HasSkinning)material).isMorphTargets()) && attributes.get("position") >= 0 ) 
+		if ( !(material instanceof HasSkinning && ((HasSkinning)material).isMorphTargets()) && program.getAttributeLocation(Shader.ATTRIBUTE_POSITION) >= 0 ) 
 		{
 			if ( updateBuffers ) 
 			{
 				getGL().bindBuffer( BufferTarget.ARRAY_BUFFER, geometry.__webglVertexBuffer );
-				enableAttribute( attributes.get("position") );
-				getGL().vertexAttribPointer( attributes.get("position"), 3, DataType.FLOAT, false, 0, 0 );
+				enableAttribute( program.getAttributeLocation(Shader.ATTRIBUTE_POSITION) );
+				getGL().vertexAttribPointer( program.getAttributeLocation(Shader.ATTRIBUTE_POSITION), 3, DataType.FLOAT, false, 0, 0 );
 			}
 
 		} 
@@ -2126,104 +3029,90 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 
 			if ( geometry.__webglCustomAttributesList != null ) 
 			{
+				Map<String, Integer> attributes = program.getAttributesLocations();
+
 				for ( int i = 0; i < geometry.__webglCustomAttributesList.size(); i ++ ) 
 				{
 					Attribute attribute = geometry.__webglCustomAttributesList.get( i );
 
-					if( attributes.get( attribute.belongsToAttribute ) >= 0 ) 
+					Integer location = attributes.get( attribute.belongsToAttribute );
+					if( location != null && location >= 0 ) 
 					{
 						getGL().bindBuffer( BufferTarget.ARRAY_BUFFER, attribute.buffer );
-						enableAttribute( attributes.get( attribute.belongsToAttribute ) );
-						getGL().vertexAttribPointer( attributes.get( attribute.belongsToAttribute ), attribute.size, DataType.FLOAT, false, 0, 0 );
+						enableAttribute( location );
+						getGL().vertexAttribPointer( location, attribute.size, DataType.FLOAT, false, 0, 0 );
 					}
 				}
 			}
 
 			// colors
-			if ( attributes.get("color") >= 0 ) 
+			if ( program.getAttributeLocation(Shader.ATTRIBUTE_COLOR) >= 0 ) 
 			{
 				if ( ((Geometry)object.getGeometry()).getColors().size() > 0 || ((Geometry)object.getGeometry()).getFaces().size() > 0 ) {
 
 					getGL().bindBuffer( BufferTarget.ARRAY_BUFFER, geometry.__webglColorBuffer );
-					enableAttribute( attributes.get("color") );
-					getGL().vertexAttribPointer( attributes.get("color"), 3, DataType.FLOAT, false, 0, 0 );
-
-				} else {
-
-					double defaultAttributeValues[] = new double[] {1.0,1.0,1.0};
-					
-					getGL().vertexAttrib3fv( attributes.get("color"), defaultAttributeValues);
+					enableAttribute( program.getAttributeLocation(Shader.ATTRIBUTE_COLOR) );
+					getGL().vertexAttribPointer( program.getAttributeLocation(Shader.ATTRIBUTE_COLOR), 3, DataType.FLOAT, false, 0, 0 );
 
 				}
 			}
 
 			// normals
-			if ( attributes.get("normal") >= 0 )
+			if ( program.getAttributeLocation(Shader.ATTRIBUTE_NORMAL) >= 0 )
 			{
 				getGL().bindBuffer( BufferTarget.ARRAY_BUFFER, geometry.__webglNormalBuffer );
-				enableAttribute( attributes.get("normal") );
-				getGL().vertexAttribPointer( attributes.get("normal"), 3, DataType.FLOAT, false, 0, 0 );
+				enableAttribute( program.getAttributeLocation(Shader.ATTRIBUTE_NORMAL) );
+				getGL().vertexAttribPointer( program.getAttributeLocation(Shader.ATTRIBUTE_NORMAL), 3, DataType.FLOAT, false, 0, 0 );
 			}
 
 			// tangents
-			if ( attributes.get("tangent") >= 0 ) 
+			if ( program.getAttributeLocation(Shader.ATTRIBUTE_TANGENT) >= 0 ) 
 			{
 				getGL().bindBuffer( BufferTarget.ARRAY_BUFFER, geometry.__webglTangentBuffer );
-				enableAttribute( attributes.get("tangent") );
-				getGL().vertexAttribPointer( attributes.get("tangent"), 4, DataType.FLOAT, false, 0, 0 );
+				enableAttribute( program.getAttributeLocation(Shader.ATTRIBUTE_TANGENT) );
+				getGL().vertexAttribPointer( program.getAttributeLocation(Shader.ATTRIBUTE_TANGENT), 4, DataType.FLOAT, false, 0, 0 );
 			}
 
 			// uvs
-			if ( attributes.get("uv") >= 0 )
+			if ( program.getAttributeLocation(Shader.ATTRIBUTE_UV) >= 0 )
 			{
 				if ( ((Geometry)object.getGeometry()).getFaceVertexUvs().get( 0 ) != null ) 
 				{
 					getGL().bindBuffer( BufferTarget.ARRAY_BUFFER, geometry.__webglUVBuffer );
-					enableAttribute( attributes.get("uv") );
-					getGL().vertexAttribPointer( attributes.get("uv"), 2, DataType.FLOAT, false, 0, 0 );
-
-				} else {
-					
-					double defaultAttributeValues[] = new double[] {0.0,0.0};
-					getGL().vertexAttrib2fv( attributes.get("uv"), defaultAttributeValues );
+					enableAttribute( program.getAttributeLocation(Shader.ATTRIBUTE_UV) );
+					getGL().vertexAttribPointer( program.getAttributeLocation(Shader.ATTRIBUTE_UV), 2, DataType.FLOAT, false, 0, 0 );
 				}
 			}
 
-			if ( attributes.get("uv2") >= 0 ) 
+			if ( program.getAttributeLocation(Shader.ATTRIBUTE_UV2) >= 0 ) 
 			{
 				if ( ((Geometry)object.getGeometry()).getFaceVertexUvs().get( 1 ) != null ) 
 				{
 					getGL().bindBuffer( BufferTarget.ARRAY_BUFFER, geometry.__webglUV2Buffer );
-					enableAttribute( attributes.get("uv2") );
-					getGL().vertexAttribPointer( attributes.get("uv2"), 2, DataType.FLOAT, false, 0, 0 );
-
-				} else {
-					
-					double defaultAttributeValues[] = new double[] {0.0,0.0};
-					
-					getGL().vertexAttrib2fv( attributes.get("uv2"), defaultAttributeValues );
+					enableAttribute( program.getAttributeLocation(Shader.ATTRIBUTE_UV2) );
+					getGL().vertexAttribPointer( program.getAttributeLocation(Shader.ATTRIBUTE_UV2), 2, DataType.FLOAT, false, 0, 0 );
 				}
 			}
 
 			if ( material instanceof HasSkinning && ((HasSkinning)material).isSkinning() &&
-				 attributes.get("skinIndex") >= 0 && attributes.get("skinWeight") >= 0 ) 
+				 program.getAttributeLocation(Shader.ATTRIBUTE_SKIN_INDEX) >= 0 && program.getAttributeLocation(Shader.ATTRIBUTE_SKIN_WEIGHT) >= 0 ) 
 			{
 				getGL().bindBuffer( BufferTarget.ARRAY_BUFFER, geometry.__webglSkinIndicesBuffer );
-				enableAttribute( attributes.get("skinIndex") );
-				getGL().vertexAttribPointer( attributes.get("skinIndex"), 4, DataType.FLOAT, false, 0, 0 );
+				enableAttribute( program.getAttributeLocation(Shader.ATTRIBUTE_SKIN_INDEX) );
+				getGL().vertexAttribPointer( program.getAttributeLocation(Shader.ATTRIBUTE_SKIN_INDEX), 4, DataType.FLOAT, false, 0, 0 );
 
 				getGL().bindBuffer( BufferTarget.ARRAY_BUFFER, geometry.__webglSkinWeightsBuffer );
-				enableAttribute( attributes.get("skinWeight") );
-				getGL().vertexAttribPointer( attributes.get("skinWeight"), 4, DataType.FLOAT, false, 0, 0 );
+				enableAttribute( program.getAttributeLocation(Shader.ATTRIBUTE_SKIN_WEIGHT) );
+				getGL().vertexAttribPointer( program.getAttributeLocation(Shader.ATTRIBUTE_SKIN_WEIGHT), 4, DataType.FLOAT, false, 0, 0 );
 			}
 			
 			// line distances
 
-			if ( attributes.get("lineDistance") != null && attributes.get("lineDistance") >= 0 ) {
+			if ( program.getAttributeLocation(Shader.ATTRIBUTE_LINE_DISTANCE) >= 0 ) {
 
 				getGL().bindBuffer( BufferTarget.ARRAY_BUFFER, geometry.__webglLineDistanceBuffer );
-				enableAttribute( attributes.get("lineDistance") );
-				getGL().vertexAttribPointer( attributes.get("lineDistance"), 1, DataType.FLOAT, false, 0, 0 );
+				enableAttribute( program.getAttributeLocation(Shader.ATTRIBUTE_LINE_DISTANCE) );
+				getGL().vertexAttribPointer( program.getAttributeLocation(Shader.ATTRIBUTE_LINE_DISTANCE), 1, DataType.FLOAT, false, 0, 0 );
 
 			}
 
@@ -2270,6 +3159,14 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 			parameters.useVertexTexture = this._supportsBoneTextures;// && ((SkinnedMesh)object).useVertexTexture;
 		}
 
+		if(object instanceof InstancedMesh && this._instancedArrays != null)
+		{
+			parameters.instancing = true;
+			// The instances always have the color attribute, so setting 
+			// the colors does not change the program
+			parameters.instancingColor = true;
+		}
+
 		parameters.maxMorphTargets = this.maxMorphTargets;
 		parameters.maxMorphNormals = this.maxMorphNormals;
 
@@ -2293,24 +3190,24 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 		material.updateProgramParameters(parameters);
 		Log.debug("initMaterial() called new Program");
 
-		String cashKey = material.getShader().getFragmentSource() 
-				+ material.getShader().getVertexSource()
-				+ parameters.toString();
+		ProgramKey programKey = new ProgramKey(material.getShader(), parameters);
 
-		if(this._programs.containsKey(cashKey))
+		Shader shader = this._programs.get(programKey);
+		if(shader != null)
 		{
-			material.setShader( this._programs.get(cashKey) );
+			material.setShader( shader );
 		}
 		else
 		{
-			Shader shader = material.buildShader(getGL(), parameters);
+			shader = material.buildShader(getGL(), parameters);
 
-			this._programs.put(cashKey, shader);
+			this._programs.put(programKey, shader);
 
 			this.getInfo().getMemory().programs = _programs.size();
 		}
-		
-		Map<String, Integer> attributes = material.getShader().getAttributesLocations();
+
+		acquireProgram( material, programKey );
+		acquireTextures( material );
 
 		if(material instanceof HasSkinning)
 		{
@@ -2319,9 +3216,7 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 				int numSupportedMorphTargets = 0;
 				for ( int i = 0; i < this.maxMorphTargets; i ++ ) 
 				{
-					String id = "morphTarget" + i;
-
-					if ( attributes.get( id ) >= 0 ) 
+					if ( shader.getMorphTargetLocation( i ) >= 0 ) 
 					{
 						numSupportedMorphTargets ++;
 					}
@@ -2335,9 +3230,7 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 				int numSupportedMorphNormals = 0;
 				for ( int i = 0; i < this.maxMorphNormals; i ++ ) 
 				{
-					String id = "morphNormal" + i;
-
-					if ( attributes.get( id ) >= 0 ) 
+					if ( shader.getMorphNormalLocation( i ) >= 0 ) 
 					{
 						numSupportedMorphNormals ++;
 					}
@@ -2348,6 +3241,125 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 		}
 	}
 
+	/**
+	 * Registers the material as the user of the program. The program 
+	 * previously used by the material is released.
+	 */
+	private void acquireProgram( Material material, ProgramKey programKey )
+	{
+		ProgramKey previous = this._materialPrograms.put( material.getId(), programKey );
+
+		if ( programKey.equals( previous ) )
+			return;
+
+		Shader shader = this._programs.get( programKey );
+		shader.setUsedTimes( shader.getUsedTimes() + 1 );
+
+		if ( previous != null )
+			releaseProgram( previous );
+	}
+
+	/**
+	 * Releases the program used by the material. The program is 
+	 * deleted when there are no more materials using it.
+	 */
+	public void releaseProgram( Material material )
+	{
+		ProgramKey programKey = this._materialPrograms.remove( material.getId() );
+
+		if ( programKey != null )
+			releaseProgram( programKey );
+	}
+
+	private void releaseProgram( ProgramKey programKey )
+	{
+		Shader shader = this._programs.get( programKey );
+
+		shader.setUsedTimes( shader.getUsedTimes() - 1 );
+
+		if ( shader.getUsedTimes() > 0 )
+			return;
+
+		this._programs.remove( programKey );
+
+		if ( shader.getProgram() != null )
+		{
+			if ( shader.getProgram().equals( this._currentProgram ) )
+				this._currentProgram = null;
+
+			if ( this._vertexArrays != null )
+				deleteVertexArrays( shader );
+
+			// The shader can be built again, see Material.buildShader()
+			shader.deleteProgram( getGL() );
+		}
+
+		this.getInfo().getMemory().programs = this._programs.size();
+	}
+
+	/**
+	 * Registers the material as the user of its textures, see {@link Material#getTextures()}. 
+	 * The textures previously used by the material are released. The render 
+	 * target textures are owned by their creators, so they are not tracked.
+	 */
+	private void acquireTextures( Material material )
+	{
+		List<Texture> textures = new ArrayList<Texture>();
+
+		for ( Texture texture : material.getTextures() )
+			addTexture( textures, texture );
+
+		for ( int i = 0, l = textures.size(); i < l; i ++ )
+			textures.get( i ).addUser();
+
+		List<Texture> previous = this._materialTextures.put( material.getId(), textures );
+
+		if ( previous != null )
+			releaseTextures( previous );
+	}
+
+	private void addTexture( List<Texture> textures, Texture texture )
+	{
+		if ( texture == null 
+				|| texture instanceof RenderTargetTexture 
+				|| textures.contains( texture ) )
+			return;
+
+		textures.add( texture );
+	}
+
+	private void releaseTextures( List<Texture> textures )
+	{
+		for ( int i = 0, l = textures.size(); i < l; i ++ )
+		{
+			if ( textures.get( i ).removeUser() == 0 )
+			{
+				this.textureUploadQueue.remove( textures.get( i ) );
+				textures.get( i ).deallocate( this );
+			}
+		}
+	}
+
+	/**
+	 * Releases the program and the textures used by the material. 
+	 * The program and the textures are deleted when there are 
+	 * no more materials using them.
+	 */
+	public void deallocateMaterial( Material material )
+	{
+		releaseProgram( material );
+
+		List<Texture> textures = this._materialTextures.remove( material.getId() );
+
+		if ( textures != null )
+			releaseTextures( textures );
+
+		// The shader of the deleted program is not used again, the 
+		// material gets a new one from its source
+		material.setShader( null );
+		material.setNeedsUpdate( true );
+	}
+
 	private Shader setProgram( Camera camera, List<Light> lights, AbstractFog fog, Material material, GeometryObject object ) 
 	{
 		// Use new material units for new shader
@@ -2355,9 +3367,6 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 		
 		if(material.isNeedsUpdate()) 
 		{
-			if(material.getShader() == null || material.getShader().getProgram() == null)
-				material.deallocate(this);
-			
 			initMaterial( material, lights, fog, object );
 			material.setNeedsUpdate(false);
 		}
@@ -2382,6 +3391,7 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 		{
 			getGL().useProgram( program );
 			this._currentProgram = program;
+			this.info.getRender().programs ++;
 
 			refreshProgram = true;
 			refreshMaterial = true;
@@ -2394,15 +3404,16 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 			
 			this._currentMaterialId = material.getId();
 			refreshMaterial = true;
+			this.info.getRender().materials ++;
 		}
 
 		if ( refreshProgram || !camera.equals( this._currentCamera) ) 
 		{
-			getGL().uniformMatrix4fv( m_uniforms.get("projectionMatrix").getLocation(), false, camera.getProjectionMatrix().getArray() );
+			getGL().uniformMatrix4fv( shader.getUniformLocation(Shader.UNIFORM_PROJECTION_MATRIX), false, camera.getProjectionMatrix().getArray() );
 
 			if ( _logarithmicDepthBuffer ) {
 
-				gl.uniform1f( m_uniforms.get("logDepthBufFC").getLocation(), 2.0 / ( Math.log( ((HasNearFar)camera).getFar() + 1.0 ) / 0.6931471805599453 /*Math.LN2*/ ) );
+				gl.uniform1f( shader.getUniformLocation(Shader.UNIFORM_LOG_DEPTH_BUF_FC), 2.0 / ( Math.log( ((HasNearFar)camera).getFar() + 1.0 ) / 0.6931471805599453 /*Math.LN2*/ ) );
 
 			}
 
@@ -2416,10 +3427,10 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 				 material instanceof HasEnvMap && ((HasEnvMap)material).getEnvMap() != null 
 			) {
 
-				if ( m_uniforms.get("cameraPosition").getLocation() != null ) 
+				if ( shader.getUniformLocation(Shader.UNIFORM_CAMERA_POSITION) != null ) 
 				{
 					_vector3.setFromMatrixPosition( camera.getMatrixWorld() );
-					getGL().uniform3f( m_uniforms.get("cameraPosition").getLocation(), _vector3.getX(), _vector3.getY(), _vector3.getZ() );
+					getGL().uniform3f( shader.getUniformLocation(Shader.UNIFORM_CAMERA_POSITION), _vector3.getX(), _vector3.getY(), _vector3.getZ() );
 				}
 			}
 
@@ -2430,9 +3441,9 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 				 material instanceof HasSkinning && ((HasSkinning)material).isSkinning() 
 			) {
 
-				if ( m_uniforms.get("viewMatrix").getLocation() != null ) 
+				if ( shader.getUniformLocation(Shader.UNIFORM_VIEW_MATRIX) != null ) 
 				{
-					getGL().uniformMatrix4fv( m_uniforms.get("viewMatrix").getLocation(), false, camera.getMatrixWorldInverse().getArray() );
+					getGL().uniformMatrix4fv( shader.getUniformLocation(Shader.UNIFORM_VIEW_MATRIX), false, camera.getMatrixWorldInverse().getArray() );
 				}
 			}
 		}
@@ -2444,19 +3455,19 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 		{
 			if ( object instanceof SkinnedMesh && ((SkinnedMesh)object).isUseVertexTexture() && this._supportsBoneTextures) 
 			{
-				if ( m_uniforms.get("boneTexture").getLocation() != null ) 
+				if ( shader.getUniformLocation(Shader.UNIFORM_BONE_TEXTURE) != null ) 
 				{
 					int textureUnit = getTextureUnit();
 
-					getGL().uniform1i( m_uniforms.get("boneTexture").getLocation(), textureUnit );
+					getGL().uniform1i( shader.getUniformLocation(Shader.UNIFORM_BONE_TEXTURE), textureUnit );
 					setTexture( ((SkinnedMesh)object).boneTexture, textureUnit );
 				}
 			} 
 			else 
 			{
-				if ( m_uniforms.get("boneGlobalMatrices").getLocation() != null ) 
+				if ( shader.getUniformLocation(Shader.UNIFORM_BONE_GLOBAL_MATRICES) != null ) 
 				{
-					getGL().uniformMatrix4fv( m_uniforms.get("boneGlobalMatrices").getLocation(), false, ((SkinnedMesh)object).boneMatrices );
+					getGL().uniformMatrix4fv( shader.getUniformLocation(Shader.UNIFORM_BONE_GLOBAL_MATRICES), false, ((SkinnedMesh)object).boneMatrices );
 				}
 			}
 		}
@@ -2493,14 +3504,14 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 				refreshUniformsShadow( m_uniforms, lights );
 
 			// load common uniforms
-			loadUniformsGeneric( m_uniforms );
+			loadUniformsGeneric( shader, m_uniforms );
 
 		}
 
-		loadUniformsMatrices( m_uniforms, object );
+		loadUniformsMatrices( shader, object );
 
-		if ( m_uniforms.get("modelMatrix").getLocation() != null )
-			getGL().uniformMatrix4fv( m_uniforms.get("modelMatrix").getLocation(), false, object.getMatrixWorld().getArray() );
+		if ( shader.getUniformLocation(Shader.UNIFORM_MODEL_MATRIX) != null )
+			getGL().uniformMatrix4fv( shader.getUniformLocation(Shader.UNIFORM_MODEL_MATRIX), false, object.getMatrixWorld().getArray() );
 
 		return shader;
 	}
@@ -2509,17 +3520,16 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 	{
 		if ( uniforms.containsKey("shadowMatrix") ) 
 		{
-			// Make them zero
-			uniforms.get("shadowMap").setValue(new ArrayList<Texture>());
-			uniforms.get("shadowMapSize").setValue(new ArrayList<Vector2>());
-			uniforms.get("shadowMatrix").setValue(new ArrayList<Matrix4>());
-			List<Texture> shadowMap = (List<Texture>)uniforms.get("shadowMap").getValue();
-			List<Vector2> shadowMapSize = (List<Vector2>)uniforms.get("shadowMapSize").getValue();
-			List<Matrix4> shadowMatrix = (List<Matrix4>)uniforms.get("shadowMatrix").getValue();
+			// Make them zero, reusing the lists from the previous frame
+			List<Texture> shadowMap = getUniformList( uniforms.get("shadowMap") );
+			List<Vector2> shadowMapSize = getUniformList( uniforms.get("shadowMapSize") );
+			List<Matrix4> shadowMatrix = getUniformList( uniforms.get("shadowMatrix") );
 			
 			int j = 0;
-			for ( Light light: lights) 
+			for ( int i = 0, il = lights.size(); i < il; i ++ ) 
 			{
+				Light light = lights.get( i );
+
 				if ( ! light.isCastShadow() ) continue;
 
 				if ( light instanceof ShadowLight && ! ((ShadowLight)light).isShadowCascade() )  
@@ -2538,27 +3548,51 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 		}
 	}
 
+	@SuppressWarnings("unchecked")
+	private <T> List<T> getUniformList( Uniform uniform )
+	{
+		List<T> list = (List<T>) uniform.getValue();
+
+		if ( list == null ) 
+		{
+			list = new ArrayList<T>();
+			uniform.setValue( list );
+		}
+		else 
+		{
+			list.clear();
+		}
+
+		return list;
+	}
+
 	// Uniforms (load to GPU)
 
-	private void loadUniformsMatrices ( Map<String, Uniform> uniforms, GeometryObject object ) 
+	private void loadUniformsMatrices ( Shader shader, GeometryObject object ) 
 	{
 		GeometryObject objectImpl = (GeometryObject) object;
-		getGL().uniformMatrix4fv( uniforms.get("modelViewMatrix").getLocation(), false, objectImpl._modelViewMatrix.getArray() );
+		getGL().uniformMatrix4fv( shader.getUniformLocation(Shader.UNIFORM_MODEL_VIEW_MATRIX), false, objectImpl._modelViewMatrix.getArray() );
 
-		if ( uniforms.containsKey("normalMatrix") )
-			getGL().uniformMatrix3fv( uniforms.get("normalMatrix").getLocation(), false, objectImpl._normalMatrix.getArray() );
+		WebGLUniformLocation normalMatrix = shader.getUniformLocation(Shader.UNIFORM_NORMAL_MATRIX);
+		if ( normalMatrix != null )
+			getGL().uniformMatrix3fv( normalMatrix, false, objectImpl._normalMatrix.getArray() );
 	}
 
+	/**
+	 * Uploads material uniforms. Values which are equal to the last 
+	 * uploaded ones are skipped, see {@link Uniform#getVersion()}.
+	 */
 	@SuppressWarnings("unchecked")
-	private void loadUniformsGeneric( Map<String, Uniform> materialUniforms ) 
+	private void loadUniformsGeneric( Shader shader, Map<String, Uniform> materialUniforms ) 
 	{
 		WebGLRenderingContext gl = getGL();
 		
 		for ( Uniform uniform : materialUniforms.values() ) 
 		{
-//			for ( String key: materialUniforms.keySet() ) 
-//			{
-//				 Uniform uniform = materialUniforms.get(key);
+			// Shared with the shader of another program, see ShaderMaterial.getAssociatedShader()
+			if ( uniform.getProgram() != shader.getProgram() )
+				shader.updateUniformLocations( gl );
+
 			WebGLUniformLocation location = uniform.getLocation();
 		
 			if ( location == null ) continue;
@@ -2571,114 +3605,131 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 		
 			if(type == TYPE.I) // single integer
 			{
+				// boxed values are immutable, so the version is enough
+				if ( uniform.isUploaded() ) continue;
+
 				gl.uniform1i( location, (value instanceof Boolean) ? ((Boolean)value) ? 1 : 0 : (Integer) value );
+				uniform.setUploaded();
 			}
 			else if(type == TYPE.F) // single double
 			{
+				if ( uniform.isUploaded() ) continue;
+
 				gl.uniform1f( location, (Double)value );
+				uniform.setUploaded();
 			}
 			else if(type == TYPE.V2) // single Vector2
 			{ 
-				gl.uniform2f( location, ((Vector2)value).getX(), ((Vector2)value).getX() );
+				Vector2 vector2 = (Vector2)value;
+				if ( isUniformChanged( uniform, vector2.getX(), vector2.getY(), 0, 0 ) )
+					gl.uniform2f( location, vector2.getX(), vector2.getY() );
 			}
 			else if(type == TYPE.V3) // single Vector3
 			{ 
-				gl.uniform3f( location, ((Vector3)value).getX(), ((Vector3)value).getY(), ((Vector3)value).getZ() );
+				Vector3 vector3 = (Vector3)value;
+				if ( isUniformChanged( uniform, vector3.getX(), vector3.getY(), vector3.getZ(), 0 ) )
+					gl.uniform3f( location, vector3.getX(), vector3.getY(), vector3.getZ() );
 			}
 			else if(type == TYPE.V4) // single Vector4
 			{
-				gl.uniform4f( location, ((Vector4)value).getX(), ((Vector4)value).getY(), ((Vector4)value).getZ(), ((Vector4)value).getW() );
+				Vector4 vector4 = (Vector4)value;
+				if ( isUniformChanged( uniform, vector4.getX(), vector4.getY(), vector4.getZ(), vector4.getW() ) )
+					gl.uniform4f( location, vector4.getX(), vector4.getY(), vector4.getZ(), vector4.getW() );
 			}
 			else if(type == TYPE.C) // single Color
 			{
-				gl.uniform3f( location, ((Color)value).getR(), ((Color)value).getG(), ((Color)value).getB() );
+				Color color = (Color)value;
+				if ( isUniformChanged( uniform, color.getR(), color.getG(), color.getB(), 0 ) )
+					gl.uniform3f( location, color.getR(), color.getG(), color.getB() );
 			}
 			else if(type == TYPE.FV1) // flat array of floats (JS or typed array)
 			{
-				gl.uniform1fv( location, (Float32Array)value );
+				if ( isUniformChanged( uniform, (Float32Array)value ) )
+					gl.uniform1fv( location, (Float32Array)value );
 			}
 			else if(type == TYPE.FV) // flat array of floats with 3 x N size (JS or typed array)
 			{ 
-				gl.uniform3fv( location, (Float32Array) value );
+				if ( isUniformChanged( uniform, (Float32Array)value ) )
+					gl.uniform3fv( location, (Float32Array) value );
 			}
 			else if(type == TYPE.V2V) // List of Vector2
 			{ 
 				List<Vector2> listVector2f = (List<Vector2>) value;
-				if ( uniform.getCacheArray() == null )
-					uniform.setCacheArray( Float32Array.create( 2 * listVector2f.size() ) );
+				Float32Array cacheArray = getUniformCacheArray( uniform, 2 * listVector2f.size() );
 
 				for ( int i = 0, il = listVector2f.size(); i < il; i ++ ) 
 				{
 					int offset = i * 2;
 
-					uniform.getCacheArray().set(offset, listVector2f.get(i).getX());
-					uniform.getCacheArray().set(offset + 1, listVector2f.get(i).getY());
+					cacheArray.set(offset, listVector2f.get(i).getX());
+					cacheArray.set(offset + 1, listVector2f.get(i).getY());
 				}
 
-				gl.uniform2fv( location, uniform.getCacheArray() );
+				if ( isUniformChanged( uniform, cacheArray ) )
+					gl.uniform2fv( location, cacheArray );
 			}
 			else if(type == TYPE.V3V) // List of Vector3
 			{
 				List<Vector3> listVector3f = (List<Vector3>) value;
-				if ( uniform.getCacheArray() == null )
-					uniform.setCacheArray( Float32Array.create( 3 * listVector3f.size() ) );
+				Float32Array cacheArray = getUniformCacheArray( uniform, 3 * listVector3f.size() );
 
 				for ( int i = 0, il = listVector3f.size(); i < il; i ++ ) 
 				{
 					int offset = i * 3;
 
-					uniform.getCacheArray().set(offset, listVector3f.get( i ).getX());
-					uniform.getCacheArray().set(offset + 1, listVector3f.get( i ).getY());
-					uniform.getCacheArray().set(offset + 2 , listVector3f.get( i ).getZ());
+					cacheArray.set(offset, listVector3f.get( i ).getX());
+					cacheArray.set(offset + 1, listVector3f.get( i ).getY());
+					cacheArray.set(offset + 2 , listVector3f.get( i ).getZ());
 				}
 
-				gl.uniform3fv( location, uniform.getCacheArray() );
+				if ( isUniformChanged( uniform, cacheArray ) )
+					gl.uniform3fv( location, cacheArray );
 			}
 			else if(type == TYPE.V4V) // List of Vector4
 			{
 				List<Vector4> listVector4f = (List<Vector4>) value;
-				if ( uniform.getCacheArray() == null)
-					uniform.setCacheArray( Float32Array.create( 4 * listVector4f.size() ) );
-
+				Float32Array cacheArray = getUniformCacheArray( uniform, 4 * listVector4f.size() );
 
 				for ( int i = 0, il = listVector4f.size(); i < il; i ++ ) 
 				{
 					int offset = i * 4;
 
-					uniform.getCacheArray().set(offset, listVector4f.get( i ).getX());
-					uniform.getCacheArray().set(offset + 1, listVector4f.get( i ).getY());
-					uniform.getCacheArray().set(offset + 2, listVector4f.get( i ).getZ());
-					uniform.getCacheArray().set(offset + 3, listVector4f.get( i ).getW());
+					cacheArray.set(offset, listVector4f.get( i ).getX());
+					cacheArray.set(offset + 1, listVector4f.get( i ).getY());
+					cacheArray.set(offset + 2, listVector4f.get( i ).getZ());
+					cacheArray.set(offset + 3, listVector4f.get( i ).getW());
 				}
 
-				gl.uniform4fv( location, uniform.getCacheArray() );
+				if ( isUniformChanged( uniform, cacheArray ) )
+					gl.uniform4fv( location, cacheArray );
 			}
 			else if(type == TYPE.M4) // single Matrix4
 			{
-				Matrix4 matrix4 = (Matrix4) value;
-				if ( uniform.getCacheArray() == null )
-					uniform.setCacheArray( Float32Array.create( 16 ) );
+				Float32Array cacheArray = getUniformCacheArray( uniform, 16 );
+
+				((Matrix4) value).flattenToArrayOffset( cacheArray );
 
-				matrix4.flattenToArrayOffset( uniform.getCacheArray() );
-				gl.uniformMatrix4fv( location, false, uniform.getCacheArray() );
+				if ( isUniformChanged( uniform, cacheArray ) )
+					gl.uniformMatrix4fv( location, false, cacheArray );
 			}
 			else if(type == TYPE.M4V) // List of Matrix4
 			{
 				List<Matrix4> listMatrix4f = (List<Matrix4>) value;
-				if ( uniform.getCacheArray() == null )
-					uniform.setCacheArray( Float32Array.create( 16 * listMatrix4f.size() ) );
+				Float32Array cacheArray = getUniformCacheArray( uniform, 16 * listMatrix4f.size() );
 
 				for ( int i = 0, il = listMatrix4f.size(); i < il; i ++ )
-					listMatrix4f.get( i ).flattenToArrayOffset( uniform.getCacheArray(), i * 16 );
+					listMatrix4f.get( i ).flattenToArrayOffset( cacheArray, i * 16 );
 
-				gl.uniformMatrix4fv( location, false, uniform.getCacheArray() );
+				if ( isUniformChanged( uniform, cacheArray ) )
+					gl.uniformMatrix4fv( location, false, cacheArray );
 			}
 			else if(type == TYPE.T) // single Texture (2d or cube)
 			{
 				Texture texture = (Texture)value;
 				int textureUnit = getTextureUnit();
 
-				gl.uniform1i( location, textureUnit );
+				if ( isUniformChanged( uniform, textureUnit, 0, 0, 0 ) )
+					gl.uniform1i( location, textureUnit );
 
 				if ( texture != null )
 				{
@@ -2695,27 +3746,112 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 			else if(type == TYPE.TV) //List of Texture (2d)
 			{
 				List<Texture> textureList = (List<Texture>)value;
-				int[] units = new int[textureList.size()];
 
+				// units are allocated sequentially
+				int firstUnit = this._usedTextureUnits;
 				for( int i = 0, il = textureList.size(); i < il; i ++ ) 
 				{
-					units[ i ] = getTextureUnit();
+					getTextureUnit();
 				}
 
-				gl.uniform1iv( location, units );
+				if ( isUniformChanged( uniform, firstUnit, textureList.size(), 0, 0 ) )
+				{
+					Int32Array units = Int32Array.create( textureList.size() );
+					for( int i = 0, il = textureList.size(); i < il; i ++ ) 
+						units.set( i, firstUnit + i );
+
+					gl.uniform1iv( location, units );
+				}
 
 				for( int i = 0, il = textureList.size(); i < il; i ++ ) 
 				{
 					Texture texture = textureList.get( i );
-					int textureUnit = units[ i ];
 
 					if ( texture == null ) continue;
 
-					setTexture( texture, textureUnit );
+					setTexture( texture, firstUnit + i );
 				}
 			}			
 		}
 	}
+
+	/**
+	 * Gets uniform's cache array of the given length to flatten list values.
+	 */
+	private Float32Array getUniformCacheArray( Uniform uniform, int length )
+	{
+		if ( uniform.getCacheArray() == null || uniform.getCacheArray().getLength() != length )
+			uniform.setCacheArray( Float32Array.create( length ) );
+
+		return uniform.getCacheArray();
+	}
+
+	/**
+	 * Compares scalar components with the last uploaded ones and
+	 * remembers them.
+	 * 
+	 * @return true if the uniform should be uploaded
+	 */
+	private boolean isUniformChanged( Uniform uniform, double x, double y, double z, double w )
+	{
+		double[] uploaded = uniform.getUploadedValues();
+
+		if ( uploaded == null ) 
+		{
+			uploaded = new double[4];
+			uniform.setUploadedValues( uploaded );
+		}
+		else if ( uniform.isUploaded() && uploaded[0] == x && uploaded[1] == y && uploaded[2] == z && uploaded[3] == w ) 
+		{
+			return false;
+		}
+
+		uploaded[0] = x;
+		uploaded[1] = y;
+		uploaded[2] = z;
+		uploaded[3] = w;
+
+		uniform.setUploaded();
+		return true;
+	}
+
+	/**
+	 * Compares the array with the copy of the last uploaded one and 
+	 * remembers it.
+	 * 
+	 * @return true if the uniform should be uploaded
+	 */
+	private boolean isUniformChanged( Uniform uniform, Float32Array array )
+	{
+		Float32Array uploaded = uniform.getUploadedArray();
+		int length = array.getLength();
+
+		if ( uploaded == null || uploaded.getLength() != length ) 
+		{
+			uploaded = Float32Array.create( length );
+			uniform.setUploadedArray( uploaded );
+		}
+		else if ( uniform.isUploaded() ) 
+		{
+			boolean isEqual = true;
+			for ( int i = 0; i < length; i ++ ) 
+			{
+				if ( uploaded.get( i ) != array.get( i ) ) 
+				{
+					isEqual = false;
+					break;
+				}
+			}
+
+			if ( isEqual ) 
+				return false;
+		}
+
+		uploaded.set( array );
+
+		uniform.setUploaded();
+		return true;
+	}
 	
 	public int getTextureUnit() 
 	{
@@ -2890,65 +4026,153 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 
 	public void setTexture( Texture texture, int slot ) 
 	{
-		if ( texture.isNeedsUpdate()) 
-		{
-			if ( texture.getWebGlTexture() == null ) 
-			{
-				texture.setWebGlTexture( getGL().createTexture() );
+		boolean isDeferred = this.textureUploadQueue.isEnabled() && TextureUploadQueue.isDeferred( texture );
 
-				this.getInfo().getMemory().textures ++;
-			}
-			
+		if ( texture.isNeedsUpdate() && texture.getWebGlTexture() == null && isDeferred ) 
+		{
+			// The first upload is deferred to keep the frame within the budget
+			this.textureUploadQueue.request( texture );
+			setPlaceholderTexture( slot );
+		}
+		else if ( texture.isNeedsUpdate() ) 
+		{
+			uploadTexture( texture, slot );
+		} 
+		// Needed to check webgl texture in case deferred loading
+		else if(texture.getWebGlTexture() != null)
+		{
 			getGL().activeTexture( TextureUnit.TEXTURE0, slot );
 			getGL().bindTexture( TextureTarget.TEXTURE_2D, texture.getWebGlTexture() );
+		}
+		else if ( isDeferred )
+		{
+			setPlaceholderTexture( slot );
+		}
+	}
 
-			getGL().pixelStorei( PixelStoreParameter.UNPACK_FLIP_Y_WEBGL, texture.isFlipY() ? 1 : 0 );
-			getGL().pixelStorei( PixelStoreParameter.UNPACK_PREMULTIPLY_ALPHA_WEBGL, texture.isPremultiplyAlpha() ? 1 : 0 );		
-			getGL().pixelStorei( PixelStoreParameter.UNPACK_ALIGNMENT, texture.getUnpackAlignment() );
+	/**
+	 * Gets the pool of the render targets shared by the passes and plugins.
+	 */
+	public RenderTargetPool getRenderTargetPool() {
+		return this.renderTargetPool;
+	}
 
-			Element image = texture.getImage();
-			boolean isImagePowerOfTwo = Mathematics.isPowerOfTwo( image.getOffsetWidth() ) 
-					&& Mathematics.isPowerOfTwo( image.getOffsetHeight() );
+	/**
+	 * Gets the queue which spreads the first uploads of the textures 
+	 * across the frames. The queue is disabled by default.
+	 */
+	public TextureUploadQueue getTextureUploadQueue() {
+		return this.textureUploadQueue;
+	}
 
-			texture.setTextureParameters( getGL(), getMaxAnisotropy(), TextureTarget.TEXTURE_2D, isImagePowerOfTwo );
+	/**
+	 * Gets the camera which was used by the last rendering to the screen. 
+	 * The nested renderings of the plugins end first, so this is the camera 
+	 * passed to {@link #render(Scene, Camera)} by the application.
+	 */
+	public Camera getLastCamera() {
+		return this._lastCamera;
+	}
 
-			if ( texture instanceof CompressedTexture ) 
-			{
-				List<DataTexture> mipmaps = ((CompressedTexture) texture).getMipmaps();
+	/**
+	 * Uploads the queued textures until the time budget of the queue is spent. 
+	 * Called at the end of each top-level rendering.
+	 */
+	public void uploadTextures() 
+	{
+		if ( this.textureUploadQueue.size() == 0 )
+			return;
 
-				for( int i = 0, il = mipmaps.size(); i < il; i ++ ) 
-				{
-					DataTexture mipmap = mipmaps.get( i );
-					getGL().compressedTexImage2D( TextureTarget.TEXTURE_2D, i, ((CompressedTexture) texture).getCompressedFormat(), 
-							mipmap.getWidth(), mipmap.getHeight(), 0, mipmap.getData() );
-				}
-			}
-			else if ( texture instanceof DataTexture ) 
-			{
-				getGL().texImage2D( TextureTarget.TEXTURE_2D, 0, 
-						((DataTexture) texture).getWidth(),
-						((DataTexture) texture).getHeight(), 
-						0, 
-						texture.getFormat(), 
-						texture.getType(),
-						((DataTexture) texture).getData() );
-			} 
-			else 
-			{
-				getGL().texImage2D( TextureTarget.TEXTURE_2D, 0, texture.getFormat(), texture.getType(), (ImageElement)image );
-			}
+		double start = FrameProfiler.now();
 
-			if ( texture.isGenerateMipmaps() && isImagePowerOfTwo ) 
-				getGL().generateMipmap( TextureTarget.TEXTURE_2D );
+		do 
+		{
+			Texture texture = this.textureUploadQueue.poll();
 
-			texture.setNeedsUpdate(false);
+			// the image could be not loaded yet, or the texture was uploaded
+			if ( texture.isNeedsUpdate() && texture.getWebGlTexture() == null )
+				uploadTexture( texture, 0 );
+		}
+		while ( this.textureUploadQueue.size() > 0 
+				&& FrameProfiler.now() - start < this.textureUploadQueue.getBudget() );
+	}
+
+	/**
+	 * Binds the white 1x1 texture used in place of the textures 
+	 * waiting for upload.
+	 */
+	private void setPlaceholderTexture( int slot )
+	{
+		getGL().activeTexture( TextureUnit.TEXTURE0, slot );
+
+		if ( this._placeholderTexture == null ) 
+		{
+			this._placeholderTexture = getGL().createTexture();
+
+			getGL().bindTexture( TextureTarget.TEXTURE_2D, this._placeholderTexture );
+			getGL().texParameteri( TextureTarget.TEXTURE_2D, TextureParameterName.TEXTURE_MIN_FILTER, WebGLConstants.NEAREST );
+			getGL().texParameteri( TextureTarget.TEXTURE_2D, TextureParameterName.TEXTURE_MAG_FILTER, WebGLConstants.NEAREST );
+			getGL().texImage2D( TextureTarget.TEXTURE_2D, 0, 1, 1, 0, PixelFormat.RGBA, PixelType.UNSIGNED_BYTE, 
+					Uint8Array.create( 255, 255, 255, 255 ) );
+		}
+		else
+		{
+			getGL().bindTexture( TextureTarget.TEXTURE_2D, this._placeholderTexture );
+		}
+	}
+
+	private void uploadTexture( Texture texture, int slot ) 
+	{
+		if ( texture.getWebGlTexture() == null ) 
+		{
+			texture.setWebGlTexture( getGL().createTexture() );
+
+			this.getInfo().getMemory().textures ++;
+		}
+		
+		getGL().activeTexture( TextureUnit.TEXTURE0, slot );
+		getGL().bindTexture( TextureTarget.TEXTURE_2D, texture.getWebGlTexture() );
+
+		getGL().pixelStorei( PixelStoreParameter.UNPACK_FLIP_Y_WEBGL, texture.isFlipY() ? 1 : 0 );
+		getGL().pixelStorei( PixelStoreParameter.UNPACK_PREMULTIPLY_ALPHA_WEBGL, texture.isPremultiplyAlpha() ? 1 : 0 );		
+		getGL().pixelStorei( PixelStoreParameter.UNPACK_ALIGNMENT, texture.getUnpackAlignment() );
+
+		Element image = texture.getImage();
+		boolean isImagePowerOfTwo = Mathematics.isPowerOfTwo( image.getOffsetWidth() ) 
+				&& Mathematics.isPowerOfTwo( image.getOffsetHeight() );
+
+		texture.setTextureParameters( getGL(), getMaxAnisotropy(), TextureTarget.TEXTURE_2D, isImagePowerOfTwo );
+
+		if ( texture instanceof CompressedTexture ) 
+		{
+			List<DataTexture> mipmaps = ((CompressedTexture) texture).getMipmaps();
+
+			for( int i = 0, il = mipmaps.size(); i < il; i ++ ) 
+			{
+				DataTexture mipmap = mipmaps.get( i );
+				getGL().compressedTexImage2D( TextureTarget.TEXTURE_2D, i, ((CompressedTexture) texture).getCompressedFormat(), 
+						mipmap.getWidth(), mipmap.getHeight(), 0, mipmap.getData() );
+			}
+		}
+		else if ( texture instanceof DataTexture ) 
+		{
+			getGL().texImage2D( TextureTarget.TEXTURE_2D, 0, 
+					((DataTexture) texture).getWidth(),
+					((DataTexture) texture).getHeight(), 
+					0, 
+					texture.getFormat(), 
+					texture.getType(),
+					((DataTexture) texture).getData() );
 		} 
-		// Needed to check webgl texture in case deferred loading
-		else if(texture.getWebGlTexture() != null)
+		else 
 		{
-			getGL().activeTexture( TextureUnit.TEXTURE0, slot );
-			getGL().bindTexture( TextureTarget.TEXTURE_2D, texture.getWebGlTexture() );
+			getGL().texImage2D( TextureTarget.TEXTURE_2D, 0, texture.getFormat(), texture.getType(), (ImageElement)image );
 		}
+
+		if ( texture.isGenerateMipmaps() && isImagePowerOfTwo ) 
+			getGL().generateMipmap( TextureTarget.TEXTURE_2D );
+
+		texture.setNeedsUpdate(false);
 	}
 	
 	private CanvasElement createPowerOfTwoImage(Element image) 
@@ -3009,7 +4233,7 @@ public class WebGLRenderer extends AbstractRenderer implements HasEventBus
 			if ( texture.getWebGlTexture() == null )
 			{
 				texture.setWebGlTexture(getGL().createTexture());
-				this.getInfo().getMemory().textures += 6;
+				this.getInfo().getMemory().textures ++;
 			}
 
 			getGL().activeTexture( TextureUnit.TEXTURE0, slot );
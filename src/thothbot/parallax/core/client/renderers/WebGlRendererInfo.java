@@ -66,6 +66,62 @@ public class WebGlRendererInfo
 		 * How many points were rendered.
 		 */
 		public int points = 0;
+		/**
+		 * How many times the shader program was switched.
+		 */
+		public int programs = 0;
+		/**
+		 * How many times the material was switched.
+		 */
+		public int materials = 0;
+		/**
+		 * How many times the geometry buffers were rebound.
+		 */
+		public int buffers = 0;
+		/**
+		 * How many objects in the frustum were hidden by the occluders.
+		 */
+		public int occluded = 0;
+	}
+
+	/**
+	 * Information about the GL calls and the data uploaded to the graphic card, 
+	 * see {@link thothbot.parallax.core.client.gl2.WebGLCounters}. 
+	 */
+	public class WebGLRenderInfoCalls
+	{
+		/**
+		 * How many times the shader program was bound.
+		 */
+		public int useProgram = 0;
+		/**
+		 * How many times the texture was bound.
+		 */
+		public int bindTexture = 0;
+		/**
+		 * How many times the buffer was bound.
+		 */
+		public int bindBuffer = 0;
+		/**
+		 * How many uniform values were set.
+		 */
+		public int uniform = 0;
+		/**
+		 * How many times the buffer data was uploaded.
+		 */
+		public int bufferData = 0;
+		/**
+		 * How many times the texture image was uploaded.
+		 */
+		public int texImage = 0;
+		/**
+		 * How many bytes were uploaded to the buffers.
+		 */
+		public double bufferUploadBytes = 0;
+		/**
+		 * How many bytes were uploaded to the textures.
+		 */
+		public double textureUploadBytes = 0;
 	}
 
 	/**
@@ -85,11 +141,21 @@ public class WebGlRendererInfo
 		 *  How many textures were loaded to the graphic card.  
 		 */
 		public int textures = 0;
+		/**
+		 * How many bytes are used by the vertex and index buffers.
+		 */
+		public double geometryBytes = 0;
+		/**
+		 * How many bytes are used by the textures, estimated.
+		 */
+		public double textureBytes = 0;
 	}
 
 	private WebGLRenderInfoRender render;
+	private WebGLRenderInfoCalls calls;
 	private WebGLRenderInfoMemory memory;
 	private WebGLRenderTimer timer;
+	private FrameProfiler profiler;
 	
 	/**
 	 * Default constructor for {@link WebGlRendererInfo} initialization.
@@ -97,8 +163,10 @@ public class WebGlRendererInfo
 	public WebGlRendererInfo() 
 	{
 		this.render = new WebGLRenderInfoRender();
+		this.calls = new WebGLRenderInfoCalls();
 		this.memory = new WebGLRenderInfoMemory();
 		this.timer = new WebGLRenderTimer();
+		this.profiler = new FrameProfiler();
 	}
 
 	/**
@@ -109,6 +177,14 @@ public class WebGlRendererInfo
 		return render;
 	}
 
+	/**
+	 * Gets {@link WebGlRendererInfo.WebGLRenderInfoCalls} information.
+	 */
+	public WebGLRenderInfoCalls getCalls()
+	{
+		return calls;
+	}
+
 	/**
 	 * Gets {@link WebGlRendererInfo.WebGLRenderInfoMemory} information.
 	 */
@@ -124,4 +200,12 @@ public class WebGlRendererInfo
 	{
 		return timer;
 	}
+
+	/**
+	 * Gets {@link FrameProfiler} with the times of the rendering phases.
+	 */
+	public FrameProfiler getProfiler()
+	{
+		return profiler;
+	}
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ * 
+ * This file is part of Parallax project.
+ * 
+ * Parallax is free software: you can redistribute it and/or modify it 
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ * 
+ * Parallax is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution 
+ * 3.0 Unported License. for more details.
+ * 
+ * You should have received a copy of the the Creative Commons Attribution 
+ * 3.0 Unported License along with Parallax. 
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+package thothbot.parallax.core.client.shaders;
+
+/**
+ * Compact key of the shader program in the renderer's program cache.
+ * <p>
+ * Program is defined by the shader source and by the {@link ProgramParameters},
+ * so the key stores {@link Shader#getTypeId()} and the parameters
+ * packed into a few integers. The hash is calculated once, in the constructor.
+ */
+public final class ProgramKey 
+{
+	private final int shaderType;
+
+	// Boolean parameters, one bit per parameter
+	private final int flags;
+
+	// [precision, maxShadows, maxMorphTargets, maxMorphNormals], 8 bits each
+	private final int counts;
+
+	// [maxDirLights, maxPointLights, maxSpotLights, maxHemiLights], 8 bits each
+	private final int lights;
+
+	private final int maxBones;
+	private final double alphaTest;
+
+	private final int hash;
+
+	public ProgramKey(Shader shader, ProgramParameters parameters)
+	{
+		this.shaderType = shader.getTypeId();
+
+		this.flags = packFlags(parameters);
+
+		this.counts = ( parameters.precision == null ? 0xFF : parameters.precision.ordinal() ) << 24
+				| ( parameters.maxShadows & 0xFF ) << 16
+				| ( parameters.maxMorphTargets & 0xFF ) << 8
+				| ( parameters.maxMorphNormals & 0xFF );
+
+		this.lights = ( parameters.maxDirLights & 0xFF ) << 24
+				| ( parameters.maxPointLights & 0xFF ) << 16
+				| ( parameters.maxSpotLights & 0xFF ) << 8
+				| ( parameters.maxHemiLights & 0xFF );
+
+		this.maxBones = parameters.maxBones;
+		this.alphaTest = parameters.alphaTest;
+
+		int h = this.shaderType;
+		h = 31 * h + this.flags;
+		h = 31 * h + this.counts;
+		h = 31 * h + this.lights;
+		h = 31 * h + this.maxBones;
+		h = 31 * h + (int)( this.alphaTest * 1000 );
+		this.hash = h;
+	}
+
+	public int getShaderType() 
+	{
+		return this.shaderType;
+	}
+
+	@Override
+	public int hashCode() 
+	{
+		return this.hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) 
+	{
+		if (this == obj)
+			return true;
+
+		if (!(obj instanceof ProgramKey))
+			return false;
+
+		ProgramKey other = (ProgramKey) obj;
+
+		return this.hash == other.hash
+				&& this.shaderType == other.shaderType
+				&& this.flags == other.flags
+				&& this.counts == other.counts
+				&& this.lights == other.lights
+				&& this.maxBones == other.maxBones
+				&& this.alphaTest == other.alphaTest;
+	}
+
+	public String toString() 
+	{
+		return "{shaderType=" + this.shaderType 
+				+ ", flags=" + Integer.toHexString(this.flags) 
+				+ ", hash=" + this.hash + "}";
+	}
+
+	private static int packFlags(ProgramParameters p)
+	{
+		boolean[] values = {
+			p.supportsVertexTextures,
+			p.map, p.envMap, p.lightMap, p.bumpMap, p.normalMap, p.specularMap, p.alphaMap,
+			p.vertexColors,
+			p.useFog, p.useFog2,
+			p.sizeAttenuation, p.logarithmicDepthBuffer,
+			p.skinning, p.useVertexTexture,
+			p.morphTargets, p.morphNormals,
+			p.shadowMapEnabled, p.shadowMapSoft, p.shadowMapDebug, p.shadowMapCascade,
+			p.metal, p.wrapAround, p.doubleSided, p.flipSided,
+			p.gammaInput, p.gammaOutput,
+			p.instancing, p.instancingColor
+		};
+
+		int flags = 0;
+		for (int i = 0; i < values.length; i++)
+			if (values[i])
+				flags |= 1 << i;
+
+		return flags;
+	}
+}
@@ -44,6 +44,9 @@ public class ProgramParameters
 	public int maxBones;
 	public boolean useVertexTexture;
 	
+	public boolean instancing;
+	public boolean instancingColor;
+
 	public boolean morphTargets;
 	public boolean morphNormals;
 	public int maxMorphTargets;
@@ -84,6 +87,8 @@ public class ProgramParameters
 				
 				+ skinning + ", " + maxBones + ", " + useVertexTexture + "-6-" 
 				
+				+ instancing + ", " + instancingColor + "-12-" 
+				
 				+ morphTargets + morphNormals + ", " + maxMorphTargets + ", " + maxMorphNormals + "-7-"  				 
 								
 				+ maxDirLights + ", " + maxPointLights + ", " + maxSpotLights + ", " + maxHemiLights + "-8-"
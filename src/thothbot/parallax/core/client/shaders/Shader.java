@@ -28,6 +28,7 @@ import thothbot.parallax.core.client.gl2.WebGLConstants;
 import thothbot.parallax.core.client.gl2.WebGLProgram;
 import thothbot.parallax.core.client.gl2.WebGLRenderingContext;
 import thothbot.parallax.core.client.gl2.WebGLShader;
+import thothbot.parallax.core.client.gl2.WebGLUniformLocation;
 import thothbot.parallax.core.client.gl2.arrays.Float32Array;
 import thothbot.parallax.core.client.gl2.enums.ProgramParameter;
 import thothbot.parallax.core.shared.Log;
@@ -56,6 +57,38 @@ public abstract class Shader
 		LOWP
 	}
 	
+	// Slots of the built-in uniforms, see getUniformLocation(int)
+	public static final int UNIFORM_VIEW_MATRIX              = 0;
+	public static final int UNIFORM_MODEL_VIEW_MATRIX        = 1;
+	public static final int UNIFORM_PROJECTION_MATRIX        = 2;
+	public static final int UNIFORM_NORMAL_MATRIX            = 3;
+	public static final int UNIFORM_MODEL_MATRIX             = 4;
+	public static final int UNIFORM_CAMERA_POSITION          = 5;
+	public static final int UNIFORM_MORPH_TARGET_INFLUENCES  = 6;
+	public static final int UNIFORM_BONE_TEXTURE             = 7;
+	public static final int UNIFORM_BONE_GLOBAL_MATRICES     = 8;
+	public static final int UNIFORM_LOG_DEPTH_BUF_FC         = 9;
+
+	private static final String[] UNIFORM_SLOT_NAMES = {
+		"viewMatrix", "modelViewMatrix", "projectionMatrix", "normalMatrix", "modelMatrix",
+		"cameraPosition", "morphTargetInfluences", "boneTexture", "boneGlobalMatrices", "logDepthBufFC"
+	};
+
+	// Slots of the built-in attributes, see getAttributeLocation(int)
+	public static final int ATTRIBUTE_POSITION      = 0;
+	public static final int ATTRIBUTE_NORMAL        = 1;
+	public static final int ATTRIBUTE_UV            = 2;
+	public static final int ATTRIBUTE_UV2           = 3;
+	public static final int ATTRIBUTE_TANGENT       = 4;
+	public static final int ATTRIBUTE_COLOR         = 5;
+	public static final int ATTRIBUTE_SKIN_INDEX    = 6;
+	public static final int ATTRIBUTE_SKIN_WEIGHT   = 7;
+	public static final int ATTRIBUTE_LINE_DISTANCE = 8;
+
+	private static final String[] ATTRIBUTE_SLOT_NAMES = {
+		"position", "normal", "uv", "uv2", "tangent", "color", "skinIndex", "skinWeight", "lineDistance"
+	};
+
 	public interface DefaultResources extends ClientBundle
 	{
 		@Source("source/default.vs")
@@ -77,18 +110,40 @@ public abstract class Shader
 	// Store locations
 	private Map<String, Integer> attributesLocations;
 
+	// Locations resolved at link time, so the renderer does not need
+	// to look them up by name for every object
+	private WebGLUniformLocation[] uniformSlots = new WebGLUniformLocation[UNIFORM_SLOT_NAMES.length];
+	private int[] attributeSlots = new int[ATTRIBUTE_SLOT_NAMES.length];
+	private int[] morphTargetSlots = new int[0];
+	private int[] morphNormalSlots = new int[0];
+	private String[] activeAttributeNames = new String[0];
+	private int[] activeAttributeLocations = new int[0];
+
 	private String vertexShaderSource = "";
 	private String fragmentShaderSource = "";
 
 	private String vertexExtensions = "";
 	private String fragmentExtensions = "";
 
+	// Program prefix, kept apart so the source stays unchanged
+	private String vertexPrefix = "";
+	private String fragmentPrefix = "";
+
 	private boolean cache_areCustomAttributesDirty;
 
 	private int id;
 
 	private static int shaderCounter;
 
+	// Id of the shader source, see getTypeId()
+	private int typeId = -1;
+
+	private static Map<String, Map<String, Integer>> shaderTypes;
+	private static int shaderTypeCounter;
+
+	// How many materials use the program, see WebGLRenderer
+	private int usedTimes;
+
 	/**
 	 * This constructor will create new Shader instance. 
 	 * 
@@ -125,6 +180,56 @@ public abstract class Shader
 		return this.id;
 	}
 
+	/**
+	 * Gets id of the shader source. Shaders created with the same
+	 * vertex and fragment sources have the same type id, so the id 
+	 * can be used instead of the source to find the program.
+	 * <p>
+	 * The program prefix is not a part of the source, so the id does 
+	 * not change when the program is built.
+	 */
+	public int getTypeId()
+	{
+		if(this.typeId < 0)
+		{
+			if(shaderTypes == null)
+				shaderTypes = GWT.isScript() ? 
+						new FastMap<Map<String, Integer>>() : new HashMap<String, Map<String, Integer>>();
+
+			Map<String, Integer> types = shaderTypes.get(this.vertexShaderSource);
+			if(types == null)
+			{
+				types = GWT.isScript() ? 
+						new FastMap<Integer>() : new HashMap<String, Integer>();
+				shaderTypes.put(this.vertexShaderSource, types);
+			}
+
+			Integer type = types.get(this.fragmentShaderSource);
+			if(type == null)
+			{
+				type = shaderTypeCounter++;
+				types.put(this.fragmentShaderSource, type);
+			}
+
+			this.typeId = type;
+		}
+
+		return this.typeId;
+	}
+
+	/**
+	 * Gets how many materials use this program.
+	 */
+	public int getUsedTimes()
+	{
+		return this.usedTimes;
+	}
+
+	public void setUsedTimes(int usedTimes)
+	{
+		this.usedTimes = usedTimes;
+	}
+
 	/**
 	 * Gets the shader program.
 	 */
@@ -132,6 +237,33 @@ public abstract class Shader
 	{
 		return this.program;
 	}
+
+	/**
+	 * Deletes the program. The shader can be built again then.
+	 */
+	public void deleteProgram(WebGLRenderingContext gl)
+	{
+		if(this.program == null)
+			return;
+
+		gl.deleteProgram(this.program);
+		this.program = null;
+	}
+
+	/**
+	 * Sets the locations of the uniforms in the program of this shader, 
+	 * if they were set for another program. The uniforms can be shared 
+	 * by the shaders of several programs built from the same source.
+	 */
+	public void updateUniformLocations(WebGLRenderingContext gl)
+	{
+		for (Map.Entry<String, Uniform> entry : getUniforms().entrySet())
+		{
+			Uniform uniform = entry.getValue();
+			if (uniform.getProgram() != this.program)
+				uniform.setLocation(this.program, gl.getUniformLocation(this.program, entry.getKey()));
+		}
+	}
 	
 	// Called in renderer plugins
 	public Shader buildProgram(WebGLRenderingContext gl) 
@@ -168,13 +300,12 @@ public abstract class Shader
 		}
 		
 		// Cache location
-		Map<String, Uniform> uniforms = getUniforms();
-		for (String id : uniforms.keySet())
-			uniforms.get(id).setLocation( gl.getUniformLocation(this.program, id) );
+		updateUniformLocations(gl);
 
 		// cache attributes locations
 		List<String> attributesIds = new ArrayList<String>(Arrays.asList("position", "normal",
-				"uv", "uv2", "tangent", "color", "skinIndex", "skinWeight", "lineDistance"));
+				"uv", "uv2", "tangent", "color", "skinIndex", "skinWeight", "lineDistance",
+				"instanceMatrix0", "instanceMatrix1", "instanceMatrix2", "instanceMatrix3", "instanceColor"));
 
 		for (int i = 0; i < maxMorphTargets; i++)
 			attributesIds.add("morphTarget" + i);
@@ -190,9 +321,94 @@ public abstract class Shader
 		Map<String, Integer> attributesLocations = getAttributesLocations();
 		for (String id : attributesIds)
 			attributesLocations.put(id, gl.getAttribLocation(this.program, id));
-		
+
+		// Resolve slots
+		for (int i = 0; i < UNIFORM_SLOT_NAMES.length; i++)
+			this.uniformSlots[i] = gl.getUniformLocation(this.program, UNIFORM_SLOT_NAMES[i]);
+
+		for (int i = 0; i < ATTRIBUTE_SLOT_NAMES.length; i++)
+			this.attributeSlots[i] = attributesLocations.get(ATTRIBUTE_SLOT_NAMES[i]);
+
+		this.morphTargetSlots = new int[maxMorphTargets];
+		for (int i = 0; i < maxMorphTargets; i++)
+			this.morphTargetSlots[i] = attributesLocations.get("morphTarget" + i);
+
+		this.morphNormalSlots = new int[maxMorphNormals];
+		for (int i = 0; i < maxMorphNormals; i++)
+			this.morphNormalSlots[i] = attributesLocations.get("morphNormal" + i);
+
+		List<String> activeNames = new ArrayList<String>();
+		for (String id : attributesIds)
+			if (attributesLocations.get(id) >= 0 && !activeNames.contains(id))
+				activeNames.add(id);
+
+		this.activeAttributeNames = activeNames.toArray(new String[activeNames.size()]);
+		this.activeAttributeLocations = new int[this.activeAttributeNames.length];
+		for (int i = 0; i < this.activeAttributeNames.length; i++)
+			this.activeAttributeLocations[i] = attributesLocations.get(this.activeAttributeNames[i]);
+
 		return this;
 	}
+
+	/**
+	 * Gets location of the built-in uniform resolved at link time.
+	 * 
+	 * @param slot the slot, one of the <code>UNIFORM_*</code> constants
+	 * 
+	 * @return the location or null if the program does not use the uniform
+	 */
+	public WebGLUniformLocation getUniformLocation(int slot)
+	{
+		return this.uniformSlots[slot];
+	}
+
+	/**
+	 * Gets location of the built-in attribute resolved at link time.
+	 * 
+	 * @param slot the slot, one of the <code>ATTRIBUTE_*</code> constants
+	 * 
+	 * @return the location or -1 if the program does not use the attribute
+	 */
+	public int getAttributeLocation(int slot)
+	{
+		return this.attributeSlots[slot];
+	}
+
+	/**
+	 * Gets location of the <code>morphTarget[index]</code> attribute 
+	 * or -1 if the program does not use it.
+	 */
+	public int getMorphTargetLocation(int index)
+	{
+		return index < this.morphTargetSlots.length ? this.morphTargetSlots[index] : -1;
+	}
+
+	/**
+	 * Gets location of the <code>morphNormal[index]</code> attribute 
+	 * or -1 if the program does not use it.
+	 */
+	public int getMorphNormalLocation(int index)
+	{
+		return index < this.morphNormalSlots.length ? this.morphNormalSlots[index] : -1;
+	}
+
+	/**
+	 * Gets names of the attributes used by the program 
+	 * (built-in and custom ones).
+	 */
+	public String[] getActiveAttributeNames()
+	{
+		return this.activeAttributeNames;
+	}
+
+	/**
+	 * Gets locations of the attributes in the order of 
+	 * {@link #getActiveAttributeNames()}.
+	 */
+	public int[] getActiveAttributeLocations()
+	{
+		return this.activeAttributeLocations;
+	}
 	
 
 	/**
@@ -209,8 +425,8 @@ public abstract class Shader
 
 		this.program = gl.createProgram();
 
-		String vertex = vertexExtensions + getShaderPrecisionDefinition() + "\n" + getVertexSource();
-		String fragment = fragmentExtensions + getShaderPrecisionDefinition() + "\n" + getFragmentSource();
+		String vertex = vertexExtensions + getShaderPrecisionDefinition() + "\n" + vertexPrefix + getVertexSource();
+		String fragment = fragmentExtensions + getShaderPrecisionDefinition() + "\n" + fragmentPrefix + getFragmentSource();
 		
 		WebGLShader glVertexShader = getShaderProgram(gl, ChunksVertexShader.class, vertex);
 		WebGLShader glFragmentShader = getShaderProgram(gl, ChunksFragmentShader.class, fragment); 
@@ -283,8 +499,18 @@ public abstract class Shader
 		this.vertexExtensions = vertexExtensions;
 	}
 
+	/**
+	 * Sets the code added before the Vertex shader source when
+	 * the program is built. The source itself is not changed.
+	 */
+	public void setVertexPrefix(String vertexPrefix)
+	{
+		this.vertexPrefix = vertexPrefix;
+	}
+
 	public void setVertexSource(String src) {
 		this.vertexShaderSource = src;
+		this.typeId = -1;
 	}
 	
 	protected void updateVertexSource(String src) {
@@ -301,7 +527,8 @@ public abstract class Shader
 	}
 	
 	public void setFragmentSource(String src) {
-		this.fragmentShaderSource = src;		
+		this.fragmentShaderSource = src;
+		this.typeId = -1;
 	}
 
 	public void setFragmentExtensions(String fragmentExtensions)
@@ -309,6 +536,15 @@ public abstract class Shader
 		this.fragmentExtensions = fragmentExtensions;
 	}
 
+	/**
+	 * Sets the code added before the Fragment shader source when
+	 * the program is built. The source itself is not changed.
+	 */
+	public void setFragmentPrefix(String fragmentPrefix)
+	{
+		this.fragmentPrefix = fragmentPrefix;
+	}
+
 	protected void updateFragmentSource(String src) {
 		setFragmentSource(src);		
 	}
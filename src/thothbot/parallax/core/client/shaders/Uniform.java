@@ -18,6 +18,7 @@
 
 package thothbot.parallax.core.client.shaders;
 
+import thothbot.parallax.core.client.gl2.WebGLProgram;
 import thothbot.parallax.core.client.gl2.WebGLUniformLocation;
 import thothbot.parallax.core.client.gl2.arrays.Float32Array;
 
@@ -51,6 +52,16 @@ public class Uniform
 	private Object value;
 	private Float32Array cache_array;
 	private WebGLUniformLocation location;
+	// The program of the location
+	private WebGLProgram program;
+
+	// Incremented every time the value is changed
+	private int version;
+
+	// The state which was uploaded to the location last time
+	private int cache_uploadedVersion = -1;
+	private double[] cache_uploadedValues;
+	private Float32Array cache_uploadedArray;
 
 	public Uniform(Uniform.TYPE type) 
 	{
@@ -71,9 +82,73 @@ public class Uniform
 		return this.value;
 	}
 	
+	/**
+	 * Sets the uniform value. The uniform will be uploaded to the GPU 
+	 * only if the value differs from the current one.
+	 * <p>
+	 * If the value object (vector, color, matrix, array) is changed in 
+	 * place, the renderer finds it by comparing with the last uploaded 
+	 * content. Use {@link #setNeedsUpdate(boolean)} to force the upload. 
+	 */
 	public void setValue(Object value) {
+		if ( value != this.value && ( value == null || !value.equals(this.value) ) )
+			this.version++;
+
 		this.value = value;
 	}
+
+	/**
+	 * Gets the version of the value. It is incremented every time
+	 * the value is changed.
+	 */
+	public int getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * Forces the uniform to be uploaded to the GPU next time.
+	 */
+	public void setNeedsUpdate(boolean needsUpdate) {
+		if ( needsUpdate )
+			this.version++;
+	}
+
+	/**
+	 * Checks if the current version of the value was uploaded 
+	 * to the current location.
+	 */
+	public boolean isUploaded() {
+		return this.cache_uploadedVersion == this.version;
+	}
+
+	/**
+	 * Marks the current version of the value as uploaded.
+	 */
+	public void setUploaded() {
+		this.cache_uploadedVersion = this.version;
+	}
+
+	/**
+	 * Gets the scalar components which were uploaded last time.
+	 */
+	public double[] getUploadedValues() {
+		return this.cache_uploadedValues;
+	}
+
+	public void setUploadedValues(double[] values) {
+		this.cache_uploadedValues = values;
+	}
+
+	/**
+	 * Gets the copy of the array which was uploaded last time.
+	 */
+	public Float32Array getUploadedArray() {
+		return this.cache_uploadedArray;
+	}
+
+	public void setUploadedArray(Float32Array array) {
+		this.cache_uploadedArray = array;
+	}
 	
 	public Float32Array getCacheArray() {
 		return this.cache_array;
@@ -88,7 +163,29 @@ public class Uniform
 	}
 	
 	public void setLocation(WebGLUniformLocation location) {
+		setLocation(null, location);
+	}
+
+	/**
+	 * Gets the program of the location, see {@link #setLocation(WebGLProgram, WebGLUniformLocation)}.
+	 */
+	public WebGLProgram getProgram() {
+		return this.program;
+	}
+
+	/**
+	 * Sets the location of the uniform in the program. The uniform 
+	 * can be shared by the shaders of several programs, see 
+	 * {@link Shader#updateUniformLocations}.
+	 */
+	public void setLocation(WebGLProgram program, WebGLUniformLocation location) {
+		this.program = program;
 		this.location = location;
+
+		// New program: nothing is uploaded yet
+		this.cache_uploadedVersion = -1;
+		this.cache_uploadedValues = null;
+		this.cache_uploadedArray = null;
 	}
 	
 	public String toString()
@@ -1,3 +1,9 @@
+#if defined( USE_COLOR ) || defined( USE_INSTANCING_COLOR )
+
+	vColor = vec3( 1.0 );
+
+#endif
+
 #ifdef USE_COLOR
 
 	#ifdef GAMMA_INPUT
@@ -10,4 +16,18 @@
 
 	#endif
 
+#endif
+
+#ifdef USE_INSTANCING_COLOR
+
+	#ifdef GAMMA_INPUT
+
+		vColor *= instanceColor * instanceColor;
+
+	#else
+
+		vColor *= instanceColor;
+
+	#endif
+
 #endif
\ No newline at end of file
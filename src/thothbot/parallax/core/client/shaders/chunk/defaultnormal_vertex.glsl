@@ -18,6 +18,15 @@ vec3 objectNormal;
 
 #endif
 
+#ifdef USE_INSTANCING
+
+	// Inverse transpose of the instance matrix, exact for rotation and scale without shear
+	mat3 instanceNormalMatrix = INSTANCE_NORMAL_MATRIX;
+	objectNormal /= vec3( dot( instanceNormalMatrix[ 0 ], instanceNormalMatrix[ 0 ] ), dot( instanceNormalMatrix[ 1 ], instanceNormalMatrix[ 1 ] ), dot( instanceNormalMatrix[ 2 ], instanceNormalMatrix[ 2 ] ) );
+	objectNormal = instanceNormalMatrix * objectNormal;
+
+#endif
+
 #ifdef FLIP_SIDED
 
 	objectNormal = -objectNormal;
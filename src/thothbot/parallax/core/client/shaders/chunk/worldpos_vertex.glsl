@@ -1,21 +1,31 @@
 #if defined( USE_ENVMAP ) || defined( PHONG ) || defined( LAMBERT ) || defined ( USE_SHADOWMAP )
 
+	vec4 worldPosition;
+
 	#ifdef USE_SKINNING
 
-		vec4 worldPosition = modelMatrix * skinned;
+		worldPosition = skinned;
 
 	#endif
 
 	#if defined( USE_MORPHTARGETS ) && ! defined( USE_SKINNING )
 
-		vec4 worldPosition = modelMatrix * vec4( morphed, 1.0 );
+		worldPosition = vec4( morphed, 1.0 );
 
 	#endif
 
 	#if ! defined( USE_MORPHTARGETS ) && ! defined( USE_SKINNING )
 
-		vec4 worldPosition = modelMatrix * vec4( position, 1.0 );
+		worldPosition = vec4( position, 1.0 );
+
+	#endif
+
+	#ifdef USE_INSTANCING
+
+		worldPosition = INSTANCE_MATRIX * worldPosition;
 
 	#endif
 
+	worldPosition = modelMatrix * worldPosition;
+
 #endif
\ No newline at end of file
@@ -21,6 +21,9 @@ package thothbot.parallax.core.client.textures;
 import java.util.ArrayList;
 import java.util.List;
 
+import thothbot.parallax.core.client.events.HasEventBus;
+import thothbot.parallax.core.client.events.InvalidateEvent;
+
 import com.google.gwt.dom.client.Element;
 import com.google.gwt.user.client.ui.Image;
 
@@ -62,6 +65,7 @@ public class CubeTexture extends Texture
 						setNeedsUpdate(true);
 						if (imageLoadHandler != null)
 							imageLoadHandler.onImageLoad(CubeTexture.this);
+						HasEventBus.EVENT_BUS.fireEvent(new InvalidateEvent(CubeTexture.this));
 					}
 				}
 			});
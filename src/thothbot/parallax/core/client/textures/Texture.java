@@ -18,6 +18,8 @@
 
 package thothbot.parallax.core.client.textures;
 
+import thothbot.parallax.core.client.events.HasEventBus;
+import thothbot.parallax.core.client.events.InvalidateEvent;
 import thothbot.parallax.core.client.gl2.WebGLConstants;
 import thothbot.parallax.core.client.gl2.WebGLRenderingContext;
 import thothbot.parallax.core.client.gl2.WebGLTexture;
@@ -113,6 +115,9 @@ public class Texture
 	
 	private WebGLTexture webglTexture;
 	
+	// Number of the materials using this texture
+	private int users = 0;
+	
 	private int anisotropy;
 	
 	private int cache_oldAnisotropy;
@@ -153,6 +158,7 @@ public class Texture
 				setNeedsUpdate(true);
 				if (imageLoadHandler != null)
 					imageLoadHandler.onImageLoad(Texture.this);
+				HasEventBus.EVENT_BUS.fireEvent(new InvalidateEvent(Texture.this));
 			}
 		});
 	}
@@ -216,6 +222,34 @@ public class Texture
 		return id;
 	}
 
+	/**
+	 * Gets the number of the materials the texture is used by. 
+	 * When it drops to zero the renderer deletes the GL texture, 
+	 * see {@link #deallocate(WebGLRenderer)}.
+	 */
+	public int getUsers() {
+		return this.users;
+	}
+	
+	/**
+	 * Registers a new user of the texture.
+	 * @return the number of the users
+	 */
+	public int addUser() {
+		return ++this.users;
+	}
+	
+	/**
+	 * Unregisters the user of the texture.
+	 * @return the number of the users left
+	 */
+	public int removeUser() {
+		if ( this.users > 0 )
+			this.users--;
+
+		return this.users;
+	}
+
 	/**
 	 * Get the @{link Texture.MAPPING_MODE} value.
 	 */
@@ -508,7 +542,8 @@ public class Texture
 	}
 	
 	/**
-	 * Releases a texture from the GL context.
+	 * Releases a texture from the GL context. The texture is uploaded 
+	 * again if it is used after that.
 	 * texture � an instance of Texture
 	 */
 	public void deallocate( WebGLRenderer renderer ) 
@@ -516,6 +551,8 @@ public class Texture
 		if ( getWebGlTexture() == null ) return;
 
 		renderer.getGL().deleteTexture( getWebGlTexture() );
+		setWebGlTexture( null );
+		setNeedsUpdate( true );
 
 		renderer.getInfo().getMemory().textures--;
 	}
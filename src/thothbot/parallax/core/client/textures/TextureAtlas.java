@@ -0,0 +1,323 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ * 
+ * This file is part of Parallax project.
+ * 
+ * Parallax is free software: you can redistribute it and/or modify it 
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ * 
+ * Parallax is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution 
+ * 3.0 Unported License. for more details.
+ * 
+ * You should have received a copy of the the Creative Commons Attribution 
+ * 3.0 Unported License along with Parallax. 
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+
+package thothbot.parallax.core.client.textures;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import thothbot.parallax.core.client.gl2.arrays.Float32Array;
+import thothbot.parallax.core.shared.Log;
+import thothbot.parallax.core.shared.core.BufferAttribute;
+import thothbot.parallax.core.shared.core.BufferGeometry;
+import thothbot.parallax.core.shared.core.FastIntMap;
+import thothbot.parallax.core.shared.core.Geometry;
+import thothbot.parallax.core.shared.math.Vector2;
+
+import com.google.gwt.canvas.dom.client.Context2d;
+import com.google.gwt.dom.client.CanvasElement;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.ImageElement;
+
+/**
+ * Packs the small textures into one canvas-backed texture, so the materials 
+ * which differ only in their map can share one material and one texture binding.
+ * <p>
+ * The textures are packed in shelves: the texture is placed on the shelf 
+ * with the least wasted height, or a new shelf is started. The image of the 
+ * texture should be loaded before it is added. The geometry UVs are remapped 
+ * to the region of the texture with {@link Region#remap(Geometry)}; the UVs 
+ * should be in the 0..1 range, since the repeat wrapping is not possible 
+ * within the atlas.
+ * 
+ * <pre>
+ * {@code
+ * TextureAtlas atlas = new TextureAtlas(1024, 1024);
+ * atlas.add( texture1 ).remap( geometry1 );
+ * atlas.add( texture2 ).remap( geometry2 );
+ * 
+ * MeshBasicMaterial material = new MeshBasicMaterial();
+ * material.setMap( atlas.getTexture() );
+ * 
+ * scene.add( new Mesh( geometry1, material ) );
+ * scene.add( new Mesh( geometry2, material ) );
+ * }
+ * </pre>
+ */
+public class TextureAtlas
+{
+	/**
+	 * The region of the texture in the atlas.
+	 */
+	public static class Region 
+	{
+		private Texture source;
+
+		private int x;
+		private int y;
+		private int width;
+		private int height;
+
+		// The region in the texture coordinates
+		private Vector2 offset;
+		private Vector2 repeat;
+
+		Region(Texture source, int x, int y, int width, int height, int atlasWidth, int atlasHeight) 
+		{
+			this.source = source;
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+
+			// The image is flipped on upload, so the v axis goes up
+			this.offset = new Vector2( (double)x / atlasWidth, 1.0 - (double)( y + height ) / atlasHeight );
+			this.repeat = new Vector2( (double)width / atlasWidth, (double)height / atlasHeight );
+		}
+
+		public Texture getSource() {
+			return this.source;
+		}
+
+		public int getX() {
+			return this.x;
+		}
+
+		public int getY() {
+			return this.y;
+		}
+
+		public int getWidth() {
+			return this.width;
+		}
+
+		public int getHeight() {
+			return this.height;
+		}
+
+		public Vector2 getOffset() {
+			return this.offset;
+		}
+
+		public Vector2 getRepeat() {
+			return this.repeat;
+		}
+
+		/**
+		 * Remaps the UVs of the geometry into the region. 
+		 * The UV shared by several faces is remapped once.
+		 */
+		public void remap(Geometry geometry)
+		{
+			Map<Vector2, Boolean> remapped = new IdentityHashMap<Vector2, Boolean>();
+
+			for ( List<List<Vector2>> layer : geometry.getFaceVertexUvs() )
+				for ( List<Vector2> faceUvs : layer )
+					for ( Vector2 uv : faceUvs )
+						if ( remapped.put( uv, true ) == null )
+							remap( uv );
+
+			geometry.setUvsNeedUpdate( true );
+		}
+
+		/**
+		 * Remaps the "uv" attribute of the geometry into the region.
+		 */
+		public void remap(BufferGeometry geometry)
+		{
+			BufferAttribute uvs = geometry.getAttribute( "uv" );
+
+			if ( uvs == null )
+				return;
+
+			Float32Array array = (Float32Array) uvs.getArray();
+
+			for ( int i = 0, l = uvs.getCount(); i < l; i ++ ) 
+			{
+				int index = i * uvs.getStride() + uvs.getOffset();
+
+				array.set( index,     this.offset.getX() + array.get( index )     * this.repeat.getX() );
+				array.set( index + 1, this.offset.getY() + array.get( index + 1 ) * this.repeat.getY() );
+			}
+
+			uvs.setNeedsUpdate( true );
+		}
+
+		/**
+		 * Sets the offset and repeat of the texture to the region. Use it for 
+		 * the texture which shares the image of the atlas, when the geometry 
+		 * UVs can't be changed.
+		 */
+		public void applyTo(Texture texture)
+		{
+			texture.getOffset().copy( this.offset );
+			texture.getRepeat().copy( this.repeat );
+		}
+
+		private void remap(Vector2 uv)
+		{
+			uv.set( this.offset.getX() + uv.getX() * this.repeat.getX(), 
+					this.offset.getY() + uv.getY() * this.repeat.getY() );
+		}
+	}
+
+	private int width;
+	private int height;
+	private int padding;
+
+	private CanvasElement canvas;
+	private Texture texture;
+
+	private FastIntMap<Region> regions = new FastIntMap<Region>();
+
+	// Shelves: top, height and used width
+	private List<int[]> shelves = new ArrayList<int[]>();
+	private int shelvesHeight = 0;
+
+	/**
+	 * @param width  the atlas width, should be power of two
+	 * @param height the atlas height, should be power of two
+	 */
+	public TextureAtlas(int width, int height) 
+	{
+		this(width, height, 2);
+	}
+
+	/**
+	 * @param width   the atlas width, should be power of two
+	 * @param height  the atlas height, should be power of two
+	 * @param padding the gap between the regions, in pixels, 
+	 * to keep the filtering from bleeding the neighbours in
+	 */
+	public TextureAtlas(int width, int height, int padding) 
+	{
+		this.width = width;
+		this.height = height;
+		this.padding = padding;
+
+		this.canvas = Document.get().createElement("canvas").cast();
+		this.canvas.setWidth( width );
+		this.canvas.setHeight( height );
+
+		this.texture = new Texture( this.canvas );
+	}
+
+	public int getWidth() {
+		return this.width;
+	}
+
+	public int getHeight() {
+		return this.height;
+	}
+
+	/**
+	 * Gets the texture with the packed images, to be set as the map of the material.
+	 */
+	public Texture getTexture() {
+		return this.texture;
+	}
+
+	/**
+	 * Gets the region of the texture, or null if the texture was not added.
+	 */
+	public Region getRegion(Texture texture) {
+		return this.regions.get( texture.getId() );
+	}
+
+	/**
+	 * Gets the packed regions.
+	 */
+	public List<Region> getRegions() {
+		return this.regions.values();
+	}
+
+	/**
+	 * Packs the image of the texture into the atlas. The texture which 
+	 * was added before is not packed again.
+	 * 
+	 * @return the region of the texture, or null if the image is not 
+	 * loaded or there is no room left.
+	 */
+	public Region add(Texture texture)
+	{
+		Region region = this.regions.get( texture.getId() );
+		if ( region != null )
+			return region;
+
+		int imageWidth = texture.getImage().getOffsetWidth();
+		int imageHeight = texture.getImage().getOffsetHeight();
+
+		if ( imageWidth == 0 || imageHeight == 0 ) 
+		{
+			Log.warn("TextureAtlas: the image of the texture " + texture.getId() + " is not loaded");
+			return null;
+		}
+
+		int[] shelf = findShelf( imageWidth + this.padding, imageHeight + this.padding );
+
+		if ( shelf == null ) 
+		{
+			Log.warn("TextureAtlas: no room for the texture " + texture.getId() 
+					+ " (" + imageWidth + "x" + imageHeight + ")");
+			return null;
+		}
+
+		region = new Region( texture, shelf[ 2 ], shelf[ 0 ], imageWidth, imageHeight, this.width, this.height );
+		shelf[ 2 ] += imageWidth + this.padding;
+
+		Context2d context = this.canvas.getContext2d();
+		context.drawImage( (ImageElement)texture.getImage(), region.getX(), region.getY() );
+
+		this.regions.put( texture.getId(), region );
+		this.texture.setNeedsUpdate( true );
+
+		return region;
+	}
+
+	/**
+	 * Finds the shelf with the least wasted height, or starts the new one.
+	 */
+	private int[] findShelf(int width, int height)
+	{
+		int[] best = null;
+
+		for ( int i = 0, l = this.shelves.size(); i < l; i ++ ) 
+		{
+			int[] shelf = this.shelves.get( i );
+
+			if ( shelf[ 1 ] >= height && shelf[ 2 ] + width <= this.width + this.padding 
+					&& ( best == null || shelf[ 1 ] < best[ 1 ] ) )
+				best = shelf;
+		}
+
+		if ( best != null )
+			return best;
+
+		if ( this.shelvesHeight + height > this.height + this.padding || width > this.width + this.padding )
+			return null;
+
+		int[] shelf = { this.shelvesHeight, height, 0 };
+		this.shelves.add( shelf );
+		this.shelvesHeight += height;
+
+		return shelf;
+	}
+}
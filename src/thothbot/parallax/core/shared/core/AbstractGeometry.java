@@ -19,6 +19,7 @@
 package thothbot.parallax.core.shared.core;
 
 import thothbot.parallax.core.client.renderers.WebGLGeometry;
+import thothbot.parallax.core.client.renderers.WebGLRenderer;
 import thothbot.parallax.core.shared.math.Box3;
 import thothbot.parallax.core.shared.math.Sphere;
 
@@ -48,6 +49,9 @@ public abstract class AbstractGeometry extends WebGLGeometry
 
 	protected boolean groupsNeedUpdate = false;
 	
+	// Number of the objects rendered with this geometry
+	private int users = 0;
+	
 	public AbstractGeometry() {
 		this.id = Counter++;
 
@@ -76,6 +80,34 @@ public abstract class AbstractGeometry extends WebGLGeometry
 		this.id = id;
 	}
 	
+	/**
+	 * Gets the number of the objects the geometry is rendered with. 
+	 * When it drops to zero the renderer frees the GL buffers of 
+	 * the geometry, see {@link WebGLRenderer#deallocateGeometry(AbstractGeometry)}.
+	 */
+	public int getUsers() {
+		return this.users;
+	}
+	
+	/**
+	 * Registers a new user of the geometry.
+	 * @return the number of the users
+	 */
+	public int addUser() {
+		return ++this.users;
+	}
+	
+	/**
+	 * Unregisters the user of the geometry.
+	 * @return the number of the users left
+	 */
+	public int removeUser() {
+		if ( this.users > 0 )
+			this.users--;
+
+		return this.users;
+	}
+
 	/**
 	 * Gets the Unique number of this geometry instance
 	 */
@@ -21,8 +21,14 @@ package thothbot.parallax.core.shared.core;
 import thothbot.parallax.core.client.gl2.WebGLBuffer;
 import thothbot.parallax.core.client.gl2.arrays.Float32Array;
 import thothbot.parallax.core.client.gl2.arrays.TypeArray;
+import thothbot.parallax.core.client.gl2.enums.BufferUsage;
 
 public class BufferAttribute {
+
+	/**
+	 * Maximum number of the update ranges, see {@link #addUpdateRange(int, int)}.
+	 */
+	public static final int MAX_UPDATE_RANGES = 8;
 	
 	private TypeArray array;
 	private int itemSize;
@@ -32,6 +38,17 @@ public class BufferAttribute {
 	
 	private boolean needsUpdate = false;
 	private WebGLBuffer buffer;
+
+	private BufferUsage usage = BufferUsage.STATIC_DRAW;
+
+	// Changed parts of the array: offset and count pairs, in array elements.
+	// No ranges with needsUpdate means the whole array.
+	private int[] updateRanges = new int[ MAX_UPDATE_RANGES * 2 ];
+	private int updateRangesCount = 0;
+
+	// The state of the GL buffer, set by BufferGeometry
+	int bufferLength = -1;
+	BufferUsage bufferUsage;
 	
 	public BufferAttribute(TypeArray array, int itemSize) {
 		this.array = array;
@@ -40,20 +57,44 @@ public class BufferAttribute {
 	
 	public int 	getLength () {
 
-		return this.array.getLength();
+		return this.getArray().getLength();
 
 	}
 	
 	public int getItemSize() {
 		return this.itemSize;
 	}
+
+	/**
+	 * Gets the number of array elements from one item to the next one. 
+	 * It is the item size, unless the attribute is interleaved, 
+	 * see {@link InterleavedBufferAttribute}.
+	 */
+	public int getStride() {
+		return this.itemSize;
+	}
+
+	/**
+	 * Gets the position of the first value in the item.
+	 */
+	public int getOffset() {
+		return 0;
+	}
+
+	/**
+	 * Gets the number of items.
+	 */
+	public int getCount() {
+		return this.getArray().getLength() / this.getStride();
+	}
 	
 	public TypeArray getArray() {
 		return this.array;
 	}
 	
-	public void setArray(Float32Array array) {
+	public void setArray(TypeArray array) {
 		this.array = array;
+		this.setNeedsUpdate( true );
 	}
 	
 	/**
@@ -77,8 +118,102 @@ public class BufferAttribute {
 		return needsUpdate;
 	}
 	
+	/**
+	 * Marks the whole array to be uploaded to the GPU, or clears 
+	 * all pending updates.
+	 */
 	public void setNeedsUpdate(boolean needsUpdate) {
 		this.needsUpdate = needsUpdate;
+		this.updateRangesCount = 0;
+	}
+
+	/**
+	 * Marks the part of the array to be uploaded to the GPU. Only the changed 
+	 * ranges are uploaded then, instead of the whole array.
+	 * Overlapping and adjacent ranges are merged. If there are 
+	 * more than {@link #MAX_UPDATE_RANGES} ranges, they are joined 
+	 * into the one covering all of them.
+	 * 
+	 * @param offset the first changed element of the array (not item)
+	 * @param count  the number of changed elements
+	 */
+	public void addUpdateRange(int offset, int count) {
+
+		// The whole array is already going to be uploaded
+		if ( this.needsUpdate && this.updateRangesCount == 0 )
+			return;
+
+		this.needsUpdate = true;
+
+		int end = offset + count;
+
+		for ( int i = 0; i < this.updateRangesCount; i ++ ) {
+
+			int rangeOffset = this.updateRanges[ i * 2 ];
+			int rangeEnd = rangeOffset + this.updateRanges[ i * 2 + 1 ];
+
+			if ( offset <= rangeEnd && end >= rangeOffset ) {
+
+				this.updateRanges[ i * 2 ] = Math.min( offset, rangeOffset );
+				this.updateRanges[ i * 2 + 1 ] = Math.max( end, rangeEnd ) - this.updateRanges[ i * 2 ];
+				return;
+
+			}
+
+		}
+
+		if ( this.updateRangesCount == MAX_UPDATE_RANGES ) {
+
+			for ( int i = 0; i < this.updateRangesCount; i ++ ) {
+
+				offset = Math.min( offset, this.updateRanges[ i * 2 ] );
+				end = Math.max( end, this.updateRanges[ i * 2 ] + this.updateRanges[ i * 2 + 1 ] );
+
+			}
+
+			this.updateRangesCount = 0;
+
+		}
+
+		this.updateRanges[ this.updateRangesCount * 2 ] = offset;
+		this.updateRanges[ this.updateRangesCount * 2 + 1 ] = end - offset;
+		this.updateRangesCount ++;
+
+	}
+
+	/**
+	 * Gets the number of changed ranges. 0 with {@link #isNeedsUpdate()} 
+	 * means that the whole array should be uploaded.
+	 */
+	public int getUpdateRangesCount() {
+		return this.updateRangesCount;
+	}
+
+	public int getUpdateRangeOffset(int index) {
+		return this.updateRanges[ index * 2 ];
+	}
+
+	public int getUpdateRangeCount(int index) {
+		return this.updateRanges[ index * 2 + 1 ];
+	}
+
+	/**
+	 * Gets {@link #setUsage(BufferUsage)} value.
+	 */
+	public BufferUsage getUsage() {
+		return this.usage;
+	}
+
+	/**
+	 * Hints how often the data is going to be changed: 
+	 * {@link BufferUsage#STATIC_DRAW} - once, 
+	 * {@link BufferUsage#DYNAMIC_DRAW} - repeatedly, 
+	 * {@link BufferUsage#STREAM_DRAW} - every frame. 
+	 * Default is {@link BufferUsage#STATIC_DRAW}.
+	 */
+	public BufferAttribute setUsage(BufferUsage usage) {
+		this.usage = usage;
+		return this;
 	}
 
 	/**
@@ -97,12 +232,12 @@ public class BufferAttribute {
 		
 	public void copyAt( int index1, BufferAttribute attribute, int index2 ) {
 
-		index1 *= this.itemSize;
-		index2 *= attribute.itemSize;
+		index1 = index1 * this.getStride() + this.getOffset();
+		index2 = index2 * attribute.getStride() + attribute.getOffset();
 
 		for ( int i = 0, l = this.itemSize; i < l; i ++ ) {
 
-			((Float32Array)this.array).set( index1 + i , ((Float32Array)attribute.array).get( index2 + i ) );
+			((Float32Array)this.getArray()).set( index1 + i , ((Float32Array)attribute.getArray()).get( index2 + i ) );
 
 		}
 
@@ -110,7 +245,7 @@ public class BufferAttribute {
 
 	public BufferAttribute set( Float32Array value ) {
 
-		this.array.set( value );
+		this.getArray().set( value );
 
 		return this;
 
@@ -118,7 +253,7 @@ public class BufferAttribute {
 	
 	public BufferAttribute setX( int index, double x ) {
 
-		((Float32Array)this.array).set( index * this.itemSize , x );
+		((Float32Array)this.getArray()).set( index * this.getStride() + this.getOffset() , x );
 
 		return this;
 
@@ -126,7 +261,7 @@ public class BufferAttribute {
 
 	public BufferAttribute setY( int index, double y ) {
 
-		((Float32Array)this.array).set( index * this.itemSize + 1 , y );
+		((Float32Array)this.getArray()).set( index * this.getStride() + this.getOffset() + 1 , y );
 
 		return this;
 
@@ -134,7 +269,7 @@ public class BufferAttribute {
 
 	public BufferAttribute setZ( int index, double z ) {
 
-		((Float32Array)this.array).set( index * this.itemSize + 2 , z );
+		((Float32Array)this.getArray()).set( index * this.getStride() + this.getOffset() + 2 , z );
 
 		return this;
 
@@ -142,10 +277,10 @@ public class BufferAttribute {
 
 	public BufferAttribute setXY( int index, double x, double y ) {
 
-		index *= this.itemSize;
+		index = index * this.getStride() + this.getOffset();
 
-		((Float32Array)this.array).set( index     , x);
-		((Float32Array)this.array).set( index + 1 , y );
+		((Float32Array)this.getArray()).set( index     , x);
+		((Float32Array)this.getArray()).set( index + 1 , y );
 
 		return this;
 
@@ -153,11 +288,11 @@ public class BufferAttribute {
 
 	public BufferAttribute setXYZ ( int index, double x, double y, double z ) {
 
-		index *= this.itemSize;
+		index = index * this.getStride() + this.getOffset();
 
-		((Float32Array)this.array).set( index     , x );	
-		((Float32Array)this.array).set( index + 1 , y );
-		((Float32Array)this.array).set( index + 2 , z );
+		((Float32Array)this.getArray()).set( index     , x );	
+		((Float32Array)this.getArray()).set( index + 1 , y );
+		((Float32Array)this.getArray()).set( index + 2 , z );
 
 		return this;
 
@@ -165,12 +300,12 @@ public class BufferAttribute {
 
 	public BufferAttribute setXYZW ( int index, double x, double y, double z, double w ) {
 
-		index *= this.itemSize;
+		index = index * this.getStride() + this.getOffset();
 
-		((Float32Array)this.array).set( index     , x );
-		((Float32Array)this.array).set( index + 1 , y );
-		((Float32Array)this.array).set( index + 2 , z );
-		((Float32Array)this.array).set( index + 3 , w );
+		((Float32Array)this.getArray()).set( index     , x );
+		((Float32Array)this.getArray()).set( index + 1 , y );
+		((Float32Array)this.getArray()).set( index + 2 , z );
+		((Float32Array)this.getArray()).set( index + 3 , w );
 
 		return this;
 
@@ -186,6 +321,7 @@ public class BufferAttribute {
 		return "{array: " + this.array.getLength() 
 				+ ", itemSize: " + this.itemSize 
 				+ ", needsUpdate: " + this.isNeedsUpdate() 
+				+ ", usage: " + this.usage 
 				+ ", buffer: " + this.getBuffer() + "}";
 	}
 }
@@ -23,14 +23,14 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import thothbot.parallax.core.client.gl2.WebGLRenderingContext;
 import thothbot.parallax.core.client.gl2.arrays.Float32Array;
 import thothbot.parallax.core.client.gl2.arrays.Int32Array;
+import thothbot.parallax.core.client.gl2.arrays.TypeArray;
 import thothbot.parallax.core.client.gl2.arrays.Uint16Array;
+import thothbot.parallax.core.client.gl2.arrays.Uint32Array;
 import thothbot.parallax.core.client.gl2.enums.BufferTarget;
-import thothbot.parallax.core.client.gl2.enums.BufferUsage;
 import thothbot.parallax.core.shared.Log;
 import thothbot.parallax.core.shared.materials.Material;
 import thothbot.parallax.core.shared.math.Box3;
@@ -49,6 +49,9 @@ import com.google.gwt.core.client.GWT;
  * all this data to the GPU. This also makes BufferGeometry harder to work with than {@link Geometry}; rather than 
  * accessing position data as {@link Vector3} objects, color data as {@link Color} objects, and so on, you have to access 
  * the raw data from the appropriate attribute buffer {@link BufferAttribute}.  
+ * <p>
+ * The "index" attribute is a Uint16Array, or a Uint32Array when the biggest index 
+ * does not fit in 16 bits and OES_element_index_uint is supported.
  *
  *<pre>
  * BufferGeometry geometry = new BufferGeometry();
@@ -86,7 +89,7 @@ public class BufferGeometry extends AbstractGeometry
 	}
 			
 	private Map<String, BufferAttribute> attributes;
-	private Set<String> attributesKeys;
+	private String[] attributesKeys = new String[0];
 	
 	private List<BufferGeometry.DrawCall> drawcalls;
 
@@ -133,7 +136,10 @@ public class BufferGeometry extends AbstractGeometry
 	public void addAttribute( String name, BufferAttribute attribute ) {
 
 		this.attributes.put( name, attribute );
-		this.attributesKeys = this.attributes.keySet();
+		this.attributesKeys = this.attributes.keySet().toArray( new String[ this.attributes.size() ] );
+
+		// The cached attribute bindings do not have the new attribute
+		this.__webglVertexArraysNeedUpdate = true;
 
 	}
 
@@ -180,7 +186,20 @@ public class BufferGeometry extends AbstractGeometry
 
 		if ( position != null ) {
 
-			matrix.applyToVector3Array( (Float32Array) position.getArray() );
+			if ( position instanceof InterleavedBufferAttribute ) {
+
+				Vector3 vector = new Vector3();
+				Float32Array positions = (Float32Array) position.getArray();
+
+				for ( int i = position.getOffset(), il = positions.getLength(), stride = position.getStride(); i < il; i += stride )
+					vector.fromArray( positions, i ).apply( matrix ).toArray( positions, i );
+
+			} else {
+
+				matrix.applyToVector3Array( (Float32Array) position.getArray() );
+
+			}
+
 			position.setNeedsUpdate( true );
 
 		}
@@ -191,7 +210,20 @@ public class BufferGeometry extends AbstractGeometry
 
 			Matrix3 normalMatrix = new Matrix3().getNormalMatrix( matrix );
 
-			normalMatrix.applyToVector3Array( (Float32Array) normal.getArray() );
+			if ( normal instanceof InterleavedBufferAttribute ) {
+
+				Vector3 vector = new Vector3();
+				Float32Array normals = (Float32Array) normal.getArray();
+
+				for ( int i = normal.getOffset(), il = normals.getLength(), stride = normal.getStride(); i < il; i += stride )
+					vector.fromArray( normals, i ).apply( normalMatrix ).toArray( normals, i );
+
+			} else {
+
+				normalMatrix.applyToVector3Array( (Float32Array) normal.getArray() );
+
+			}
+
 			normal.setNeedsUpdate( true );
 
 		}
@@ -210,6 +242,18 @@ public class BufferGeometry extends AbstractGeometry
 
 	public BufferGeometry fromGeometry( Geometry geometry, Material.COLORS vertexColors) {
 
+		return fromGeometry(geometry, vertexColors, false);
+	}
+
+	/**
+	 * Populates this BufferGeometry with data from a {@link Geometry} object.
+	 * @param geometry
+	 * @param vertexColors
+	 * @param interleaved pack the attributes into one {@link InterleavedBuffer}, see {@link #interleave(String...)}
+	 * @return
+	 */
+	public BufferGeometry fromGeometry( Geometry geometry, Material.COLORS vertexColors, boolean interleaved) {
+
 		List<Vector3> vertices = geometry.getVertices();
 		List<Face3> faces = geometry.getFaces();
 		List<List<List<Vector2>>> faceVertexUvs = geometry.getFaceVertexUvs();
@@ -347,12 +391,64 @@ public class BufferGeometry extends AbstractGeometry
 
 		}
 
+		if ( interleaved ) {
+
+			this.interleave( "position", "normal", "color", "uv" );
+
+		}
+
 		this.computeBoundingSphere();
 
 		return this;
 
 	}
 
+	/**
+	 * Packs the attributes into one {@link InterleavedBuffer}, so they are uploaded 
+	 * and bound as one GL buffer, and the values of a vertex are close in memory. 
+	 * The attributes should have the same number of items; missing ones are skipped.
+	 * 
+	 * @param names the attributes in the order of their values in the item
+	 * @return the interleaved buffer, or null if there are no attributes to pack
+	 */
+	public InterleavedBuffer interleave( String... names ) {
+
+		List<String> packed = new ArrayList<String>();
+		int stride = 0;
+
+		for ( String name: names ) {
+
+			if ( name.equals( "index" ) || getAttribute( name ) == null )
+				continue;
+
+			packed.add( name );
+			stride += getAttribute( name ).getItemSize();
+
+		}
+
+		if ( packed.isEmpty() ) 
+			return null;
+
+		int count = getAttribute( packed.get( 0 ) ).getCount();
+		InterleavedBuffer data = new InterleavedBuffer( Float32Array.create( count * stride ), stride );
+
+		for ( int i = 0, offset = 0; i < packed.size(); i ++ ) {
+
+			BufferAttribute source = getAttribute( packed.get( i ) );
+			InterleavedBufferAttribute attribute = new InterleavedBufferAttribute( data, source.getItemSize(), offset );
+
+			for ( int j = 0; j < count; j ++ ) 
+				attribute.copyAt( j, source, j );
+
+			this.addAttribute( packed.get( i ), attribute );
+			offset += source.getItemSize();
+
+		}
+
+		return data;
+
+	}
+
 	/**
 	 * Computes bounding box of the geometry, updating Geometry.boundingBox attribute.
 	 * Bounding boxes aren't computed by default. They need to be explicitly computed, otherwise they are null.
@@ -368,14 +464,15 @@ public class BufferGeometry extends AbstractGeometry
 
 		}
 
-		Float32Array positions = (Float32Array) getAttribute("position").getArray();
+		BufferAttribute position = getAttribute("position");
+		Float32Array positions = (Float32Array) position.getArray();
 
 		if ( positions != null) {
 
 			Box3 bb = this.boundingBox;
 			bb.makeEmpty();
 
-			for ( int i = 0, il = positions.getLength(); i < il; i += 3 ) {
+			for ( int i = position.getOffset(), il = positions.getLength(), stride = position.getStride(); i < il; i += stride ) {
 
 				vector.set( positions.get( i ), positions.get( i + 1 ), positions.get( i + 2 ) );
 				bb.expandByPoint( vector );
@@ -408,7 +505,8 @@ public class BufferGeometry extends AbstractGeometry
 
 		}
 
-		Float32Array positions = (Float32Array) getAttribute("position").getArray();
+		BufferAttribute position = getAttribute("position");
+		Float32Array positions = (Float32Array) position.getArray();
 
 		if ( positions != null ) {
 
@@ -416,7 +514,7 @@ public class BufferGeometry extends AbstractGeometry
 
 			Vector3 center = this.boundingSphere.getCenter();
 
-			for ( int i = 0, il = positions.getLength(); i < il; i += 3 ) {
+			for ( int i = position.getOffset(), il = positions.getLength(), stride = position.getStride(); i < il; i += stride ) {
 
 				vector.set( positions.get( i ), positions.get( i + 1 ), positions.get( i + 2 ) );
 				box.expandByPoint( vector );
@@ -430,7 +528,7 @@ public class BufferGeometry extends AbstractGeometry
 
 			double maxRadiusSq = 0.0;
 
-			for ( int i = 0, il = positions.getLength(); i < il; i += 3 ) {
+			for ( int i = position.getOffset(), il = positions.getLength(), stride = position.getStride(); i < il; i += stride ) {
 
 				vector.set( positions.get( i ), positions.get( i + 1 ), positions.get( i + 2 ) );
 				maxRadiusSq = Math.max( maxRadiusSq, center.distanceToSquared( vector ) );
@@ -670,25 +768,30 @@ public class BufferGeometry extends AbstractGeometry
 	 * Compute the draw offset for large models by chunking the index buffer into chunks of 65k addressable vertices.
 	 * This method will effectively rewrite the index buffer and remap all attributes to match the new indices.
 	 * WARNING: This method will also expand the vertex count to prevent sprawled triangles across draw offsets
-	 * @param size Defaults to 65535, but allows for larger or smaller chunks.
+	 * @param size Defaults to 65535, but allows for larger or smaller chunks. If an index in a chunk 
+	 * 		does not fit in 16 bits, Uint32Array index buffer is used, see {@link thothbot.parallax.core.client.renderers.WebGLRenderer#supportsElementIndexUint()}.
 	 * @return
 	 */
 	public List<BufferGeometry.DrawCall> computeOffsets( int size /* indexBufferSize */ ) {
 
 //		var s = Date.now();
 
-		Uint16Array indices = (Uint16Array)getAttribute("index").getArray();
+		TypeArray indices = getAttribute("index").getArray();
+		boolean isUint32 = indices.getBytesPerElement() == Uint32Array.BYTES_PER_ELEMENT;
 		Float32Array vertices = (Float32Array)getAttribute("position").getArray();
 
 		int verticesCount = ( vertices.getLength() / 3 );
 		int facesCount = ( indices.getLength() / 3 );
 
-		Float32Array sortedIndices = Float32Array.create( indices.getLength() ); //16-bit buffers
+		// The type is chosen by the biggest index when all indices are known
+		Uint32Array sortedIndices = Uint32Array.create( indices.getLength() );
+		int maxIndex = 0;
 		int indexPtr = 0;
 		int vertexPtr = 0;
 
-		List<BufferGeometry.DrawCall> offsets = Arrays.asList(new BufferGeometry.DrawCall(0, 0, 0));
-		BufferGeometry.DrawCall offset = offsets.get( 0 );
+		List<BufferGeometry.DrawCall> offsets = new ArrayList<BufferGeometry.DrawCall>();
+		BufferGeometry.DrawCall offset = new BufferGeometry.DrawCall(0, 0, 0);
+		offsets.add( offset );
 
 		int duplicatedVertices = 0;
 		int newVerticeMaps = 0;
@@ -708,7 +811,7 @@ public class BufferGeometry extends AbstractGeometry
 			newVerticeMaps = 0;
 
 			for ( int vo = 0; vo < 3; vo ++ ) {
-				int vid = (int)indices.get( findex * 3 + vo );
+				int vid = isUint32 ? ((Uint32Array)indices).get( findex * 3 + vo ) : ((Uint16Array)indices).get( findex * 3 + vo );
 				if ( vertexMap.get( vid ) == - 1 ) {
 					//Unmapped vertice
 					faceVertices.set( vo * 2 , vid);
@@ -750,13 +853,14 @@ public class BufferGeometry extends AbstractGeometry
 
 				vertexMap.set( vid , new_vid);
 				revVertexMap.set( new_vid , vid);
-				sortedIndices.set( indexPtr ++ , new_vid - offset.index); //XXX overflows at 16bit
+				sortedIndices.set( indexPtr ++ , new_vid - offset.index);
+				maxIndex = Math.max( maxIndex, new_vid - offset.index );
 				offset.count ++;
 			}
 		}
 
 		/* Move all attribute values to map to the new computed indices , also expand the vertice stack to match our new vertexPtr. */
-		this.reorderBuffers( sortedIndices, revVertexMap, vertexPtr );
+		this.reorderBuffers( maxIndex > 65535 ? sortedIndices : Uint16Array.create( sortedIndices ), revVertexMap, vertexPtr );
 		this.drawcalls = offsets;
 
 		/*
@@ -798,11 +902,11 @@ public class BufferGeometry extends AbstractGeometry
 	/*
 		reoderBuffers:
 		Reorder attributes based on a new indexBuffer and indexMap.
-		indexBuffer - Uint16Array of the new ordered indices.
+		indexBuffer - Uint16Array or Uint32Array of the new ordered indices.
 		indexMap - Int32Array where the position is the new vertex ID and the value the old vertex ID for each vertex.
 		vertexCount - Amount of total vertices considered in this reordering (in case you want to grow the vertice stack).
 	*/
-	public void reorderBuffers( Float32Array indexBuffer, Int32Array indexMap, int vertexCount ) {
+	public void reorderBuffers( TypeArray indexBuffer, Int32Array indexMap, int vertexCount ) {
 
 		/* Create a copy of all attributes for reordering. */
 		Map <String, Float32Array> sortedAttributes  = GWT.isScript() ? 
@@ -850,9 +954,34 @@ public class BufferGeometry extends AbstractGeometry
 
 		BufferGeometry geometry = new BufferGeometry();
 		
+		// Interleaved buffers stay shared by the cloned attributes
+		List<InterleavedBuffer> sourceData = new ArrayList<InterleavedBuffer>();
+		List<InterleavedBuffer> clonedData = new ArrayList<InterleavedBuffer>();
+
 		for(String attr : this.attributes.keySet()) {
 			BufferAttribute sourceAttr = getAttribute( attr );
-			geometry.addAttribute( attr, sourceAttr.clone() );
+
+			if ( sourceAttr instanceof InterleavedBufferAttribute ) {
+
+				InterleavedBufferAttribute interleavedAttr = (InterleavedBufferAttribute) sourceAttr;
+				int index = sourceData.indexOf( interleavedAttr.getData() );
+
+				if ( index < 0 ) {
+
+					index = sourceData.size();
+					sourceData.add( interleavedAttr.getData() );
+					clonedData.add( interleavedAttr.getData().clone() );
+
+				}
+
+				geometry.addAttribute( attr, new InterleavedBufferAttribute( 
+						clonedData.get( index ), sourceAttr.getItemSize(), sourceAttr.getOffset() ) );
+
+			} else {
+
+				geometry.addAttribute( attr, sourceAttr.clone() );
+
+			}
 		}
 
 		for ( int i = 0, il = this.drawcalls.size(); i < il; i ++ ) {
@@ -961,11 +1090,17 @@ public class BufferGeometry extends AbstractGeometry
 
 	}
 	
+	/**
+	 * Uploads the changed attributes to the GPU. If the attribute has 
+	 * update ranges and the buffer size was not changed, only 
+	 * the ranges are uploaded. Interleaved attributes share the buffer 
+	 * and its update state, so the buffer is uploaded once.
+	 */
 	public void setDirectBuffers( WebGLRenderingContext gl ) {
 
-		for ( int i = 0, l = this.attributesKeys.size(); i < l; i ++ ) {
+		for ( int i = 0, l = this.attributesKeys.length; i < l; i ++ ) {
 
-			String key = (String) this.attributesKeys.toArray()[ i ];
+			String key = this.attributesKeys[ i ];
 			BufferAttribute attribute = this.attributes.get( key );
 
 			if ( attribute.getBuffer() == null ) {
@@ -977,10 +1112,35 @@ public class BufferGeometry extends AbstractGeometry
 
 			if ( attribute.isNeedsUpdate() == true ) {
 
-				BufferTarget bufferType = ( key == "index" ) ? BufferTarget.ELEMENT_ARRAY_BUFFER : BufferTarget.ARRAY_BUFFER;
+				BufferTarget bufferType = ( key.equals( "index" ) ) ? BufferTarget.ELEMENT_ARRAY_BUFFER : BufferTarget.ARRAY_BUFFER;
+				TypeArray array = attribute.getArray();
 
 				gl.bindBuffer( bufferType, attribute.getBuffer() );
-				gl.bufferData( bufferType, attribute.getArray(), BufferUsage.STATIC_DRAW );
+
+				if ( attribute.getUpdateRangesCount() == 0 
+						|| attribute.bufferLength != array.getLength() 
+						|| attribute.bufferUsage != attribute.getUsage() ) {
+
+					gl.bufferData( bufferType, array, attribute.getUsage() );
+
+					attribute.bufferLength = array.getLength();
+					attribute.bufferUsage = attribute.getUsage();
+
+				} else {
+
+					int bytesPerElement = array.getByteLength() / array.getLength();
+
+					for ( int r = 0, rl = attribute.getUpdateRangesCount(); r < rl; r ++ ) {
+
+						int offset = attribute.getUpdateRangeOffset( r );
+						int end = Math.min( offset + attribute.getUpdateRangeCount( r ), array.getLength() );
+
+						if ( offset < end )
+							gl.bufferSubData( bufferType, offset * bytesPerElement, array.subarray( offset, end ) );
+
+					}
+
+				}
 
 				attribute.setNeedsUpdate(false);
 
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ *
+ * This file is part of Parallax project.
+ *
+ * Parallax is free software: you can redistribute it and/or modify it
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ *
+ * Parallax is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution
+ * 3.0 Unported License. for more details.
+ *
+ * You should have received a copy of the the Creative Commons Attribution
+ * 3.0 Unported License along with Parallax.
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+package thothbot.parallax.core.shared.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.JavaScriptObject;
+
+/**
+ * Map with primitive <code>int</code> keys.
+ * <p>
+ * Unlike {@link FastMap} it does not need the key to be converted
+ * to the String, so it can be used in the per-frame code
+ * (for example to find renderer data by {@link Object3D#getId()})
+ * without any garbage.
+ * <p>
+ * In the script mode the values are stored in the native JavaScript object,
+ * in the development mode the open-addressing hash table is used.
+ * <p>
+ * Null values are not supported: putting null is equal to {@link #remove(int)}.
+ *
+ * @param <V> the type of mapped values
+ */
+public class FastIntMap<V>
+{
+	private static class JsIntMap<V> extends JavaScriptObject
+	{
+		protected JsIntMap() {
+		}
+
+		public static native <V> JsIntMap<V> create() /*-{
+			return {};
+		}-*/;
+
+		public final native V get(int key) /*-{
+			var value = this[key];
+			return value === undefined ? null : value;
+		}-*/;
+
+		public final native void put(int key, V value) /*-{
+			this[key] = value;
+		}-*/;
+
+		public final native void remove(int key) /*-{
+			delete this[key];
+		}-*/;
+
+		public final native void values(List<V> list) /*-{
+			for(var key in this) {
+				if (!this.hasOwnProperty(key)) continue;
+				list.@java.util.List::add(Ljava/lang/Object;)(this[key]);
+			}
+		}-*/;
+	}
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private JsIntMap<V> map;
+
+	private int[] keys;
+	private Object[] values;
+
+	private int size;
+
+	public FastIntMap()
+	{
+		clear();
+	}
+
+	/**
+	 * Removes all of the mappings from this map.
+	 */
+	public void clear()
+	{
+		if (GWT.isScript())
+		{
+			this.map = JsIntMap.create();
+		}
+		else
+		{
+			this.keys = new int[DEFAULT_CAPACITY];
+			this.values = new Object[DEFAULT_CAPACITY];
+		}
+
+		this.size = 0;
+	}
+
+	/**
+	 * Gets the number of key-value mappings in this map.
+	 */
+	public int size()
+	{
+		return this.size;
+	}
+
+	public boolean isEmpty()
+	{
+		return this.size == 0;
+	}
+
+	public boolean containsKey(int key)
+	{
+		return get(key) != null;
+	}
+
+	/**
+	 * Gets the value to which the specified key is mapped,
+	 * or null if this map contains no mapping for the key.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key)
+	{
+		if (GWT.isScript())
+			return this.map.get(key);
+
+		int i = find(key);
+		return i < 0 ? null : (V) this.values[i];
+	}
+
+	/**
+	 * Associates the specified value with the specified key in this map.
+	 *
+	 * @return the previous value associated with key, or null
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(int key, V value)
+	{
+		if (value == null)
+			return remove(key);
+
+		if (GWT.isScript())
+		{
+			V previous = this.map.get(key);
+			this.map.put(key, value);
+			if (previous == null)
+				this.size++;
+
+			return previous;
+		}
+
+		int i = find(key);
+		if (i >= 0)
+		{
+			V previous = (V) this.values[i];
+			this.values[i] = value;
+			return previous;
+		}
+
+		// Keep load factor below 0.5
+		if ((this.size + 1) * 2 > this.keys.length)
+			rehash(this.keys.length * 2);
+
+		i = -(find(key) + 1);
+		this.keys[i] = key;
+		this.values[i] = value;
+		this.size++;
+
+		return null;
+	}
+
+	/**
+	 * Removes the mapping for a key from this map if it is present.
+	 *
+	 * @return the previous value associated with key, or null
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(int key)
+	{
+		if (GWT.isScript())
+		{
+			V previous = this.map.get(key);
+			if (previous != null)
+			{
+				this.map.remove(key);
+				this.size--;
+			}
+
+			return previous;
+		}
+
+		int i = find(key);
+		if (i < 0)
+			return null;
+
+		V previous = (V) this.values[i];
+		this.values[i] = null;
+		this.size--;
+
+		// Backward shift deletion: move the following entries of the
+		// probe chain into the released slot, so lookups stay correct
+		// without tombstones.
+		int mask = this.keys.length - 1;
+		int j = i;
+		while (true)
+		{
+			j = (j + 1) & mask;
+			if (this.values[j] == null)
+				break;
+
+			int home = hash(this.keys[j], mask);
+			if ((j > i && (home <= i || home > j)) || (j < i && (home <= i && home > j)))
+			{
+				this.keys[i] = this.keys[j];
+				this.values[i] = this.values[j];
+				this.values[j] = null;
+				i = j;
+			}
+		}
+
+		return previous;
+	}
+
+	/**
+	 * Gets the list of values contained in this map.
+	 * The list is a snapshot and is not backed by the map.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<V> values()
+	{
+		List<V> retval = new ArrayList<V>(this.size);
+
+		if (GWT.isScript())
+		{
+			this.map.values(retval);
+		}
+		else
+		{
+			for (int i = 0; i < this.values.length; i++)
+				if (this.values[i] != null)
+					retval.add((V) this.values[i]);
+		}
+
+		return retval;
+	}
+
+	/**
+	 * Returns the slot index of the key, or <code>-(insertion slot + 1)</code>
+	 * if the key is absent.
+	 */
+	private int find(int key)
+	{
+		int mask = this.keys.length - 1;
+		int i = hash(key, mask);
+
+		while (this.values[i] != null)
+		{
+			if (this.keys[i] == key)
+				return i;
+
+			i = (i + 1) & mask;
+		}
+
+		return -(i + 1);
+	}
+
+	private void rehash(int capacity)
+	{
+		int[] oldKeys = this.keys;
+		Object[] oldValues = this.values;
+
+		this.keys = new int[capacity];
+		this.values = new Object[capacity];
+
+		for (int i = 0; i < oldValues.length; i++)
+		{
+			if (oldValues[i] == null)
+				continue;
+
+			int j = -(find(oldKeys[i]) + 1);
+			this.keys[j] = oldKeys[i];
+			this.values[j] = oldValues[i];
+		}
+	}
+
+	private static int hash(int key, int mask)
+	{
+		// Object ids are sequential, so spread them across the table
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+}
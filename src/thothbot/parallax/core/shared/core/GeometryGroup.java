@@ -19,21 +19,14 @@
 package thothbot.parallax.core.shared.core;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import thothbot.parallax.core.client.gl2.arrays.Float32Array;
-import thothbot.parallax.core.client.gl2.arrays.Uint16Array;
+import thothbot.parallax.core.client.gl2.arrays.TypeArray;
 import thothbot.parallax.core.client.renderers.WebGLGeometry;
 
-import com.google.gwt.core.client.GWT;
-
 public class GeometryGroup extends WebGLGeometry
 {
-	public static Map<String, List<GeometryGroup>> geometryGroups = GWT.isScript() ? 
-			new FastMap<List<GeometryGroup>>() : new HashMap<String, List<GeometryGroup>>(); 
-	
 	private static int Counter = 0;
 	
 	private int id = 0;
@@ -50,8 +43,9 @@ public class GeometryGroup extends WebGLGeometry
 	public Float32Array __skinIndexArray;
 	public Float32Array __skinWeightArray;
 	
-	public Uint16Array __faceArray;
-	public Uint16Array __lineArray;
+	// Uint16Array, or Uint32Array if the biggest vertex index does not fit in 16 bits
+	public TypeArray __faceArray;
+	public TypeArray __lineArray;
 	
 	public List<Float32Array> __morphTargetsArrays;
 	public List<Float32Array> __morphNormalsArrays;
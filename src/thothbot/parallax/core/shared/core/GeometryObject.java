@@ -28,6 +28,7 @@ import thothbot.parallax.core.client.renderers.WebGLGeometry;
 import thothbot.parallax.core.client.renderers.WebGLRenderer;
 import thothbot.parallax.core.client.shaders.Attribute;
 import thothbot.parallax.core.shared.materials.Material;
+import thothbot.parallax.core.shared.math.Box3;
 import thothbot.parallax.core.shared.objects.Line;
 import thothbot.parallax.core.shared.objects.Mesh;
 import thothbot.parallax.core.shared.objects.PointCloud;
@@ -38,6 +39,11 @@ public abstract class GeometryObject extends Object3D
 	protected Material material;
 	
 	private double _oldLineWidth = -1;
+
+	// Geometry and material the object is registered as user of, 
+	// see WebGLRenderer
+	public AbstractGeometry __webglGeometry;
+	public Material __webglMaterial;
 	
 	public GeometryObject(AbstractGeometry geometry, Material material) {
 		this.geometry = geometry;
@@ -52,6 +58,26 @@ public abstract class GeometryObject extends Object3D
 	public void setGeometry(AbstractGeometry geometry)
 	{
 		this.geometry = geometry;
+		this.boundsNeedUpdate = true;
+	}
+
+	@Override
+	protected Box3 getBoundingBoxLocal() 
+	{
+		if ( this.geometry.getBoundingBox() == null )
+			this.geometry.computeBoundingBox();
+
+		return this.geometry.getBoundingBox();
+	}
+
+	/**
+	 * The object is not bounded if it is not frustum culled or 
+	 * has no geometry (immediate render object).
+	 */
+	@Override
+	protected boolean isBoundsInfinite() 
+	{
+		return !this.isFrustumCulled() || this.geometry == null;
 	}
 
 	public Material getMaterial()
@@ -96,12 +122,14 @@ public abstract class GeometryObject extends Object3D
 //		deleteBuffers(renderer);
 //	}
 	
+	/**
+	 * Deletes the GL buffers of the geometry, regardless of the other objects 
+	 * using it. See {@link WebGLRenderer#deallocateObject(Object3D)} to release 
+	 * the geometry only when it is not used anymore.
+	 */
 	public void deleteBuffers(WebGLRenderer renderer) 
 	{
-		renderer.getGL().deleteBuffer( geometry.__webglVertexBuffer );
-		renderer.getGL().deleteBuffer( geometry.__webglColorBuffer );
-
-		renderer.getInfo().getMemory().geometries --;
+		renderer.deallocateGeometry( geometry );
 	}
 
 	public void setLineWidth (WebGLRenderingContext gl, double width ) 
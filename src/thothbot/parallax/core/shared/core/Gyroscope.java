@@ -75,5 +75,7 @@ public class Gyroscope extends Object3D
 		{
 			this.children.get( i ).updateMatrixWorld( force );
 		}
+
+		this.updateBoundsWorld( force );
 	}
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ * 
+ * This file is part of Parallax project.
+ * 
+ * Parallax is free software: you can redistribute it and/or modify it 
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ * 
+ * Parallax is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution 
+ * 3.0 Unported License. for more details.
+ * 
+ * You should have received a copy of the the Creative Commons Attribution 
+ * 3.0 Unported License along with Parallax. 
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+package thothbot.parallax.core.shared.core;
+
+import thothbot.parallax.core.client.gl2.arrays.TypeArray;
+
+/**
+ * Per-instance attribute of the {@link InstancedBufferGeometry}. 
+ * The attribute advances once per <code>meshPerAttribute</code> 
+ * instances instead of once per vertex.
+ */
+public class InstancedBufferAttribute extends BufferAttribute 
+{
+	private int meshPerAttribute;
+
+	public InstancedBufferAttribute(TypeArray array, int itemSize) 
+	{
+		this(array, itemSize, 1);
+	}
+
+	public InstancedBufferAttribute(TypeArray array, int itemSize, int meshPerAttribute) 
+	{
+		super(array, itemSize);
+		this.meshPerAttribute = meshPerAttribute;
+	}
+
+	/**
+	 * Gets how many instances use the same value of the attribute.
+	 */
+	public int getMeshPerAttribute() {
+		return meshPerAttribute;
+	}
+
+	public void setMeshPerAttribute(int meshPerAttribute) {
+		this.meshPerAttribute = meshPerAttribute;
+	}
+
+	public String toString() {
+		return "{array: " + this.getArray().getLength() 
+				+ ", itemSize: " + this.getItemSize() 
+				+ ", meshPerAttribute: " + this.meshPerAttribute 
+				+ ", needsUpdate: " + this.isNeedsUpdate() 
+				+ ", buffer: " + this.getBuffer() + "}";
+	}
+}
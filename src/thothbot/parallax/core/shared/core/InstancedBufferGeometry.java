@@ -0,0 +1,60 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ * 
+ * This file is part of Parallax project.
+ * 
+ * Parallax is free software: you can redistribute it and/or modify it 
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ * 
+ * Parallax is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution 
+ * 3.0 Unported License. for more details.
+ * 
+ * You should have received a copy of the the Creative Commons Attribution 
+ * 3.0 Unported License along with Parallax. 
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+package thothbot.parallax.core.shared.core;
+
+/**
+ * {@link BufferGeometry} which is rendered many times in one draw call, 
+ * using the ANGLE_instanced_arrays extension. The attributes added as 
+ * {@link InstancedBufferAttribute} are read per instance, all others 
+ * per vertex.
+ *
+ *<pre>
+ * InstancedBufferGeometry geometry = new InstancedBufferGeometry();
+ * geometry.addAttribute( "position", new BufferAttribute( positions, 3 ) );
+ * geometry.addAttribute( "offset", new InstancedBufferAttribute( offsets, 3 ) );
+ * geometry.setMaxInstancedCount( offsets.getLength() / 3 );
+ *</pre>
+ */
+public class InstancedBufferGeometry extends BufferGeometry
+{
+	private int maxInstancedCount;
+
+	public InstancedBufferGeometry() 
+	{
+		super();
+	}
+
+	/**
+	 * Gets how many instances are rendered.
+	 */
+	public int getMaxInstancedCount() {
+		return maxInstancedCount;
+	}
+
+	public void setMaxInstancedCount(int maxInstancedCount) {
+		this.maxInstancedCount = maxInstancedCount;
+	}
+
+	public String toString() {
+		return getClass().getSimpleName() 
+				+ "{id: " + getId() 
+				+ ", maxInstancedCount: " + this.maxInstancedCount 
+				+ ", drawcalls: " + this.getDrawcalls().size() + "}";
+	}
+}
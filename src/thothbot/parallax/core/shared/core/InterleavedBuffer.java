@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ * 
+ * This file is part of Parallax project.
+ * 
+ * Parallax is free software: you can redistribute it and/or modify it 
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ * 
+ * Parallax is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution 
+ * 3.0 Unported License. for more details.
+ * 
+ * You should have received a copy of the the Creative Commons Attribution 
+ * 3.0 Unported License along with Parallax. 
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+
+package thothbot.parallax.core.shared.core;
+
+import thothbot.parallax.core.client.gl2.WebGLBuffer;
+import thothbot.parallax.core.client.gl2.arrays.Float32Array;
+import thothbot.parallax.core.client.gl2.enums.BufferUsage;
+
+/**
+ * Vertex data of several attributes packed in one array, item after item. 
+ * The whole array is uploaded into one GL buffer, and the attributes 
+ * read it with {@link InterleavedBufferAttribute}s.
+ * 
+ *<pre>
+ * // position (3) and uv (2) of every vertex
+ * InterleavedBuffer data = new InterleavedBuffer( Float32Array.create( vertices * 5 ), 5 );
+ * geometry.addAttribute( "position", new InterleavedBufferAttribute( data, 3, 0 ) );
+ * geometry.addAttribute( "uv", new InterleavedBufferAttribute( data, 2, 3 ) );
+ *</pre>
+ */
+public class InterleavedBuffer 
+{
+	private Float32Array array;
+	private int stride;
+
+	private boolean needsUpdate = false;
+	private BufferUsage usage = BufferUsage.STATIC_DRAW;
+	private WebGLBuffer buffer;
+
+	/**
+	 * @param array  the interleaved values of all attributes
+	 * @param stride the number of array elements per item
+	 */
+	public InterleavedBuffer(Float32Array array, int stride) 
+	{
+		this.array = array;
+		this.stride = stride;
+	}
+
+	public Float32Array getArray() {
+		return this.array;
+	}
+
+	public void setArray(Float32Array array) {
+		this.array = array;
+		this.needsUpdate = true;
+	}
+
+	/**
+	 * Gets the number of array elements per item.
+	 */
+	public int getStride() {
+		return this.stride;
+	}
+
+	/**
+	 * Gets the number of items.
+	 */
+	public int getCount() {
+		return this.array.getLength() / this.stride;
+	}
+
+	public boolean isNeedsUpdate() {
+		return this.needsUpdate;
+	}
+
+	public void setNeedsUpdate(boolean needsUpdate) {
+		this.needsUpdate = needsUpdate;
+	}
+
+	public BufferUsage getUsage() {
+		return this.usage;
+	}
+
+	/**
+	 * See {@link BufferAttribute#setUsage(BufferUsage)}.
+	 */
+	public InterleavedBuffer setUsage(BufferUsage usage) {
+		this.usage = usage;
+		return this;
+	}
+
+	public WebGLBuffer getBuffer() {
+		return this.buffer;
+	}
+
+	public void setBuffer(WebGLBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	public InterleavedBuffer clone() {
+
+		return new InterleavedBuffer( Float32Array.create( this.array ), this.stride ).setUsage( this.usage );
+
+	}
+
+	public String toString() {
+		return "{array: " + this.array.getLength() 
+				+ ", stride: " + this.stride 
+				+ ", needsUpdate: " + this.needsUpdate 
+				+ ", usage: " + this.usage 
+				+ ", buffer: " + this.buffer + "}";
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ * 
+ * This file is part of Parallax project.
+ * 
+ * Parallax is free software: you can redistribute it and/or modify it 
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ * 
+ * Parallax is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution 
+ * 3.0 Unported License. for more details.
+ * 
+ * You should have received a copy of the the Creative Commons Attribution 
+ * 3.0 Unported License along with Parallax. 
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+
+package thothbot.parallax.core.shared.core;
+
+import thothbot.parallax.core.client.gl2.WebGLBuffer;
+import thothbot.parallax.core.client.gl2.arrays.Float32Array;
+import thothbot.parallax.core.client.gl2.arrays.TypeArray;
+import thothbot.parallax.core.client.gl2.enums.BufferUsage;
+
+/**
+ * Attribute which reads its values from the {@link InterleavedBuffer}. 
+ * The array, the GL buffer and the update state belong to the 
+ * interleaved buffer, so they are shared with the other attributes of it.
+ */
+public class InterleavedBufferAttribute extends BufferAttribute 
+{
+	private InterleavedBuffer data;
+	private int offset;
+
+	/**
+	 * @param data     the interleaved buffer
+	 * @param itemSize the number of values of the attribute per item
+	 * @param offset   the position of the first value in the item
+	 */
+	public InterleavedBufferAttribute(InterleavedBuffer data, int itemSize, int offset) 
+	{
+		super(data.getArray(), itemSize);
+		this.data = data;
+		this.offset = offset;
+	}
+
+	public InterleavedBuffer getData() {
+		return this.data;
+	}
+
+	@Override
+	public int getStride() {
+		return this.data.getStride();
+	}
+
+	@Override
+	public int getOffset() {
+		return this.offset;
+	}
+
+	@Override
+	public TypeArray getArray() {
+		return this.data.getArray();
+	}
+
+	@Override
+	public void setArray(TypeArray array) {
+		this.data.setArray( (Float32Array) array );
+	}
+
+	@Override
+	public boolean isNeedsUpdate() {
+		return this.data.isNeedsUpdate();
+	}
+
+	@Override
+	public void setNeedsUpdate(boolean needsUpdate) {
+		this.data.setNeedsUpdate( needsUpdate );
+	}
+
+	/**
+	 * The interleaved buffer is always uploaded as a whole.
+	 */
+	@Override
+	public void addUpdateRange(int offset, int count) {
+		this.data.setNeedsUpdate( true );
+	}
+
+	@Override
+	public BufferUsage getUsage() {
+		return this.data.getUsage();
+	}
+
+	@Override
+	public BufferAttribute setUsage(BufferUsage usage) {
+		this.data.setUsage( usage );
+		return this;
+	}
+
+	@Override
+	public WebGLBuffer getBuffer() {
+		return this.data.getBuffer();
+	}
+
+	@Override
+	public void setBuffer(WebGLBuffer buffer) {
+		this.data.setBuffer( buffer );
+	}
+
+	/**
+	 * Clones the attribute with its own copy of the interleaved buffer. 
+	 * Use {@link BufferGeometry#clone()} to keep the buffer shared.
+	 */
+	@Override
+	public InterleavedBufferAttribute clone() {
+
+		return new InterleavedBufferAttribute( this.data.clone(), this.getItemSize(), this.offset );
+
+	}
+
+	public String toString() {
+		return "{data: " + this.data 
+				+ ", itemSize: " + this.getItemSize() 
+				+ ", offset: " + this.offset + "}";
+	}
+}
@@ -23,6 +23,7 @@ import java.util.Collection;
 import java.util.List;
 
 import thothbot.parallax.core.shared.Log;
+import thothbot.parallax.core.shared.math.Box3;
 import thothbot.parallax.core.shared.math.Euler;
 import thothbot.parallax.core.shared.math.Euler.EulerChangeHandler;
 import thothbot.parallax.core.shared.math.Matrix3;
@@ -30,6 +31,7 @@ import thothbot.parallax.core.shared.math.Matrix4;
 import thothbot.parallax.core.shared.math.Quaternion;
 import thothbot.parallax.core.shared.math.Quaternion.QuaternionChangeHandler;
 import thothbot.parallax.core.shared.math.Vector3;
+import thothbot.parallax.core.shared.scenes.Scene;
 
 /**
  * Base class for scene objects.
@@ -52,6 +54,9 @@ public class Object3D
 	}
 	
 	private static int Object3DCount = 0;
+
+	// Temporary variables
+	private static Box3 _box = new Box3();
 	
 	protected int id = 0;
 	
@@ -90,6 +95,23 @@ public class Object3D
 	protected boolean isReceiveShadow = false;
 
 	protected boolean isFrustumCulled = true;
+
+	protected boolean isStatic = false;
+
+	protected boolean isOccluder = false;
+
+	protected boolean boundsNeedUpdate = true;
+
+	// World-space bounds of the object itself and of the object with all 
+	// descendants. Null bounds were not computed yet.
+	private Box3 boundingBoxWorld;
+	private Box3 subtreeBoundingBoxWorld;
+	private boolean isBoundingBoxInfinite;
+	private boolean isSubtreeBoundingBoxInfinite;
+	// Set if the subtree bounds were changed by the last update
+	private boolean isBoundsChanged;
+	// The world matrix the own bounds were computed for
+	private Matrix4 boundsMatrixWorld;
 	
 	protected ObjectHandler handler;
 	
@@ -279,6 +301,34 @@ public class Object3D
 
 	public void setFrustumCulled(boolean isFrustumCulled) {
 		this.isFrustumCulled = isFrustumCulled;
+		this.boundsNeedUpdate = true;
+	}
+
+	/**
+	 * Static objects never move after the scene is loaded, so they 
+	 * can be merged together, see {@link thothbot.parallax.core.shared.utils.StaticBatcher}. 
+	 * default – false
+	 */
+	public boolean isStatic() {
+		return isStatic;
+	}
+
+	public void setStatic(boolean isStatic) {
+		this.isStatic = isStatic;
+	}
+
+	/**
+	 * Occluders are rasterized into the occlusion buffer to hide the objects 
+	 * behind them, see {@link thothbot.parallax.core.shared.utils.OcclusionBuffer}. 
+	 * Should be set only for big opaque meshes with few triangles. 
+	 * default – false
+	 */
+	public boolean isOccluder() {
+		return isOccluder;
+	}
+
+	public void setOccluder(boolean isOccluder) {
+		this.isOccluder = isOccluder;
 	}
 
 	public void setRotationAutoUpdate(boolean rotationAutoUpdate) {
@@ -627,6 +677,8 @@ public class Object3D
 
 		this.children.add( object );
 
+		this.boundsNeedUpdate = true;
+
 		return this;
 	}
 	
@@ -636,7 +688,9 @@ public class Object3D
 	}
 
 	/**
-	 * Removes object as child of this object.
+	 * Removes object as child of this object. If this object belongs to 
+	 * a scene, the renderer releases the GL resources of the removed object 
+	 * on the next rendering of the scene.
 	 * @param object An object.
 	 */
 	public void remove(Object3D object)
@@ -650,6 +704,15 @@ public class Object3D
 			object.onRemove();
 
 			this.children.remove( index );
+
+			this.boundsNeedUpdate = true;
+
+			Object3D scene = this;
+			while ( scene.parent != null )
+				scene = scene.parent;
+
+			if ( scene instanceof Scene )
+				((Scene)scene).__objectsRemoved.add( object );
 		}
 	}
 	
@@ -856,6 +919,137 @@ public class Object3D
 
 		}
 
+		this.updateBoundsWorld( force );
+
+	}
+
+	/**
+	 * Gets the world-space bounding box of the object itself 
+	 * (without descendants). The box is updated by {@link #updateMatrixWorld(boolean)}.
+	 * 
+	 * @return the box, or null if the object can not be bounded 
+	 * and so should never be culled. 
+	 */
+	public Box3 getBoundingBoxWorld() {
+		return this.isBoundingBoxInfinite ? null : this.boundingBoxWorld;
+	}
+
+	/**
+	 * Gets the world-space bounding box of the object and all its descendants.
+	 * The scene graph with these boxes is the bounding volume hierarchy: 
+	 * if the box is out of the view, the whole subtree can be skipped.
+	 * The box is updated by {@link #updateMatrixWorld(boolean)}.
+	 * 
+	 * @return the box, or null if the subtree can not be bounded
+	 */
+	public Box3 getSubtreeBoundingBoxWorld() {
+		return this.isSubtreeBoundingBoxInfinite ? null : this.subtreeBoundingBoxWorld;
+	}
+
+	/**
+	 * Forces the world-space bounds to be recomputed on the next 
+	 * {@link #updateMatrixWorld(boolean)}. Should be called when the 
+	 * bounding box of the geometry was changed.
+	 */
+	public void setBoundsNeedUpdate() {
+		this.boundsNeedUpdate = true;
+	}
+
+	/**
+	 * Gets the bounding box of the object itself in the local space.
+	 * 
+	 * @return the box, or null if the object has nothing to render
+	 */
+	protected Box3 getBoundingBoxLocal() {
+		return null;
+	}
+
+	/**
+	 * Checks if the object can not be bounded. Such object and all 
+	 * its ancestors are never culled. 
+	 */
+	protected boolean isBoundsInfinite() {
+		return false;
+	}
+
+	/**
+	 * Refits the world-space bounds after the children were updated.
+	 * The own bounds are recomputed only when the world matrix 
+	 * was really changed, and the subtree bounds only when the own 
+	 * bounds or the bounds of some child were changed.
+	 * 
+	 * @param isMatrixWorldUpdated true if the world matrix was recomputed
+	 */
+	protected void updateBoundsWorld( boolean isMatrixWorldUpdated )
+	{
+		boolean isChanged = this.boundsNeedUpdate;
+
+		if ( ( this.boundsNeedUpdate || isMatrixWorldUpdated ) && updateOwnBoundsWorld() )
+			isChanged = true;
+
+		for ( int i = 0, l = this.children.size(); i < l; i ++ )
+			if ( this.children.get( i ).isBoundsChanged )
+				isChanged = true;
+
+		this.isBoundsChanged = isChanged && updateSubtreeBoundsWorld();
+		this.boundsNeedUpdate = false;
+	}
+
+	private boolean updateOwnBoundsWorld()
+	{
+		if ( this.boundingBoxWorld == null ) 
+		{
+			this.boundingBoxWorld = new Box3();
+			this.subtreeBoundingBoxWorld = new Box3();
+			this.boundsMatrixWorld = new Matrix4();
+		}
+		else if ( !this.boundsNeedUpdate && this.boundsMatrixWorld.equals( this.matrixWorld ) ) 
+		{
+			return false;
+		}
+
+		this.boundsMatrixWorld.copy( this.matrixWorld );
+
+		boolean isInfinite = this.isBoundsInfinite();
+		Box3 box = isInfinite ? null : this.getBoundingBoxLocal();
+
+		_box.copy( this.boundingBoxWorld );
+
+		if ( box == null )
+			this.boundingBoxWorld.makeEmpty();
+		else
+			this.boundingBoxWorld.copy( box ).apply( this.matrixWorld );
+
+		boolean isChanged = isInfinite != this.isBoundingBoxInfinite || !_box.equals( this.boundingBoxWorld );
+		this.isBoundingBoxInfinite = isInfinite;
+
+		return isChanged;
+	}
+
+	private boolean updateSubtreeBoundsWorld()
+	{
+		if ( this.boundingBoxWorld == null )
+			return false;
+
+		Box3 box = _box.copy( this.boundingBoxWorld );
+		boolean isInfinite = this.isBoundingBoxInfinite;
+
+		for ( int i = 0, l = this.children.size(); i < l; i ++ ) 
+		{
+			Object3D child = this.children.get( i );
+
+			if ( child.subtreeBoundingBoxWorld == null || child.isSubtreeBoundingBoxInfinite )
+				isInfinite = true;
+			else
+				box.union( child.subtreeBoundingBoxWorld );
+		}
+
+		boolean isChanged = isInfinite != this.isSubtreeBoundingBoxInfinite || !box.equals( this.subtreeBoundingBoxWorld );
+
+		this.subtreeBoundingBoxWorld.copy( box );
+		this.isSubtreeBoundingBoxInfinite = isInfinite;
+
+		return isChanged;
 	}
 	
 	/**
@@ -895,6 +1089,7 @@ public class Object3D
 		object.isReceiveShadow = this.isReceiveShadow;
 
 		object.isFrustumCulled = this.isFrustumCulled;
+		object.isOccluder = this.isOccluder;
 
 		if ( recursive == true ) {
 
@@ -56,6 +56,15 @@ public abstract class Light extends Object3D
 		return color;
 	}
 		
+	/**
+	 * Lights are collected while walking the scene, 
+	 * so they must never be culled.
+	 */
+	@Override
+	protected boolean isBoundsInfinite() {
+		return true;
+	}
+
 	public Light clone( Light light ) {
 		
 		super.clone(light);
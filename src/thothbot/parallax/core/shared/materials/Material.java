@@ -23,7 +23,6 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
-import thothbot.parallax.core.client.gl2.WebGLProgram;
 import thothbot.parallax.core.client.gl2.WebGLRenderingContext;
 import thothbot.parallax.core.client.gl2.enums.BlendEquationMode;
 import thothbot.parallax.core.client.gl2.enums.BlendingFactorDest;
@@ -107,6 +106,8 @@ public abstract class Material
 
 		USE_MAP, USE_ENVMAP, USE_LIGHTMAP, USE_BUMPMAP, USE_NORMALMAP, USE_SPECULARMAP, USE_ALPHAMAP, USE_COLOR, USE_SKINNING, USE_MORPHTARGETS, USE_MORPHNORMALS,
 
+		USE_INSTANCING, USE_INSTANCING_COLOR,
+
 		BONE_TEXTURE,
 		WRAP_AROUND, DOUBLE_SIDED, FLIP_SIDED,
 
@@ -167,6 +168,9 @@ public abstract class Material
 	private boolean isVisible = true;
 	private boolean isNeedsUpdate = true;
 	
+	// Number of the objects rendered with this material
+	private int users = 0;
+	
 	//
 		
 	private boolean isShadowPass;
@@ -200,6 +204,34 @@ public abstract class Material
 		return id;
 	}
 	
+	/**
+	 * Gets the number of the objects the material is rendered with. 
+	 * When it drops to zero the renderer releases the program and 
+	 * the textures of the material, see {@link #deallocate(WebGLRenderer)}.
+	 */
+	public int getUsers() {
+		return this.users;
+	}
+	
+	/**
+	 * Registers a new user of the material.
+	 * @return the number of the users
+	 */
+	public int addUser() {
+		return ++this.users;
+	}
+	
+	/**
+	 * Unregisters the user of the material.
+	 * @return the number of the users left
+	 */
+	public int removeUser() {
+		if ( this.users > 0 )
+			this.users--;
+
+		return this.users;
+	}
+	
 	/**
 	 * Gets material name. Default is an empty string.
 	 */
@@ -443,7 +475,7 @@ public abstract class Material
 		return this.shader;
 	}
 	
-	// Must be overwriten
+	// Must be overwriten, returns a shader without the program
 	protected abstract Shader getAssociatedShader();
 	
 	public abstract Material clone();
@@ -512,15 +544,48 @@ public abstract class Material
 		parameters.flipSided = this.getSides() == Material.SIDE.BACK;
 	}
 
+	/**
+	 * Gets the textures set to the material. Unlike the shader uniforms, 
+	 * they do not depend on the other materials sharing the program.
+	 */
+	public List<Texture> getTextures()
+	{
+		List<Texture> textures = new ArrayList<Texture>();
+
+		if(this instanceof HasMap)         addTexture(textures, ((HasMap)this).getMap());
+		if(this instanceof HasEnvMap)      addTexture(textures, ((HasEnvMap)this).getEnvMap());
+		if(this instanceof HasLightMap)    addTexture(textures, ((HasLightMap)this).getLightMap());
+		if(this instanceof HasBumpMap)     addTexture(textures, ((HasBumpMap)this).getBumpMap());
+		if(this instanceof HasNormalMap)   addTexture(textures, ((HasNormalMap)this).getNormalMap());
+		if(this instanceof HasSpecularMap) addTexture(textures, ((HasSpecularMap)this).getSpecularMap());
+		if(this instanceof HasAlphaMap)    addTexture(textures, ((HasAlphaMap)this).getAlphaMap());
+
+		return textures;
+	}
+
+	protected static void addTexture(List<Texture> textures, Texture texture)
+	{
+		if(texture != null && !textures.contains(texture))
+			textures.add(texture);
+	}
+
+	/**
+	 * Builds the program for the given parameters. A shader which already 
+	 * has a program belongs to the renderer's program cache and can be 
+	 * shared with other materials, so it is never rebuilt: the program 
+	 * is built into a new shader from {@link #getAssociatedShader()}.
+	 */
 	public Shader buildShader(WebGLRenderingContext gl, ProgramParameters parameters)
 	{
 		Shader shader = getShader();
+		if(shader.getProgram() != null)
+			shader = getAssociatedShader();
 
 		shader.setVertexExtensions(getExtensionsVertex(parameters));
 		shader.setFragmentExtensions(getExtensionsFragment(parameters));
 
-		shader.setVertexSource(getPrefixVertex(parameters) + "\n" + shader.getVertexSource());
-		shader.setFragmentSource(getPrefixFragment(parameters) + "\n" + shader.getFragmentSource());
+		shader.setVertexPrefix(getPrefixVertex(parameters) + "\n");
+		shader.setFragmentPrefix(getPrefixFragment(parameters) + "\n");
 
 		this.shader = shader.buildProgram(gl, parameters.useVertexTexture, parameters.maxMorphTargets, parameters.maxMorphNormals);
 
@@ -574,6 +639,11 @@ public abstract class Material
 		if (parameters.vertexColors)
 			options.add(SHADER_DEFINE.USE_COLOR.getValue());
 
+		if (parameters.instancing)
+			options.add(SHADER_DEFINE.USE_INSTANCING.getValue());
+		if (parameters.instancingColor)
+			options.add(SHADER_DEFINE.USE_INSTANCING_COLOR.getValue());
+
 		if (parameters.skinning)
 			options.add(SHADER_DEFINE.USE_SKINNING.getValue());
 		if (parameters.useVertexTexture)
@@ -663,6 +733,24 @@ public abstract class Material
 				"	attribute vec4 skinIndex;",
 				"	attribute vec4 skinWeight;",
 
+				"#endif",
+
+				"#ifdef USE_INSTANCING",
+
+				"	attribute vec4 instanceMatrix0;",
+				"	attribute vec4 instanceMatrix1;",
+				"	attribute vec4 instanceMatrix2;",
+				"	attribute vec4 instanceMatrix3;",
+
+				"	#define INSTANCE_MATRIX mat4( instanceMatrix0, instanceMatrix1, instanceMatrix2, instanceMatrix3 )",
+				"	#define INSTANCE_NORMAL_MATRIX mat3( instanceMatrix0.xyz, instanceMatrix1.xyz, instanceMatrix2.xyz )",
+
+				"#endif",
+
+				"#ifdef USE_INSTANCING_COLOR",
+
+				"	attribute vec3 instanceColor;",
+
 				"#endif");
 		
 		for(String opt: extra)
@@ -708,6 +796,9 @@ public abstract class Material
 		if (parameters.useFog2)
 			options.add(SHADER_DEFINE.FOG_EXP2.getValue());
 
+		if (parameters.instancingColor)
+			options.add(SHADER_DEFINE.USE_INSTANCING_COLOR.getValue());
+
 		if (parameters.map)
 			options.add(SHADER_DEFINE.USE_MAP.getValue());
 		if (parameters.envMap)
@@ -915,39 +1006,14 @@ public abstract class Material
 	}
 	
 	
+	/**
+	 * Releases the program and the textures used by the material. 
+	 * The shared program and textures are deleted only if this was 
+	 * their last user.
+	 */
 	public void deallocate( WebGLRenderer renderer ) 
 	{
-		WebGLProgram program = getShader().getProgram();
-		if ( program == null ) return;
-		
-//		getShader().setPrecision(null);
-		
-		// only deallocate GL program if this was the last use of shared program
-		// assumed there is only single copy of any program in the _programs list
-		// (that's how it's constructed)
-
-		boolean deleteProgram = false;
-
-		for ( String key: renderer._programs.keySet()) 
-		{
-			Shader shader = renderer._programs.get(key);
-			
-			if ( shader == getShader() ) 
-			{
-				renderer._programs.remove(key);
-				deleteProgram = true;
-				break;
-			}
-		}
-		
-		if ( deleteProgram == true ) 
-		{
-
-			renderer.getGL().deleteProgram( program );
-
-			renderer.getInfo().getMemory().programs --;
-		}
-
+		renderer.deallocateMaterial( this );
 	}
 
 	public String toString() 
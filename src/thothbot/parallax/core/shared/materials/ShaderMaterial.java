@@ -18,7 +18,12 @@
 
 package thothbot.parallax.core.shared.materials;
 
+import java.util.List;
+import java.util.Map;
+
 import thothbot.parallax.core.client.shaders.Shader;
+import thothbot.parallax.core.client.shaders.Uniform;
+import thothbot.parallax.core.client.textures.Texture;
 import thothbot.parallax.core.shared.math.Color;
 
 public class ShaderMaterial extends Material 
@@ -102,11 +107,49 @@ public class ShaderMaterial extends Material
 		return true;
 	}
 	
+	/**
+	 * Gets the shader of the material. When the shader already has a program, 
+	 * a copy with the same source is returned, because the program can be 
+	 * shared with other materials. The copy shares the uniforms of the shader, 
+	 * so the values set through the original shader are used too.
+	 */
 	@Override
 	public Shader getAssociatedShader() {
-		return shader;
+		if(shader.getProgram() == null)
+			return shader;
+
+		Shader copy = new ShaderMaterialShader(shader.getVertexSource(), shader.getFragmentSource());
+		for(Map.Entry<String, Uniform> uniform: shader.getUniforms().entrySet())
+			copy.addUniform(uniform.getKey(), uniform.getValue());
+		copy.setAttributes(shader.getAttributes());
+
+		return copy;
 	}
 		
+	/**
+	 * Gets the textures from the uniforms of the shader.
+	 */
+	@Override
+	public List<Texture> getTextures() 
+	{
+		List<Texture> textures = super.getTextures();
+
+		for(Uniform uniform: getShader().getUniforms().values())
+		{
+			if(uniform.getValue() == null)
+				continue;
+
+			if(uniform.getType() == Uniform.TYPE.T)
+				addTexture(textures, (Texture) uniform.getValue());
+
+			else if(uniform.getType() == Uniform.TYPE.TV)
+				for(Texture texture: (List<Texture>) uniform.getValue())
+					addTexture(textures, texture);
+		}
+
+		return textures;
+	}
+
 	public boolean isLights() {
 		return this.isLights;
 	}
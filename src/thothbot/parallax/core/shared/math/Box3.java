@@ -35,6 +35,10 @@ public class Box3
 	
 	// Temporary variables
 	static Vector3 _v1 = new Vector3();
+	static Vector3[] _points = {
+		new Vector3(), new Vector3(), new Vector3(), new Vector3(),
+		new Vector3(), new Vector3(), new Vector3(), new Vector3()
+	};
 		
 	public Box3() 
 	{
@@ -326,16 +330,7 @@ public class Box3
 
 	public Box3 apply( Matrix4 matrix ) 
 	{
-		Vector3[] points = {
-  			new Vector3(),
-  			new Vector3(),
-  			new Vector3(),
-  			new Vector3(),
-  			new Vector3(),
-  			new Vector3(),
-  			new Vector3(),
-  			new Vector3()
-		};
+		Vector3[] points = _points;
 
 		// NOTE: I am using a binary pattern to specify all 2^3 combinations below
 		points[ 0 ].set( this.min.x, this.min.y, this.min.z ).apply( matrix ); // 000
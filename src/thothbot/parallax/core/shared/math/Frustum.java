@@ -34,6 +34,11 @@ import thothbot.parallax.core.shared.core.GeometryObject;
  */
 public class Frustum
 {
+	/**
+	 * Plane mask with all six planes set, see {@link #intersectsBox(Box3, int)}.
+	 */
+	public static final int ALL_PLANES = 0x3F;
+
 	/**
 	 * Panes of the Frustum of a rectangular pyramid
 	 */
@@ -169,6 +174,62 @@ public class Frustum
 	}
 
 
+	/**
+	 * Tests the box only against the planes which are set in the mask:
+	 * bit <i>i</i> of the mask stands for the plane <i>i</i>.
+	 * <p>
+	 * The planes the box is fully inside are cleared in the result. 
+	 * So the boxes nested in this box need to be tested only against 
+	 * the returned planes, and 0 means that the box is fully inside 
+	 * the frustum.
+	 * 
+	 * @param box  the box to test
+	 * @param mask the planes to test, {@link #ALL_PLANES} to test all of them
+	 * 
+	 * @return the mask of the planes intersecting the box, or -1 if 
+	 * the box is outside of the frustum or empty
+	 */
+	public int intersectsBox( Box3 box, int mask )
+	{
+		if ( box.isEmpty() )
+			return -1;
+
+		Vector3 min = box.getMin();
+		Vector3 max = box.getMax();
+
+		for ( int i = 0; i < 6; i ++ ) 
+		{
+			int bit = 1 << i;
+
+			if ( ( mask & bit ) == 0 )
+				continue;
+
+			Plane plane = planes.get( i );
+			Vector3 normal = plane.getNormal();
+
+			// The corner which is the farthest along the plane normal
+			double far = normal.x * ( normal.x > 0 ? max.x : min.x )
+					+ normal.y * ( normal.y > 0 ? max.y : min.y )
+					+ normal.z * ( normal.z > 0 ? max.z : min.z )
+					+ plane.getConstant();
+
+			if ( far < 0 )
+				return -1;
+
+			// The opposite corner
+			double near = normal.x * ( normal.x > 0 ? min.x : max.x )
+					+ normal.y * ( normal.y > 0 ? min.y : max.y )
+					+ normal.z * ( normal.z > 0 ? min.z : max.z )
+					+ plane.getConstant();
+
+			if ( near >= 0 )
+				mask &= ~bit;
+		}
+
+		return mask;
+	}
+
+
 	public boolean isContainsPoint( Vector3 point ) 
 	{
 		for ( int i = 0; i < 6; i ++ ) 
@@ -192,6 +192,22 @@ public class Matrix4
 		);
 	}
 	
+	/**
+	 * Checks if all elements of the matrix are equal to the 
+	 * elements of the given matrix.
+	 */
+	public boolean equals( Matrix4 m )
+	{
+		Float32Array te = this.getArray();
+		Float32Array me = m.getArray();
+
+		for ( int i = 0; i < 16; i++ )
+			if ( te.get( i ) != me.get( i ) )
+				return false;
+
+		return true;
+	}
+
 	public Matrix4 copyPosition( Matrix4 m ) {
 
 		Float32Array te = this.getArray();
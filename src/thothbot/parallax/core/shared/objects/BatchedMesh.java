@@ -0,0 +1,199 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ * 
+ * This file is part of Parallax project.
+ * 
+ * Parallax is free software: you can redistribute it and/or modify it 
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ * 
+ * Parallax is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution 
+ * 3.0 Unported License. for more details.
+ * 
+ * You should have received a copy of the the Creative Commons Attribution 
+ * 3.0 Unported License along with Parallax. 
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+package thothbot.parallax.core.shared.objects;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import thothbot.parallax.core.client.gl2.arrays.TypeArray;
+import thothbot.parallax.core.client.gl2.arrays.Uint16Array;
+import thothbot.parallax.core.client.gl2.arrays.Uint32Array;
+import thothbot.parallax.core.shared.core.BufferAttribute;
+import thothbot.parallax.core.shared.core.BufferGeometry;
+import thothbot.parallax.core.shared.core.Raycaster;
+import thothbot.parallax.core.shared.materials.Material;
+
+/**
+ * Mesh made of several static meshes which share the same material, 
+ * see {@link thothbot.parallax.core.shared.utils.StaticBatcher}.
+ * <p>
+ * The source meshes are not rendered themselves, but the batch keeps 
+ * track of them: 
+ * <ul>
+ * <li>hiding the source mesh with {@link #setVisible(boolean)} hides 
+ * its part of the batch;</li>
+ * <li>raycasting the batch returns the source meshes as intersected objects.</li>
+ * </ul>
+ */
+public class BatchedMesh extends Mesh
+{
+	/**
+	 * Part of the batch geometry which belongs to one source mesh.
+	 */
+	public static class Part
+	{
+		public Mesh object;
+
+		public int vertexStart;
+		public int vertexCount;
+
+		public int indexStart;
+		public int indexCount;
+
+		boolean visible = true;
+
+		public Part(Mesh object, int vertexStart, int vertexCount, int indexStart, int indexCount) 
+		{
+			this.object = object;
+			this.vertexStart = vertexStart;
+			this.vertexCount = vertexCount;
+			this.indexStart = indexStart;
+			this.indexCount = indexCount;
+		}
+	}
+
+	private List<Part> parts;
+
+	// Indices of all parts, used to restore hidden parts
+	private TypeArray indices;
+
+	public BatchedMesh(BufferGeometry geometry, Material material, List<Part> parts) 
+	{
+		super(geometry, material);
+
+		this.parts = parts;
+
+		TypeArray index = geometry.getAttribute("index").getArray();
+		this.indices = index.getBytesPerElement() == Uint32Array.BYTES_PER_ELEMENT 
+				? Uint32Array.create( index ) : Uint16Array.create( index );
+
+		setStatic( true );
+	}
+
+	@Override
+	public BufferGeometry getGeometry() {
+		return (BufferGeometry) super.getGeometry();
+	}
+
+	public List<Part> getParts() {
+		return this.parts;
+	}
+
+	/**
+	 * Gets the source meshes of the batch.
+	 */
+	public List<Mesh> getSources() 
+	{
+		List<Mesh> sources = new ArrayList<Mesh>( this.parts.size() );
+		for ( Part part: this.parts )
+			sources.add( part.object );
+
+		return sources;
+	}
+
+	/**
+	 * Gets the part which contains the vertex of the batch geometry.
+	 */
+	public Part getPartByVertex( int vertex ) 
+	{
+		int low = 0, high = this.parts.size() - 1;
+
+		while ( low <= high ) 
+		{
+			int mid = ( low + high ) >>> 1;
+			Part part = this.parts.get( mid );
+
+			if ( vertex < part.vertexStart )
+				high = mid - 1;
+			else if ( vertex >= part.vertexStart + part.vertexCount )
+				low = mid + 1;
+			else
+				return part;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Applies visibility of the source meshes to the batch geometry. 
+	 * Hidden parts are collapsed to degenerate triangles. 
+	 * Called automatically in {@link #updateMatrixWorld(boolean)}.
+	 */
+	public void updateVisibility() 
+	{
+		BufferAttribute indexAttribute = getGeometry().getAttribute("index");
+		boolean isUint32 = this.indices.getBytesPerElement() == Uint32Array.BYTES_PER_ELEMENT;
+
+		for ( int p = 0, pl = this.parts.size(); p < pl; p ++ ) 
+		{
+			Part part = this.parts.get( p );
+			boolean visible = part.object.isVisible();
+
+			if ( part.visible == visible )
+				continue;
+
+			int start = part.indexStart, end = part.indexStart + part.indexCount;
+
+			if ( isUint32 ) 
+			{
+				Uint32Array index = (Uint32Array) indexAttribute.getArray();
+				Uint32Array indices = (Uint32Array) this.indices;
+				for ( int i = start; i < end; i ++ )
+					index.set( i, visible ? indices.get( i ) : part.vertexStart );
+			}
+			else
+			{
+				Uint16Array index = (Uint16Array) indexAttribute.getArray();
+				Uint16Array indices = (Uint16Array) this.indices;
+				for ( int i = start; i < end; i ++ )
+					index.set( i, visible ? indices.get( i ) : part.vertexStart );
+			}
+
+			part.visible = visible;
+			indexAttribute.setNeedsUpdate( true );
+		}
+	}
+
+	@Override
+	public void updateMatrixWorld(boolean force) 
+	{
+		updateVisibility();
+
+		super.updateMatrixWorld(force);
+	}
+
+	@Override
+	public void raycast( Raycaster raycaster, List<Raycaster.Intersect> intersects ) 
+	{
+		List<Raycaster.Intersect> batchIntersects = new ArrayList<Raycaster.Intersect>();
+		super.raycast( raycaster, batchIntersects );
+
+		for ( Raycaster.Intersect intersect: batchIntersects ) 
+		{
+			Part part = getPartByVertex( intersect.face.getA() );
+
+			if ( part == null || ! part.visible )
+				continue;
+
+			// The face refers to the vertices of the batch geometry
+			intersect.object = part.object;
+			intersects.add( intersect );
+		}
+	}
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ * 
+ * This file is part of Parallax project.
+ * 
+ * Parallax is free software: you can redistribute it and/or modify it 
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ * 
+ * Parallax is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution 
+ * 3.0 Unported License. for more details.
+ * 
+ * You should have received a copy of the the Creative Commons Attribution 
+ * 3.0 Unported License along with Parallax. 
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+package thothbot.parallax.core.shared.objects;
+
+import thothbot.parallax.core.client.gl2.arrays.Float32Array;
+import thothbot.parallax.core.client.gl2.enums.BufferUsage;
+import thothbot.parallax.core.shared.core.InstancedBufferAttribute;
+import thothbot.parallax.core.shared.core.InstancedBufferGeometry;
+import thothbot.parallax.core.shared.materials.Material;
+import thothbot.parallax.core.shared.math.Color;
+import thothbot.parallax.core.shared.math.Matrix4;
+
+/**
+ * Mesh which renders many copies (instances) of the same geometry 
+ * in one draw call. Each instance has its own transformation, applied 
+ * before the transformation of the mesh, and optionally its own color, 
+ * which multiplies the material color.
+ * <p>
+ * The instance data is stored in the typed arrays, which are added to 
+ * the geometry as {@link InstancedBufferAttribute}s: four columns of the 
+ * matrix (<code>instanceMatrix0</code> .. <code>instanceMatrix3</code>) 
+ * and <code>instanceColor</code>.
+ * <p>
+ * All instances are white until {@link #setColorAt(int, Color)} is called.
+ * <p>
+ * The material of the instanced mesh is compiled with the instancing 
+ * support, so it should not be shared with plain meshes: the program 
+ * is built for the first object which uses the material, and the 
+ * other objects are drawn with it too. Sharing the material would 
+ * require rebuilding the program each time the kind of the object changes. 
+ * Use a clone of the material instead.
+ * <p>
+ * Normals are transformed by the inverse transpose of the instance matrix 
+ * assuming that it has only rotation, scale (also non-uniform) and translation; 
+ * normals of the instances with shear are not exact.
+ *
+ *<pre>
+ * InstancedMesh mesh = new InstancedMesh( geometry, material, 1000 );
+ * for ( int i = 0; i < mesh.getCount(); i ++ ) 
+ * {
+ *		matrix.makeTranslation( Math.random() * 100, 0, Math.random() * 100 );
+ *		mesh.setMatrixAt( i, matrix );
+ * }
+ *</pre>
+ */
+public class InstancedMesh extends Mesh
+{
+	private int count;
+
+	private InstancedBufferAttribute[] instanceMatrix;
+	private InstancedBufferAttribute instanceColor;
+	private boolean isInstanceColors;
+
+	public InstancedMesh(InstancedBufferGeometry geometry, Material material, int count) 
+	{
+		super(geometry, material);
+
+		this.count = count;
+
+		this.instanceMatrix = new InstancedBufferAttribute[4];
+		for ( int c = 0; c < 4; c ++ )
+		{
+			Float32Array column = Float32Array.create( count * 4 );
+
+			// Identity
+			for ( int i = 0; i < count; i ++ )
+				column.set( i * 4 + c, 1.0 );
+
+			this.instanceMatrix[ c ] = new InstancedBufferAttribute( column, 4 );
+			this.instanceMatrix[ c ].setUsage( BufferUsage.DYNAMIC_DRAW );
+			geometry.addAttribute( "instanceMatrix" + c, this.instanceMatrix[ c ] );
+		}
+
+		Float32Array colors = Float32Array.create( count * 3 );
+		for ( int i = 0; i < colors.getLength(); i ++ )
+			colors.set( i, 1.0 );
+
+		this.instanceColor = new InstancedBufferAttribute( colors, 3 );
+		this.instanceColor.setUsage( BufferUsage.DYNAMIC_DRAW );
+		geometry.addAttribute( "instanceColor", this.instanceColor );
+
+		geometry.setMaxInstancedCount( count );
+
+		// Instances are placed anywhere around the geometry
+		setFrustumCulled( false );
+	}
+
+	@Override
+	public InstancedBufferGeometry getGeometry() {
+		return (InstancedBufferGeometry) super.getGeometry();
+	}
+
+	/**
+	 * Gets number of the instances.
+	 */
+	public int getCount() {
+		return this.count;
+	}
+
+	/**
+	 * Checks if the instances have own colors, see {@link #setColorAt(int, Color)}.
+	 */
+	public boolean isInstanceColors() {
+		return this.isInstanceColors;
+	}
+
+	/**
+	 * Sets transformation of the instance.
+	 */
+	public void setMatrixAt( int index, Matrix4 matrix )
+	{
+		Float32Array m = matrix.getArray();
+
+		for ( int c = 0; c < 4; c ++ )
+		{
+			InstancedBufferAttribute column = this.instanceMatrix[ c ];
+			column.setXYZW( index, m.get( c * 4 ), m.get( c * 4 + 1 ), m.get( c * 4 + 2 ), m.get( c * 4 + 3 ) );
+			column.addUpdateRange( index * 4, 4 );
+		}
+	}
+
+	/**
+	 * Copies transformation of the instance to the target matrix.
+	 */
+	public Matrix4 getMatrixAt( int index, Matrix4 target )
+	{
+		Float32Array m = target.getArray();
+
+		for ( int c = 0; c < 4; c ++ )
+		{
+			Float32Array column = (Float32Array) this.instanceMatrix[ c ].getArray();
+
+			for ( int r = 0; r < 4; r ++ )
+				m.set( c * 4 + r, column.get( index * 4 + r ) );
+		}
+
+		return target;
+	}
+
+	/**
+	 * Sets color of the instance.
+	 */
+	public void setColorAt( int index, Color color )
+	{
+		this.instanceColor.setXYZ( index, color.getR(), color.getG(), color.getB() );
+		this.instanceColor.addUpdateRange( index * 3, 3 );
+
+		this.isInstanceColors = true;
+	}
+
+	/**
+	 * Copies color of the instance to the target color.
+	 */
+	public Color getColorAt( int index, Color target )
+	{
+		Float32Array colors = (Float32Array) this.instanceColor.getArray();
+
+		return target.setRGB( colors.get( index * 3 ), colors.get( index * 3 + 1 ), colors.get( index * 3 + 2 ) );
+	}
+}
@@ -19,6 +19,7 @@
 package thothbot.parallax.core.shared.objects;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,7 +27,9 @@ import java.util.Map;
 import thothbot.parallax.core.client.gl2.WebGLBuffer;
 import thothbot.parallax.core.client.gl2.WebGLRenderingContext;
 import thothbot.parallax.core.client.gl2.arrays.Float32Array;
+import thothbot.parallax.core.client.gl2.arrays.TypeArray;
 import thothbot.parallax.core.client.gl2.arrays.Uint16Array;
+import thothbot.parallax.core.client.gl2.arrays.Uint32Array;
 import thothbot.parallax.core.client.gl2.enums.BeginMode;
 import thothbot.parallax.core.client.gl2.enums.BufferTarget;
 import thothbot.parallax.core.client.gl2.enums.BufferUsage;
@@ -37,6 +40,7 @@ import thothbot.parallax.core.client.renderers.WebGlRendererInfo;
 import thothbot.parallax.core.client.shaders.Attribute;
 import thothbot.parallax.core.shared.Log;
 import thothbot.parallax.core.shared.core.AbstractGeometry;
+import thothbot.parallax.core.shared.core.BufferAttribute;
 import thothbot.parallax.core.shared.core.BufferGeometry;
 import thothbot.parallax.core.shared.core.Face3;
 import thothbot.parallax.core.shared.core.FastMap;
@@ -177,13 +181,12 @@ public class Mesh extends GeometryObject
 			if ( bGeometry.getAttribute("index") != null ) {
 
 				Uint16Array indices = (Uint16Array)bGeometry.getAttribute("index").getArray();
-				Float32Array positions = (Float32Array)bGeometry.getAttribute("position").getArray();
-				List<BufferGeometry.DrawCall> offsets = bGeometry.getDrawcalls();
-
-				if ( offsets.size() == 0 ) 
-				{
-					offsets.add(new BufferGeometry.DrawCall(0, indices.getLength(), 0));
-				}
+				BufferAttribute position = bGeometry.getAttribute("position");
+				Float32Array positions = (Float32Array)position.getArray();
+				int stride = position.getStride(), offset = position.getOffset();
+				List<BufferGeometry.DrawCall> offsets = bGeometry.getDrawcalls().size() > 0 
+						? bGeometry.getDrawcalls() 
+						: Arrays.asList( new BufferGeometry.DrawCall(0, indices.getLength(), 0) );
 
 				for ( int oi = 0, ol = offsets.size(); oi < ol; ++oi ) 
 				{
@@ -198,9 +201,9 @@ public class Mesh extends GeometryObject
 						int b = index + (int)indices.get( i + 1 );
 						int c = index + (int)indices.get( i + 2 );
 
-						_vA.fromArray( positions, a * 3 );
-						_vB.fromArray( positions, b * 3 );
-						_vC.fromArray( positions, c * 3 );
+						_vA.fromArray( positions, a * stride + offset );
+						_vB.fromArray( positions, b * stride + offset );
+						_vC.fromArray( positions, c * stride + offset );
 
 						Vector3 intersectionPoint;
 						
@@ -234,17 +237,19 @@ public class Mesh extends GeometryObject
 
 			} else {
 
-				Float32Array positions = (Float32Array)bGeometry.getAttribute("position").getArray();
+				BufferAttribute position = bGeometry.getAttribute("position");
+				Float32Array positions = (Float32Array)position.getArray();
+				int stride = position.getStride(), offset = position.getOffset();
 
-				for ( int i = 0, j = 0, il = positions.getLength(); i < il; i += 3, j += 9 ) {
+				for ( int i = 0, il = position.getCount() - 2; i < il; i += 3 ) {
 
 					int a = i;
 					int b = i + 1;
 					int c = i + 2;
 
-					_vA.fromArray( positions, j );
-					_vB.fromArray( positions, j + 3 );
-					_vC.fromArray( positions, j + 6 );
+					_vA.fromArray( positions, a * stride + offset );
+					_vB.fromArray( positions, b * stride + offset );
+					_vC.fromArray( positions, c * stride + offset );
 
 					Vector3 intersectionPoint;
 					
@@ -437,7 +442,7 @@ public class Mesh extends GeometryObject
 			if ( updateBuffers ) 
 				gl.bindBuffer( BufferTarget.ELEMENT_ARRAY_BUFFER, geometryGroup.__webglLineBuffer );
 			
-			gl.drawElements( BeginMode.LINES, geometryGroup.__webglLineCount, DrawElementsType.UNSIGNED_SHORT, 0 );
+			gl.drawElements( BeginMode.LINES, geometryGroup.__webglLineCount, geometryGroup.__webglIndexType, 0 );
 
 			// triangles
 
@@ -447,7 +452,7 @@ public class Mesh extends GeometryObject
 			if ( updateBuffers ) 
 				gl.bindBuffer( BufferTarget.ELEMENT_ARRAY_BUFFER, geometryGroup.__webglFaceBuffer );
 			
-			gl.drawElements( BeginMode.TRIANGLES, geometryGroup.__webglFaceCount, DrawElementsType.UNSIGNED_SHORT, 0 );
+			gl.drawElements( BeginMode.TRIANGLES, geometryGroup.__webglFaceCount, geometryGroup.__webglIndexType, 0 );
 		}
 		
 		info.getRender().calls ++;
@@ -535,12 +540,22 @@ public class Mesh extends GeometryObject
 
 		}
 
-//		Class UintArray = WebGLExtensions.get( gl, WebGLExtensions.Id.OES_element_index_uint ) != null && ntris > 21845 
-//				? Uint32Array.class : Uint16Array; // 65535 / 3
+		// The vertices of the faces are not shared, so the biggest index is nvertices - 1. 
+		// Groups bigger than 16-bit indices are made only if OES_element_index_uint 
+		// is supported, see WebGLRenderer.makeGroups()
+		if ( nvertices - 1 > 65535 ) {
+
+			geometryGroup.__faceArray = Uint32Array.create( ntris * 3 );
+			geometryGroup.__lineArray = Uint32Array.create( nlines * 2 );
+			geometryGroup.__webglIndexType = DrawElementsType.UNSIGNED_INT;
 
-//		geometryGroup.__typeArray = UintArray;
-		geometryGroup.__faceArray = Uint16Array.create( ntris * 3 );
-		geometryGroup.__lineArray = Uint16Array.create( nlines * 2 );
+		} else {
+
+			geometryGroup.__faceArray = Uint16Array.create( ntris * 3 );
+			geometryGroup.__lineArray = Uint16Array.create( nlines * 2 );
+			geometryGroup.__webglIndexType = DrawElementsType.UNSIGNED_SHORT;
+
+		}
 
 		if ( geometryGroup.getNumMorphTargets() > 0 ) {
 
@@ -756,7 +771,7 @@ public class Mesh extends GeometryObject
 
 		List<Attribute> customAttributes = geometryGroup.__webglCustomAttributesList;
 
-		Uint16Array faceArray = geometryGroup.__faceArray,
+		TypeArray faceArray = geometryGroup.__faceArray,
 				lineArray = geometryGroup.__lineArray;
 
 		Geometry geometry = (Geometry)this.getGeometry(); // this is shared for all chunks
@@ -1155,20 +1170,20 @@ public class Mesh extends GeometryObject
 		 {			 
 			 for ( int f = 0, fl = chunk_faces3.size(); f < fl; f ++ ) 
 			 {
-				 faceArray.set(offset_face, vertexIndex);
-				 faceArray.set(offset_face + 1, vertexIndex + 1);
-				 faceArray.set(offset_face + 2, vertexIndex + 2);
+				 setIndex( faceArray, offset_face, vertexIndex );
+				 setIndex( faceArray, offset_face + 1, vertexIndex + 1 );
+				 setIndex( faceArray, offset_face + 2, vertexIndex + 2 );
 
 				 offset_face += 3;
 
-				 lineArray.set(offset_line, vertexIndex);
-				 lineArray.set(offset_line + 1, vertexIndex + 1);
+				 setIndex( lineArray, offset_line, vertexIndex );
+				 setIndex( lineArray, offset_line + 1, vertexIndex + 1 );
 
-				 lineArray.set(offset_line + 2, vertexIndex);
-				 lineArray.set(offset_line + 3, vertexIndex + 2);
+				 setIndex( lineArray, offset_line + 2, vertexIndex );
+				 setIndex( lineArray, offset_line + 3, vertexIndex + 2 );
 
-				 lineArray.set(offset_line + 4, vertexIndex + 1);
-				 lineArray.set(offset_line + 5, vertexIndex + 2);
+				 setIndex( lineArray, offset_line + 4, vertexIndex + 1 );
+				 setIndex( lineArray, offset_line + 5, vertexIndex + 2 );
 
 				 offset_line += 6;
 
@@ -1524,53 +1539,18 @@ public class Mesh extends GeometryObject
 		 if ( dispose ) 
 			 geometryGroup.dispose();
 	}
-	
-	@Override
-	public void deleteBuffers(WebGLRenderer renderer) 
+
+	/**
+	 * Sets the value of the Uint16Array or Uint32Array index.
+	 */
+	private static void setIndex( TypeArray index, int i, int value )
 	{
-//		for ( GeometryGroup geometryGroup : ((Geometry)getGeometry()).getGeometryGroupsCache().values() )
-//		{
-//			renderer.getGL().deleteBuffer( geometryGroup.__webglVertexBuffer );
-//			renderer.getGL().deleteBuffer( geometryGroup.__webglNormalBuffer );
-//			renderer.getGL().deleteBuffer( geometryGroup.__webglTangentBuffer );
-//			renderer.getGL().deleteBuffer( geometryGroup.__webglColorBuffer );
-//			renderer.getGL().deleteBuffer( geometryGroup.__webglUVBuffer );
-//			renderer.getGL().deleteBuffer( geometryGroup.__webglUV2Buffer );
-//
-//			renderer.getGL().deleteBuffer( geometryGroup.__webglSkinIndicesBuffer );
-//			renderer.getGL().deleteBuffer( geometryGroup.__webglSkinWeightsBuffer );
-//
-//			renderer.getGL().deleteBuffer( geometryGroup.__webglFaceBuffer );
-//			renderer.getGL().deleteBuffer( geometryGroup.__webglLineBuffer );
-//
-//			if ( geometryGroup.numMorphTargets != 0) 
-//			{
-//				for ( int m = 0; m < geometryGroup.numMorphTargets; m ++ ) 
-//				{
-//					renderer.getGL().deleteBuffer( geometryGroup.__webglMorphTargetsBuffers.get( m ) );
-//				}
-//			}
-//
-//			if ( geometryGroup.numMorphNormals != 0 ) 
-//			{
-//				for ( int m = 0; m <  geometryGroup.numMorphNormals; m ++ ) 
-//				{
-//					renderer.getGL().deleteBuffer( geometryGroup.__webglMorphNormalsBuffers.get( m ) );
-//				}
-//			}
-//
-//
-//			if ( geometryGroup.__webglCustomAttributesList != null) 
-//			{
-//				for ( Attribute att : geometryGroup.__webglCustomAttributesList ) 
-//				{
-//					renderer.getGL().deleteBuffer( att.buffer );
-//				}
-//			}
-//
-//			renderer.getInfo().getMemory().geometries --;
-//		}
+		if ( index.getBytesPerElement() == Uint32Array.BYTES_PER_ELEMENT )
+			((Uint32Array)index).set( i, value );
+		else
+			((Uint16Array)index).set( i, value );
 	}
+	
 //
 //	private void sortFacesByMaterial ( Geometry geometry ) 
 //	{
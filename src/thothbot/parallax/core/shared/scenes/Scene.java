@@ -18,6 +18,9 @@
 
 package thothbot.parallax.core.shared.scenes;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import thothbot.parallax.core.shared.cameras.Camera;
 import thothbot.parallax.core.shared.core.Object3D;
 import thothbot.parallax.core.shared.materials.Material;
@@ -42,6 +45,10 @@ public final class Scene extends Object3D
 	
 	private boolean isAutoUpdate = true;
 	
+	// Objects removed from the scene since the last rendering, 
+	// see WebGLRenderer
+	public List<Object3D> __objectsRemoved = new ArrayList<Object3D>();
+	
 	/**
 	 * This default constructor will create new Scene instance.
 	 */
@@ -0,0 +1,468 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ * 
+ * This file is part of Parallax project.
+ * 
+ * Parallax is free software: you can redistribute it and/or modify it 
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ * 
+ * Parallax is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution 
+ * 3.0 Unported License. for more details.
+ * 
+ * You should have received a copy of the the Creative Commons Attribution 
+ * 3.0 Unported License along with Parallax. 
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+
+package thothbot.parallax.core.shared.utils;
+
+import java.util.List;
+
+import thothbot.parallax.core.client.gl2.arrays.Float32Array;
+import thothbot.parallax.core.client.gl2.arrays.Uint16Array;
+import thothbot.parallax.core.shared.core.AbstractGeometry;
+import thothbot.parallax.core.shared.core.BufferAttribute;
+import thothbot.parallax.core.shared.core.BufferGeometry;
+import thothbot.parallax.core.shared.core.Face3;
+import thothbot.parallax.core.shared.core.Geometry;
+import thothbot.parallax.core.shared.core.GeometryObject;
+import thothbot.parallax.core.shared.math.Box3;
+import thothbot.parallax.core.shared.math.Matrix4;
+import thothbot.parallax.core.shared.math.Vector3;
+
+/**
+ * Low resolution depth buffer for the occlusion culling on the CPU.
+ * <p>
+ * The occluders (big opaque meshes with few triangles: walls, buildings, 
+ * terrain) are rasterized into the buffer. Then the screen-space rectangle of 
+ * the bounding box of an object is tested against the hierarchical depth 
+ * (Hi-Z) pyramid: each next level keeps the farthest depth of 2x2 texels 
+ * of the previous one, so any box is tested by reading a few texels only. 
+ * If the box is behind the occluders in all of them, the object is hidden.
+ * <p>
+ * The depth is sampled at the pixel centers, so the occluder edges can 
+ * hide objects that are visible through less than one pixel of the buffer.
+ * <p>
+ * The class does not use the GL context, so it can be used and tested 
+ * without the renderer.
+ * 
+ *<pre>
+ * buffer.clear();
+ * buffer.setViewProjection( projScreenMatrix );
+ * buffer.rasterizeOccluder( wall );
+ * ...
+ * if ( !buffer.isOccluded( object.getBoundingBoxWorld() ) ) { ... }
+ *</pre>
+ */
+public class OcclusionBuffer
+{
+	public static final int DEFAULT_WIDTH = 256;
+	public static final int DEFAULT_HEIGHT = 128;
+
+	private int width;
+	private int height;
+
+	// Level 0 is the depth buffer, the depth is in [0, 1] range
+	private double[][] levels;
+	private int[] levelWidths;
+	private int[] levelHeights;
+	private boolean isHierarchyNeedUpdate;
+
+	private double[] viewProjection = new double[16];
+	private double[] transform = new double[16];
+
+	// Clip-space vertices of the current occluder: x, y, z, w
+	private double[] vertices = new double[ 4 * 64 ];
+	// Triangle clipped by the near plane: up to 4 clip-space vertices
+	private double[] polygon = new double[ 4 * 4 ];
+	// The polygon in the screen space: x, y, depth
+	private double[] screen = new double[ 3 * 4 ];
+
+	private int triangles;
+
+	public OcclusionBuffer() 
+	{
+		this(DEFAULT_WIDTH, DEFAULT_HEIGHT);
+	}
+
+	public OcclusionBuffer(int width, int height) 
+	{
+		this.width = width;
+		this.height = height;
+
+		int count = 1;
+		for ( int w = width, h = height; w > 1 || h > 1; w = ( w + 1 ) / 2, h = ( h + 1 ) / 2 )
+			count++;
+
+		this.levels = new double[count][];
+		this.levelWidths = new int[count];
+		this.levelHeights = new int[count];
+
+		for ( int i = 0, w = width, h = height; i < count; i++, w = ( w + 1 ) / 2, h = ( h + 1 ) / 2 ) 
+		{
+			this.levels[ i ] = new double[ w * h ];
+			this.levelWidths[ i ] = w;
+			this.levelHeights[ i ] = h;
+		}
+
+		clear();
+	}
+
+	public int getWidth() {
+		return this.width;
+	}
+
+	public int getHeight() {
+		return this.height;
+	}
+
+	/**
+	 * Gets how many triangles were rasterized since the last {@link #clear()}.
+	 */
+	public int getTriangles() {
+		return this.triangles;
+	}
+
+	/**
+	 * Gets the depth of the pixel, in [0, 1] range. 1 is the far plane.
+	 */
+	public double getDepth(int x, int y) {
+		return this.levels[ 0 ][ y * this.width + x ];
+	}
+
+	/**
+	 * Resets the depth buffer to the far plane.
+	 */
+	public void clear() 
+	{
+		double[] depth = this.levels[ 0 ];
+		for ( int i = 0; i < depth.length; i++ )
+			depth[ i ] = 1.0;
+
+		this.triangles = 0;
+		this.isHierarchyNeedUpdate = true;
+	}
+
+	/**
+	 * Sets the view-projection matrix: camera projection matrix multiplied 
+	 * by the inverse camera world matrix.
+	 */
+	public void setViewProjection(Matrix4 matrix) 
+	{
+		Float32Array me = matrix.getArray();
+		for ( int i = 0; i < 16; i++ )
+			this.viewProjection[ i ] = me.get( i );
+	}
+
+	/**
+	 * Sets the view-projection matrix from the column-major elements.
+	 */
+	public void setViewProjection(double[] elements) 
+	{
+		for ( int i = 0; i < 16; i++ )
+			this.viewProjection[ i ] = elements[ i ];
+	}
+
+	/**
+	 * Rasterizes the triangles of the object geometry. The object should be 
+	 * opaque and have few triangles.
+	 */
+	public void rasterizeOccluder(GeometryObject object) 
+	{
+		AbstractGeometry geometry = object.getGeometry();
+		if ( geometry == null )
+			return;
+
+		Float32Array me = object.getMatrixWorld().getArray();
+		double[] vp = this.viewProjection;
+		for ( int col = 0; col < 4; col++ )
+			for ( int row = 0; row < 4; row++ )
+				this.transform[ col * 4 + row ] = vp[ row ] * me.get( col * 4 ) 
+					+ vp[ 4 + row ] * me.get( col * 4 + 1 )
+					+ vp[ 8 + row ] * me.get( col * 4 + 2 )
+					+ vp[ 12 + row ] * me.get( col * 4 + 3 );
+
+		if ( geometry instanceof Geometry ) 
+		{
+			List<Vector3> points = ((Geometry)geometry).getVertices();
+			ensureVertices( points.size() );
+
+			for ( int i = 0, il = points.size(); i < il; i++ ) 
+			{
+				Vector3 point = points.get( i );
+				project( this.transform, point.getX(), point.getY(), point.getZ(), this.vertices, i * 4 );
+			}
+
+			List<Face3> faces = ((Geometry)geometry).getFaces();
+			for ( int i = 0, il = faces.size(); i < il; i++ ) 
+			{
+				Face3 face = faces.get( i );
+				rasterizeClipTriangle( face.getA() * 4, face.getB() * 4, face.getC() * 4 );
+			}
+		}
+		else if ( geometry instanceof BufferGeometry ) 
+		{
+			BufferAttribute position = ((BufferGeometry)geometry).getAttribute("position");
+			if ( position == null )
+				return;
+
+			Float32Array positions = (Float32Array)position.getArray();
+			int count = position.getCount(), stride = position.getStride();
+			ensureVertices( count );
+
+			for ( int i = 0, j = position.getOffset(); i < count; i++, j += stride )
+				project( this.transform, positions.get( j ), positions.get( j + 1 ), positions.get( j + 2 ), this.vertices, i * 4 );
+
+			BufferAttribute index = ((BufferGeometry)geometry).getAttribute("index");
+			if ( index != null ) 
+			{
+				Uint16Array indices = (Uint16Array)index.getArray();
+				for ( int i = 0, il = indices.getLength() - 2; i < il; i += 3 )
+					rasterizeClipTriangle( indices.get( i ) * 4, indices.get( i + 1 ) * 4, indices.get( i + 2 ) * 4 );
+			}
+			else 
+			{
+				for ( int i = 0; i < count - 2; i += 3 )
+					rasterizeClipTriangle( i * 4, ( i + 1 ) * 4, ( i + 2 ) * 4 );
+			}
+		}
+	}
+
+	/**
+	 * Rasterizes the triangle given in the world space.
+	 */
+	public void rasterizeTriangle(Vector3 a, Vector3 b, Vector3 c) 
+	{
+		ensureVertices( 3 );
+		project( this.viewProjection, a.getX(), a.getY(), a.getZ(), this.vertices, 0 );
+		project( this.viewProjection, b.getX(), b.getY(), b.getZ(), this.vertices, 4 );
+		project( this.viewProjection, c.getX(), c.getY(), c.getZ(), this.vertices, 8 );
+
+		rasterizeClipTriangle( 0, 4, 8 );
+	}
+
+	/**
+	 * Checks if the world-space box is fully hidden by the rasterized 
+	 * occluders. The box crossing the near plane or the screen 
+	 * border is never hidden.
+	 */
+	public boolean isOccluded(Box3 box) 
+	{
+		if ( box.isEmpty() )
+			return false;
+
+		if ( this.isHierarchyNeedUpdate )
+			updateHierarchy();
+
+		Vector3 min = box.getMin();
+		Vector3 max = box.getMax();
+		double[] m = this.viewProjection;
+
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		double minDepth = Double.POSITIVE_INFINITY;
+
+		for ( int i = 0; i < 8; i++ ) 
+		{
+			double x = ( i & 4 ) == 0 ? min.getX() : max.getX();
+			double y = ( i & 2 ) == 0 ? min.getY() : max.getY();
+			double z = ( i & 1 ) == 0 ? min.getZ() : max.getZ();
+
+			double cw = m[ 3 ] * x + m[ 7 ] * y + m[ 11 ] * z + m[ 15 ];
+			double cz = m[ 2 ] * x + m[ 6 ] * y + m[ 10 ] * z + m[ 14 ];
+
+			if ( cw <= 0 || cz < -cw )
+				return false;
+
+			double sx = ( ( m[ 0 ] * x + m[ 4 ] * y + m[ 8 ] * z + m[ 12 ] ) / cw * 0.5 + 0.5 ) * this.width;
+			double sy = ( ( m[ 1 ] * x + m[ 5 ] * y + m[ 9 ] * z + m[ 13 ] ) / cw * 0.5 + 0.5 ) * this.height;
+			double depth = cz / cw * 0.5 + 0.5;
+
+			minX = Math.min( minX, sx );
+			maxX = Math.max( maxX, sx );
+			minY = Math.min( minY, sy );
+			maxY = Math.max( maxY, sy );
+			minDepth = Math.min( minDepth, depth );
+		}
+
+		if ( minX < 0 || minY < 0 || maxX >= this.width || maxY >= this.height )
+			return false;
+
+		int x0 = (int) minX, x1 = (int) maxX;
+		int y0 = (int) minY, y1 = (int) maxY;
+
+		// The level where the rectangle covers at most 2x2 texels
+		int level = 0;
+		while ( level < this.levels.length - 1 
+				&& ( ( x1 >> level ) - ( x0 >> level ) > 1 || ( y1 >> level ) - ( y0 >> level ) > 1 ) )
+			level++;
+
+		double[] depth = this.levels[ level ];
+		int levelWidth = this.levelWidths[ level ];
+
+		for ( int y = y0 >> level; y <= y1 >> level; y++ )
+			for ( int x = x0 >> level; x <= x1 >> level; x++ )
+				if ( depth[ y * levelWidth + x ] >= minDepth )
+					return false;
+
+		return true;
+	}
+
+	private void ensureVertices(int count) 
+	{
+		if ( this.vertices.length < count * 4 )
+			this.vertices = new double[ count * 4 ];
+	}
+
+	private static void project(double[] m, double x, double y, double z, double[] target, int offset) 
+	{
+		target[ offset ]     = m[ 0 ] * x + m[ 4 ] * y + m[ 8 ]  * z + m[ 12 ];
+		target[ offset + 1 ] = m[ 1 ] * x + m[ 5 ] * y + m[ 9 ]  * z + m[ 13 ];
+		target[ offset + 2 ] = m[ 2 ] * x + m[ 6 ] * y + m[ 10 ] * z + m[ 14 ];
+		target[ offset + 3 ] = m[ 3 ] * x + m[ 7 ] * y + m[ 11 ] * z + m[ 15 ];
+	}
+
+	/**
+	 * Clips the triangle by the near plane (z &gt;= -w) and rasterizes 
+	 * the rest. Vertices are the offsets in the clip-space vertices array.
+	 */
+	private void rasterizeClipTriangle(int a, int b, int c) 
+	{
+		double[] v = this.vertices;
+		double[] polygon = this.polygon;
+		int count = 0;
+
+		for ( int i = 0; i < 3; i++ ) 
+		{
+			int p = i == 0 ? a : i == 1 ? b : c;
+			int q = i == 0 ? b : i == 1 ? c : a;
+
+			double dp = v[ p + 2 ] + v[ p + 3 ];
+			double dq = v[ q + 2 ] + v[ q + 3 ];
+
+			if ( dp >= 0 ) 
+			{
+				for ( int k = 0; k < 4; k++ )
+					polygon[ count * 4 + k ] = v[ p + k ];
+				count++;
+			}
+
+			if ( ( dp >= 0 ) != ( dq >= 0 ) ) 
+			{
+				double t = dp / ( dp - dq );
+				for ( int k = 0; k < 4; k++ )
+					polygon[ count * 4 + k ] = v[ p + k ] + ( v[ q + k ] - v[ p + k ] ) * t;
+				count++;
+			}
+		}
+
+		if ( count < 3 )
+			return;
+
+		double[] screen = this.screen;
+		for ( int i = 0; i < count; i++ ) 
+		{
+			double w = polygon[ i * 4 + 3 ];
+			if ( w <= 0 )
+				return;
+
+			screen[ i * 3 ]     = ( polygon[ i * 4 ] / w * 0.5 + 0.5 ) * this.width;
+			screen[ i * 3 + 1 ] = ( polygon[ i * 4 + 1 ] / w * 0.5 + 0.5 ) * this.height;
+			screen[ i * 3 + 2 ] = polygon[ i * 4 + 2 ] / w * 0.5 + 0.5;
+		}
+
+		fillTriangle( 0, 3, 6 );
+		if ( count == 4 )
+			fillTriangle( 0, 6, 9 );
+
+		this.triangles++;
+		this.isHierarchyNeedUpdate = true;
+	}
+
+	/**
+	 * Fills the pixels which centers are inside the screen-space 
+	 * triangle, keeping the nearest depth.
+	 */
+	private void fillTriangle(int i0, int i1, int i2) 
+	{
+		double[] s = this.screen;
+		double x0 = s[ i0 ], y0 = s[ i0 + 1 ], z0 = s[ i0 + 2 ];
+		double x1 = s[ i1 ], y1 = s[ i1 + 1 ], z1 = s[ i1 + 2 ];
+		double x2 = s[ i2 ], y2 = s[ i2 + 1 ], z2 = s[ i2 + 2 ];
+
+		double area = ( x1 - x0 ) * ( y2 - y0 ) - ( x2 - x0 ) * ( y1 - y0 );
+		if ( area == 0 )
+			return;
+
+		int minX = Math.max( 0, (int) Math.ceil( Math.min( x0, Math.min( x1, x2 ) ) - 0.5 ) );
+		int maxX = Math.min( this.width - 1, (int) Math.floor( Math.max( x0, Math.max( x1, x2 ) ) - 0.5 ) );
+		int minY = Math.max( 0, (int) Math.ceil( Math.min( y0, Math.min( y1, y2 ) ) - 0.5 ) );
+		int maxY = Math.min( this.height - 1, (int) Math.floor( Math.max( y0, Math.max( y1, y2 ) ) - 0.5 ) );
+
+		double invArea = 1.0 / area;
+		double[] depth = this.levels[ 0 ];
+
+		for ( int y = minY; y <= maxY; y++ ) 
+		{
+			double py = y + 0.5;
+
+			for ( int x = minX; x <= maxX; x++ ) 
+			{
+				double px = x + 0.5;
+
+				// Barycentric coordinates, independent of the winding
+				double w0 = ( ( x1 - px ) * ( y2 - py ) - ( x2 - px ) * ( y1 - py ) ) * invArea;
+				double w1 = ( ( x2 - px ) * ( y0 - py ) - ( x0 - px ) * ( y2 - py ) ) * invArea;
+				double w2 = 1.0 - w0 - w1;
+
+				if ( w0 < 0 || w1 < 0 || w2 < 0 )
+					continue;
+
+				double z = w0 * z0 + w1 * z1 + w2 * z2;
+				int i = y * this.width + x;
+
+				if ( z < depth[ i ] )
+					depth[ i ] = z;
+			}
+		}
+	}
+
+	/**
+	 * Rebuilds the Hi-Z pyramid: every texel keeps the farthest 
+	 * depth of the 2x2 texels of the previous level.
+	 */
+	private void updateHierarchy() 
+	{
+		for ( int level = 1; level < this.levels.length; level++ ) 
+		{
+			double[] source = this.levels[ level - 1 ];
+			int sourceWidth = this.levelWidths[ level - 1 ];
+			int sourceHeight = this.levelHeights[ level - 1 ];
+
+			double[] target = this.levels[ level ];
+			int targetWidth = this.levelWidths[ level ];
+			int targetHeight = this.levelHeights[ level ];
+
+			for ( int y = 0; y < targetHeight; y++ ) 
+			{
+				int sy0 = y * 2;
+				int sy1 = Math.min( sy0 + 1, sourceHeight - 1 );
+
+				for ( int x = 0; x < targetWidth; x++ ) 
+				{
+					int sx0 = x * 2;
+					int sx1 = Math.min( sx0 + 1, sourceWidth - 1 );
+
+					target[ y * targetWidth + x ] = Math.max(
+							Math.max( source[ sy0 * sourceWidth + sx0 ], source[ sy0 * sourceWidth + sx1 ] ),
+							Math.max( source[ sy1 * sourceWidth + sx0 ], source[ sy1 * sourceWidth + sx1 ] ) );
+				}
+			}
+		}
+
+		this.isHierarchyNeedUpdate = false;
+	}
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ * 
+ * This file is part of Parallax project.
+ * 
+ * Parallax is free software: you can redistribute it and/or modify it 
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ * 
+ * Parallax is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution 
+ * 3.0 Unported License. for more details.
+ * 
+ * You should have received a copy of the the Creative Commons Attribution 
+ * 3.0 Unported License along with Parallax. 
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+package thothbot.parallax.core.shared.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import thothbot.parallax.core.client.gl2.arrays.Float32Array;
+import thothbot.parallax.core.client.gl2.arrays.TypeArray;
+import thothbot.parallax.core.client.gl2.arrays.Uint16Array;
+import thothbot.parallax.core.client.gl2.arrays.Uint32Array;
+import thothbot.parallax.core.shared.core.AbstractGeometry;
+import thothbot.parallax.core.shared.core.BufferAttribute;
+import thothbot.parallax.core.shared.core.BufferGeometry;
+import thothbot.parallax.core.shared.core.Geometry;
+import thothbot.parallax.core.shared.core.Object3D;
+import thothbot.parallax.core.shared.materials.HasSkinning;
+import thothbot.parallax.core.shared.materials.HasVertexColors;
+import thothbot.parallax.core.shared.materials.Material;
+import thothbot.parallax.core.shared.materials.MeshFaceMaterial;
+import thothbot.parallax.core.shared.math.Matrix3;
+import thothbot.parallax.core.shared.math.Matrix4;
+import thothbot.parallax.core.shared.objects.BatchedMesh;
+import thothbot.parallax.core.shared.objects.Mesh;
+
+/**
+ * Merges static meshes which share the same material into a few 
+ * big {@link BatchedMesh}es, so they are rendered with a few draw calls 
+ * instead of one draw call per mesh.
+ * <p>
+ * Only meshes marked with {@link Object3D#setStatic(boolean)} are merged.
+ * The vertices are transformed to the local space of the batched object 
+ * (the batches are its children), so the meshes must not move relative 
+ * to it after batching. By default every batch uses 16-bit indices, so it holds at most 
+ * {@link #MAX_VERTICES} vertices; bigger groups are split into several batches. 
+ * If {@link thothbot.parallax.core.client.renderers.WebGLRenderer#supportsElementIndexUint()}, 
+ * the limit can be raised with {@link #setMaxVertices(int)} to get fewer batches.
+ * <p>
+ * The merged meshes are removed from the scene; the batches keep references 
+ * to them, see {@link BatchedMesh}.
+ *
+ *<pre>
+ * mesh.setStatic( true );
+ * ...
+ * new StaticBatcher().batch( scene );
+ *</pre>
+ */
+public class StaticBatcher
+{
+	/**
+	 * Default maximum number of vertices in one batch.
+	 */
+	public static final int MAX_VERTICES = 65535;
+
+	private int maxVertices = MAX_VERTICES;
+
+	private static class Source
+	{
+		Mesh object;
+		BufferGeometry geometry;
+		int vertexCount;
+		int indexCount;
+	}
+
+	public int getMaxVertices() {
+		return this.maxVertices;
+	}
+
+	/**
+	 * Sets the maximum number of vertices in one batch. Batches with more 
+	 * than 65536 vertices use 32-bit indices.
+	 */
+	public StaticBatcher setMaxVertices(int maxVertices) {
+		this.maxVertices = maxVertices;
+		return this;
+	}
+
+	/**
+	 * Merges all static meshes found in the object and its descendants. 
+	 * The batches are added to the object.
+	 * 
+	 * @param root the scene or the object to batch
+	 * 
+	 * @return the list of created batches
+	 */
+	public List<BatchedMesh> batch( Object3D root ) 
+	{
+		root.updateMatrixWorld( true );
+
+		Map<Material, List<Source>> groups = new LinkedHashMap<Material, List<Source>>();
+		collect( root, groups );
+
+		List<BatchedMesh> batches = new ArrayList<BatchedMesh>();
+
+		// The batches are children of the root, so its transformation is not baked
+		Matrix4 rootInverse = new Matrix4().getInverse( root.getMatrixWorld() );
+
+		for ( Map.Entry<Material, List<Source>> entry: groups.entrySet() ) 
+		{
+			List<Source> sources = entry.getValue();
+
+			// One mesh does not need merging
+			if ( sources.size() < 2 )
+				continue;
+
+			int start = 0, vertices = 0;
+			for ( int i = 0; i < sources.size(); i ++ ) 
+			{
+				int count = sources.get( i ).vertexCount;
+				if ( vertices + count > this.maxVertices ) 
+				{
+					batches.add( merge( entry.getKey(), sources.subList( start, i ), rootInverse ) );
+					start = i;
+					vertices = 0;
+				}
+
+				vertices += count;
+			}
+
+			batches.add( merge( entry.getKey(), sources.subList( start, sources.size() ), rootInverse ) );
+		}
+
+		for ( BatchedMesh batch: batches )
+		{
+			for ( Mesh source: batch.getSources() )
+				source.getParent().remove( source );
+
+			root.add( batch );
+		}
+
+		return batches;
+	}
+
+	/**
+	 * Checks if the mesh can be merged.
+	 */
+	protected boolean isBatchable( Mesh mesh ) 
+	{
+		if ( ! mesh.isStatic() || mesh.getClass() != Mesh.class ) 
+			return false;
+
+		// Children would be removed with the mesh
+		if ( mesh.getChildren().size() > 0 )
+			return false;
+
+		Material material = mesh.getMaterial();
+		if ( material == null || material instanceof MeshFaceMaterial )
+			return false;
+
+		if ( material instanceof HasSkinning 
+				&& ( ((HasSkinning)material).isSkinning() || ((HasSkinning)material).isMorphTargets() ) )
+			return false;
+
+		AbstractGeometry geometry = mesh.getGeometry();
+		if ( geometry instanceof Geometry )
+			return ((Geometry)geometry).getFaces().size() > 0;
+
+		if ( geometry instanceof BufferGeometry ) 
+		{
+			BufferGeometry bGeometry = (BufferGeometry)geometry;
+			BufferAttribute index = bGeometry.getAttribute("index");
+			List<BufferGeometry.DrawCall> drawcalls = bGeometry.getDrawcalls();
+
+			if ( bGeometry.getAttribute("position") == null )
+				return false;
+
+			// Only the single draw call which covers all indices is supported
+			return drawcalls.size() == 0 || ( drawcalls.size() == 1 
+					&& index != null
+					&& drawcalls.get( 0 ).start == 0 
+					&& drawcalls.get( 0 ).index == 0 
+					&& drawcalls.get( 0 ).count == index.getArray().getLength() );
+		}
+
+		return false;
+	}
+
+	private void collect( Object3D object, Map<Material, List<Source>> groups ) 
+	{
+		for ( Object3D child: object.getChildren() ) 
+		{
+			collect( child, groups );
+
+			if ( ! ( child instanceof Mesh ) || ! isBatchable( (Mesh)child ) )
+				continue;
+
+			Mesh mesh = (Mesh)child;
+			Source source = new Source();
+			source.object = mesh;
+
+			if ( mesh.getGeometry() instanceof Geometry ) 
+			{
+				Material material = mesh.getMaterial();
+				Material.COLORS colors = material instanceof HasVertexColors 
+						? ((HasVertexColors)material).isVertexColors() : Material.COLORS.NO;
+
+				source.geometry = new BufferGeometry().fromGeometry( (Geometry)mesh.getGeometry(), colors );
+			}
+			else
+			{
+				source.geometry = (BufferGeometry)mesh.getGeometry();
+			}
+
+			BufferAttribute index = source.geometry.getAttribute("index");
+			source.vertexCount = source.geometry.getAttribute("position").getCount();
+			source.indexCount = index != null ? index.getArray().getLength() : source.vertexCount;
+
+			if ( source.vertexCount > this.maxVertices )
+				continue;
+
+			List<Source> group = groups.get( mesh.getMaterial() );
+			if ( group == null ) 
+			{
+				group = new ArrayList<Source>();
+				groups.put( mesh.getMaterial(), group );
+			}
+
+			group.add( source );
+		}
+	}
+
+	private BatchedMesh merge( Material material, List<Source> sources, Matrix4 rootInverse ) 
+	{
+		int vertices = 0, indices = 0;
+		boolean hasNormal = false, hasUv = false, hasColor = false;
+
+		for ( Source source: sources ) 
+		{
+			vertices += source.vertexCount;
+			indices += source.indexCount;
+
+			hasNormal = hasNormal || source.geometry.getAttribute("normal") != null;
+			hasUv = hasUv || source.geometry.getAttribute("uv") != null;
+			hasColor = hasColor || source.geometry.getAttribute("color") != null;
+		}
+
+		Float32Array positions = Float32Array.create( vertices * 3 );
+		Float32Array normals = hasNormal ? Float32Array.create( vertices * 3 ) : null;
+		Float32Array uvs = hasUv ? Float32Array.create( vertices * 2 ) : null;
+		Float32Array colors = hasColor ? Float32Array.create( vertices * 3 ) : null;
+		TypeArray index = vertices > 65536 ? Uint32Array.create( indices ) : Uint16Array.create( indices );
+
+		List<BatchedMesh.Part> parts = new ArrayList<BatchedMesh.Part>( sources.size() );
+		Matrix4 matrix = new Matrix4();
+		Matrix3 normalMatrix = new Matrix3();
+
+		int vertexOffset = 0, indexOffset = 0;
+		for ( Source source: sources ) 
+		{
+			BufferGeometry geometry = source.geometry;
+			int count = source.vertexCount;
+
+			// From the source to the root space
+			matrix.multiply( rootInverse, source.object.getMatrixWorld() );
+
+			copy( geometry.getAttribute("position"), positions, vertexOffset, count, 3, 0.0 );
+			matrix.applyToVector3Array( positions, vertexOffset * 3, count * 3 );
+
+			if ( hasNormal ) 
+			{
+				copy( geometry.getAttribute("normal"), normals, vertexOffset, count, 3, 0.0 );
+				normalMatrix.getNormalMatrix( matrix ).applyToVector3Array( normals, vertexOffset * 3, count * 3 );
+			}
+
+			if ( hasUv )
+				copy( geometry.getAttribute("uv"), uvs, vertexOffset, count, 2, 0.0 );
+
+			if ( hasColor )
+				copy( geometry.getAttribute("color"), colors, vertexOffset, count, 3, 1.0 );
+
+			BufferAttribute sourceIndex = geometry.getAttribute("index");
+			if ( sourceIndex != null ) 
+			{
+				TypeArray array = sourceIndex.getArray();
+				for ( int i = 0; i < source.indexCount; i ++ )
+					setIndex( index, indexOffset + i, vertexOffset + getIndex( array, i ) );
+			}
+			else
+			{
+				for ( int i = 0; i < source.indexCount; i ++ )
+					setIndex( index, indexOffset + i, vertexOffset + i );
+			}
+
+			parts.add( new BatchedMesh.Part( source.object, vertexOffset, count, indexOffset, source.indexCount ) );
+
+			vertexOffset += count;
+			indexOffset += source.indexCount;
+		}
+
+		BufferGeometry geometry = new BufferGeometry();
+		geometry.addAttribute( "index", new BufferAttribute( index, 1 ) );
+		geometry.addAttribute( "position", new BufferAttribute( positions, 3 ) );
+
+		if ( hasNormal )
+			geometry.addAttribute( "normal", new BufferAttribute( normals, 3 ) );
+		if ( hasUv )
+			geometry.addAttribute( "uv", new BufferAttribute( uvs, 2 ) );
+		if ( hasColor )
+			geometry.addAttribute( "color", new BufferAttribute( colors, 3 ) );
+
+		geometry.computeBoundingBox();
+		geometry.computeBoundingSphere();
+
+		return new BatchedMesh( geometry, material, parts );
+	}
+
+	/**
+	 * Gets the value of the Uint16Array or Uint32Array index.
+	 */
+	private static int getIndex( TypeArray index, int i )
+	{
+		return index.getBytesPerElement() == Uint32Array.BYTES_PER_ELEMENT 
+				? ((Uint32Array)index).get( i ) : ((Uint16Array)index).get( i );
+	}
+
+	private static void setIndex( TypeArray index, int i, int value )
+	{
+		if ( index.getBytesPerElement() == Uint32Array.BYTES_PER_ELEMENT )
+			((Uint32Array)index).set( i, value );
+		else
+			((Uint16Array)index).set( i, value );
+	}
+
+	/**
+	 * Copies the attribute values to the target array, 
+	 * or fills the target with the default value if there is no attribute.
+	 */
+	private static void copy( BufferAttribute attribute, Float32Array target, int offset, int count, int itemSize, double value ) 
+	{
+		int start = offset * itemSize, length = count * itemSize;
+
+		if ( attribute == null ) 
+		{
+			for ( int i = 0; i < length; i ++ )
+				target.set( start + i, value );
+
+			return;
+		}
+
+		Float32Array array = (Float32Array)attribute.getArray();
+		int stride = attribute.getStride(), attributeOffset = attribute.getOffset();
+		for ( int i = 0; i < count; i ++ )
+			for ( int k = 0; k < itemSize; k ++ )
+				target.set( start + i * itemSize + k, array.get( i * stride + attributeOffset + k ) );
+	}
+}
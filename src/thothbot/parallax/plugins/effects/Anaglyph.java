@@ -25,6 +25,7 @@ import thothbot.parallax.core.client.events.ViewportResizeHandler;
 import thothbot.parallax.core.client.gl2.enums.PixelFormat;
 import thothbot.parallax.core.client.gl2.enums.TextureMagFilter;
 import thothbot.parallax.core.client.gl2.enums.TextureMinFilter;
+import thothbot.parallax.core.client.renderers.RenderTargetPool;
 import thothbot.parallax.core.client.renderers.WebGLRenderer;
 import thothbot.parallax.core.client.textures.RenderTargetTexture;
 import thothbot.parallax.core.shared.cameras.Camera;
@@ -55,6 +56,7 @@ public class Anaglyph extends Effect
 	
 	private RenderTargetTexture _renderTargetL;
 	private RenderTargetTexture _renderTargetR;
+	private int _width, _height;
 	
 	private ShaderMaterial _material;
 		
@@ -93,23 +95,9 @@ public class Anaglyph extends Effect
 			
 	private void initRenderTargets(int width, int height ) 
 	{
-		if ( _renderTargetL != null ) 
-			_renderTargetL.deallocate(this.renderer.getGL());
-		if ( _renderTargetR != null ) 
-			_renderTargetR.deallocate(this.renderer.getGL());
-
-		_renderTargetL = new RenderTargetTexture( width, height );
-		_renderTargetL.setMinFilter(TextureMinFilter.LINEAR);
-		_renderTargetL.setMagFilter(TextureMagFilter.NEAREST);
-		_renderTargetL.setFormat(PixelFormat.RGBA);
-		
-		_renderTargetR = new RenderTargetTexture( width, height );
-		_renderTargetR.setMinFilter(TextureMinFilter.LINEAR);
-		_renderTargetR.setMagFilter(TextureMagFilter.NEAREST);
-		_renderTargetR.setFormat(PixelFormat.RGBA);
-
-		_material.getShader().getUniforms().get( "mapLeft" ).setValue( _renderTargetL );
-		_material.getShader().getUniforms().get( "mapRight").setValue( _renderTargetR );
+		// the targets are acquired from the render target pool while rendering
+		_width = width;
+		_height = height;
 	}
 
 	/*
@@ -181,6 +169,14 @@ public class Anaglyph extends Effect
 		_cameraL.setNear( camera.getNear() );
 		_cameraL.setFar( camera.getFar() );
 
+		RenderTargetPool pool = renderer.getRenderTargetPool();
+
+		_renderTargetL = pool.acquire( _width, _height, PixelFormat.RGBA, TextureMinFilter.LINEAR, TextureMagFilter.NEAREST, true, true );
+		_renderTargetR = pool.acquire( _width, _height, PixelFormat.RGBA, TextureMinFilter.LINEAR, TextureMagFilter.NEAREST, true, true );
+
+		_material.getShader().getUniforms().get( "mapLeft" ).setValue( _renderTargetL );
+		_material.getShader().getUniforms().get( "mapRight").setValue( _renderTargetR );
+
 		renderer.render( scene, _cameraL, _renderTargetL, true );
 
 		_cameraR.getMatrixWorld().copy( camera.getMatrixWorld() ).multiply( eyeRight );
@@ -191,15 +187,15 @@ public class Anaglyph extends Effect
 		renderer.render( scene, _cameraR, _renderTargetR, true );
 
 		renderer.render( _scene, _camera );
+
+		pool.release( _renderTargetL );
+		pool.release( _renderTargetR );
 	}
 	
 	@Override
 	public void deallocate() {
 		super.deallocate();
 
-		_renderTargetL.deallocate(this.renderer.getGL());
-		_renderTargetR.deallocate(this.renderer.getGL());
-
 		_material.deallocate(renderer);
 	}
 }
@@ -25,6 +25,7 @@ import thothbot.parallax.core.client.events.ViewportResizeHandler;
 import thothbot.parallax.core.client.gl2.enums.PixelFormat;
 import thothbot.parallax.core.client.gl2.enums.TextureMagFilter;
 import thothbot.parallax.core.client.gl2.enums.TextureMinFilter;
+import thothbot.parallax.core.client.renderers.RenderTargetPool;
 import thothbot.parallax.core.client.renderers.WebGLRenderer;
 import thothbot.parallax.core.client.textures.RenderTargetTexture;
 import thothbot.parallax.core.shared.cameras.Camera;
@@ -92,6 +93,7 @@ public class OculusRift extends Effect {
 
 	// Render target
 	RenderTargetTexture renderTarget;
+	int renderTargetWidth, renderTargetHeight;
 	ShaderMaterial RTMaterial;
 
 	// Final scene
@@ -146,15 +148,9 @@ public class OculusRift extends Effect {
 	
 	private void initRenderTargets(int width, int height ) 
 	{
-		if ( renderTarget != null ) 
-			renderTarget.deallocate(this.renderer.getGL());
-
-		renderTarget = new RenderTargetTexture( width, height );
-		renderTarget.setMinFilter(TextureMinFilter.LINEAR);
-		renderTarget.setMagFilter(TextureMagFilter.NEAREST);
-		renderTarget.setFormat(PixelFormat.RGBA);
-		
-		RTMaterial.getShader().getUniforms().get( "texid" ).setValue( renderTarget );
+		// the target is acquired from the render target pool while rendering
+		renderTargetWidth = width;
+		renderTargetHeight = height;
 	}
 	
 	public OculusRift.HMD getHDM() {
@@ -230,6 +226,13 @@ public class OculusRift extends Effect {
 		if (camera.isMatrixAutoUpdate()) 
 			camera.updateMatrix();
 
+		RenderTargetPool pool = renderer.getRenderTargetPool();
+
+		renderTarget = pool.acquire( renderTargetWidth, renderTargetHeight, 
+				PixelFormat.RGBA, TextureMinFilter.LINEAR, TextureMagFilter.NEAREST, true, true );
+
+		RTMaterial.getShader().getUniforms().get( "texid" ).setValue( renderTarget );
+
 		// Render left
 
 		pCamera.getProjectionMatrix().copy(left.proj);
@@ -257,6 +260,8 @@ public class OculusRift extends Effect {
 
 		renderer.render( scene, pCamera, renderTarget, true );
 		renderer.render( finalScene, oCamera );
+
+		pool.release( renderTarget );
 	}
 	
 	@Override
@@ -271,8 +276,6 @@ public class OculusRift extends Effect {
 		
 		renderer.setAutoClear(_oldAutoClear);
 		
-		renderTarget.deallocate(this.renderer.getGL());
-
 		RTMaterial.deallocate(renderer);
 	}
 }
@@ -24,6 +24,7 @@ import thothbot.parallax.core.client.events.ViewportResizeEvent;
 import thothbot.parallax.core.client.gl2.enums.PixelFormat;
 import thothbot.parallax.core.client.gl2.enums.TextureMagFilter;
 import thothbot.parallax.core.client.gl2.enums.TextureMinFilter;
+import thothbot.parallax.core.client.renderers.RenderTargetPool;
 import thothbot.parallax.core.client.renderers.WebGLRenderer;
 import thothbot.parallax.core.client.textures.RenderTargetTexture;
 import thothbot.parallax.core.shared.cameras.Camera;
@@ -53,6 +54,7 @@ public class ParallaxBarrier extends Effect {
 
 	RenderTargetTexture _renderTargetL;
 	RenderTargetTexture _renderTargetR;
+	int _width, _height;
 	
 	private ShaderMaterial _material;
 
@@ -84,24 +86,9 @@ public class ParallaxBarrier extends Effect {
 		
 	private void initRenderTargets(int width, int height ) 
 	{
-		if ( _renderTargetL != null ) 
-			_renderTargetL.deallocate(this.renderer.getGL());
-		if ( _renderTargetR != null ) 
-			_renderTargetR.deallocate(this.renderer.getGL());
-
-		_renderTargetL = new RenderTargetTexture( width, height );
-		_renderTargetL.setMinFilter(TextureMinFilter.LINEAR);
-		_renderTargetL.setMagFilter(TextureMagFilter.NEAREST);
-		_renderTargetL.setFormat(PixelFormat.RGBA);
-		
-		_renderTargetR = new RenderTargetTexture( width, height );
-		_renderTargetR.setMinFilter(TextureMinFilter.LINEAR);
-		_renderTargetR.setMagFilter(TextureMagFilter.NEAREST);
-		_renderTargetR.setFormat(PixelFormat.RGBA);
-
-		_material.getShader().getUniforms().get( "mapLeft" ).setValue( _renderTargetL );
-		_material.getShader().getUniforms().get( "mapRight").setValue( _renderTargetR );
-		
+		// the targets are acquired from the render target pool while rendering
+		_width = width;
+		_height = height;
 	}
 
 	/**
@@ -173,6 +160,14 @@ public class ParallaxBarrier extends Effect {
 		_cameraL.setNear( camera.getNear() );
 		_cameraL.setFar( camera.getFar() );
 
+		RenderTargetPool pool = renderer.getRenderTargetPool();
+
+		_renderTargetL = pool.acquire( _width, _height, PixelFormat.RGBA, TextureMinFilter.LINEAR, TextureMagFilter.NEAREST, true, true );
+		_renderTargetR = pool.acquire( _width, _height, PixelFormat.RGBA, TextureMinFilter.LINEAR, TextureMagFilter.NEAREST, true, true );
+
+		_material.getShader().getUniforms().get( "mapLeft" ).setValue( _renderTargetL );
+		_material.getShader().getUniforms().get( "mapRight").setValue( _renderTargetR );
+
 		renderer.render( scene, _cameraL, _renderTargetL, true );
 
 		_cameraR.getMatrixWorld().copy( camera.getMatrixWorld() ).multiply( eyeRight );
@@ -186,16 +181,14 @@ public class ParallaxBarrier extends Effect {
 
 		renderer.render( _scene, _camera );
 
-
+		pool.release( _renderTargetL );
+		pool.release( _renderTargetR );
 	}
 	
 	@Override
 	public void deallocate() {
 		super.deallocate();
 
-		_renderTargetL.deallocate(this.renderer.getGL());
-		_renderTargetR.deallocate(this.renderer.getGL());
-
 		_material.deallocate(renderer);
 	}
 
@@ -22,6 +22,7 @@ import thothbot.parallax.core.client.gl2.enums.EnableCap;
 import thothbot.parallax.core.client.gl2.enums.PixelFormat;
 import thothbot.parallax.core.client.gl2.enums.TextureMagFilter;
 import thothbot.parallax.core.client.gl2.enums.TextureMinFilter;
+import thothbot.parallax.core.client.renderers.RenderTargetPool;
 import thothbot.parallax.core.client.shaders.Shader;
 import thothbot.parallax.core.client.textures.RenderTargetTexture;
 import thothbot.parallax.core.shared.materials.Material;
@@ -29,17 +30,46 @@ import thothbot.parallax.core.shared.materials.ShaderMaterial;
 import thothbot.parallax.core.shared.math.Vector2;
 import thothbot.parallax.plugins.postprocessing.shaders.ConvolutionShader;
 import thothbot.parallax.plugins.postprocessing.shaders.CopyShader;
+import thothbot.parallax.plugins.postprocessing.shaders.HorizontalBlurShader;
+import thothbot.parallax.plugins.postprocessing.shaders.VerticalBlurShader;
 
 public class BloomPass extends Pass
 {
+	/**
+	 * The way the blur is computed.
+	 */
+	public static enum MODE 
+	{
+		/**
+		 * Two passes of the wide convolution kernel at the fixed resolution.
+		 */
+		CONVOLUTION,
+
+		/**
+		 * A chain of the half-resolution targets with the small separable 
+		 * blur on every level, which are added together on the way up. 
+		 * The cost is limited by {@link BloomPass#setMaxTexels(int)}.
+		 */
+		DOWNSAMPLE
+	};
+
 	private static Vector2 blurX = new Vector2( 0.001953125, 0.0 );
 	private static Vector2 blurY = new Vector2( 0.0, 0.001953125 );
 	
-	private RenderTargetTexture renderTargetX;
-	private RenderTargetTexture renderTargetY;
+	private int resolution;
 	
+	private MODE mode = MODE.CONVOLUTION;
+	private int levels = 5;
+	private int maxTexels = 256 * 256;
+	private double strength;
+
 	private ShaderMaterial materialScreen;
 	private ShaderMaterial materialConvolution;
+
+	private ShaderMaterial materialBlurX;
+	private ShaderMaterial materialBlurY;
+	private ShaderMaterial materialAdd;
+	private ShaderMaterial materialCopy;
 	
 	private boolean clear = false;
 	
@@ -57,16 +87,9 @@ public class BloomPass extends Pass
 	{
 		super();
 
-		// render targets
-		this.renderTargetX = new RenderTargetTexture( resolution, resolution );
-		this.renderTargetX.setMinFilter(TextureMinFilter.LINEAR);
-		this.renderTargetX.setMagFilter(TextureMagFilter.LINEAR);
-		this.renderTargetX.setFormat(PixelFormat.RGB);
-		
-		this.renderTargetY = new RenderTargetTexture( resolution, resolution );
-		this.renderTargetY.setMinFilter(TextureMinFilter.LINEAR);
-		this.renderTargetY.setMagFilter(TextureMagFilter.LINEAR);
-		this.renderTargetY.setFormat(PixelFormat.RGB);
+		// render targets are acquired from the pool while rendering
+		this.resolution = resolution;
+		this.strength = strength;
 
 		// screen material
 
@@ -87,12 +110,78 @@ public class BloomPass extends Pass
 		this.materialConvolution.getShader().getUniforms().get("cKernel").setValue( Shader.buildKernel( sigma ) );
 	}
 
+	public MODE getMode() {
+		return this.mode;
+	}
+
+	/**
+	 * Sets the way the blur is computed. The {@link MODE#CONVOLUTION} is 
+	 * used by default.
+	 */
+	public void setMode(MODE mode) 
+	{
+		this.mode = mode;
+
+		if ( mode == MODE.DOWNSAMPLE && this.materialBlurX == null )
+		{
+			this.materialBlurX = new ShaderMaterial(new HorizontalBlurShader());
+			this.materialBlurY = new ShaderMaterial(new VerticalBlurShader());
+
+			this.materialAdd = new ShaderMaterial(new CopyShader());
+			this.materialAdd.setBlending(Material.BLENDING.ADDITIVE);
+			this.materialAdd.setTransparent(true);
+
+			this.materialCopy = new ShaderMaterial(new CopyShader());
+		}
+	}
+
+	public int getLevels() {
+		return this.levels;
+	}
+
+	/**
+	 * Sets the maximum number of the half-resolution levels in the 
+	 * {@link MODE#DOWNSAMPLE} mode. Every next level doubles the blur radius. 
+	 */
+	public void setLevels(int levels) {
+		this.levels = Math.max( 1, levels );
+	}
+
+	public int getMaxTexels() {
+		return this.maxTexels;
+	}
+
+	/**
+	 * Sets the quality of the {@link MODE#DOWNSAMPLE} mode: the maximum 
+	 * number of texels of the first level. The first level is half of the 
+	 * read buffer or smaller, so the cost of the bloom does not depend 
+	 * on the canvas size. The whole chain renders less than 
+	 * 8/3 of this number of texels, plus the halving copies of the read 
+	 * buffer down to the first level when it is less than half of it.
+	 */
+	public void setMaxTexels(int maxTexels) {
+		this.maxTexels = Math.max( 1, maxTexels );
+	}
+
 	@Override
 	public void render(Postprocessing postprocessing, double delta, boolean maskActive)
 	{
 		if ( maskActive ) 
 			postprocessing.getRenderer().getGL().disable( EnableCap.STENCIL_TEST );
 
+		if ( this.mode == MODE.DOWNSAMPLE )
+			renderDownsample( postprocessing, maskActive );
+		else
+			renderConvolution( postprocessing, maskActive );
+	}
+
+	private void renderConvolution(Postprocessing postprocessing, boolean maskActive)
+	{
+		RenderTargetPool pool = postprocessing.getRenderer().getRenderTargetPool();
+
+		RenderTargetTexture renderTargetX = pool.acquire( this.resolution, this.resolution, 
+				PixelFormat.RGB, TextureMinFilter.LINEAR, TextureMagFilter.LINEAR, true, false );
+
 		// Render quad with blured scene into texture (convolution pass 1)
 		postprocessing.getQuad().setMaterial(this.materialConvolution);
 
@@ -100,26 +189,136 @@ public class BloomPass extends Pass
 		this.materialConvolution.getShader().getUniforms().get("uImageIncrement").setValue( BloomPass.blurX );
 
 		postprocessing.getRenderer().render( 
-				postprocessing.getScene(), postprocessing.getCamera(), this.renderTargetX, true );
+				postprocessing.getScene(), postprocessing.getCamera(), renderTargetX, true );
 
+		RenderTargetTexture renderTargetY = pool.acquire( this.resolution, this.resolution, 
+				PixelFormat.RGB, TextureMinFilter.LINEAR, TextureMagFilter.LINEAR, true, false );
 
 		// Render quad with blured scene into texture (convolution pass 2)
-		this.materialConvolution.getShader().getUniforms().get("tDiffuse").setValue( this.renderTargetX );
+		this.materialConvolution.getShader().getUniforms().get("tDiffuse").setValue( renderTargetX );
 		this.materialConvolution.getShader().getUniforms().get("uImageIncrement").setValue( BloomPass.blurY );
 
 		postprocessing.getRenderer().render( 
-				postprocessing.getScene(), postprocessing.getCamera(), this.renderTargetY, true );
+				postprocessing.getScene(), postprocessing.getCamera(), renderTargetY, true );
+
+		pool.release( renderTargetX );
 
 		// Render original scene with superimposed blur to texture
 		postprocessing.getQuad().setMaterial(this.materialScreen);
 
-		this.materialScreen.getShader().getUniforms().get("tDiffuse").setValue( this.renderTargetY );
+		this.materialScreen.getShader().getUniforms().get("tDiffuse").setValue( renderTargetY );
+		this.materialScreen.getShader().getUniforms().get("opacity").setValue( this.strength );
 
 		if ( maskActive ) 
 			postprocessing.getRenderer().getGL().enable( EnableCap.STENCIL_TEST );
 
 		postprocessing.getRenderer().render( 
 				postprocessing.getScene(), postprocessing.getCamera(), postprocessing.getReadBuffer(), this.clear );
+
+		pool.release( renderTargetY );
 	}
 
+	private void renderDownsample(Postprocessing postprocessing, boolean maskActive)
+	{
+		RenderTargetPool pool = postprocessing.getRenderer().getRenderTargetPool();
+		RenderTargetTexture readBuffer = postprocessing.getReadBuffer();
+
+		// The first level is half of the read buffer, reduced to the texels limit
+		double scale = Math.min( 0.5, 
+				Math.sqrt( this.maxTexels / (double)( readBuffer.getWidth() * readBuffer.getHeight() ) ) );
+
+		int width  = Math.max( 1, (int)( readBuffer.getWidth() * scale ) );
+		int height = Math.max( 1, (int)( readBuffer.getHeight() * scale ) );
+
+		int count = 1;
+		while ( count < this.levels && ( width >> count ) >= 2 && ( height >> count ) >= 2 )
+			count++;
+
+		RenderTargetTexture[] chain = new RenderTargetTexture[ count ];
+
+		// The blur of the first level reads one texel of every two, so 
+		// the read buffer is halved by the linear filtering first, until 
+		// it is at most twice as large. Otherwise the first level aliases.
+		RenderTargetTexture source = readBuffer;
+		postprocessing.getQuad().setMaterial(this.materialCopy);
+
+		while ( source.getWidth() > 2 * width || source.getHeight() > 2 * height )
+		{
+			RenderTargetTexture half = pool.acquire( 
+					Math.max( width, source.getWidth() / 2 ), Math.max( height, source.getHeight() / 2 ), 
+					PixelFormat.RGB, TextureMinFilter.LINEAR, TextureMagFilter.LINEAR, false, false );
+
+			this.materialCopy.getShader().getUniforms().get("tDiffuse").setValue( source );
+
+			postprocessing.getRenderer().render( 
+					postprocessing.getScene(), postprocessing.getCamera(), half, true );
+
+			if ( source != readBuffer )
+				pool.release( source );
+
+			source = half;
+		}
+
+		// Down: every level is the blurred half of the previous one
+		RenderTargetTexture prefiltered = source;
+		for ( int i = 0; i < count; i++ )
+		{
+			int levelWidth  = Math.max( 1, width >> i );
+			int levelHeight = Math.max( 1, height >> i );
+
+			RenderTargetTexture temp = pool.acquire( levelWidth, levelHeight, 
+					PixelFormat.RGB, TextureMinFilter.LINEAR, TextureMagFilter.LINEAR, false, false );
+			chain[ i ] = pool.acquire( levelWidth, levelHeight, 
+					PixelFormat.RGB, TextureMinFilter.LINEAR, TextureMagFilter.LINEAR, false, false );
+
+			postprocessing.getQuad().setMaterial(this.materialBlurX);
+			this.materialBlurX.getShader().getUniforms().get("tDiffuse").setValue( source );
+			this.materialBlurX.getShader().getUniforms().get("h").setValue( 1.0 / levelWidth );
+
+			postprocessing.getRenderer().render( 
+					postprocessing.getScene(), postprocessing.getCamera(), temp, true );
+
+			postprocessing.getQuad().setMaterial(this.materialBlurY);
+			this.materialBlurY.getShader().getUniforms().get("tDiffuse").setValue( temp );
+			this.materialBlurY.getShader().getUniforms().get("v").setValue( 1.0 / levelHeight );
+
+			postprocessing.getRenderer().render( 
+					postprocessing.getScene(), postprocessing.getCamera(), chain[ i ], true );
+
+			pool.release( temp );
+
+			if ( source == prefiltered && source != readBuffer )
+				pool.release( source );
+
+			source = chain[ i ];
+		}
+
+		// Up: add every level to the previous, larger one
+		postprocessing.getQuad().setMaterial(this.materialAdd);
+
+		for ( int i = count - 1; i > 0; i-- )
+		{
+			this.materialAdd.getShader().getUniforms().get("tDiffuse").setValue( chain[ i ] );
+
+			postprocessing.getRenderer().render( 
+					postprocessing.getScene(), postprocessing.getCamera(), chain[ i - 1 ], false );
+
+			pool.release( chain[ i ] );
+		}
+
+		// Render original scene with superimposed blur to texture, 
+		// the sum of the levels is averaged
+		postprocessing.getQuad().setMaterial(this.materialScreen);
+
+		this.materialScreen.getShader().getUniforms().get("tDiffuse").setValue( chain[ 0 ] );
+		this.materialScreen.getShader().getUniforms().get("opacity").setValue( this.strength / count );
+
+		if ( maskActive ) 
+			postprocessing.getRenderer().getGL().enable( EnableCap.STENCIL_TEST );
+
+		postprocessing.getRenderer().render( 
+				postprocessing.getScene(), postprocessing.getCamera(), readBuffer, this.clear );
+
+		pool.release( chain[ 0 ] );
+	}
 }
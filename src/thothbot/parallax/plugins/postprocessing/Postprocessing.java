@@ -19,7 +19,10 @@
 package thothbot.parallax.plugins.postprocessing;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import thothbot.parallax.core.client.events.ViewportResizeEvent;
 import thothbot.parallax.core.client.events.ViewportResizeHandler;
@@ -29,7 +32,9 @@ import thothbot.parallax.core.client.gl2.enums.StencilFunction;
 import thothbot.parallax.core.client.gl2.enums.TextureMagFilter;
 import thothbot.parallax.core.client.gl2.enums.TextureMinFilter;
 import thothbot.parallax.core.client.renderers.Plugin;
+import thothbot.parallax.core.client.renderers.RenderTargetPool;
 import thothbot.parallax.core.client.renderers.WebGLRenderer;
+import thothbot.parallax.core.client.shaders.Uniform;
 import thothbot.parallax.core.client.textures.RenderTargetTexture;
 import thothbot.parallax.core.shared.Log;
 import thothbot.parallax.core.shared.cameras.Camera;
@@ -38,16 +43,26 @@ import thothbot.parallax.core.shared.geometries.PlaneGeometry;
 import thothbot.parallax.core.shared.lights.Light;
 import thothbot.parallax.core.shared.objects.Mesh;
 import thothbot.parallax.core.shared.scenes.Scene;
+import thothbot.parallax.plugins.postprocessing.ShaderPassFusion.FusedPass;
 import thothbot.parallax.plugins.postprocessing.shaders.CopyShader;
 
 public class Postprocessing extends Plugin
 {
 	
+	// The buffers. The target passed to the constructor is used as the first 
+	// buffer, the other buffers are acquired from the render target pool.
 	private RenderTargetTexture renderTarget1;
 	private RenderTargetTexture renderTarget2;
+
+	// The template of the default buffers, which follow the renderer size
+	private RenderTargetTexture template;
 	
 	private List<Pass> passes;
 	private ShaderPass copyPass;
+
+	// Runs of the pointwise shader passes merged into one pass
+	private boolean isPassFusion = true;
+	private Map<List<ShaderPass>, FusedPass> fusedPasses;
 	
 	private RenderTargetTexture writeBuffer;
 	private RenderTargetTexture readBuffer;
@@ -58,27 +73,17 @@ public class Postprocessing extends Plugin
 
 	public Postprocessing( WebGLRenderer renderer, Scene scene)
 	{
-		this(renderer, scene, new RenderTargetTexture( renderer.getAbsoluteWidth(), renderer.getAbsoluteHeight() ));
-
-		this.renderTarget1.setMinFilter(TextureMinFilter.LINEAR);
-		this.renderTarget1.setMagFilter(TextureMagFilter.LINEAR);
-		this.renderTarget1.setFormat(PixelFormat.RGB);
-		this.renderTarget1.setStencilBuffer(true);
-		
-		this.renderTarget2 = this.renderTarget1.clone();
+		this(renderer, scene, null);
 	}
 		
 	public Postprocessing( WebGLRenderer renderer, Scene scene, RenderTargetTexture renderTarget ) 
 	{
 		super(renderer, new Scene());
 
-		this.renderTarget1 = renderTarget;
-		this.renderTarget2 = this.renderTarget1.clone();
-
-		this.writeBuffer = this.renderTarget1;
-		this.readBuffer = this.renderTarget2;
+		reset( renderTarget );
 
 		this.passes = new ArrayList<Pass>();
+		this.fusedPasses = new HashMap<List<ShaderPass>, FusedPass>();
 
 		this.copyPass = new ShaderPass( new CopyShader() );
 		
@@ -106,10 +111,19 @@ public class Postprocessing extends Plugin
 		return Plugin.TYPE.POST_RENDER;
 	}
 	
+	/**
+	 * Gets the buffer which is written first: the render target passed 
+	 * to the constructor or the default buffer, which follows the renderer size.
+	 */
 	public RenderTargetTexture getRenderTarget1() {
 		return renderTarget1;
 	}
 
+	/**
+	 * @deprecated the second buffer is acquired from the render target pool
+	 * and is replaced on resize, use {@link #getReadBuffer()} in the passes.
+	 */
+	@Deprecated
 	public RenderTargetTexture getRenderTarget2() {
 		return renderTarget2;
 	}
@@ -122,6 +136,10 @@ public class Postprocessing extends Plugin
 		return this.quad;
 	}
 
+	/**
+	 * Gets the buffer the pass renders into. The buffers are kept 
+	 * until the resize, {@link #reset(RenderTargetTexture)} or {@link #deallocate()}.
+	 */
 	public RenderTargetTexture getWriteBuffer() {
 		return this.writeBuffer;
 	}
@@ -135,9 +153,39 @@ public class Postprocessing extends Plugin
 		this.passes.add( pass );
 	}
 
+	public boolean isPassFusion() {
+		return this.isPassFusion;
+	}
+
+	/**
+	 * Enables or disables the fusion of the consecutive pointwise 
+	 * {@link ShaderPass}es (color correction, vignette, sepia, copy, etc.) 
+	 * into one full-screen pass. The fused program is generated once per run 
+	 * of passes and reads the uniforms of the original passes every frame.
+	 * <p>
+	 * Enabled by default.
+	 */
+	public void setPassFusion(boolean isPassFusion) 
+	{
+		this.isPassFusion = isPassFusion;
+
+		if ( !isPassFusion )
+			releaseFusedPasses();
+	}
+
 	@Override
 	public void render( Camera camera, List<Light> lights, int currentWidth, int currentHeight ) 
 	{
+		if ( this.template != null )
+			this.template.setSize( getRenderer().getAbsoluteWidth(), getRenderer().getAbsoluteHeight() );
+
+		// The buffers are acquired again after the resize or the deallocation
+		RenderTargetTexture size = this.template != null ? this.template : this.renderTarget1;
+		if ( this.renderTarget2 == null 
+				|| this.renderTarget2.getWidth() != size.getWidth() 
+				|| this.renderTarget2.getHeight() != size.getHeight() )
+			allocateBuffers();
+
 		this.writeBuffer = this.renderTarget1;
 		this.readBuffer = this.renderTarget2;
 
@@ -146,14 +194,40 @@ public class Postprocessing extends Plugin
 		double delta = 0;
 		WebGLRenderingContext gl = getRenderer().getGL();
 
-		for ( Pass pass : this.passes ) 
+		List<Pass> steps = getSteps();
+
+		// The copy to the screen at the end is not needed if the previous 
+		// shader pass can render to the screen itself. The transparent pass 
+		// is blended with the buffer, so it can not replace the copy.
+		int last = steps.size() - 1;
+		boolean isCopyToScreen = last > 0 && isCopyToScreen( steps.get( last ) )
+				&& steps.get( last - 1 ) instanceof ShaderPass
+				&& !((ShaderPass)steps.get( last - 1 )).isRenderToScreen()
+				&& !((ShaderPass)steps.get( last - 1 )).getMaterial().isTransparent();
+
+		for ( int i = 0; i < steps.size(); i++ ) 
 		{	
-			if ( !pass.isEnabled() ) continue;
-			
+			Pass pass = steps.get( i );
+
 			Log.info(" ----> Postprocessing.render(): pass " + pass.getClass().getSimpleName() 
 					+ (pass.getClass().equals(ShaderPass.class) ? 
 							"(" + ((ShaderPass)pass).getMaterial().getShader().getClass().getSimpleName() + ")" : "") );
 
+			getRenderer().getInfo().getProfiler().begin( pass.getClass().getSimpleName() );
+
+			if ( isCopyToScreen && i == last - 1 && !maskActive )
+			{
+				ShaderPass shaderPass = (ShaderPass)pass;
+
+				shaderPass.setRenderToScreen( true );
+				shaderPass.render( this, delta, maskActive );
+				shaderPass.setRenderToScreen( false );
+
+				getRenderer().getInfo().getProfiler().end();
+
+				break;
+			}
+
 			pass.render( this, delta, maskActive );
 
 			if ( pass.isNeedsSwap() ) 
@@ -170,30 +244,186 @@ public class Postprocessing extends Plugin
 				this.swapBuffers();
 			}
 
+			getRenderer().getInfo().getProfiler().end();
+
 			maskActive = pass.isMaskActive();
 		}
 	}
 
+	/**
+	 * Sets the render target the results are written into, 
+	 * or null to use the default buffers of the renderer size.
+	 */
 	public void reset( RenderTargetTexture renderTarget ) 
 	{
+		releaseBuffers();
+
 		this.renderTarget1 = renderTarget;
+		this.template = null;
 
-		if ( this.renderTarget1 == null )
+		if ( renderTarget == null )
 		{
-			this.renderTarget1 = new RenderTargetTexture(getRenderer().getAbsoluteWidth(), getRenderer().getAbsoluteHeight());
+			this.template = new RenderTargetTexture(getRenderer().getAbsoluteWidth(), getRenderer().getAbsoluteHeight());
 			
-			this.renderTarget1.setMinFilter(TextureMinFilter.LINEAR);
-			this.renderTarget1.setMagFilter(TextureMagFilter.LINEAR);
-			this.renderTarget1.setFormat(PixelFormat.RGB);
-			this.renderTarget1.setStencilBuffer(true);
+			this.template.setMinFilter(TextureMinFilter.LINEAR);
+			this.template.setMagFilter(TextureMagFilter.LINEAR);
+			this.template.setFormat(PixelFormat.RGB);
+			this.template.setStencilBuffer(true);
 		}
 
-		this.renderTarget2 = this.renderTarget1.clone();
+		allocateBuffers();
+	}
+
+	@Override
+	public void deallocate() 
+	{
+		super.deallocate();
+
+		releaseBuffers();
+		releaseFusedPasses();
+	}
+
+	private void releaseFusedPasses()
+	{
+		for ( FusedPass fused : this.fusedPasses.values() )
+			fused.getMaterial().deallocate( getRenderer() );
+
+		this.fusedPasses.clear();
+	}
+
+	/*
+	 * Acquires the buffers of the current size from the render target pool, 
+	 * the buffers acquired before are released.
+	 */
+	private void allocateBuffers()
+	{
+		releaseBuffers();
+
+		RenderTargetPool pool = getRenderer().getRenderTargetPool();
+
+		if ( this.template != null )
+			this.renderTarget1 = pool.acquire( this.template.getWidth(), this.template.getHeight(), this.template );
+
+		this.renderTarget2 = pool.acquire( this.renderTarget1.getWidth(), this.renderTarget1.getHeight(), this.renderTarget1 );
 
 		this.writeBuffer = this.renderTarget1;
 		this.readBuffer = this.renderTarget2;
 	}
+
+	private void releaseBuffers()
+	{
+		RenderTargetPool pool = getRenderer().getRenderTargetPool();
+
+		if ( this.template != null && this.renderTarget1 != null )
+		{
+			pool.release( this.renderTarget1 );
+			this.renderTarget1 = null;
+		}
+
+		if ( this.renderTarget2 != null )
+			pool.release( this.renderTarget2 );
+
+		this.renderTarget2 = null;
+		this.writeBuffer = null;
+		this.readBuffer = null;
+	}
 	
+	/*
+	 * Gets the enabled passes to render, where the runs of the fusable 
+	 * shader passes are replaced by the fused passes. The fused passes 
+	 * of the runs which do not occur any more are deallocated.
+	 */
+	List<Pass> getSteps()
+	{
+		List<Pass> steps = new ArrayList<Pass>();
+		List<ShaderPass> run = new ArrayList<ShaderPass>();
+
+		for ( Pass pass : this.passes ) 
+		{
+			if ( !pass.isEnabled() ) continue;
+
+			if ( this.isPassFusion && isFusable( pass ) )
+			{
+				run.add( (ShaderPass)pass );
+
+				// Nothing is read after the screen
+				if ( ((ShaderPass)pass).isRenderToScreen() )
+					addRun( steps, run );
+			}
+			else
+			{
+				addRun( steps, run );
+				steps.add( pass );
+			}
+		}
+
+		addRun( steps, run );
+
+		if ( this.fusedPasses.size() > 0 )
+		{
+			Iterator<FusedPass> it = this.fusedPasses.values().iterator();
+			while ( it.hasNext() )
+			{
+				FusedPass fused = it.next();
+				if ( !steps.contains( fused ) )
+				{
+					fused.getMaterial().deallocate( getRenderer() );
+					it.remove();
+				}
+			}
+		}
+
+		return steps;
+	}
+
+	private void addRun( List<Pass> steps, List<ShaderPass> run )
+	{
+		if ( run.size() == 1 )
+			steps.add( run.get( 0 ) );
+
+		else if ( run.size() > 1 )
+		{
+			FusedPass fused = this.fusedPasses.get( run );
+			if ( fused == null )
+			{
+				List<ShaderPass> key = new ArrayList<ShaderPass>( run );
+				fused = ShaderPassFusion.fuse( key );
+				this.fusedPasses.put( key, fused );
+			}
+
+			fused.setRenderToScreen( run.get( run.size() - 1 ).isRenderToScreen() );
+			steps.add( fused );
+		}
+
+		run.clear();
+	}
+
+	private boolean isFusable( Pass pass )
+	{
+		if ( pass.getClass() != ShaderPass.class )
+			return false;
+
+		ShaderPass shaderPass = (ShaderPass)pass;
+
+		return "tDiffuse".equals( shaderPass.getTextureID() )
+				&& !shaderPass.getMaterial().isTransparent()
+				&& shaderPass.getFusionStage() != null;
+	}
+
+	private boolean isCopyToScreen( Pass pass )
+	{
+		if ( pass.getClass() != ShaderPass.class || !((ShaderPass)pass).isRenderToScreen() )
+			return false;
+
+		ShaderPass shaderPass = (ShaderPass)pass;
+		Uniform opacity = shaderPass.getUniforms().get( "opacity" );
+
+		return shaderPass.isCopyShader()
+				&& !shaderPass.getMaterial().isTransparent()
+				&& opacity != null && opacity.getValue() instanceof Double 
+				&& (Double)opacity.getValue() == 1.0;
+	}
+
 	private void swapBuffers() 
 	{
 		RenderTargetTexture tmp = this.readBuffer;
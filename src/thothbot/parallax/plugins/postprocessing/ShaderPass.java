@@ -23,6 +23,7 @@ import java.util.Map;
 import thothbot.parallax.core.client.shaders.Shader;
 import thothbot.parallax.core.client.shaders.Uniform;
 import thothbot.parallax.core.shared.materials.ShaderMaterial;
+import thothbot.parallax.plugins.postprocessing.shaders.CopyShader;
 
 public class ShaderPass extends Pass
 {
@@ -32,6 +33,16 @@ public class ShaderPass extends Pass
 	private boolean isRenderToScreen = false;
 
 	private boolean isClear = false;
+
+	// The sources before the shader is built, used by the pass fusion
+	private String vertexSource;
+	private String fragmentSource;
+
+	// The material gets a copy of the shader when the program is rebuilt
+	private boolean isCopyShader;
+
+	private ShaderPassFusion.Stage fusionStage;
+	private boolean isFusionAnalyzed = false;
 	
 	public ShaderPass( Shader shader) 
 	{
@@ -43,6 +54,14 @@ public class ShaderPass extends Pass
 		this.setNeedsSwap(true);
 		this.textureID = textureID;
 		this.material = new ShaderMaterial(shader);
+
+		this.vertexSource = shader.getVertexSource();
+		this.fragmentSource = shader.getFragmentSource();
+		this.isCopyShader = shader instanceof CopyShader;
+	}
+
+	public String getTextureID() {
+		return this.textureID;
 	}
 
 	public boolean isRenderToScreen() {
@@ -61,6 +80,29 @@ public class ShaderPass extends Pass
 		return this.material;
 	}
 	
+	boolean isCopyShader() {
+		return this.isCopyShader;
+	}
+
+	String getVertexSource() {
+		return this.vertexSource;
+	}
+
+	/**
+	 * Gets the fragment shader of the pass split for the fusion, 
+	 * or null if the pass does not sample the input buffer pointwise.
+	 */
+	ShaderPassFusion.Stage getFusionStage() 
+	{
+		if ( !this.isFusionAnalyzed )
+		{
+			this.fusionStage = ShaderPassFusion.analyze( this.vertexSource, this.fragmentSource );
+			this.isFusionAnalyzed = true;
+		}
+
+		return this.fusionStage;
+	}
+
 	@Override
 	public void render( Postprocessing postprocessing, double delta, boolean maskActive) 
 	{
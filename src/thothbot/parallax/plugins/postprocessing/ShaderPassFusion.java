@@ -0,0 +1,496 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ * 
+ * This file is part of Parallax project.
+ * 
+ * Parallax is free software: you can redistribute it and/or modify it 
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ * 
+ * Parallax is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution 
+ * 3.0 Unported License. for more details.
+ * 
+ * You should have received a copy of the the Creative Commons Attribution 
+ * 3.0 Unported License along with Parallax. 
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+
+package thothbot.parallax.plugins.postprocessing;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import thothbot.parallax.core.client.shaders.Shader;
+import thothbot.parallax.core.client.shaders.Uniform;
+import thothbot.parallax.plugins.postprocessing.shaders.CopyShader;
+
+/**
+ * Merges the runs of pointwise {@link ShaderPass}es into one full-screen pass.
+ * <p>
+ * The pass is pointwise if its fragment shader reads the input buffer only 
+ * at the current texel: <code>texture2D( tDiffuse, vUv )</code>. The main() 
+ * of every such shader is turned into a function of the input color, 
+ * and the functions are chained in one generated program, so the whole run 
+ * costs one draw and one buffer swap.
+ * <p>
+ * The shader sources are checked conservatively: any preprocessor directive, 
+ * other sampler, other varying, discard or return in main() makes the pass 
+ * not fusable, and it is rendered as usual.
+ * 
+ * @author thothbot
+ *
+ */
+final class ShaderPassFusion
+{
+	/**
+	 * The fragment shader of the pointwise pass, split into 
+	 * the global declarations and the body of main().
+	 */
+	static final class Stage
+	{
+		private List<List<String>> declarations = new ArrayList<List<String>>();
+		private List<String> body;
+
+		// Global names, which are prefixed in the fused program
+		private Set<String> names = new HashSet<String>();
+		private List<String> uniforms = new ArrayList<String>();
+	}
+
+	/**
+	 * The pass which renders the chain of the fused stages.
+	 */
+	static final class FusedPass extends ShaderPass
+	{
+		private List<Uniform> sources = new ArrayList<Uniform>();
+		private List<Uniform> targets = new ArrayList<Uniform>();
+
+		private FusedPass( Shader shader )
+		{
+			super(shader);
+		}
+
+		@Override
+		public void render( Postprocessing postprocessing, double delta, boolean maskActive ) 
+		{
+			// Values of the original passes could be changed since the last frame
+			for ( int i = 0; i < this.sources.size(); i++ )
+				this.targets.get( i ).setValue( this.sources.get( i ).getValue() );
+
+			super.render( postprocessing, delta, maskActive );
+		}
+	}
+
+	private static class FusedShader extends Shader
+	{
+		public FusedShader(String vertexShader, String fragmentShader) 
+		{
+			super(vertexShader, fragmentShader);
+		}
+
+		@Override
+		protected void initUniforms() {
+
+		}
+	}
+
+	private static final String INPUT = "parallax_input";
+	private static final String COLOR = "parallax_color";
+	
+	private static List<String> copyVertex;
+
+	private ShaderPassFusion() {}
+
+	/**
+	 * Analyzes the shader sources of the pass.
+	 * 
+	 * @param vertexSource   the source of the vertex shader before it was built
+	 * @param fragmentSource the source of the fragment shader before it was built
+	 * 
+	 * @return the stage or null if the pass can not be fused.
+	 */
+	static Stage analyze( String vertexSource, String fragmentSource )
+	{
+		if ( vertexSource == null || fragmentSource == null )
+			return null;
+
+		// Every pass gets the vUv from the default full-screen vertex shader
+		if ( copyVertex == null )
+			copyVertex = significant( tokenize( new CopyShader().getVertexSource() ) );
+
+		if ( !copyVertex.equals( significant( tokenize( vertexSource ) ) ) )
+			return null;
+
+		List<String> tokens = tokenize( fragmentSource );
+		if ( tokens.contains( "#" ) )
+			return null;
+
+		Stage stage = new Stage();
+
+		for ( List<String> statement : split( tokens ) )
+		{
+			List<String> sig = significant( statement );
+			if ( sig.isEmpty() )
+				continue;
+
+			String first = sig.get( 0 );
+
+			if ( first.equals( "precision" ) )
+				continue;
+
+			else if ( first.equals( "varying" ) )
+			{
+				if ( !sig.equals( significant( tokenize( "varying vec2 vUv;" ) ) ) )
+					return null;
+			}
+			else if ( first.equals( "uniform" ) )
+			{
+				if ( sig.size() < 3 )
+					return null;
+
+				if ( sig.get( 1 ).startsWith( "sampler" ) )
+				{
+					if ( !sig.equals( significant( tokenize( "uniform sampler2D tDiffuse;" ) ) ) )
+						return null;
+
+					continue;
+				}
+
+				List<String> names = getDeclaredNames( sig.subList( 1, sig.size() ) );
+				stage.names.addAll( names );
+				stage.uniforms.addAll( names );
+				stage.declarations.add( statement );
+			}
+			else if ( first.equals( "attribute" ) || first.equals( "struct" ) || first.equals( "invariant" ) )
+				return null;
+
+			// Function definition or prototype
+			else if ( sig.contains( "(" ) 
+					&& ( !sig.contains( "=" ) || sig.indexOf( "(" ) < sig.indexOf( "=" ) ) )
+			{
+				String name = sig.get( Math.max( 0, sig.indexOf( "(" ) - 1 ) );
+
+				if ( name.equals( "main" ) )
+				{
+					if ( !sig.contains( "{" ) || stage.body != null )
+						return null;
+
+					stage.body = getBody( statement );
+					if ( stage.body == null )
+						return null;
+				}
+				else
+				{
+					stage.names.add( name );
+					stage.declarations.add( statement );
+				}
+			}
+
+			// Global variable or constant
+			else
+			{
+				stage.names.addAll( getDeclaredNames( sig ) );
+				stage.declarations.add( statement );
+			}
+		}
+
+		if ( stage.body == null )
+			return null;
+
+		for ( List<String> declaration : stage.declarations )
+			if ( declaration.contains( "tDiffuse" ) 
+					|| declaration.contains( "gl_FragColor" ) 
+					|| declaration.contains( "gl_FragData" ) )
+				return null;
+
+		return stage;
+	}
+
+	/**
+	 * Generates one pass, which renders the stages of the given passes 
+	 * one after another.
+	 * 
+	 * @param passes the fusable passes, see {@link ShaderPass#getFusionStage()}
+	 */
+	static FusedPass fuse( List<ShaderPass> passes )
+	{
+		StringBuilder fs = new StringBuilder();
+
+		fs.append( "uniform sampler2D tDiffuse;\n\nvarying vec2 vUv;\n" );
+
+		for ( int i = 0; i < passes.size(); i++ )
+		{
+			Stage stage = passes.get( i ).getFusionStage();
+			String prefix = "parallax" + i + "_";
+
+			fs.append( "\n" );
+			for ( List<String> declaration : stage.declarations )
+				fs.append( rename( declaration, stage.names, prefix ) ).append( "\n" );
+
+			fs.append( "\nvec4 parallax_stage" ).append( i ).append( "( vec4 " ).append( INPUT ).append( " ) {\n" )
+				.append( "\n\tvec4 " ).append( COLOR ).append( " = vec4( 0.0 );\n" )
+				.append( rename( stage.body, stage.names, prefix ) )
+				.append( "\n\treturn " ).append( COLOR ).append( ";\n\n}\n" );
+		}
+
+		fs.append( "\nvoid main() {\n\n\tvec4 color = texture2D( tDiffuse, vUv );\n" );
+
+		for ( int i = 0; i < passes.size(); i++ )
+			fs.append( "\tcolor = parallax_stage" ).append( i ).append( "( color );\n" );
+
+		fs.append( "\n\tgl_FragColor = color;\n\n}\n" );
+
+		Shader shader = new FusedShader( passes.get( 0 ).getVertexSource(), fs.toString() );
+		shader.addUniform( "tDiffuse", new Uniform( Uniform.TYPE.T ) );
+
+		FusedPass fused = new FusedPass( shader );
+
+		for ( int i = 0; i < passes.size(); i++ )
+		{
+			ShaderPass pass = passes.get( i );
+			String prefix = "parallax" + i + "_";
+
+			for ( String name : pass.getFusionStage().uniforms )
+			{
+				Uniform source = pass.getUniforms().get( name );
+				if ( source == null )
+					continue;
+
+				Uniform target = source.clone();
+				shader.addUniform( prefix + name, target );
+
+				fused.sources.add( source );
+				fused.targets.add( target );
+			}
+		}
+
+		return fused;
+	}
+
+	/*
+	 * Splits the source into identifiers, numbers, whitespace and single 
+	 * punctuation characters. Comments are replaced by a space.
+	 */
+	private static List<String> tokenize( String src )
+	{
+		List<String> tokens = new ArrayList<String>();
+		int n = src.length();
+		int i = 0;
+
+		while ( i < n )
+		{
+			char c = src.charAt( i );
+			int start = i;
+
+			if ( c == '/' && i + 1 < n && src.charAt( i + 1 ) == '/' )
+			{
+				while ( i < n && src.charAt( i ) != '\n' ) i++;
+				tokens.add( " " );
+				continue;
+			}
+			else if ( c == '/' && i + 1 < n && src.charAt( i + 1 ) == '*' )
+			{
+				int end = src.indexOf( "*/", i + 2 );
+				i = ( end < 0 ) ? n : end + 2;
+				tokens.add( " " );
+				continue;
+			}
+			else if ( isWhitespace( c ) )
+				while ( i < n && isWhitespace( src.charAt( i ) ) ) i++;
+
+			else if ( isIdentifierPart( c ) )
+				while ( i < n && isIdentifierPart( src.charAt( i ) ) ) i++;
+
+			else
+				i++;
+
+			tokens.add( src.substring( start, i ) );
+		}
+
+		return tokens;
+	}
+
+	/*
+	 * Splits the tokens into the top-level statements: declarations, 
+	 * which end with ';', and function definitions, which end with '}'.
+	 */
+	private static List<List<String>> split( List<String> tokens )
+	{
+		List<List<String>> statements = new ArrayList<List<String>>();
+		List<String> statement = new ArrayList<String>();
+		int depth = 0;
+
+		for ( String token : tokens )
+		{
+			statement.add( token );
+
+			if ( token.equals( "{" ) )
+				depth++;
+
+			else if ( token.equals( "}" ) )
+				depth--;
+
+			if ( depth == 0 && ( token.equals( ";" ) || token.equals( "}" ) ) )
+			{
+				statements.add( statement );
+				statement = new ArrayList<String>();
+			}
+		}
+
+		statements.add( statement );
+
+		return statements;
+	}
+
+	private static List<String> significant( List<String> tokens )
+	{
+		List<String> result = new ArrayList<String>();
+		for ( String token : tokens )
+			if ( !isWhitespace( token.charAt( 0 ) ) )
+				result.add( token );
+
+		return result;
+	}
+
+	/*
+	 * Gets the names of the declaration like "const float a = 1.0, b[ 2 ];"
+	 */
+	private static List<String> getDeclaredNames( List<String> sig )
+	{
+		List<String> names = new ArrayList<String>();
+		String name = null;
+		boolean isName = true;
+		int depth = 0;
+
+		for ( String token : sig )
+		{
+			if ( token.equals( "(" ) || token.equals( "[" ) )
+				depth++;
+
+			else if ( token.equals( ")" ) || token.equals( "]" ) )
+				depth--;
+
+			if ( depth > 0 ) 
+			{
+				isName = false;
+				continue;
+			}
+
+			if ( token.equals( "," ) || token.equals( ";" ) )
+			{
+				if ( name != null )
+					names.add( name );
+
+				name = null;
+				isName = true;
+			}
+			else if ( token.equals( "=" ) )
+				isName = false;
+
+			else if ( isName && isIdentifierStart( token.charAt( 0 ) ) )
+				name = token;
+		}
+
+		return names;
+	}
+
+	/*
+	 * Gets the body of main(): replaces the input sampling and the output 
+	 * color by the stage function arguments.
+	 */
+	private static List<String> getBody( List<String> statement )
+	{
+		int start = statement.indexOf( "{" ) + 1;
+		int end = statement.lastIndexOf( "}" );
+		List<String> source = statement.subList( start, end );
+		List<String> body = new ArrayList<String>();
+
+		for ( int i = 0; i < source.size(); i++ )
+		{
+			String token = source.get( i );
+
+			if ( token.equals( "return" ) || token.equals( "discard" ) || token.equals( "gl_FragData" ) )
+				return null;
+
+			else if ( token.equals( "gl_FragColor" ) )
+				body.add( COLOR );
+
+			else if ( token.equals( "texture2D" ) )
+			{
+				int next = matchInput( source, i + 1 );
+				if ( next < 0 )
+					return null;
+
+				body.add( INPUT );
+				i = next - 1;
+			}
+			else if ( token.equals( "tDiffuse" ) )
+				return null;
+
+			else
+				body.add( token );
+		}
+
+		return body;
+	}
+
+	/*
+	 * Matches "( tDiffuse, vUv )" starting at the given index.
+	 * Returns the index after the match or -1.
+	 */
+	private static int matchInput( List<String> tokens, int index )
+	{
+		String[] expected = { "(", "tDiffuse", ",", "vUv", ")" };
+		int i = index;
+
+		for ( String token : expected )
+		{
+			while ( i < tokens.size() && isWhitespace( tokens.get( i ).charAt( 0 ) ) ) i++;
+
+			if ( i >= tokens.size() || !tokens.get( i ).equals( token ) )
+				return -1;
+
+			i++;
+		}
+
+		return i;
+	}
+
+	private static String rename( List<String> tokens, Set<String> names, String prefix )
+	{
+		StringBuilder result = new StringBuilder();
+		String previous = null;
+
+		for ( String token : tokens )
+		{
+			// Skip the fields, like "color.rgb"
+			if ( names.contains( token ) && !".".equals( previous ) )
+				result.append( prefix );
+
+			result.append( token );
+
+			if ( !isWhitespace( token.charAt( 0 ) ) )
+				previous = token;
+		}
+
+		return result.toString();
+	}
+
+	private static boolean isWhitespace( char c )
+	{
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+	}
+
+	private static boolean isIdentifierStart( char c )
+	{
+		return c == '_' || ( c >= 'a' && c <= 'z' ) || ( c >= 'A' && c <= 'Z' );
+	}
+
+	private static boolean isIdentifierPart( char c )
+	{
+		return isIdentifierStart( c ) || ( c >= '0' && c <= '9' );
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ * 
+ * This file is part of Parallax project.
+ * 
+ * Parallax is free software: you can redistribute it and/or modify it 
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ * 
+ * Parallax is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution 
+ * 3.0 Unported License. for more details.
+ * 
+ * You should have received a copy of the the Creative Commons Attribution 
+ * 3.0 Unported License along with Parallax. 
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+
+package thothbot.parallax.core.client;
+
+import com.google.gwt.junit.client.GWTTestCase;
+
+public class DynamicResolutionTest extends GWTTestCase 
+{
+	// The refresh interval of the 60 Hz display
+	private static final double VSYNC = 1000.0 / 60.0;
+
+	private double time;
+	private int frames;
+
+	@Override
+	public String getModuleName() {
+		return "thothbot.parallax.core.Core";
+	}
+
+	@Override
+	protected void gwtSetUp() throws Exception 
+	{
+		this.time = 0;
+		this.frames = 0;
+	}
+
+	// Returns the number of the scale changes
+	private int run( DynamicResolution resolution, double frameTime, int count )
+	{
+		int changes = 0;
+		for ( int i = 0; i < count; i++ )
+		{
+			this.time += frameTime;
+			if ( resolution.update( this.time ) )
+				changes++;
+		}
+
+		return changes;
+	}
+
+	public void testDownscale()
+	{
+		DynamicResolution resolution = new DynamicResolution( 0.5, 1.0 );
+
+		run( resolution, 2 * VSYNC, 40 );
+		assertEquals( 0.9, resolution.getScale(), 1e-6 );
+
+		run( resolution, 2 * VSYNC, 1000 );
+		assertEquals( 0.5, resolution.getScale(), 1e-6 );
+	}
+
+	public void testUpscale()
+	{
+		DynamicResolution resolution = new DynamicResolution( 0.5, 1.0 );
+		resolution.setScale( 0.5 );
+
+		run( resolution, VSYNC, 1000 );
+		assertEquals( 1.0, resolution.getScale(), 1e-6 );
+	}
+
+	public void testBetweenBounds()
+	{
+		DynamicResolution resolution = new DynamicResolution( 0.5, 1.0 );
+		resolution.setScale( 0.8 );
+
+		assertEquals( 0, run( resolution, 20.0, 1000 ) );
+		assertEquals( 0.8, resolution.getScale(), 1e-6 );
+	}
+
+	public void testLongFramesNotMeasured()
+	{
+		DynamicResolution resolution = new DynamicResolution( 0.5, 1.0 );
+
+		assertEquals( 0, run( resolution, 500.0, 100 ) );
+		assertEquals( 0.0, resolution.getFrameTime() );
+	}
+
+	public void testBackoff()
+	{
+		DynamicResolution resolution = new DynamicResolution( 0.5, 1.0 );
+
+		// The full scale misses the refresh, the smaller one does not
+		int changes = 0;
+		int fullScaleFrames = 0;
+		for ( int i = 0; i < 3600; i++ )
+		{
+			boolean isFullScale = resolution.getScale() > 0.95;
+			if ( isFullScale )
+				fullScaleFrames++;
+
+			this.time += isFullScale ? 2 * VSYNC : VSYNC;
+			if ( resolution.update( this.time ) )
+				changes++;
+		}
+
+		// The full scale is retried, but less and less often
+		assertTrue( changes > 2 );
+		assertTrue( "Scale changes: " + changes, changes < 14 );
+		assertTrue( "Full scale frames: " + fullScaleFrames, fullScaleFrames < 360 );
+		assertEquals( 0.9, resolution.getScale(), 1e-6 );
+	}
+
+	public void testBackoffOfOtherScale()
+	{
+		DynamicResolution resolution = new DynamicResolution( 0.5, 1.0 );
+		resolution.setBackoffFrames( 100 );
+
+		// Abandons 1.0 and then 0.9, after the cooldown
+		assertEquals( 2, run( resolution, 3 * VSYNC, 63 ) );
+		assertEquals( 0.8, resolution.getScale(), 1e-6 );
+
+		// 0.9 is not tried again until its backoff is over
+		run( resolution, VSYNC, 90 );
+		assertEquals( 0.8, resolution.getScale(), 1e-6 );
+
+		run( resolution, VSYNC, 20 );
+		assertEquals( 0.9, resolution.getScale(), 1e-6 );
+	}
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ * 
+ * This file is part of Parallax project.
+ * 
+ * Parallax is free software: you can redistribute it and/or modify it 
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ * 
+ * Parallax is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution 
+ * 3.0 Unported License. for more details.
+ * 
+ * You should have received a copy of the the Creative Commons Attribution 
+ * 3.0 Unported License along with Parallax. 
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+
+package thothbot.parallax.core.client.renderers;
+
+import java.util.Arrays;
+import java.util.List;
+
+import thothbot.parallax.core.client.context.Canvas3d;
+import thothbot.parallax.core.client.gl2.arrays.Float32Array;
+import thothbot.parallax.core.client.gl2.extension.AngleInstancedArrays;
+import thothbot.parallax.core.client.gl2.extension.OESVertexArrayObject;
+import thothbot.parallax.core.client.shaders.Shader;
+import thothbot.parallax.core.client.shaders.Uniform;
+import thothbot.parallax.core.client.textures.Texture;
+import thothbot.parallax.core.shared.cameras.PerspectiveCamera;
+import thothbot.parallax.core.shared.core.BufferAttribute;
+import thothbot.parallax.core.shared.core.InstancedBufferGeometry;
+import thothbot.parallax.core.shared.geometries.BoxGeometry;
+import thothbot.parallax.core.shared.materials.Material;
+import thothbot.parallax.core.shared.materials.MeshBasicMaterial;
+import thothbot.parallax.core.shared.materials.ShaderMaterial;
+import thothbot.parallax.core.shared.math.Color;
+import thothbot.parallax.core.shared.objects.InstancedMesh;
+import thothbot.parallax.core.shared.objects.Mesh;
+import thothbot.parallax.core.shared.scenes.Scene;
+
+import com.google.gwt.junit.client.GWTTestCase;
+
+public class WebGLRendererTest extends GWTTestCase 
+{
+	private Scene scene;
+	private PerspectiveCamera camera;
+
+	@Override
+	public String getModuleName() {
+		return "thothbot.parallax.core.Core";
+	}
+
+	// Fails the test when WebGL is not supported by the test browser
+	private WebGLRenderer createRenderer()
+	{
+		Canvas3d canvas = null;
+		try
+		{
+			canvas = new Canvas3d(null);
+		}
+		catch (Exception e)
+		{
+			fail( "WebGL unavailable: " + e.getMessage() );
+		}
+
+		this.scene = new Scene();
+		this.camera = new PerspectiveCamera( 45, 1, 1, 1000 );
+		this.camera.getPosition().setZ( 500 );
+
+		return new WebGLRenderer( canvas.getGL(), 64, 64 );
+	}
+
+	public void testProgramSharedAfterRebuild()
+	{
+		WebGLRenderer renderer = createRenderer();
+
+		MeshBasicMaterial a = new MeshBasicMaterial();
+		MeshBasicMaterial b = new MeshBasicMaterial();
+		scene.add( new Mesh( new BoxGeometry( 10, 10, 10 ), a ) );
+		scene.add( new Mesh( new BoxGeometry( 10, 10, 10 ), b ) );
+
+		renderer.render( scene, camera );
+
+		Shader shared = b.getShader();
+		assertSame( shared, a.getShader() );
+		assertEquals( 2, shared.getUsedTimes() );
+
+		// Other parameters, so a new program
+		a.setVertexColors( Material.COLORS.VERTEX );
+		a.setNeedsUpdate( true );
+		renderer.render( scene, camera );
+
+		assertNotSame( shared, a.getShader() );
+		assertSame( shared, b.getShader() );
+		assertEquals( 1, shared.getUsedTimes() );
+		assertEquals( 2, renderer._programs.size() );
+		assertTrue( renderer._programs.containsValue( shared ) );
+		assertTrue( renderer._programs.containsValue( a.getShader() ) );
+	}
+
+	public void testInstancingAttributes()
+	{
+		WebGLRenderer renderer = createRenderer();
+		assertTrue( "ANGLE_instanced_arrays unavailable", renderer.supportsInstancedArrays() );
+
+		InstancedBufferGeometry geometry = new InstancedBufferGeometry();
+		geometry.addAttribute( "position", new BufferAttribute( Float32Array.create( 9 ), 3 ) );
+
+		InstancedMesh mesh = new InstancedMesh( geometry, new MeshBasicMaterial(), 4 );
+		scene.add( mesh );
+
+		renderer.render( scene, camera );
+
+		Shader program = mesh.getMaterial().getShader();
+
+		// Attributes are kept in the vertex array object of the geometry
+		if ( renderer.supportsVertexArrayObjects() )
+			((OESVertexArrayObject) WebGLExtensions.get( renderer.getGL(), WebGLExtensions.Id.OES_vertex_array_object ))
+				.bindVertexArrayOES( geometry.__webglVertexArrays.values().get( 0 ) );
+
+		List<String> names = Arrays.asList( program.getActiveAttributeNames() );
+		for ( String name : new String[] { "instanceMatrix0", "instanceMatrix1", "instanceMatrix2", "instanceMatrix3", "instanceColor" } )
+		{
+			int index = names.indexOf( name );
+			assertTrue( name, index >= 0 );
+
+			int location = program.getActiveAttributeLocations()[ index ];
+			assertEquals( name, 1, renderer.getGL().getVertexAttribi( location, AngleInstancedArrays.VERTEX_ATTRIB_ARRAY_DIVISOR_ANGLE ) );
+		}
+
+		// Colors do not change the program
+		mesh.setColorAt( 0, new Color( 0xff0000 ) );
+		renderer.render( scene, camera );
+
+		assertFalse( mesh.getMaterial().isNeedsUpdate() );
+		assertSame( program, mesh.getMaterial().getShader() );
+	}
+
+	public void testTexturesOfSharedProgram()
+	{
+		WebGLRenderer renderer = createRenderer();
+
+		Texture mapA = new Texture();
+		Texture mapB = new Texture();
+
+		MeshBasicMaterial a = new MeshBasicMaterial();
+		a.setMap( mapA );
+		MeshBasicMaterial b = new MeshBasicMaterial();
+		b.setMap( mapB );
+
+		Mesh meshA = new Mesh( new BoxGeometry( 10, 10, 10 ), a );
+		Mesh meshB = new Mesh( new BoxGeometry( 10, 10, 10 ), b );
+		scene.add( meshA );
+		scene.add( meshB );
+
+		renderer.render( scene, camera );
+
+		assertSame( a.getShader(), b.getShader() );
+		assertEquals( 1, mapA.getUsers() );
+		assertEquals( 1, mapB.getUsers() );
+
+		// Removed and added back: the program is deleted and built again
+		Shader shared = a.getShader();
+		renderer.deallocateMaterial( a );
+		renderer.deallocateMaterial( b );
+
+		assertEquals( 0, mapA.getUsers() );
+		assertEquals( 0, mapB.getUsers() );
+		assertEquals( 0, renderer._programs.size() );
+
+		renderer.render( scene, camera );
+
+		assertNotSame( shared, a.getShader() );
+		assertSame( a.getShader(), b.getShader() );
+		assertEquals( 1, renderer._programs.size() );
+		assertEquals( 1, mapA.getUsers() );
+		assertEquals( 1, mapB.getUsers() );
+	}
+
+	public void testShaderMaterialUniformsAfterReAdd()
+	{
+		WebGLRenderer renderer = createRenderer();
+
+		ShaderMaterial material = new ShaderMaterial( 
+				"void main() { gl_Position = projectionMatrix * modelViewMatrix * vec4( position, 1.0 ); }",
+				"uniform float value; void main() { gl_FragColor = vec4( value ); }" );
+		Shader original = material.getShader();
+		original.addUniform( "value", new Uniform( Uniform.TYPE.F, 0.25 ) );
+
+		scene.add( new Mesh( new BoxGeometry( 10, 10, 10 ), material ) );
+		renderer.render( scene, camera );
+
+		// Removed and added back: the program is deleted and the shader is built again
+		renderer.deallocateMaterial( material );
+		assertNull( original.getProgram() );
+
+		renderer.render( scene, camera );
+		assertSame( original, material.getShader() );
+
+		original.getUniforms().get( "value" ).setValue( 0.5 );
+		renderer.render( scene, camera );
+		assertUniform( renderer, material.getShader(), 0.5 );
+
+		// Other parameters, so a new shader which shares the uniforms
+		material.setVertexColors( Material.COLORS.VERTEX );
+		material.setNeedsUpdate( true );
+		renderer.render( scene, camera );
+		assertNotSame( original, material.getShader() );
+
+		original.getUniforms().get( "value" ).setValue( 0.75 );
+		renderer.render( scene, camera );
+		assertUniform( renderer, material.getShader(), 0.75 );
+	}
+
+	private void assertUniform( WebGLRenderer renderer, Shader shader, double value )
+	{
+		Uniform uniform = shader.getUniforms().get( "value" );
+		assertSame( shader.getProgram(), uniform.getProgram() );
+		assertEquals( value, renderer.getGL().getUniformf( shader.getProgram(), uniform.getLocation() ), 1e-6 );
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ * 
+ * This file is part of Parallax project.
+ * 
+ * Parallax is free software: you can redistribute it and/or modify it 
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ * 
+ * Parallax is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution 
+ * 3.0 Unported License. for more details.
+ * 
+ * You should have received a copy of the the Creative Commons Attribution 
+ * 3.0 Unported License along with Parallax. 
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+
+package thothbot.parallax.core.shared.core;
+
+import thothbot.parallax.core.client.gl2.arrays.Float32Array;
+
+import com.google.gwt.junit.client.GWTTestCase;
+
+public class BufferAttributeTest extends GWTTestCase 
+{
+	@Override
+	public String getModuleName() {
+		return "thothbot.parallax.core.Core";
+	}
+
+	private BufferAttribute createAttribute()
+	{
+		BufferAttribute attribute = new BufferAttribute( Float32Array.create( 300 ), 3 );
+		// Uploaded
+		attribute.setNeedsUpdate( false );
+		return attribute;
+	}
+
+	public void testAddUpdateRange()
+	{
+		BufferAttribute a = createAttribute();
+
+		a.addUpdateRange( 10, 5 );
+		assertTrue( a.isNeedsUpdate() );
+		assertEquals( 1, a.getUpdateRangesCount() );
+		assertEquals( 10, a.getUpdateRangeOffset( 0 ) );
+		assertEquals( 5, a.getUpdateRangeCount( 0 ) );
+
+		a.addUpdateRange( 30, 3 );
+		assertEquals( 2, a.getUpdateRangesCount() );
+		assertEquals( 30, a.getUpdateRangeOffset( 1 ) );
+		assertEquals( 3, a.getUpdateRangeCount( 1 ) );
+
+		a.setNeedsUpdate( false );
+		assertFalse( a.isNeedsUpdate() );
+		assertEquals( 0, a.getUpdateRangesCount() );
+	}
+
+	public void testAddUpdateRangeMerge()
+	{
+		BufferAttribute a = createAttribute();
+
+		// Overlapping
+		a.addUpdateRange( 10, 5 );
+		a.addUpdateRange( 12, 10 );
+		assertEquals( 1, a.getUpdateRangesCount() );
+		assertEquals( 10, a.getUpdateRangeOffset( 0 ) );
+		assertEquals( 12, a.getUpdateRangeCount( 0 ) );
+
+		// Adjacent, before
+		a.addUpdateRange( 4, 6 );
+		assertEquals( 1, a.getUpdateRangesCount() );
+		assertEquals( 4, a.getUpdateRangeOffset( 0 ) );
+		assertEquals( 18, a.getUpdateRangeCount( 0 ) );
+
+		// Adjacent, after
+		a.addUpdateRange( 22, 3 );
+		assertEquals( 1, a.getUpdateRangesCount() );
+		assertEquals( 4, a.getUpdateRangeOffset( 0 ) );
+		assertEquals( 21, a.getUpdateRangeCount( 0 ) );
+
+		// Inside
+		a.addUpdateRange( 6, 2 );
+		assertEquals( 1, a.getUpdateRangesCount() );
+		assertEquals( 4, a.getUpdateRangeOffset( 0 ) );
+		assertEquals( 21, a.getUpdateRangeCount( 0 ) );
+	}
+
+	public void testAddUpdateRangeCollapse()
+	{
+		BufferAttribute a = createAttribute();
+
+		for ( int i = 0; i < BufferAttribute.MAX_UPDATE_RANGES; i ++ )
+			a.addUpdateRange( i * 10, 2 );
+
+		assertEquals( BufferAttribute.MAX_UPDATE_RANGES, a.getUpdateRangesCount() );
+
+		// One more is joined with all the others into the one range
+		a.addUpdateRange( 200, 5 );
+		assertEquals( 1, a.getUpdateRangesCount() );
+		assertEquals( 0, a.getUpdateRangeOffset( 0 ) );
+		assertEquals( 205, a.getUpdateRangeCount( 0 ) );
+
+		// Further ranges are added again
+		a.addUpdateRange( 250, 1 );
+		assertEquals( 2, a.getUpdateRangesCount() );
+	}
+
+	public void testAddUpdateRangeWholeArray()
+	{
+		BufferAttribute a = new BufferAttribute( Float32Array.create( 30 ), 3 );
+		a.setNeedsUpdate( true );
+
+		// The whole array is going to be uploaded anyway
+		a.addUpdateRange( 3, 3 );
+		assertTrue( a.isNeedsUpdate() );
+		assertEquals( 0, a.getUpdateRangesCount() );
+	}
+}
@@ -148,6 +148,29 @@ public class FrustumTest extends GWTTestCase
 		assertTrue( a.isIntersectsSphere( new Sphere( new Vector3( 0, 0, -101 ), 1.1 ) ));
 	}
 
+	public void testSetFromMatrixMakeFrustumIntersectsBoxMask()
+	{
+		Matrix4 m = new Matrix4().makeFrustum( -1, 1, -1, 1, 1, 100 );
+		Frustum a = new Frustum().setFromMatrix( m );
+
+		// outside
+		assertTrue( a.intersectsBox( new Box3( new Vector3( -1, -1, -0.5 ), new Vector3( 1, 1, 0 ) ), Frustum.ALL_PLANES ) < 0 );
+		assertTrue( a.intersectsBox( new Box3( new Vector3( 0, 0, -102 ), new Vector3( 1, 1, -101 ) ), Frustum.ALL_PLANES ) < 0 );
+		assertTrue( a.intersectsBox( new Box3(), Frustum.ALL_PLANES ) < 0 );
+
+		// fully inside
+		assertEquals( 0, a.intersectsBox( new Box3( new Vector3( -0.5, -0.5, -10 ), new Vector3( 0.5, 0.5, -5 ) ), Frustum.ALL_PLANES ) );
+
+		// crosses only the near plane
+		Box3 near = new Box3( new Vector3( -0.1, -0.1, -2 ), new Vector3( 0.1, 0.1, -0.5 ) );
+		int mask = a.intersectsBox( near, Frustum.ALL_PLANES );
+		assertTrue( mask > 0 );
+		assertEquals( 0, mask & ~( 1 << 5 ) );
+
+		// the planes which are not in the mask are not tested
+		assertEquals( 0, a.intersectsBox( near, 0 ) );
+	}
+
 	public void testClone()
 	{
 		Plane p0 = new Plane( FrustumTest.unit3, -1 );
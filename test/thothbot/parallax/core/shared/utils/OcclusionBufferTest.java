@@ -0,0 +1,91 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ * 
+ * This file is part of Parallax project.
+ * 
+ * Parallax is free software: you can redistribute it and/or modify it 
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ * 
+ * Parallax is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution 
+ * 3.0 Unported License. for more details.
+ * 
+ * You should have received a copy of the the Creative Commons Attribution 
+ * 3.0 Unported License along with Parallax. 
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+
+package thothbot.parallax.core.shared.utils;
+
+import thothbot.parallax.core.shared.math.Box3;
+import thothbot.parallax.core.shared.math.Vector3;
+
+import com.google.gwt.junit.client.GWTTestCase;
+
+public class OcclusionBufferTest extends GWTTestCase 
+{
+	// Clip space is equal to the world space
+	private static double[] identity = { 1, 0, 0, 0,  0, 1, 0, 0,  0, 0, 1, 0,  0, 0, 0, 1 };
+
+	@Override
+	public String getModuleName() {
+		return "thothbot.parallax.core.Core";
+	}
+
+	private OcclusionBuffer createBuffer()
+	{
+		OcclusionBuffer a = new OcclusionBuffer( 64, 32 );
+		a.setViewProjection( identity );
+
+		// Square [-0.5, 0.5] at the middle depth
+		a.rasterizeTriangle( new Vector3( -0.5, -0.5, 0 ), new Vector3( 0.5, -0.5, 0 ), new Vector3( 0.5, 0.5, 0 ) );
+		a.rasterizeTriangle( new Vector3( -0.5, -0.5, 0 ), new Vector3( 0.5, 0.5, 0 ), new Vector3( -0.5, 0.5, 0 ) );
+
+		return a;
+	}
+
+	public void testRasterize()
+	{
+		OcclusionBuffer a = createBuffer();
+
+		assertEquals( 2, a.getTriangles() );
+		assertEquals( 0.5, a.getDepth( 32, 16 ), 1e-6 );
+		assertEquals( 1.0, a.getDepth( 2, 2 ), 1e-6 );
+
+		a.clear();
+		assertEquals( 1.0, a.getDepth( 32, 16 ), 1e-6 );
+	}
+
+	public void testIsOccluded()
+	{
+		OcclusionBuffer a = createBuffer();
+
+		// behind
+		assertTrue( a.isOccluded( new Box3( new Vector3( -0.2, -0.2, 0.5 ), new Vector3( 0.2, 0.2, 0.6 ) ) ) );
+		// in front
+		assertTrue( ! a.isOccluded( new Box3( new Vector3( -0.2, -0.2, -0.6 ), new Vector3( 0.2, 0.2, -0.5 ) ) ) );
+		// crosses the occluder
+		assertTrue( ! a.isOccluded( new Box3( new Vector3( -0.2, -0.2, -0.1 ), new Vector3( 0.2, 0.2, 0.1 ) ) ) );
+		// behind, but sticks out of the occluder
+		assertTrue( ! a.isOccluded( new Box3( new Vector3( 0.4, -0.2, 0.5 ), new Vector3( 0.7, 0.2, 0.6 ) ) ) );
+		// crosses the near plane
+		assertTrue( ! a.isOccluded( new Box3( new Vector3( -0.2, -0.2, -2 ), new Vector3( 0.2, 0.2, 0.6 ) ) ) );
+		// empty
+		assertTrue( ! a.isOccluded( new Box3() ) );
+	}
+
+	public void testNearPlaneClipping()
+	{
+		OcclusionBuffer a = new OcclusionBuffer( 64, 32 );
+		a.setViewProjection( identity );
+
+		// Half of the triangle is in front of the near plane
+		a.rasterizeTriangle( new Vector3( -1, -1, -3 ), new Vector3( 1, -1, -3 ), new Vector3( 0, 1, 1 ) );
+
+		assertEquals( 1, a.getTriangles() );
+		assertTrue( a.getDepth( 32, 24 ) < 1.0 );
+		assertTrue( a.getDepth( 32, 24 ) >= 0.0 );
+	}
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ * 
+ * This file is part of Parallax project.
+ * 
+ * Parallax is free software: you can redistribute it and/or modify it 
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ * 
+ * Parallax is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution 
+ * 3.0 Unported License. for more details.
+ * 
+ * You should have received a copy of the the Creative Commons Attribution 
+ * 3.0 Unported License along with Parallax. 
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+
+package thothbot.parallax.core.shared.utils;
+
+import java.util.List;
+
+import thothbot.parallax.core.client.gl2.arrays.Float32Array;
+import thothbot.parallax.core.client.gl2.arrays.Uint16Array;
+import thothbot.parallax.core.client.gl2.arrays.Uint32Array;
+import thothbot.parallax.core.shared.core.BufferAttribute;
+import thothbot.parallax.core.shared.core.BufferGeometry;
+import thothbot.parallax.core.shared.core.InterleavedBuffer;
+import thothbot.parallax.core.shared.core.InterleavedBufferAttribute;
+import thothbot.parallax.core.shared.core.Object3D;
+import thothbot.parallax.core.shared.materials.MeshBasicMaterial;
+import thothbot.parallax.core.shared.math.Vector3;
+import thothbot.parallax.core.shared.objects.BatchedMesh;
+import thothbot.parallax.core.shared.objects.Mesh;
+
+import com.google.gwt.junit.client.GWTTestCase;
+
+public class StaticBatcherTest extends GWTTestCase 
+{
+	@Override
+	public String getModuleName() {
+		return "thothbot.parallax.core.Core";
+	}
+
+	private Mesh createMesh( BufferGeometry geometry, MeshBasicMaterial material )
+	{
+		Mesh mesh = new Mesh( geometry, material );
+		mesh.setStatic( true );
+		return mesh;
+	}
+
+	public void testInterleavedSource()
+	{
+		MeshBasicMaterial material = new MeshBasicMaterial();
+
+		// Triangle with the interleaved position and normal: 3 vertices, 6 values each
+		InterleavedBuffer buffer = new InterleavedBuffer( Float32Array.create(
+				0, 0, 0,  0, 0, 1,
+				1, 0, 0,  0, 0, 1,
+				0, 1, 0,  0, 0, 1 ), 6 );
+
+		BufferGeometry interleaved = new BufferGeometry();
+		interleaved.addAttribute( "position", new InterleavedBufferAttribute( buffer, 3, 0 ) );
+		interleaved.addAttribute( "normal", new InterleavedBufferAttribute( buffer, 3, 3 ) );
+
+		BufferGeometry plain = new BufferGeometry();
+		plain.addAttribute( "position", new BufferAttribute( Float32Array.create( 0, 0, 0,  2, 0, 0,  0, 2, 0 ), 3 ) );
+
+		Object3D root = new Object3D();
+		root.add( createMesh( interleaved, material ) );
+		root.add( createMesh( plain, material ) );
+
+		List<BatchedMesh> batches = new StaticBatcher().batch( root );
+
+		assertEquals( 1, batches.size() );
+
+		List<BatchedMesh.Part> parts = batches.get( 0 ).getParts();
+		assertEquals( 3, parts.get( 0 ).vertexCount );
+		assertEquals( 3, parts.get( 1 ).vertexStart );
+
+		BufferAttribute position = batches.get( 0 ).getGeometry().getAttribute( "position" );
+		assertEquals( 6, position.getCount() );
+
+		Float32Array array = (Float32Array) position.getArray();
+		assertEquals( 1.0, array.get( 3 ), 1e-6 );
+		assertEquals( 1.0, array.get( 7 ), 1e-6 );
+		assertEquals( 2.0, array.get( 12 ), 1e-6 );
+	}
+
+	public void testTransformedRoot()
+	{
+		MeshBasicMaterial material = new MeshBasicMaterial();
+
+		Object3D root = new Object3D();
+		root.getPosition().set( 10, 20, 30 );
+		root.getRotation().set( 0, 0, Math.PI / 2 );
+
+		Mesh a = createMesh( createTriangle(), material );
+		a.getPosition().set( 1, 0, 0 );
+		Mesh b = createMesh( createTriangle(), material );
+		b.getPosition().set( 0, 0, -5 );
+		b.getScale().set( 2, 1, 1 );
+		root.add( a );
+		root.add( b );
+
+		root.updateMatrixWorld( true );
+
+		// World positions of the source vertices before batching
+		Vector3[] expected = new Vector3[ 6 ];
+		for ( int i = 0; i < 3; i ++ ) 
+		{
+			Float32Array source = (Float32Array) ((BufferGeometry)a.getGeometry()).getAttribute( "position" ).getArray();
+			expected[ i ] = new Vector3( source.get( i * 3 ), source.get( i * 3 + 1 ), source.get( i * 3 + 2 ) ).apply( a.getMatrixWorld() );
+			expected[ i + 3 ] = new Vector3( source.get( i * 3 ), source.get( i * 3 + 1 ), source.get( i * 3 + 2 ) ).apply( b.getMatrixWorld() );
+		}
+
+		List<BatchedMesh> batches = new StaticBatcher().batch( root );
+		assertEquals( 1, batches.size() );
+
+		BatchedMesh batch = batches.get( 0 );
+		assertSame( root, batch.getParent() );
+		root.updateMatrixWorld( true );
+
+		BufferGeometry geometry = batch.getGeometry();
+		Float32Array positions = (Float32Array) geometry.getAttribute( "position" ).getArray();
+		for ( int i = 0; i < 6; i ++ ) 
+		{
+			Vector3 world = new Vector3( positions.get( i * 3 ), positions.get( i * 3 + 1 ), positions.get( i * 3 + 2 ) )
+					.apply( batch.getMatrixWorld() );
+			assertEquals( "vertex " + i, 0.0, world.distanceTo( expected[ i ] ), 1e-4 );
+		}
+
+		// The normals are in the root space: (0, 0, 1) is not affected by the rotation about z
+		Float32Array normals = (Float32Array) geometry.getAttribute( "normal" ).getArray();
+		assertEquals( 0.0, normals.get( 0 ), 1e-6 );
+		assertEquals( 1.0, normals.get( 2 ), 1e-6 );
+	}
+
+	public void testUint32SourceIndex()
+	{
+		MeshBasicMaterial material = new MeshBasicMaterial();
+
+		BufferGeometry indexed = createTriangle();
+		Uint32Array sourceIndex = Uint32Array.create( 3 );
+		sourceIndex.set( 0, 2 );
+		sourceIndex.set( 1, 1 );
+		sourceIndex.set( 2, 0 );
+		indexed.addAttribute( "index", new BufferAttribute( sourceIndex, 1 ) );
+
+		Object3D root = new Object3D();
+		root.add( createMesh( createTriangle(), material ) );
+		root.add( createMesh( indexed, material ) );
+
+		BatchedMesh batch = new StaticBatcher().batch( root ).get( 0 );
+
+		// Few vertices, so the batch uses 16-bit indices
+		Uint16Array index = (Uint16Array) batch.getGeometry().getAttribute( "index" ).getArray();
+		assertEquals( Uint16Array.BYTES_PER_ELEMENT, index.getBytesPerElement() );
+		assertEquals( 5, index.get( 3 ) );
+		assertEquals( 3, index.get( 5 ) );
+
+		// Hidden part is collapsed to its first vertex
+		batch.getParts().get( 1 ).object.setVisible( false );
+		batch.updateVisibility();
+		assertEquals( 3, index.get( 3 ) );
+		assertEquals( 0, index.get( 0 ) );
+		assertEquals( 1, index.get( 1 ) );
+	}
+
+	private BufferGeometry createTriangle()
+	{
+		BufferGeometry geometry = new BufferGeometry();
+		geometry.addAttribute( "position", new BufferAttribute( Float32Array.create( 0, 0, 0,  1, 0, 0,  0, 1, 0 ), 3 ) );
+		geometry.addAttribute( "normal", new BufferAttribute( Float32Array.create( 0, 0, 1,  0, 0, 1,  0, 0, 1 ), 3 ) );
+		return geometry;
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ * 
+ * This file is part of Parallax project.
+ * 
+ * Parallax is free software: you can redistribute it and/or modify it 
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ * 
+ * Parallax is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution 
+ * 3.0 Unported License. for more details.
+ * 
+ * You should have received a copy of the the Creative Commons Attribution 
+ * 3.0 Unported License along with Parallax. 
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+
+package thothbot.parallax.plugins.postprocessing;
+
+import java.util.List;
+
+import thothbot.parallax.core.client.context.Canvas3d;
+import thothbot.parallax.core.client.renderers.WebGLRenderer;
+import thothbot.parallax.core.shared.scenes.Scene;
+import thothbot.parallax.plugins.postprocessing.shaders.CopyShader;
+import thothbot.parallax.plugins.postprocessing.shaders.FilmShader;
+import thothbot.parallax.plugins.postprocessing.shaders.HorizontalBlurShader;
+import thothbot.parallax.plugins.postprocessing.shaders.SepiaShader;
+import thothbot.parallax.plugins.postprocessing.shaders.VignetteShader;
+
+import com.google.gwt.junit.client.GWTTestCase;
+
+public class PostprocessingTest extends GWTTestCase 
+{
+	@Override
+	public String getModuleName() {
+		return "thothbot.parallax.plugins.postprocessing.PostprocessingTest";
+	}
+
+	// Fails the test when WebGL is not supported by the test browser
+	private Postprocessing createPostprocessing()
+	{
+		Canvas3d canvas = null;
+		try
+		{
+			canvas = new Canvas3d(null);
+		}
+		catch (Exception e)
+		{
+			fail( "WebGL unavailable: " + e.getMessage() );
+		}
+
+		return new Postprocessing( new WebGLRenderer( canvas.getGL(), 64, 64 ), new Scene() );
+	}
+
+	public void testRunBrokenByNotFusablePass()
+	{
+		Postprocessing composer = createPostprocessing();
+
+		ShaderPass sepia = new ShaderPass( new SepiaShader() );
+		ShaderPass vignette = new ShaderPass( new VignetteShader() );
+		ShaderPass blur = new ShaderPass( new HorizontalBlurShader() );
+		ShaderPass film = new ShaderPass( new FilmShader() );
+
+		composer.addPass( sepia );
+		composer.addPass( vignette );
+		composer.addPass( blur );
+		composer.addPass( film );
+
+		List<Pass> steps = composer.getSteps();
+		assertEquals( 3, steps.size() );
+		assertTrue( steps.get( 0 ) instanceof ShaderPassFusion.FusedPass );
+		assertSame( blur, steps.get( 1 ) );
+
+		// A single pass is not fused
+		assertSame( film, steps.get( 2 ) );
+
+		// The fused pass is reused while the run is the same
+		assertSame( steps.get( 0 ), composer.getSteps().get( 0 ) );
+
+		composer.setPassFusion( false );
+		steps = composer.getSteps();
+		assertEquals( 4, steps.size() );
+		assertSame( sepia, steps.get( 0 ) );
+		assertSame( vignette, steps.get( 1 ) );
+	}
+
+	public void testRunBrokenByRenderToScreen()
+	{
+		Postprocessing composer = createPostprocessing();
+
+		ShaderPass sepia = new ShaderPass( new SepiaShader() );
+		ShaderPass vignette = new ShaderPass( new VignetteShader() );
+		ShaderPass film = new ShaderPass( new FilmShader() );
+		ShaderPass copy = new ShaderPass( new CopyShader() );
+
+		vignette.setRenderToScreen( true );
+
+		composer.addPass( sepia );
+		composer.addPass( vignette );
+		composer.addPass( film );
+		composer.addPass( copy );
+
+		List<Pass> steps = composer.getSteps();
+		assertEquals( 2, steps.size() );
+		assertTrue( ((ShaderPass)steps.get( 0 )).isRenderToScreen() );
+		assertFalse( ((ShaderPass)steps.get( 1 )).isRenderToScreen() );
+
+		// A run left with a single pass is not fused any more
+		Pass fused = steps.get( 0 );
+		film.setEnabled( false );
+		steps = composer.getSteps();
+		assertEquals( 2, steps.size() );
+		assertSame( fused, steps.get( 0 ) );
+		assertSame( copy, steps.get( 1 ) );
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2012 Alex Usachev, thothbot@gmail.com
+ * 
+ * This file is part of Parallax project.
+ * 
+ * Parallax is free software: you can redistribute it and/or modify it 
+ * under the terms of the Creative Commons Attribution 3.0 Unported License.
+ * 
+ * Parallax is distributed in the hope that it will be useful, but 
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY 
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the Creative Commons Attribution 
+ * 3.0 Unported License. for more details.
+ * 
+ * You should have received a copy of the the Creative Commons Attribution 
+ * 3.0 Unported License along with Parallax. 
+ * If not, see http://creativecommons.org/licenses/by/3.0/.
+ */
+
+
+package thothbot.parallax.plugins.postprocessing;
+
+import java.util.Arrays;
+
+import thothbot.parallax.core.client.shaders.Shader;
+import thothbot.parallax.core.client.shaders.Uniform;
+import thothbot.parallax.plugins.postprocessing.shaders.BlendShader;
+import thothbot.parallax.plugins.postprocessing.shaders.ColorCorrectionShader;
+import thothbot.parallax.plugins.postprocessing.shaders.ConvolutionShader;
+import thothbot.parallax.plugins.postprocessing.shaders.CopyShader;
+import thothbot.parallax.plugins.postprocessing.shaders.FilmShader;
+import thothbot.parallax.plugins.postprocessing.shaders.HorizontalBlurShader;
+import thothbot.parallax.plugins.postprocessing.shaders.SepiaShader;
+import thothbot.parallax.plugins.postprocessing.shaders.VignetteShader;
+
+import com.google.gwt.junit.client.GWTTestCase;
+
+public class ShaderPassFusionTest extends GWTTestCase 
+{
+	static class TestShader extends Shader
+	{
+		public TestShader(String fragmentShader) 
+		{
+			super(new CopyShader().getVertexSource(), fragmentShader);
+		}
+
+		@Override
+		protected void initUniforms() {
+
+		}
+	}
+
+	@Override
+	public String getModuleName() {
+		return "thothbot.parallax.plugins.postprocessing.PostprocessingTest";
+	}
+
+	private static boolean isFusable( String fragmentShader )
+	{
+		return ShaderPassFusion.analyze( new CopyShader().getVertexSource(), fragmentShader ) != null;
+	}
+
+	public void testAnalyzePointwise()
+	{
+		assertNotNull( new ShaderPass( new ColorCorrectionShader() ).getFusionStage() );
+		assertNotNull( new ShaderPass( new VignetteShader() ).getFusionStage() );
+		assertNotNull( new ShaderPass( new FilmShader() ).getFusionStage() );
+		assertNotNull( new ShaderPass( new SepiaShader() ).getFusionStage() );
+		assertNotNull( new ShaderPass( new CopyShader() ).getFusionStage() );
+	}
+
+	public void testAnalyzeNotPointwise()
+	{
+		// Other samplers
+		assertNull( new ShaderPass( new BlendShader() ).getFusionStage() );
+		assertFalse( isFusable( 
+				"uniform sampler2D tDiffuse;\nuniform sampler2D tOther;\nvarying vec2 vUv;\n"
+				+ "void main() { gl_FragColor = texture2D( tDiffuse, vUv ) + texture2D( tOther, vUv ); }" ) );
+
+		// Input sampled out of the current texel
+		assertNull( new ShaderPass( new HorizontalBlurShader() ).getFusionStage() );
+
+		// Preprocessor
+		assertFalse( isFusable( 
+				"#define SCALE 2.0\nuniform sampler2D tDiffuse;\nvarying vec2 vUv;\n"
+				+ "void main() { gl_FragColor = texture2D( tDiffuse, vUv ) * SCALE; }" ) );
+
+		// discard
+		assertFalse( isFusable( 
+				"uniform sampler2D tDiffuse;\nvarying vec2 vUv;\n"
+				+ "void main() { vec4 texel = texture2D( tDiffuse, vUv ); if ( texel.a < 0.5 ) discard; gl_FragColor = texel; }" ) );
+
+		// Custom vertex shader
+		assertNull( new ShaderPass( new ConvolutionShader() ).getFusionStage() );
+		assertNull( ShaderPassFusion.analyze( 
+				"varying vec2 vUv;\nvoid main() { vUv = uv * 2.0; gl_Position = vec4( position, 1.0 ); }", 
+				new CopyShader().getFragmentSource() ) );
+	}
+
+	public void testFuse()
+	{
+		Shader shader = new TestShader( 
+				"uniform float r;\n"
+				+ "const vec3 weight = vec3( 0.5 );\n"
+				+ "uniform sampler2D tDiffuse;\n"
+				+ "varying vec2 vUv;\n"
+				+ "void main() {\n"
+				+ "\tvec4 texel = texture2D( tDiffuse, vUv );\n"
+				+ "\tgl_FragColor = vec4( texel.rgb * weight * r, texel.r );\n"
+				+ "}\n" );
+		shader.addUniform( "tDiffuse", new Uniform( Uniform.TYPE.T ) );
+		shader.addUniform( "r", new Uniform( Uniform.TYPE.F, 0.5 ) );
+
+		ShaderPass copy = new ShaderPass( new CopyShader() );
+		copy.getUniforms().get( "opacity" ).setValue( 0.75 );
+
+		ShaderPassFusion.FusedPass fused = ShaderPassFusion.fuse( Arrays.asList( new ShaderPass( shader ), copy ) );
+		String source = fused.getMaterial().getShader().getFragmentSource();
+
+		// Globals and uniforms of each stage are renamed
+		assertTrue( source.contains( "uniform float parallax0_r;" ) );
+		assertTrue( source.contains( "const vec3 parallax0_weight = vec3( 0.5 );" ) );
+		assertTrue( source.contains( "uniform float parallax1_opacity;" ) );
+
+		// Swizzles are left alone
+		assertTrue( source.contains( "parallax_color = vec4( texel.rgb * parallax0_weight * parallax0_r, texel.r );" ) );
+
+		// The input is sampled once, the stages are chained
+		assertTrue( source.contains( "vec4 texel = parallax_input;" ) );
+		assertTrue( source.contains( "parallax_color = parallax1_opacity * texel;" ) );
+		assertEquals( source.indexOf( "texture2D" ), source.lastIndexOf( "texture2D" ) );
+		assertTrue( source.contains( 
+				"\tvec4 color = texture2D( tDiffuse, vUv );\n"
+				+ "\tcolor = parallax_stage0( color );\n"
+				+ "\tcolor = parallax_stage1( color );\n"
+				+ "\n\tgl_FragColor = color;\n" ) );
+
+		assertEquals( 0.5, fused.getUniforms().get( "parallax0_r" ).getValue() );
+		assertEquals( 0.75, fused.getUniforms().get( "parallax1_opacity" ).getValue() );
+		assertNotNull( fused.getUniforms().get( "tDiffuse" ) );
+	}
+}